@@ -0,0 +1,94 @@
+/***
+ * bytecode-analysis: a prototype-library based on ASM 4 that
+ *                    computes definitions/uses of each instruction
+ * Copyright (c) 2014 University of Sao Paulo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package br.usp.each.saeg.bytecode.analysis.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import br.usp.each.saeg.bytecode.analysis.ClassGraphBuilder;
+import br.usp.each.saeg.bytecode.analysis.CouldNotBuildGraphException;
+import br.usp.each.saeg.bytecode.analysis.GraphBuilder;
+import br.usp.each.saeg.bytecode.analysis.GraphClassVisitor;
+import br.usp.each.saeg.bytecode.analysis.graph.ProgramGraph;
+
+/**
+ * Benchmarks of building the graphs of all the methods of a class, 
+ * with a <code>GraphBuilder</code> per method, with a <code>ClassGraphBuilder</code> 
+ * or while reading the class with a <code>GraphClassVisitor</code>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClassGraphBuilderBenchmark {
+	
+	@Benchmark
+	public Object methodBuilders(final ClassShapeState state) throws CouldNotBuildGraphException {
+		final List<ProgramGraph> graphs = new ArrayList<ProgramGraph>();
+		for (final Object o : state.classNode.methods) {
+			graphs.add(new GraphBuilder(MethodShape.OWNER, (MethodNode) o).buildDefUseGraph());
+		}
+		return graphs;
+	}
+	
+	@Benchmark
+	public Object classBuilder(final ClassShapeState state) throws CouldNotBuildGraphException {
+		return new ClassGraphBuilder(state.classNode).buildGraphs();
+	}
+	
+	@Benchmark
+	public Object readClassNode(final ClassShapeState state) throws CouldNotBuildGraphException {
+		final ClassNode classNode = new ClassNode();
+		new ClassReader(state.bytes).accept(classNode, 0);
+		return new ClassGraphBuilder(classNode).buildGraphs();
+	}
+	
+	@Benchmark
+	public Object streaming(final ClassShapeState state) throws CouldNotBuildGraphException {
+		final GraphClassVisitor visitor = new GraphClassVisitor();
+		new ClassReader(state.bytes).accept(visitor, 0);
+		return visitor.getGraphs();
+	}
+
+}
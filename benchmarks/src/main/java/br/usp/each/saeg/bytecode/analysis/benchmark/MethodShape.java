@@ -0,0 +1,241 @@
+/***
+ * bytecode-analysis: a prototype-library based on ASM 4 that
+ *                    computes definitions/uses of each instruction
+ * Copyright (c) 2014 University of Sao Paulo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package br.usp.each.saeg.bytecode.analysis.benchmark;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+/**
+ * Shapes of methods used as input by the benchmarks. Each shape is
+ * generated with a given size, so the benchmarks can show how a phase
+ * scales with the method length.
+ */
+public enum MethodShape {
+
+	/** Sequences of loads, arithmetic and stores without any branch */
+	STRAIGHT_LINE("(II)I") {
+		@Override
+		void generate(final MethodVisitor mv, final int size) {
+			for (int i = 0; i < size; i++) {
+				mv.visitVarInsn(Opcodes.ILOAD, 0);
+				mv.visitVarInsn(Opcodes.ILOAD, 1);
+				mv.visitInsn(Opcodes.IADD);
+				mv.visitVarInsn(Opcodes.ISTORE, 2);
+				mv.visitVarInsn(Opcodes.ILOAD, 2);
+				mv.visitVarInsn(Opcodes.ISTORE, 1);
+			}
+			mv.visitVarInsn(Opcodes.ILOAD, 1);
+			mv.visitInsn(Opcodes.IRETURN);
+		}
+	},
+
+	/** Loops nested <code>size</code> levels deep */
+	DEEP_LOOPS("(I)I") {
+		@Override
+		void generate(final MethodVisitor mv, final int size) {
+			final Label[] heads = new Label[size];
+			final Label[] exits = new Label[size];
+			final int acc = 1;
+			mv.visitInsn(Opcodes.ICONST_0);
+			mv.visitVarInsn(Opcodes.ISTORE, acc);
+			for (int i = 0; i < size; i++) {
+				final int var = acc + 1 + i;
+				heads[i] = new Label();
+				exits[i] = new Label();
+				mv.visitInsn(Opcodes.ICONST_0);
+				mv.visitVarInsn(Opcodes.ISTORE, var);
+				mv.visitLabel(heads[i]);
+				mv.visitVarInsn(Opcodes.ILOAD, var);
+				mv.visitVarInsn(Opcodes.ILOAD, 0);
+				mv.visitJumpInsn(Opcodes.IF_ICMPGE, exits[i]);
+			}
+			mv.visitVarInsn(Opcodes.ILOAD, acc);
+			mv.visitVarInsn(Opcodes.ILOAD, acc + size);
+			mv.visitInsn(Opcodes.IADD);
+			mv.visitVarInsn(Opcodes.ISTORE, acc);
+			for (int i = size - 1; i >= 0; i--) {
+				mv.visitIincInsn(acc + 1 + i, 1);
+				mv.visitJumpInsn(Opcodes.GOTO, heads[i]);
+				mv.visitLabel(exits[i]);
+			}
+			mv.visitVarInsn(Opcodes.ILOAD, acc);
+			mv.visitInsn(Opcodes.IRETURN);
+		}
+	},
+
+	/** A single <code>TABLESWITCH</code> with <code>size</code> cases */
+	LARGE_TABLESWITCH("(I)I") {
+		@Override
+		void generate(final MethodVisitor mv, final int size) {
+			final Label[] cases = new Label[size];
+			for (int i = 0; i < size; i++) {
+				cases[i] = new Label();
+			}
+			final Label dflt = new Label();
+			final Label end = new Label();
+			mv.visitInsn(Opcodes.ICONST_0);
+			mv.visitVarInsn(Opcodes.ISTORE, 1);
+			mv.visitVarInsn(Opcodes.ILOAD, 0);
+			mv.visitTableSwitchInsn(0, size - 1, dflt, cases);
+			for (int i = 0; i < size; i++) {
+				mv.visitLabel(cases[i]);
+				mv.visitVarInsn(Opcodes.ILOAD, 0);
+				mv.visitIntInsn(Opcodes.SIPUSH, i);
+				mv.visitInsn(Opcodes.IADD);
+				mv.visitVarInsn(Opcodes.ISTORE, 1);
+				mv.visitJumpInsn(Opcodes.GOTO, end);
+			}
+			mv.visitLabel(dflt);
+			mv.visitInsn(Opcodes.ICONST_M1);
+			mv.visitVarInsn(Opcodes.ISTORE, 1);
+			mv.visitLabel(end);
+			mv.visitVarInsn(Opcodes.ILOAD, 1);
+			mv.visitInsn(Opcodes.IRETURN);
+		}
+	},
+
+	/** A sequence of <code>size</code> try/catch blocks around method calls */
+	DENSE_TRY_CATCH("(Ljava/lang/Object;)I") {
+		@Override
+		void generate(final MethodVisitor mv, final int size) {
+			mv.visitInsn(Opcodes.ICONST_0);
+			mv.visitVarInsn(Opcodes.ISTORE, 1);
+			for (int i = 0; i < size; i++) {
+				final Label start = new Label();
+				final Label end = new Label();
+				final Label handler = new Label();
+				final Label next = new Label();
+				mv.visitTryCatchBlock(start, end, handler, "java/lang/RuntimeException");
+				mv.visitLabel(start);
+				mv.visitVarInsn(Opcodes.ALOAD, 0);
+				mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "java/lang/Object", "hashCode", "()I");
+				mv.visitVarInsn(Opcodes.ILOAD, 1);
+				mv.visitInsn(Opcodes.IADD);
+				mv.visitVarInsn(Opcodes.ISTORE, 1);
+				mv.visitLabel(end);
+				mv.visitJumpInsn(Opcodes.GOTO, next);
+				mv.visitLabel(handler);
+				mv.visitVarInsn(Opcodes.ASTORE, 2);
+				mv.visitIincInsn(1, -1);
+				mv.visitLabel(next);
+			}
+			mv.visitVarInsn(Opcodes.ILOAD, 1);
+			mv.visitInsn(Opcodes.IRETURN);
+		}
+	},
+
+	/** Reads and writes through chains of up to eight object fields */
+	LONG_FIELD_CHAINS("()V", 0) {
+		@Override
+		void generate(final MethodVisitor mv, final int size) {
+			for (int i = 0; i < size; i++) {
+				final int depth = (i % 8) + 1;
+				chain(mv, depth);
+				chain(mv, depth);
+				mv.visitFieldInsn(Opcodes.GETFIELD, OWNER, "value", "I");
+				mv.visitInsn(Opcodes.ICONST_1);
+				mv.visitInsn(Opcodes.IADD);
+				mv.visitFieldInsn(Opcodes.PUTFIELD, OWNER, "value", "I");
+			}
+			mv.visitInsn(Opcodes.RETURN);
+		}
+		
+		private void chain(final MethodVisitor mv, final int depth) {
+			mv.visitVarInsn(Opcodes.ALOAD, 0);
+			for (int j = 0; j < depth; j++) {
+				mv.visitFieldInsn(Opcodes.GETFIELD, OWNER, "next", "L" + OWNER + ";");
+			}
+		}
+	};
+	
+	public static final String OWNER = "br/usp/each/saeg/bytecode/analysis/benchmark/Shape";
+	
+	private final String desc;
+	
+	private final int access;
+	
+	private MethodShape(final String desc, final int access) {
+		this.desc = desc;
+		this.access = access;
+	}
+	
+	private MethodShape(final String desc) {
+		this(desc, Opcodes.ACC_STATIC);
+	}
+	
+	abstract void generate(MethodVisitor mv, int size);
+	
+	/**
+	 * Generates a method with this shape
+	 * 
+	 * @param size the number of repetitions of the shape pattern
+	 * @return the generated method, as read back by the ASM tree API
+	 */
+	public MethodNode create(final int size) {
+		final ClassNode cn = new ClassNode();
+		new ClassReader(createClass(1, size)).accept(cn, 0);
+		return cn.methods.get(0);
+	}
+	
+	/**
+	 * Generates a class with many methods of this shape
+	 * 
+	 * @param methods the number of methods
+	 * @param size the number of repetitions of the shape pattern in each method
+	 * @return the content of the generated class file
+	 */
+	public byte[] createClass(final int methods, final int size) {
+		
+		final ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		cw.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC, OWNER, null, "java/lang/Object", null);
+		cw.visitField(Opcodes.ACC_PUBLIC, "next", "L" + OWNER + ";", null, null).visitEnd();
+		cw.visitField(Opcodes.ACC_PUBLIC, "value", "I", null, null).visitEnd();
+		
+		for (int i = 0; i < methods; i++) {
+			final String name = methods == 1 ? name().toLowerCase() : name().toLowerCase() + i;
+			final MethodVisitor mv = cw.visitMethod(
+					Opcodes.ACC_PUBLIC | access, name, desc, null, null);
+			mv.visitCode();
+			generate(mv, size);
+			mv.visitMaxs(0, 0);
+			mv.visitEnd();
+		}
+		cw.visitEnd();
+		
+		return cw.toByteArray();
+	}
+
+}
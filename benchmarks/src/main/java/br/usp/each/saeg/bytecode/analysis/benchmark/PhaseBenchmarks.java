@@ -0,0 +1,294 @@
+/***
+ * bytecode-analysis: a prototype-library based on ASM 4 that
+ *                    computes definitions/uses of each instruction
+ * Copyright (c) 2014 University of Sao Paulo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package br.usp.each.saeg.bytecode.analysis.benchmark;
+
+import static br.usp.each.saeg.bytecode.analysis.GraphBuilder.BASIC_BLOCK;
+import static br.usp.each.saeg.bytecode.analysis.GraphBuilder.COMPUTE_DEF_USE;
+import static br.usp.each.saeg.bytecode.analysis.GraphBuilder.NORMAL_FLOW;
+import static br.usp.each.saeg.bytecode.analysis.GraphBuilder.REMOVE_LOCAL_USES;
+
+import java.util.concurrent.TimeUnit;
+
+import org.objectweb.asm.tree.analysis.AnalyzerException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+import br.usp.each.saeg.bytecode.analysis.ControlFlowAnalyzer;
+import br.usp.each.saeg.bytecode.analysis.CouldNotBuildGraphException;
+import br.usp.each.saeg.bytecode.analysis.EdgeAnalyzer;
+import br.usp.each.saeg.bytecode.analysis.MethodCode;
+import br.usp.each.saeg.bytecode.analysis.graph.BasicBlockBuilder;
+import br.usp.each.saeg.bytecode.analysis.graph.BasicBlockGraphNodeJoiner;
+import br.usp.each.saeg.bytecode.analysis.graph.DataflowVerifierTraversalStrategy;
+import br.usp.each.saeg.bytecode.analysis.graph.Graph;
+import br.usp.each.saeg.bytecode.analysis.graph.GraphNode;
+import br.usp.each.saeg.bytecode.analysis.graph.PreOrderTraversalStrategy;
+import br.usp.each.saeg.bytecode.analysis.graph.dataflow.DataflowSolver;
+import br.usp.each.saeg.bytecode.analysis.graph.defuse.DefUseFrameCleaner;
+import br.usp.each.saeg.bytecode.analysis.graph.defuse.DefUseFrameComputer;
+import br.usp.each.saeg.bytecode.analysis.graph.defuse.LiveVariables;
+import br.usp.each.saeg.bytecode.analysis.graph.defuse.LocalUseRemover;
+import br.usp.each.saeg.bytecode.analysis.graph.defuse.LonelyDefinitionsRemover;
+import br.usp.each.saeg.bytecode.analysis.graph.defuse.ReachingDefinitions;
+
+/**
+ * Benchmarks of each phase run by the <code>GraphBuilder</code>. Every
+ * phase starts from fresh graphs produced by the previous phases, which
+ * are built outside of the measured region (see {@link GraphBatch}).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PhaseBenchmarks {
+	
+	/** number of graphs built by each setup of a {@link GraphBatch} */
+	public static final int BATCH = 64;
+	
+	/**
+	 * A batch of independent graphs, built before each invocation, since the 
+	 * phases change the graph they run on. Benchmarks run a phase on every 
+	 * graph of the batch, so an invocation is long enough to be timed 
+	 * reliably, and report the time per graph.
+	 */
+	public abstract static class GraphBatch extends ShapeState {
+		
+		public final GraphNode[] roots = new GraphNode[BATCH];
+		
+		protected abstract int type();
+		
+		@Setup(Level.Invocation)
+		public void buildGraphs() throws CouldNotBuildGraphException {
+			for (int i = 0; i < BATCH; i++) {
+				roots[i] = build(type());
+			}
+		}
+		
+	}
+	
+	public static class RawGraph extends GraphBatch {
+		
+		@Override
+		protected int type() {
+			return NORMAL_FLOW;
+		}
+		
+	}
+	
+	public static class AnalyzedMethod extends ShapeState {
+		
+		public MethodCode code;
+		
+		public ControlFlowAnalyzer analyzer;
+		
+		@Setup(Level.Trial)
+		public void analyze() throws AnalyzerException {
+			code = new MethodCode();
+			code.load(method);
+			analyzer = new ControlFlowAnalyzer(false);
+			analyzer.analyze(MethodShape.OWNER, code);
+		}
+		
+	}
+	
+	public static class BasicBlockGraph extends GraphBatch {
+		
+		@Override
+		protected int type() {
+			return NORMAL_FLOW | BASIC_BLOCK;
+		}
+		
+	}
+	
+	public static class DefUseGraph extends GraphBatch {
+		
+		@Override
+		protected int type() {
+			return NORMAL_FLOW | BASIC_BLOCK | COMPUTE_DEF_USE;
+		}
+		
+	}
+	
+	public static class LocalUsesRemovedGraph extends GraphBatch {
+		
+		@Override
+		protected int type() {
+			return NORMAL_FLOW | BASIC_BLOCK | COMPUTE_DEF_USE | REMOVE_LOCAL_USES;
+		}
+		
+	}
+	
+	@Benchmark
+	public Object edgeAnalyzer(final ShapeState state) throws AnalyzerException {
+		final EdgeAnalyzer analyzer = new EdgeAnalyzer(false);
+		analyzer.analyze(MethodShape.OWNER, state.method);
+		return analyzer.getEdgeSet();
+	}
+	
+	@Benchmark
+	public Object edgeAnalyzerWithExceptionFlow(final ShapeState state) throws AnalyzerException {
+		final EdgeAnalyzer analyzer = new EdgeAnalyzer(true);
+		analyzer.analyze(MethodShape.OWNER, state.method);
+		return analyzer.getExceptionEdgeSet();
+	}
+	
+	@Benchmark
+	public Object controlFlowAnalyzer(final ShapeState state) throws AnalyzerException {
+		final ControlFlowAnalyzer analyzer = new ControlFlowAnalyzer(false);
+		analyzer.analyze(MethodShape.OWNER, state.method);
+		return analyzer.getEdgeSet();
+	}
+	
+	@Benchmark
+	public Object controlFlowAnalyzerWithExceptionFlow(final ShapeState state) throws AnalyzerException {
+		final ControlFlowAnalyzer analyzer = new ControlFlowAnalyzer(true);
+		analyzer.analyze(MethodShape.OWNER, state.method);
+		return analyzer.getExceptionEdgeSet();
+	}
+	
+	@Benchmark
+	public Object controlFlowAnalyzerWithFactoredExceptionFlow(final ShapeState state) throws AnalyzerException {
+		final ControlFlowAnalyzer analyzer = new ControlFlowAnalyzer(true, true, false);
+		analyzer.analyze(MethodShape.OWNER, state.method);
+		return analyzer;
+	}
+	
+	/*
+	 * The setup of a graph batch runs in the same iteration as the benchmark, 
+	 * so the allocation reported by -prof gc (gc.alloc.rate.norm) for a phase 
+	 * includes the graphs it runs on. The benchmarks below only do that setup, 
+	 * so their allocation per graph can be subtracted from the phases'.
+	 */
+	
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public Object rawGraphSetup(final RawGraph state) {
+		return state.roots;
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public Object basicBlockGraphSetup(final BasicBlockGraph state) {
+		return state.roots;
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public Object defUseGraphSetup(final DefUseGraph state) {
+		return state.roots;
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public Object localUsesRemovedGraphSetup(final LocalUsesRemovedGraph state) {
+		return state.roots;
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public Object basicBlockGraphNodeJoiner(final RawGraph state) {
+		for (final GraphNode root : state.roots) {
+			new PreOrderTraversalStrategy(new BasicBlockGraphNodeJoiner()).traverse(root);
+		}
+		return state.roots;
+	}
+	
+	@Benchmark
+	public Object basicBlockBuilder(final AnalyzedMethod state) {
+		return new BasicBlockBuilder().build(state.code, state.analyzer, true, false);
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public Object defUseFrameComputer(final BasicBlockGraph state) {
+		for (final GraphNode root : state.roots) {
+			new DataflowVerifierTraversalStrategy(new DefUseFrameComputer()).traverse(root);
+		}
+		return state.roots;
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public Object localUseRemover(final DefUseGraph state) {
+		for (final GraphNode root : state.roots) {
+			new PreOrderTraversalStrategy(new LocalUseRemover()).traverse(root);
+		}
+		return state.roots;
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public Object lonelyDefinitionsRemover(final LocalUsesRemovedGraph state) {
+		for (final GraphNode root : state.roots) {
+			new PreOrderTraversalStrategy(new LonelyDefinitionsRemover()).traverse(root);
+		}
+		return state.roots;
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public Object defUseFrameCleaner(final DefUseGraph state) {
+		for (final GraphNode root : state.roots) {
+			new DefUseFrameCleaner(true, true).clean(new Graph(root).getNodes());
+		}
+		return state.roots;
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public Object reachingDefinitions(final DefUseGraph state) {
+		Object last = null;
+		for (final GraphNode root : state.roots) {
+			last = new ReachingDefinitions(new DataflowSolver(new Graph(root).getNodes()));
+		}
+		return last;
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public Object liveVariables(final DefUseGraph state) {
+		Object last = null;
+		for (final GraphNode root : state.roots) {
+			last = new LiveVariables(new DataflowSolver(new Graph(root).getNodes()));
+		}
+		return last;
+	}
+
+}
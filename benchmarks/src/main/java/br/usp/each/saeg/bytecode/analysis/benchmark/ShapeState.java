@@ -0,0 +1,75 @@
+/***
+ * bytecode-analysis: a prototype-library based on ASM 4 that
+ *                    computes definitions/uses of each instruction
+ * Copyright (c) 2014 University of Sao Paulo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package br.usp.each.saeg.bytecode.analysis.benchmark;
+
+import org.objectweb.asm.tree.MethodNode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import br.usp.each.saeg.bytecode.analysis.CouldNotBuildGraphException;
+import br.usp.each.saeg.bytecode.analysis.GraphBuilder;
+import br.usp.each.saeg.bytecode.analysis.graph.GraphNode;
+
+/**
+ * Benchmark state holding the method under analysis
+ */
+@State(Scope.Thread)
+public class ShapeState {
+	
+	@Param({ "STRAIGHT_LINE", "DEEP_LOOPS", "LARGE_TABLESWITCH", "DENSE_TRY_CATCH", "LONG_FIELD_CHAINS" })
+	public MethodShape shape;
+	
+	@Param({ "16", "256" })
+	public int size;
+	
+	public MethodNode method;
+	
+	@Setup(Level.Trial)
+	public void createMethod() {
+		method = shape.create(size);
+	}
+	
+	/**
+	 * Runs the phases selected by <code>type</code>, so a benchmark can
+	 * start from the graph produced by the previous phase
+	 * 
+	 * @param type the graph type (see {@link GraphBuilder})
+	 * @return the root node of the graph
+	 * @throws CouldNotBuildGraphException when the graph cannot be built
+	 */
+	public GraphNode build(final int type) throws CouldNotBuildGraphException {
+		return new GraphBuilder(MethodShape.OWNER, method, type).buildDefUseGraph().getRootNode();
+	}
+
+}
@@ -0,0 +1,200 @@
+/***
+ * bytecode-analysis: a prototype-library based on ASM 4 that
+ *                    computes definitions/uses of each instruction
+ * Copyright (c) 2014 University of Sao Paulo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package br.usp.each.saeg.bytecode.analysis;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.objectweb.asm.ClassReader;
+
+import br.usp.each.saeg.bytecode.analysis.cache.GraphCache;
+import br.usp.each.saeg.bytecode.analysis.graph.ProgramGraph;
+import br.usp.each.saeg.bytecode.analysis.io.ClassSource;
+import br.usp.each.saeg.bytecode.analysis.metrics.AnalysisListener;
+
+/**
+ * Builds the graphs of every method found in jar files, class directories
+ * or class files. Each class is analyzed as a separated task, so the work
+ * is spread over a pool of threads. The graphs are returned in the same
+ * order as the classes were added and, inside a class, in the same order
+ * as its methods are declared.
+ */
+public class ArchiveAnalyzer {
+
+	private final int type;
+	
+	private final int parallelism;
+	
+	private final GraphCache cache;
+	
+	private final AnalysisListener listener;
+	
+	private final ClassInputs inputs = new ClassInputs();
+	
+	/**
+	 * Creates an analyzer
+	 * 
+	 * @param type
+	 *            the graph type (see {@link GraphBuilder})
+	 * @param parallelism
+	 *            the number of threads used to build the graphs
+	 */
+	public ArchiveAnalyzer(final int type, final int parallelism) {
+		this(type, parallelism, null);
+	}
+	
+	/**
+	 * Creates an analyzer that reuses the graphs stored in a cache
+	 * 
+	 * @param type
+	 *            the graph type (see {@link GraphBuilder})
+	 * @param parallelism
+	 *            the number of threads used to build the graphs
+	 * @param cache
+	 *            the cache of graphs, or <code>null</code> to always build the graphs
+	 */
+	public ArchiveAnalyzer(final int type, final int parallelism, final GraphCache cache) {
+		this(type, parallelism, cache, null);
+	}
+	
+	/**
+	 * Creates an analyzer that reports measurements of each method
+	 * 
+	 * @param type
+	 *            the graph type (see {@link GraphBuilder})
+	 * @param parallelism
+	 *            the number of threads used to build the graphs
+	 * @param cache
+	 *            the cache of graphs, or <code>null</code> to always build the graphs
+	 * @param listener
+	 *            the listener of measurements (called by many threads), or <code>null</code>
+	 */
+	public ArchiveAnalyzer(final int type, 
+						   final int parallelism, 
+						   final GraphCache cache, 
+						   final AnalysisListener listener) {
+		
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("Invalid parallelism: " + parallelism);
+		}
+		this.type = type;
+		this.parallelism = parallelism;
+		this.cache = cache;
+		this.listener = listener;
+	}
+	
+	public ArchiveAnalyzer(final int type) {
+		this(type, Runtime.getRuntime().availableProcessors());
+	}
+	
+	public ArchiveAnalyzer() {
+		this(GraphBuilder.DEFAULT);
+	}
+	
+	/**
+	 * Adds a jar file, a class directory or a single class file
+	 * 
+	 * @param file the file to be analyzed
+	 */
+	public void add(final File file) {
+		inputs.add(file);
+	}
+	
+	/**
+	 * Adds a class given its bytes
+	 * 
+	 * @param bytes the content of a class file
+	 */
+	public void addClass(final byte[] bytes) {
+		inputs.addClass(bytes);
+	}
+	
+	/**
+	 * Adds a source of class files. The source is not closed by the analyzer.
+	 * 
+	 * @param source the class files to be analyzed
+	 */
+	public void add(final ClassSource source) {
+		inputs.add(source);
+	}
+	
+	/**
+	 * Builds the graphs of every concrete method of the added classes
+	 * 
+	 * @return the graphs, in the order the classes were added
+	 * @throws IOException when a class cannot be read
+	 * @throws CouldNotBuildGraphException when a graph cannot be built
+	 */
+	public List<ProgramGraph> analyze() throws IOException, CouldNotBuildGraphException {
+		
+		try {
+			final List<List<ProgramGraph>> classes = inputs.run(parallelism, 
+					new ClassInputs.ClassTask<List<ProgramGraph>>() {
+				@Override
+				public List<ProgramGraph> run(final ClassReader reader) 
+						throws CouldNotBuildGraphException {
+					return analyze(reader);
+				}
+			});
+			
+			final List<ProgramGraph> graphs = new ArrayList<ProgramGraph>();
+			for (final List<ProgramGraph> graphsOfClass : classes) {
+				graphs.addAll(graphsOfClass);
+			}
+			return graphs;
+			
+		} finally {
+			if (cache != null) {
+				cache.flush();
+			}
+		}
+	}
+	
+	/**
+	 * Builds the graphs of every concrete method of a class
+	 * 
+	 * @param bytes the content of a class file
+	 * @return the graphs, in the order the methods were declared
+	 * @throws CouldNotBuildGraphException when a graph cannot be built
+	 */
+	public List<ProgramGraph> analyze(final byte[] bytes) throws CouldNotBuildGraphException {
+		return analyze(new ClassReader(bytes));
+	}
+	
+	private List<ProgramGraph> analyze(final ClassReader reader) throws CouldNotBuildGraphException {
+		final GraphClassVisitor visitor = new GraphClassVisitor(type, cache, listener, null);
+		reader.accept(visitor, 0);
+		return visitor.getGraphs();
+	}
+	
+}
@@ -30,15 +30,41 @@
  */
 package br.usp.each.saeg.bytecode.analysis;
 
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.FieldInsnNode;
 import org.objectweb.asm.tree.FrameNode;
+import org.objectweb.asm.tree.IincInsnNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.IntInsnNode;
+import org.objectweb.asm.tree.InvokeDynamicInsnNode;
 import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.LdcInsnNode;
 import org.objectweb.asm.tree.LineNumberNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MultiANewArrayInsnNode;
+import org.objectweb.asm.tree.TableSwitchInsnNode;
+import org.objectweb.asm.tree.TypeInsnNode;
+import org.objectweb.asm.tree.VarInsnNode;
 
 import br.usp.each.saeg.bytecode.analysis.graph.defuse.DefUseFrame;
 
 /**
  * Value object that represents a bytecode instruction.
+ * <p>
+ * Besides the ASM instruction, it keeps the opcode, a single operand and 
+ * the index of the instruction in the instruction list of the method. An 
+ * instruction can be detached from the ASM instruction, which links to 
+ * every other instruction of the method, so a graph that is kept in memory 
+ * does not retain the whole instruction list. Synthetic instructions, which 
+ * only hold a definition, have no ASM instruction at all until one is asked for.
+ * <p>
+ * The instructions recorded by a {@link MethodCode} are detached from the 
+ * start, and keep the symbolic reference of the instruction instead (see 
+ * {@link #getOwner()}, {@link #getName()}, {@link #getDesc()} and 
+ * {@link #getConstant()}).
  * 
  * @author Felipe Albuquerque
  * 
@@ -46,30 +72,155 @@ import br.usp.each.saeg.bytecode.analysis.graph.defuse.DefUseFrame;
  */
 public class BytecodeInstruction {
 
-	private final AbstractInsnNode instruction;
+	private AbstractInsnNode instruction;
 	
 	private final BytecodeInstructionType type;
 	
+	private final int opcode;
+	
+	private final int operand;
+	
+	/** the symbolic reference of a detached instruction, if it was recorded */
+	private final Object reference;
+	
+	private final int index;
+	
 	public DefUseFrame frame;
 	
 	/**
-	 * Builds a bytecode instruction.
+	 * Builds a bytecode instruction that is not in the instruction list of 
+	 * the method (e.g. an instruction that holds a definition).
 	 * 
 	 * @param instruction An ASM AbstractInsnNode object
 	 */
 	public BytecodeInstruction(final AbstractInsnNode instruction) {
+		this(instruction, -1);
+	}
+	
+	/**
+	 * Builds a bytecode instruction.
+	 * 
+	 * @param instruction An ASM AbstractInsnNode object
+	 * @param index the index of the instruction in the instruction list 
+	 *              of the method, or -1 if it is not in the list
+	 */
+	public BytecodeInstruction(final AbstractInsnNode instruction, final int index) {
 		this.instruction = instruction;
 		this.type = getInstructionType();
+		this.opcode = instruction.getOpcode();
+		this.operand = getInstructionOperand();
+		this.reference = null;
+		this.index = index;
+	}
+	
+	private BytecodeInstruction(final DefUseFrame frame) {
+		this.type = BytecodeInstructionType.NOP;
+		this.opcode = Opcodes.NOP;
+		this.operand = 0;
+		this.reference = null;
+		this.index = -1;
+		this.frame = frame;
+	}
+	
+	private BytecodeInstruction(final BytecodeInstructionType type, 
+								final int opcode, 
+								final int operand, 
+								final Object reference, 
+								final int index) {
+		this.type = type;
+		this.opcode = opcode;
+		this.operand = operand;
+		this.reference = reference;
+		this.index = index;
+	}
+	
+	/**
+	 * Creates a synthetic <code>NOP</code> instruction that holds a definition 
+	 * (e.g. of a parameter or field), without an ASM instruction.
+	 * 
+	 * @param frame the frame of the definition
+	 * @return the synthetic instruction
+	 */
+	public static BytecodeInstruction definition(final DefUseFrame frame) {
+		return new BytecodeInstruction(frame);
+	}
+	
+	/**
+	 * Creates a detached instruction, which only knows its type, opcode, 
+	 * operand and index (e.g. an instruction read back without its method).
+	 * 
+	 * @param type the instruction type
+	 * @param opcode the opcode (-1 for labels, line numbers and frames)
+	 * @param operand the operand (see {@link #getOperand()})
+	 * @param index the index of the instruction in the instruction list of the method
+	 * @return the detached instruction
+	 */
+	public static BytecodeInstruction detached(final BytecodeInstructionType type, 
+											   final int opcode, 
+											   final int operand, 
+											   final int index) {
+		return detached(type, opcode, operand, null, index);
 	}
 	
 	/**
-	 * Gets the instruction.
+	 * Creates a detached instruction that keeps its symbolic reference: a 
+	 * {@link Handle} for field and method instructions, the descriptor of a 
+	 * type instruction, <code>MULTIANEWARRAY</code> or 
+	 * <code>INVOKEDYNAMIC</code>, the constant of a <code>LDC</code> or the 
+	 * increment of an <code>IINC</code>.
+	 * 
+	 * @param type the instruction type
+	 * @param opcode the opcode (-1 for labels, line numbers and frames)
+	 * @param operand the operand (see {@link #getOperand()})
+	 * @param reference the symbolic reference, or <code>null</code>
+	 * @param index the index of the instruction in the instruction list of the method
+	 * @return the detached instruction
+	 */
+	public static BytecodeInstruction detached(final BytecodeInstructionType type, 
+											   final int opcode, 
+											   final int operand, 
+											   final Object reference, 
+											   final int index) {
+		if (index < 0) {
+			throw new IllegalArgumentException("Invalid index: " + index);
+		}
+		return new BytecodeInstruction(type, opcode, operand, reference, index);
+	}
+	
+	/**
+	 * Gets the instruction. A <code>NOP</code> is created for synthetic 
+	 * instructions.
 	 * 
 	 * @return the instruction
+	 * @throws IllegalStateException if the instruction was detached
 	 */
 	public AbstractInsnNode getInstruction() {
+		if (instruction == null) {
+			if (index >= 0) {
+				throw new IllegalStateException("Detached instruction: " + index);
+			}
+			instruction = new InsnNode(Opcodes.NOP);
+		}
 		return instruction;
 	}
+	
+	/**
+	 * Gets the instruction, looking it up in the instruction list of the 
+	 * method if it was detached.
+	 * 
+	 * @param instructions the instruction list of the method
+	 * @return the instruction
+	 * @throws IllegalArgumentException if the instruction is not in the list
+	 */
+	public AbstractInsnNode getInstruction(final InsnList instructions) {
+		if (instruction != null || index < 0) {
+			return getInstruction();
+		}
+		if (index >= instructions.size() || instructions.get(index).getOpcode() != opcode) {
+			throw new IllegalArgumentException("Instruction mismatch at index: " + index);
+		}
+		return instructions.get(index);
+	}
 
 	/**
 	 * Gets the instruction type.
@@ -80,12 +231,149 @@ public class BytecodeInstruction {
 		return type;
 	}
 	
+	/**
+	 * Gets the opcode of the instruction (-1 for labels, line numbers and frames)
+	 * 
+	 * @return the opcode
+	 */
+	public int getOpcode() {
+		return opcode;
+	}
+	
+	/**
+	 * Gets the operand of the instruction: the local variable of a 
+	 * load, store, <code>RET</code> or <code>IINC</code>, the operand of 
+	 * a <code>BIPUSH</code>, <code>SIPUSH</code> or <code>NEWARRAY</code>, 
+	 * the dimensions of a <code>MULTIANEWARRAY</code>, the minimum key of a 
+	 * <code>TABLESWITCH</code>, the line of a line number, or zero.
+	 * 
+	 * @return the operand
+	 */
+	public int getOperand() {
+		return operand;
+	}
+	
+	/**
+	 * Gets the owner of the field or method of the instruction
+	 * 
+	 * @return the internal name of the owner, or <code>null</code> if the 
+	 *         instruction has no owner or it was detached without it
+	 */
+	public String getOwner() {
+		if (instruction instanceof FieldInsnNode) {
+			return ((FieldInsnNode) instruction).owner;
+		}
+		if (instruction instanceof MethodInsnNode) {
+			return ((MethodInsnNode) instruction).owner;
+		}
+		return reference instanceof Handle ? ((Handle) reference).getOwner() : null;
+	}
+	
+	/**
+	 * Gets the name of the field or method of the instruction
+	 * 
+	 * @return the name, or <code>null</code> if the instruction has no name 
+	 *         or it was detached without it
+	 */
+	public String getName() {
+		if (instruction instanceof FieldInsnNode) {
+			return ((FieldInsnNode) instruction).name;
+		}
+		if (instruction instanceof MethodInsnNode) {
+			return ((MethodInsnNode) instruction).name;
+		}
+		return reference instanceof Handle ? ((Handle) reference).getName() : null;
+	}
+	
+	/**
+	 * Gets the descriptor of the field or method of the instruction, or the 
+	 * type of a type instruction or <code>MULTIANEWARRAY</code>, or the 
+	 * descriptor of an <code>INVOKEDYNAMIC</code>
+	 * 
+	 * @return the descriptor, or <code>null</code> if the instruction has no 
+	 *         descriptor or it was detached without it
+	 */
+	public String getDesc() {
+		if (instruction != null) {
+			switch (instruction.getType()) {
+			case AbstractInsnNode.FIELD_INSN:
+				return ((FieldInsnNode) instruction).desc;
+			case AbstractInsnNode.METHOD_INSN:
+				return ((MethodInsnNode) instruction).desc;
+			case AbstractInsnNode.TYPE_INSN:
+				return ((TypeInsnNode) instruction).desc;
+			case AbstractInsnNode.MULTIANEWARRAY_INSN:
+				return ((MultiANewArrayInsnNode) instruction).desc;
+			case AbstractInsnNode.INVOKE_DYNAMIC_INSN:
+				return ((InvokeDynamicInsnNode) instruction).desc;
+			default:
+				return null;
+			}
+		}
+		if (reference instanceof Handle) {
+			return ((Handle) reference).getDesc();
+		}
+		return reference instanceof String && opcode != Opcodes.LDC ? (String) reference : null;
+	}
+	
+	/**
+	 * Gets the constant of a <code>LDC</code> or the increment of an 
+	 * <code>IINC</code>
+	 * 
+	 * @return the constant, or <code>null</code> if the instruction has no 
+	 *         constant or it was detached without it
+	 */
+	public Object getConstant() {
+		if (instruction instanceof LdcInsnNode) {
+			return ((LdcInsnNode) instruction).cst;
+		}
+		if (instruction instanceof IincInsnNode) {
+			return ((IincInsnNode) instruction).incr;
+		}
+		return opcode == Opcodes.LDC || opcode == Opcodes.IINC ? reference : null;
+	}
+	
+	/**
+	 * Gets the index of the instruction in the instruction list of the method
+	 * 
+	 * @return the index, or -1 if the instruction is not in the list
+	 */
+	public int getIndex() {
+		return index;
+	}
+	
+	/**
+	 * Releases the ASM instruction. Instructions that are not in the 
+	 * instruction list of the method are never detached.
+	 */
+	public void detach() {
+		if (index >= 0) {
+			instruction = null;
+		}
+	}
+	
+	/**
+	 * Checks if the instruction was detached from the ASM instruction
+	 * 
+	 * @return <code>true</code> if the instruction was detached
+	 */
+	public boolean isDetached() {
+		return instruction == null && index >= 0;
+	}
+	
+	/**
+	 * Checks if the instruction is a synthetic <code>NOP</code>, which is 
+	 * not in the instruction list of the method and only holds a definition
+	 * 
+	 * @return <code>true</code> if the instruction is synthetic
+	 */
+	public boolean isSynthetic() {
+		return index < 0 && opcode == Opcodes.NOP;
+	}
+	
 	public boolean isPredicate() {
-		final boolean predicate = 
-				this.getType().equals(BytecodeInstructionType.UNARY_CMP) ||
-				this.getType().equals(BytecodeInstructionType.BINARY_CMP) ||
-				this.getType().equals(BytecodeInstructionType.SWITCH);
-		return predicate;
+		final OpcodeDescriptor descriptor = OpcodeDescriptor.get(opcode);
+		return descriptor != null && descriptor.predicate;
 	}
 	
 	/**
@@ -111,6 +399,25 @@ public class BytecodeInstruction {
 		return type;
 	}
 	
+	private int getInstructionOperand() {
+		switch (instruction.getType()) {
+		case AbstractInsnNode.VAR_INSN:
+			return ((VarInsnNode) instruction).var;
+		case AbstractInsnNode.IINC_INSN:
+			return ((IincInsnNode) instruction).var;
+		case AbstractInsnNode.INT_INSN:
+			return ((IntInsnNode) instruction).operand;
+		case AbstractInsnNode.MULTIANEWARRAY_INSN:
+			return ((MultiANewArrayInsnNode) instruction).dims;
+		case AbstractInsnNode.TABLESWITCH_INSN:
+			return ((TableSwitchInsnNode) instruction).min;
+		case AbstractInsnNode.LINE:
+			return ((LineNumberNode) instruction).line;
+		default:
+			return 0;
+		}
+	}
+	
 	@Override
 	public String toString() {
 		return type.toString();
@@ -30,11 +30,6 @@
  */
 package br.usp.each.saeg.bytecode.analysis;
 
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.Set;
-
 import org.objectweb.asm.Opcodes;
 
 /**
@@ -256,22 +251,24 @@ public enum BytecodeInstructionType {
 	/**
 	 * The possible opcodes values for the JVM instruction.
 	 */
-	private final Set<Integer> opcodes;
+	private final int[] opcodes;
 	
 	/**
 	 * Builds an instruction type.
 	 * 
 	 * @param opcodes the possible opcodes values for the instruction
 	 */
-	private BytecodeInstructionType(final Integer... opcodes) {
-		this.opcodes = new HashSet<Integer>(Arrays.asList(opcodes));
+	private BytecodeInstructionType(final int... opcodes) {
+		this.opcodes = opcodes;
 	}
 	
 	/**
-	 * Builds an instruction type.
+	 * Gets the possible opcodes values for the instruction.
+	 * 
+	 * @return a new array with the opcodes (empty for pseudo-instructions)
 	 */
-	private BytecodeInstructionType() {
-		this.opcodes = Collections.emptySet();
+	public int[] getOpcodes() {
+		return opcodes.clone();
 	}
 	
 	/**
@@ -282,13 +279,13 @@ public enum BytecodeInstructionType {
 	 */
 	public static BytecodeInstructionType getFromOpcode(final int opcode) {
 		
-		for (final BytecodeInstructionType type : BytecodeInstructionType.values()) {
-			if (type.opcodes.contains(opcode)) {
-				return type;
-			}
+		final OpcodeDescriptor descriptor = OpcodeDescriptor.get(opcode);
+		
+		if (descriptor == null) {
+			throw new IllegalStateException("Invalid opcode:" + opcode);
 		}
 		
-		throw new IllegalStateException("Invalid opcode:" + opcode);
+		return descriptor.type;
 	}
 	
 }
@@ -0,0 +1,188 @@
+/***
+ * bytecode-analysis: a prototype-library based on ASM 4 that
+ *                    computes definitions/uses of each instruction
+ * Copyright (c) 2014 University of Sao Paulo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package br.usp.each.saeg.bytecode.analysis;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import br.usp.each.saeg.bytecode.analysis.cache.GraphCache;
+import br.usp.each.saeg.bytecode.analysis.graph.ProgramGraph;
+import br.usp.each.saeg.bytecode.analysis.graph.defuse.VariableTable;
+import br.usp.each.saeg.bytecode.analysis.metrics.AnalysisListener;
+
+/**
+ * Builds the graphs of the methods of a class. Unlike creating a 
+ * {@link GraphBuilder} for each method, the edge analyzer, the traversals, 
+ * the def/use visitors, the scratch buffers and the table of variables are 
+ * created once and reused by every method of the class, which matters for 
+ * classes with many small methods.
+ * <p>
+ * A class graph builder is not thread-safe.
+ */
+public class ClassGraphBuilder {
+	
+	private final ClassNode classNode;
+	
+	private final int type;
+	
+	private final GraphCache cache;
+	
+	private final AnalysisListener listener;
+	
+	private GraphBuilder.Workspace workspace;
+	
+	/**
+	 * Creates a class graph builder
+	 * 
+	 * @param classNode
+	 *            the class whose method graphs must be created
+	 * @param type
+	 *            the graph type (see {@link GraphBuilder})
+	 * @param cache
+	 *            the cache of graphs, or <code>null</code> to always build the graphs
+	 * @param listener
+	 *            the listener of measurements, or <code>null</code>
+	 */
+	public ClassGraphBuilder(final ClassNode classNode, 
+							 final int type, 
+							 final GraphCache cache, 
+							 final AnalysisListener listener) {
+		
+		this.classNode = classNode;
+		this.type = type;
+		this.cache = cache;
+		this.listener = listener;
+	}
+	
+	public ClassGraphBuilder(final ClassNode classNode, final int type) {
+		this(classNode, type, null, null);
+	}
+	
+	public ClassGraphBuilder(final ClassNode classNode) {
+		this(classNode, GraphBuilder.DEFAULT);
+	}
+	
+	/**
+	 * Creates a class graph builder of a class that is read at once
+	 * 
+	 * @param reader
+	 *            the reader of the class whose method graphs must be created
+	 * @param type
+	 *            the graph type (see {@link GraphBuilder})
+	 * @param cache
+	 *            the cache of graphs, or <code>null</code> to always build the graphs
+	 * @param listener
+	 *            the listener of measurements, or <code>null</code>
+	 */
+	public ClassGraphBuilder(final ClassReader reader, 
+							 final int type, 
+							 final GraphCache cache, 
+							 final AnalysisListener listener) {
+		
+		this(read(reader), type, cache, listener);
+	}
+	
+	public ClassGraphBuilder(final ClassReader reader, final int type) {
+		this(reader, type, null, null);
+	}
+	
+	public ClassGraphBuilder(final ClassReader reader) {
+		this(reader, GraphBuilder.DEFAULT);
+	}
+	
+	/**
+	 * Gets the class whose method graphs are created
+	 * 
+	 * @return the class node
+	 */
+	public ClassNode getClassNode() {
+		return classNode;
+	}
+	
+	/**
+	 * Builds the graphs of every concrete method of the class. Abstract and 
+	 * native methods are skipped without being analyzed.
+	 * 
+	 * @return the graphs, in the order the methods were declared
+	 * @throws CouldNotBuildGraphException when a graph cannot be built
+	 */
+	public List<ProgramGraph> buildGraphs() throws CouldNotBuildGraphException {
+		
+		final List<ProgramGraph> graphs = new ArrayList<ProgramGraph>(classNode.methods.size());
+		
+		for (final Object o : classNode.methods) {
+			
+			final MethodNode methodNode = (MethodNode) o;
+			
+			if ((methodNode.access & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_NATIVE)) != 0) {
+				continue;
+			}
+			
+			final ProgramGraph graph = buildGraph(methodNode);
+			
+			if (graph != null) {
+				graphs.add(graph);
+			}
+		}
+		
+		return graphs;
+	}
+	
+	/**
+	 * Builds the graph of a method of the class
+	 * 
+	 * @param methodNode
+	 *            a method of the class
+	 * @return the graph of the method, or <code>null</code> if the method has no code
+	 * @throws CouldNotBuildGraphException when the graph cannot be built
+	 */
+	public ProgramGraph buildGraph(final MethodNode methodNode) throws CouldNotBuildGraphException {
+		
+		if (workspace == null) {
+			workspace = new GraphBuilder.Workspace(type, new VariableTable());
+		}
+		
+		return new GraphBuilder(
+				classNode.name, methodNode, type, cache, listener, workspace).buildDefUseGraph();
+	}
+	
+	private static ClassNode read(final ClassReader reader) {
+		final ClassNode classNode = new ClassNode();
+		reader.accept(classNode, 0);
+		return classNode;
+	}
+	
+}
@@ -0,0 +1,206 @@
+/***
+ * bytecode-analysis: a prototype-library based on ASM 4 that
+ *                    computes definitions/uses of each instruction
+ * Copyright (c) 2014 University of Sao Paulo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package br.usp.each.saeg.bytecode.analysis;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.objectweb.asm.ClassReader;
+
+import br.usp.each.saeg.bytecode.analysis.io.Buffers;
+import br.usp.each.saeg.bytecode.analysis.io.ByteArrayClassSource;
+import br.usp.each.saeg.bytecode.analysis.io.ClassSource;
+import br.usp.each.saeg.bytecode.analysis.io.FileClassSource;
+
+/**
+ * The classes added to an analyzer, and the pool of threads that runs a 
+ * task for each of them. Files are opened when the tasks start and closed 
+ * once every task has finished; other sources are neither opened nor 
+ * closed.
+ */
+final class ClassInputs {
+	
+	/**
+	 * A task that is run for each class
+	 */
+	interface ClassTask<T> {
+		
+		T run(ClassReader reader) throws IOException, CouldNotBuildGraphException;
+		
+	}
+	
+	private final List<ClassSource> inputs = new ArrayList<ClassSource>();
+	
+	/** the files added, which are opened and closed by each run */
+	private final List<FileClassSource> files = new ArrayList<FileClassSource>();
+	
+	void add(final File file) {
+		final FileClassSource source = new FileClassSource(file);
+		inputs.add(source);
+		files.add(source);
+	}
+	
+	void addClass(final byte[] bytes) {
+		inputs.add(new ByteArrayClassSource(Collections.singletonList(bytes)));
+	}
+	
+	void add(final ClassSource source) {
+		inputs.add(source);
+	}
+	
+	/**
+	 * Runs a task for each class in a pool of threads
+	 * 
+	 * @param parallelism the number of threads
+	 * @param task the task
+	 * @return the results, in the order the classes were added
+	 * @throws IOException when a class cannot be read, or by the task
+	 * @throws CouldNotBuildGraphException by the task
+	 */
+	<T> List<T> run(final int parallelism, final ClassTask<T> task) 
+			throws IOException, CouldNotBuildGraphException {
+		
+		final ExecutorService executor = newExecutor(parallelism);
+		
+		try {
+			for (final FileClassSource file : files) {
+				file.open();
+			}
+			
+			final List<Future<T>> futures = new ArrayList<Future<T>>();
+			
+			for (final ClassSource source : inputs) {
+				for (int i = 0; i < source.size(); i++) {
+					final int index = i;
+					futures.add(executor.submit(new Callable<T>() {
+						@Override
+						public T call() throws Exception {
+							return task.run(source.getClassReader(index));
+						}
+					}));
+				}
+			}
+			
+			final List<T> results = new ArrayList<T>(futures.size());
+			for (final Future<T> future : futures) {
+				results.add(get(future));
+			}
+			return results;
+			
+		} finally {
+			shutdown(executor);
+			for (final FileClassSource file : files) {
+				file.close();
+			}
+		}
+	}
+	
+	/**
+	 * Creates a pool of threads that release their read buffers when they 
+	 * finish (see {@link Buffers#release()})
+	 */
+	private static ExecutorService newExecutor(final int parallelism) {
+		final ThreadFactory factory = Executors.defaultThreadFactory();
+		return Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+			@Override
+			public Thread newThread(final Runnable runnable) {
+				return factory.newThread(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							runnable.run();
+						} finally {
+							Buffers.release();
+						}
+					}
+				});
+			}
+		});
+	}
+	
+	/**
+	 * Cancels the pending tasks of an executor and waits for the running 
+	 * ones, which may still be reading class sources (reads of mapped and 
+	 * channel based sources are not interrupted)
+	 */
+	private static void shutdown(final ExecutorService executor) {
+		executor.shutdownNow();
+		boolean interrupted = false;
+		while (true) {
+			try {
+				if (executor.awaitTermination(1, TimeUnit.SECONDS)) {
+					break;
+				}
+			} catch (final InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	private static <T> T get(final Future<T> task) throws IOException, CouldNotBuildGraphException {
+		
+		try {
+			return task.get();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		} catch (final ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof CouldNotBuildGraphException) {
+				throw (CouldNotBuildGraphException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IllegalStateException(cause);
+		}
+	}
+	
+}
@@ -0,0 +1,525 @@
+/***
+ * bytecode-analysis: a prototype-library based on ASM 4 that
+ *                    computes definitions/uses of each instruction
+ * Copyright (c) 2014 University of Sao Paulo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package br.usp.each.saeg.bytecode.analysis;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.analysis.AnalyzerException;
+import org.objectweb.asm.tree.analysis.BasicValue;
+import org.objectweb.asm.tree.analysis.Frame;
+
+import br.usp.each.saeg.bytecode.analysis.domain.EdgeSet;
+
+/**
+ * Finds the control flow edges of a method and its reachable instructions 
+ * straight from jump and switch targets, fall-through and the try/catch 
+ * blocks, without the type inference of an {@link EdgeAnalyzer}. The 
+ * instructions are visited in the same order as the ASM analyzer visits 
+ * them for the first time, so the edges are found in the same order.
+ * <p>
+ * The instructions covered by the same handlers share a handler range. 
+ * The exception flow can be factored: instead of an exception edge from 
+ * each instruction to each of its handlers, the analyzer only gives the 
+ * range of each instruction. It can also be restricted to the instructions 
+ * that may throw an exception (see {@link OpcodeDescriptor#excepting}).
+ * <p>
+ * The method is analyzed from its {@link MethodCode}, so it can be analyzed 
+ * while it is read, without its tree. Subroutines (<code>JSR</code>/<code>RET</code>) 
+ * are not followed: methods that have them are analyzed by an 
+ * {@link EdgeAnalyzer}, on their tree, whose reachable instructions are 
+ * kept even when the exception flow is restricted. The results are valid 
+ * until the next analysis.
+ */
+public class ControlFlowAnalyzer {
+	
+	private final boolean exceptionFlow;
+	
+	private final boolean factored;
+	
+	private final boolean exceptingOnly;
+	
+	private final EdgeSet edges = new EdgeSet();
+	
+	private final EdgeSet exceptionEdges = new EdgeSet();
+	
+	private final BitSet reachable = new BitSet();
+	
+	private EdgeAnalyzer edgeAnalyzer;
+	
+	/** the code of the methods analyzed from their tree */
+	private final MethodCode loaded = new MethodCode();
+	
+	private EdgeSet resultEdges;
+	
+	private EdgeSet resultExceptionEdges;
+	
+	private int size;
+	
+	/** instructions to visit */
+	private int[] stack = new int[16];
+	
+	/** the handler range of each instruction (-1 if it is not in a try/catch block) */
+	private int[] range = new int[16];
+	
+	/** the range of the exception flow of each instruction (-1 if it has no exception flow) */
+	private int[] flow = new int[16];
+	
+	/** handlers of each range, in try/catch block order, from handlerStart[r] to handlerStart[r + 1] */
+	private int[] handlerStart = new int[16];
+	
+	private int[] handlers = new int[16];
+	
+	private int ranges;
+	
+	/** open addressing table of the range ids by their handlers (-1 for empty slots) */
+	private int[] rangeTable = new int[16];
+	
+	public ControlFlowAnalyzer(final boolean exceptionFlow) {
+		this(exceptionFlow, false, false);
+	}
+	
+	/**
+	 * Creates an analyzer
+	 * 
+	 * @param exceptionFlow
+	 *            if the exception flow should be analyzed
+	 * @param factored
+	 *            if the exception flow is given by handler ranges only, 
+	 *            without exception edges
+	 * @param exceptingOnly
+	 *            if only the instructions that may throw an exception have 
+	 *            exception flow
+	 */
+	public ControlFlowAnalyzer(final boolean exceptionFlow, 
+							   final boolean factored, 
+							   final boolean exceptingOnly) {
+		this.exceptionFlow = exceptionFlow;
+		this.factored = factored;
+		this.exceptingOnly = exceptingOnly;
+	}
+	
+	/**
+	 * Finds the edges and the reachable instructions of a method
+	 * 
+	 * @param owner the internal name of the class of the method
+	 * @param m the method to be analyzed
+	 * @throws AnalyzerException when the execution can fall off the end of 
+	 *         the code or, in methods with subroutines, when the ASM analyzer fails
+	 */
+	public void analyze(final String owner, final MethodNode m) throws AnalyzerException {
+		loaded.load(m);
+		try {
+			analyze(owner, loaded);
+		} finally {
+			loaded.clear();
+		}
+	}
+	
+	/**
+	 * Finds the edges and the reachable instructions of a method
+	 * 
+	 * @param owner the internal name of the class of the method
+	 * @param code the code of the method to be analyzed
+	 * @throws AnalyzerException when the execution can fall off the end of 
+	 *         the code or, in methods with subroutines, when the ASM analyzer fails
+	 */
+	public void analyze(final String owner, final MethodCode code) throws AnalyzerException {
+		
+		size = code.size();
+		reachable.clear();
+		
+		if ((code.getAccess() & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_NATIVE)) != 0 || size == 0) {
+			edges.clear();
+			exceptionEdges.clear();
+			resultEdges = edges;
+			resultExceptionEdges = exceptionEdges;
+			size = 0;
+			ranges = 0;
+			return;
+		}
+		
+		edges.clear();
+		exceptionEdges.clear();
+		resultEdges = edges;
+		resultExceptionEdges = exceptionEdges;
+		
+		computeHandlers(code);
+		
+		if (code.hasSubroutines()) {
+			analyzeSubroutines(owner, code.getMethodNode());
+			return;
+		}
+		
+		if (stack.length < size) {
+			stack = new int[Math.max(size, stack.length * 2)];
+		}
+		
+		int top = 0;
+		stack[top++] = 0;
+		reachable.set(0);
+		
+		while (top > 0) {
+			
+			final int insn = stack[--top];
+			final int opcode = code.getOpcode(insn);
+			final int targets = code.getTargetCount(insn);
+			
+			// successors in the same order as the ASM analyzer merges them
+			if (opcode == -1) {
+				// labels, line numbers and frames
+				top = successor(insn, insn + 1, top);
+			} else if (opcode == Opcodes.TABLESWITCH || opcode == Opcodes.LOOKUPSWITCH) {
+				// the default target first
+				for (int i = 0; i < targets; i++) {
+					top = successor(insn, code.getTarget(insn, i), top);
+				}
+			} else if (targets != 0) {
+				// jumps
+				if (opcode != Opcodes.GOTO) {
+					top = successor(insn, insn + 1, top);
+				}
+				top = successor(insn, code.getTarget(insn, 0), top);
+			} else if (opcode != Opcodes.ATHROW && (opcode < Opcodes.IRETURN || opcode > Opcodes.RETURN)) {
+				top = successor(insn, insn + 1, top);
+			}
+			
+			final int r = flow[insn];
+			if (r != -1) {
+				for (int i = handlerStart[r]; i < handlerStart[r + 1]; i++) {
+					final int handler = handlers[i];
+					if (!factored) {
+						exceptionEdges.add(insn, handler);
+					}
+					if (!reachable.get(handler)) {
+						reachable.set(handler);
+						stack[top++] = handler;
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Gets the number of instructions of the last analyzed method
+	 * 
+	 * @return the number of instructions
+	 */
+	public int getInstructionCount() {
+		return size;
+	}
+	
+	/**
+	 * Checks if an instruction can be reached from the first instruction
+	 * 
+	 * @param insn the index of the instruction
+	 * @return <code>true</code> if the instruction is reachable
+	 */
+	public boolean isReachable(final int insn) {
+		return reachable.get(insn);
+	}
+	
+	/**
+	 * Gets the normal flow edges, in the order they were found
+	 * 
+	 * @return the normal flow edges
+	 */
+	public EdgeSet getEdgeSet() {
+		return resultEdges;
+	}
+	
+	/**
+	 * Gets the exception flow edges, in the order they were found 
+	 * (empty if exception flow is not analyzed or is factored)
+	 * 
+	 * @return the exception flow edges
+	 */
+	public EdgeSet getExceptionEdgeSet() {
+		return resultExceptionEdges;
+	}
+	
+	/**
+	 * Checks if the exception flow is given by handler ranges only
+	 * 
+	 * @return <code>true</code> if there are no exception edges
+	 */
+	public boolean isFactored() {
+		return factored;
+	}
+	
+	/**
+	 * Gets the number of handler ranges of the last analyzed method
+	 * 
+	 * @return the number of handler ranges
+	 */
+	public int getHandlerRangeCount() {
+		return ranges;
+	}
+	
+	/**
+	 * Gets the handler range of an instruction: instructions covered by the 
+	 * same handlers have the same range
+	 * 
+	 * @param insn the index of the instruction
+	 * @return the range, or -1 if the instruction is not covered by handlers
+	 */
+	public int getHandlerRange(final int insn) {
+		return range[insn];
+	}
+	
+	/**
+	 * Checks if there is exception flow from an instruction to the handlers 
+	 * of its range
+	 * 
+	 * @param insn the index of the instruction
+	 * @return <code>true</code> if the instruction has exception flow
+	 */
+	public boolean hasExceptionFlow(final int insn) {
+		return flow[insn] != -1;
+	}
+	
+	/**
+	 * Gets the number of handlers of a range
+	 * 
+	 * @param range the handler range
+	 * @return the number of handlers
+	 */
+	public int getHandlerCount(final int range) {
+		return handlerStart[range + 1] - handlerStart[range];
+	}
+	
+	/**
+	 * Gets a handler of a range, in try/catch block order
+	 * 
+	 * @param range the handler range
+	 * @param i the position of the handler in the range
+	 * @return the index of the first instruction of the handler
+	 */
+	public int getHandler(final int range, final int i) {
+		return handlers[handlerStart[range] + i];
+	}
+	
+	private int successor(final int insn, final int successor, final int top) 
+			throws AnalyzerException {
+		
+		if (successor >= size) {
+			throw new AnalyzerException(null, "Execution can fall off end of the code");
+		}
+		edges.add(insn, successor);
+		if (!reachable.get(successor)) {
+			reachable.set(successor);
+			stack[top] = successor;
+			return top + 1;
+		}
+		return top;
+	}
+	
+	/**
+	 * Computes the handler ranges with a sweep over the bounds of the 
+	 * try/catch blocks, so each instruction is visited once
+	 */
+	private void computeHandlers(final MethodCode code) {
+		
+		if (range.length < size) {
+			range = new int[Math.max(size, range.length * 2)];
+			flow = new int[range.length];
+		}
+		Arrays.fill(range, 0, size, -1);
+		Arrays.fill(flow, 0, size, -1);
+		ranges = 0;
+		
+		if (!exceptionFlow || code.getTryCatchBlockCount() == 0) {
+			return;
+		}
+		
+		final int[] targets = new int[code.getTryCatchBlockCount()];
+		
+		// bounds of the (non-empty) blocks packed with the block, sorted by instruction
+		final long[] begins = new long[targets.length];
+		final long[] ends = new long[targets.length];
+		int blocks = 0;
+		for (int b = 0; b < targets.length; b++) {
+			final int begin = code.getStart(b);
+			final int end = code.getEnd(b);
+			targets[b] = code.getHandler(b);
+			if (begin < end) {
+				begins[blocks] = ((long) begin << 32) | b;
+				ends[blocks] = ((long) end << 32) | b;
+				blocks++;
+			}
+		}
+		Arrays.sort(begins, 0, blocks);
+		Arrays.sort(ends, 0, blocks);
+		
+		// blocks covering the current instructions, in block order
+		final int[] active = new int[blocks];
+		int count = 0;
+		
+		// ranges with the same handlers are shared, through a table of range ids
+		final int slots = Integer.highestOneBit(Math.max(4 * blocks, 4)) * 2;
+		if (rangeTable.length < slots) {
+			rangeTable = new int[slots];
+		}
+		Arrays.fill(rangeTable, 0, slots, -1);
+		handlerStart[0] = 0;
+		int total = 0;
+		
+		int nextBegin = 0;
+		int nextEnd = 0;
+		while (nextEnd < blocks) {
+			
+			// a block always begins before it ends
+			final int at = nextBegin < blocks 
+					? Math.min(bound(begins[nextBegin]), bound(ends[nextEnd])) 
+					: bound(ends[nextEnd]);
+			
+			while (nextEnd < blocks && bound(ends[nextEnd]) == at) {
+				final int i = Arrays.binarySearch(active, 0, count, (int) ends[nextEnd++]);
+				System.arraycopy(active, i + 1, active, i, --count - i);
+			}
+			while (nextBegin < blocks && bound(begins[nextBegin]) == at) {
+				final int b = (int) begins[nextBegin++];
+				final int i = -Arrays.binarySearch(active, 0, count, b) - 1;
+				System.arraycopy(active, i, active, i + 1, count++ - i);
+				active[i] = b;
+			}
+			
+			if (count == 0) {
+				continue;
+			}
+			
+			final int until = nextBegin < blocks 
+					? Math.min(bound(begins[nextBegin]), bound(ends[nextEnd])) 
+					: bound(ends[nextEnd]);
+			
+			// the distinct handlers of the range, after the ones of the previous ranges
+			if (handlers.length < total + count) {
+				handlers = Arrays.copyOf(handlers, Math.max(total + count, handlers.length * 2));
+			}
+			int n = 0;
+			int hash = 0;
+			for (int k = 0; k < count; k++) {
+				final int handler = targets[active[k]];
+				if (!contains(handlers, total, total + n, handler)) {
+					handlers[total + n++] = handler;
+					hash = 31 * hash + handler;
+				}
+			}
+			
+			int slot = (hash ^ (hash >>> 16)) & (slots - 1);
+			int id;
+			while ((id = rangeTable[slot]) != -1 && !sameHandlers(id, total, n)) {
+				slot = (slot + 1) & (slots - 1);
+			}
+			if (id == -1) {
+				id = ranges++;
+				rangeTable[slot] = id;
+				total += n;
+				if (handlerStart.length < ranges + 1) {
+					handlerStart = Arrays.copyOf(handlerStart, Math.max(ranges + 1, handlerStart.length * 2));
+				}
+				handlerStart[ranges] = total;
+			}
+			for (int j = at; j < until; j++) {
+				range[j] = id;
+				if (!exceptingOnly || isExcepting(code.getOpcode(j))) {
+					flow[j] = id;
+				}
+			}
+		}
+	}
+	
+	private static boolean contains(final int[] array, final int from, final int to, final int value) {
+		for (int i = from; i < to; i++) {
+			if (array[i] == value) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Checks if a range has the handlers that start at an offset of the 
+	 * handler array
+	 */
+	private boolean sameHandlers(final int r, final int offset, final int n) {
+		final int start = handlerStart[r];
+		if (handlerStart[r + 1] - start != n) {
+			return false;
+		}
+		for (int i = 0; i < n; i++) {
+			if (handlers[start + i] != handlers[offset + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private static int bound(final long packed) {
+		return (int) (packed >>> 32);
+	}
+	
+	private static boolean isExcepting(final int opcode) {
+		final OpcodeDescriptor descriptor = OpcodeDescriptor.get(opcode);
+		return descriptor != null && descriptor.excepting;
+	}
+	
+	private void analyzeSubroutines(final String owner, final MethodNode m) throws AnalyzerException {
+		
+		if (edgeAnalyzer == null) {
+			edgeAnalyzer = new EdgeAnalyzer(exceptionFlow);
+		}
+		
+		final Frame<BasicValue>[] frames = edgeAnalyzer.analyze(owner, m);
+		for (int i = 0; i < frames.length; i++) {
+			if (frames[i] != null) {
+				reachable.set(i);
+			}
+		}
+		resultEdges = edgeAnalyzer.getEdgeSet();
+		if (factored) {
+			return;
+		}
+		if (exceptingOnly) {
+			final EdgeSet all = edgeAnalyzer.getExceptionEdgeSet();
+			for (int i = 0; i < all.size(); i++) {
+				if (flow[all.src(i)] != -1) {
+					exceptionEdges.add(all.src(i), all.dest(i));
+				}
+			}
+		} else {
+			resultExceptionEdges = edgeAnalyzer.getExceptionEdgeSet();
+		}
+	}
+	
+}
@@ -30,10 +30,6 @@
  */
 package br.usp.each.saeg.bytecode.analysis;
 
-import java.util.Collections;
-import java.util.LinkedHashSet;
-import java.util.Set;
-
 import org.objectweb.asm.tree.MethodNode;
 import org.objectweb.asm.tree.analysis.Analyzer;
 import org.objectweb.asm.tree.analysis.AnalyzerException;
@@ -42,12 +38,13 @@ import org.objectweb.asm.tree.analysis.BasicValue;
 import org.objectweb.asm.tree.analysis.Frame;
 
 import br.usp.each.saeg.bytecode.analysis.domain.Edge;
+import br.usp.each.saeg.bytecode.analysis.domain.EdgeSet;
 
 public class EdgeAnalyzer extends Analyzer<BasicValue> {
 
-	private Set<Edge> edges = Collections.emptySet();
+	private EdgeSet edges = new EdgeSet();
 	
-	private Set<Edge> exceptionEdges = Collections.emptySet();
+	private EdgeSet exceptionEdges = new EdgeSet();
 	
 	private final boolean exceptionFlow;
 	
@@ -60,31 +57,49 @@ public class EdgeAnalyzer extends Analyzer<BasicValue> {
 	public Frame<BasicValue>[] analyze(final String owner, final MethodNode m) 
 			throws AnalyzerException {
 		
-		edges = new LinkedHashSet<Edge>();
-		exceptionEdges = new LinkedHashSet<Edge>();
+		edges = new EdgeSet(m.instructions.size());
+		exceptionEdges = new EdgeSet();
 		return super.analyze(owner, m);
 	}
 	
 	@Override
 	protected void newControlFlowEdge(final int src, final int dest) {
-		edges.add(new Edge(src, dest));
+		edges.add(src, dest);
 	}
 	
 	@Override
 	protected boolean newControlFlowExceptionEdge(final int src, final int dest) {
 		if (exceptionFlow) {
-			exceptionEdges.add(new Edge(src, dest));
+			exceptionEdges.add(src, dest);
 			return true;
 		}
 		return false;
 	}
 	
 	public Edge[] getEdges() {
-		return edges.toArray(new Edge[edges.size()]);
+		return edges.toArray();
 	}
 
 	public Edge[] getExceptionEdges() {
-		return exceptionEdges.toArray(new Edge[exceptionEdges.size()]);
+		return exceptionEdges.toArray();
+	}
+	
+	/**
+	 * Gets the normal flow edges, in the order they were found, without copying them
+	 * 
+	 * @return the normal flow edges
+	 */
+	public EdgeSet getEdgeSet() {
+		return edges;
+	}
+	
+	/**
+	 * Gets the exception flow edges, in the order they were found, without copying them
+	 * 
+	 * @return the exception flow edges
+	 */
+	public EdgeSet getExceptionEdgeSet() {
+		return exceptionEdges;
 	}
 
 }
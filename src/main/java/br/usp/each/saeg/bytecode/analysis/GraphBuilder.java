@@ -30,32 +30,38 @@
  */
 package br.usp.each.saeg.bytecode.analysis;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
-import org.objectweb.asm.Opcodes;
-import org.objectweb.asm.tree.AbstractInsnNode;
-import org.objectweb.asm.tree.InsnNode;
 import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.analysis.Analyzer;
 import org.objectweb.asm.tree.analysis.AnalyzerException;
+import org.objectweb.asm.tree.analysis.BasicInterpreter;
 import org.objectweb.asm.tree.analysis.BasicValue;
-import org.objectweb.asm.tree.analysis.Frame;
 
-import br.usp.each.saeg.bytecode.analysis.domain.Edge;
+import br.usp.each.saeg.bytecode.analysis.cache.GraphCache;
+import br.usp.each.saeg.bytecode.analysis.domain.EdgeSet;
+import br.usp.each.saeg.bytecode.analysis.domain.Method;
+import br.usp.each.saeg.bytecode.analysis.graph.BasicBlockBuilder;
 import br.usp.each.saeg.bytecode.analysis.graph.BasicBlockGraphNodeJoiner;
 import br.usp.each.saeg.bytecode.analysis.graph.DataflowVerifierTraversalStrategy;
 import br.usp.each.saeg.bytecode.analysis.graph.GraphNode;
+import br.usp.each.saeg.bytecode.analysis.graph.HandlerRange;
 import br.usp.each.saeg.bytecode.analysis.graph.PreOrderTraversalStrategy;
 import br.usp.each.saeg.bytecode.analysis.graph.ProgramGraph;
 import br.usp.each.saeg.bytecode.analysis.graph.defuse.DefUseFrame;
+import br.usp.each.saeg.bytecode.analysis.graph.defuse.DefUseFrameCleaner;
 import br.usp.each.saeg.bytecode.analysis.graph.defuse.DefUseFrameComputer;
-import br.usp.each.saeg.bytecode.analysis.graph.defuse.LocalUseRemover;
-import br.usp.each.saeg.bytecode.analysis.graph.defuse.LonelyDefinitionsRemover;
 import br.usp.each.saeg.bytecode.analysis.graph.defuse.Variable;
+import br.usp.each.saeg.bytecode.analysis.graph.defuse.VariableTable;
 import br.usp.each.saeg.bytecode.analysis.graph.defuse.VariablesCollector;
+import br.usp.each.saeg.bytecode.analysis.metrics.Allocations;
+import br.usp.each.saeg.bytecode.analysis.metrics.AnalysisListener;
+import br.usp.each.saeg.bytecode.analysis.metrics.GraphMetrics;
+import br.usp.each.saeg.bytecode.analysis.metrics.Phase;
 
 /**
  * Builds graphs using the ASM tool
@@ -68,12 +74,28 @@ public class GraphBuilder {
 	
 	private String className;
 	
+	/** the method, or <code>null</code> if the graph is built from recorded code */
 	private MethodNode methodNode;
 	
+	/** the recorded code of the method, or <code>null</code> if it has a tree */
+	private MethodCode code;
+	
 	private ProgramGraph graph;
 
 	private int type;
 	
+	private GraphCache cache;
+	
+	private AnalysisListener listener;
+	
+	private Workspace workspace;
+	
+	private Method method;
+	
+	private long phaseStart;
+	
+	private long phaseBytes;
+	
 	public static final int NORMAL_FLOW = 1 << 0;
 	
 	public static final int EXCEPTION_FLOW = 1 << 1;
@@ -86,6 +108,15 @@ public class GraphBuilder {
 	
 	public static final int REMOVE_UNUSED_DEFS = 1 << 5;
 	
+	/** With {@link #EXCEPTION_FLOW}, nodes share the handler ranges of their instructions instead of having exception edges */
+	public static final int FACTORED_EXCEPTION_FLOW = 1 << 6;
+	
+	/** With {@link #EXCEPTION_FLOW}, only the instructions that may throw an exception have exception flow */
+	public static final int EXCEPTING_ONLY = 1 << 7;
+	
+	/** Methods are checked by the ASM analyzer, so bytecode it rejects is not analyzed (see {@link CouldNotBuildGraphException}) */
+	public static final int VERIFY = 1 << 8;
+	
 	public static final int DEFAULT = NORMAL_FLOW |
 									  BASIC_BLOCK | 
 									  COMPUTE_DEF_USE | 
@@ -114,6 +145,93 @@ public class GraphBuilder {
 	public GraphBuilder(final String className, final MethodNode methodNode) {
 		this(className, methodNode, DEFAULT);
 	}
+	
+	/**
+	 * Creates a graph builder that reuses graphs stored in a cache
+	 * 
+	 * @param className
+	 *            the name of the class
+	 * @param methodNode
+	 *            the method for which the graph must be created
+	 * @param type
+	 *            the graph type
+	 * @param cache
+	 *            the cache of graphs, or <code>null</code> to always build the graph
+	 */
+	public GraphBuilder(final String className, 
+						final MethodNode methodNode,
+						final int type,
+						final GraphCache cache) {
+		
+		this(className, methodNode, type);
+		this.cache = cache;
+	}
+	
+	/**
+	 * Creates a graph builder that reports measurements of each phase
+	 * 
+	 * @param className
+	 *            the name of the class
+	 * @param methodNode
+	 *            the method for which the graph must be created
+	 * @param type
+	 *            the graph type
+	 * @param cache
+	 *            the cache of graphs, or <code>null</code> to always build the graph
+	 * @param listener
+	 *            the listener of measurements, or <code>null</code>
+	 */
+	public GraphBuilder(final String className, 
+						final MethodNode methodNode,
+						final int type,
+						final GraphCache cache,
+						final AnalysisListener listener) {
+		
+		this(className, methodNode, type, cache);
+		this.listener = listener;
+		if (listener != null) {
+			this.method = new Method(className, methodNode.name, methodNode.desc);
+		}
+	}
+	
+	/**
+	 * Creates a graph builder that uses the analysis objects of a workspace, 
+	 * which must have been created for the same graph type
+	 */
+	GraphBuilder(final String className, 
+				 final MethodNode methodNode,
+				 final int type,
+				 final GraphCache cache,
+				 final AnalysisListener listener,
+				 final Workspace workspace) {
+		
+		this(className, methodNode, type, cache, listener);
+		this.workspace = workspace;
+	}
+	
+	/**
+	 * Creates a graph builder for the code of a method recorded while its 
+	 * class is read (see {@link GraphClassVisitor}), which uses the analysis 
+	 * objects of a workspace created for the same graph type. The graph has 
+	 * detached instructions, since the method has no tree.
+	 */
+	GraphBuilder(final String className, 
+				 final MethodCode code,
+				 final int type,
+				 final GraphCache cache,
+				 final AnalysisListener listener,
+				 final Workspace workspace) {
+		
+		this.className = className;
+		this.code = code;
+		this.type = type;
+		this.cache = cache;
+		this.listener = listener;
+		this.workspace = workspace;
+		if (listener != null) {
+			this.method = new Method(className, code.getName(), code.getDesc());
+		}
+	}
 
 	/**
 	 * Builds the graph referent to the method given for the class
@@ -125,115 +243,341 @@ public class GraphBuilder {
 
 		if (graph == null) {
 			
-			final EdgeAnalyzer analyzer = getEdgeAnalyzer((type & EXCEPTION_FLOW) != 0);
-			
-			final Edge[] edges;
-			if ((type & NORMAL_FLOW) != 0) {
-				edges = analyzer.getEdges();
+			if (cache != null) {
+				try {
+					startPhase();
+					final String key = methodNode != null 
+							? cache.key(methodNode, type) : cache.key(code, type);
+					graph = methodNode != null 
+							? cache.get(key, className, methodNode) : cache.get(key, className, code);
+					endPhase(Phase.CACHE);
+					if (graph == null) {
+						graph = build();
+						if (graph != null) {
+							startPhase();
+							if (methodNode != null) {
+								cache.put(key, graph, methodNode);
+							} else {
+								cache.put(key, graph);
+							}
+							endPhase(Phase.CACHE);
+						}
+					}
+				} catch (final IOException e) {
+					throw new CouldNotBuildGraphException(className, getMethodName(), e);
+				}
 			} else {
-				edges = new Edge[0];
+				graph = build();
 			}
+
+			// Releasing references in order to save memory
+			className = null;
+			methodNode = null;
+			code = null;
+			cache = null;
+			listener = null;
+			workspace = null;
+			method = null;
+		}
+
+		return graph;
+	}
+	
+	private ProgramGraph build() throws CouldNotBuildGraphException {
+		
+		final Workspace workspace = this.workspace != null ? this.workspace : new Workspace(type, null);
+		
+		startPhase();
+		final MethodCode code;
+		if (this.code != null) {
+			code = this.code;
+		} else {
+			code = workspace.code;
+			code.load(methodNode);
+		}
+		try {
+			return build(code, workspace);
+		} finally {
+			if (code == workspace.code) {
+				code.clear();
+			}
+		}
+	}
+	
+	private ProgramGraph build(final MethodCode code, final Workspace workspace) 
+			throws CouldNotBuildGraphException {
+		
+		ProgramGraph graph = null;
+		
+		final ControlFlowAnalyzer analyzer = getControlFlowAnalyzer(code, workspace);
+		endPhase(Phase.EDGE_ANALYSIS);
+		
+		final int size = analyzer.getInstructionCount();
+		
+		int count = 0;
+		for (int i = 0; i < size; i++) {
+			if (analyzer.isReachable(i)) {
+				count++;
+			}
+		}
+		
+		GraphNode root = null;
+		
+		if ((type & BASIC_BLOCK) != 0 && count != 0) {
+			startPhase();
+			root = workspace.blocks.build(code, analyzer, 
+					(type & NORMAL_FLOW) != 0, (type & EXCEPTION_FLOW) != 0);
+			// a failed attempt is charged to the phase too
+			endPhase(Phase.BASIC_BLOCK);
+		}
+		
+		// blocks must be joined later when they cannot be built up front
+		final boolean join = (type & BASIC_BLOCK) != 0 && root == null;
+		
+		startPhase();
+		
+		if (root == null && count != 0) {
+			root = buildInstructionNodes(analyzer, code, workspace);
+		}
+
+		if (count != 0) {
+			final List<Variable> params = VariablesCollector
+					.getParameters(code.getDesc(), code.getAccess());
 			
-			final Edge[] exceptionEdges;
-			if ((type & EXCEPTION_FLOW) != 0) {
-				exceptionEdges = analyzer.getExceptionEdges();
-			} else {
-				exceptionEdges = new Edge[0];
+			final List<BytecodeInstruction> paramsInsns = 
+					new ArrayList<BytecodeInstruction>(params.size());
+			
+			final List<Variable> uses = Collections.emptyList();
+			
+			for (final Variable var : params) {
+				paramsInsns.add(BytecodeInstruction.definition(new DefUseFrame(var, uses)));
 			}
 			
-			final Frame<BasicValue>[] frames = analyzer.getFrames();
-			final AbstractInsnNode[] instructions = methodNode.instructions.toArray();
+			root.addEntryDefinitions(0, paramsInsns);
 			
-			final Map<Integer, GraphNode> nodes = new HashMap<Integer, GraphNode>();
+			graph = new ProgramGraph(
+					className, code.getName(), code.getDesc(), root);
 			
-			for (int i = 0; i < frames.length; i++) {
-				
-				if (frames[i] != null) {
-					
-					final AbstractInsnNode instruction = instructions[i];
-					
-					final GraphNode node = new GraphNode(i);
-					
-					node.instructions.add(new BytecodeInstruction(instruction));
-					
-					nodes.put(node.id, node);
-				}
-				
+			endPhase(Phase.GRAPH_CONSTRUCTION);
+			
+			if (join) {
+				startPhase();
+				workspace.joiner.traverse(graph.getRootNode());
+				endPhase(Phase.BASIC_BLOCK);
 			}
-
-			for (final Edge edge : edges) {
-				nodes.get(edge.src).addChild(nodes.get(edge.dest));
+			
+			DataflowVerifierTraversalStrategy dataflow = null;
+			if ((type & COMPUTE_DEF_USE) != 0) {
+				startPhase();
+				dataflow = workspace.dataflow;
+				dataflow.traverse(graph.getRootNode());
+				endPhase(Phase.COMPUTE_DEF_USE);
 			}
-			for (final Edge edge : exceptionEdges) {
-				nodes.get(edge.src).addExceptionChild(nodes.get(edge.dest));
+			if ((type & (REMOVE_LOCAL_USES | REMOVE_UNUSED_DEFS)) != 0) {
+				startPhase();
+				workspace.cleaner.clean(graph.getNodes());
+				endPhase(Phase.CLEANUP);
+			}
+			
+			if (listener != null) {
+				reportGraph(graph, code.size(), count, dataflow);
 			}
+			
+		}
 
-			if (!nodes.isEmpty()) {
-				final List<Variable> params = VariablesCollector
-						.getParameters(methodNode.desc, methodNode.access);
-				
-				final List<BytecodeInstruction> paramsInsns = 
-						new ArrayList<BytecodeInstruction>(params.size());
-				
-				for (final Variable var : params) {
-					
-					final BytecodeInstruction insn = 
-							new BytecodeInstruction(new InsnNode(Opcodes.NOP));
-					
-					final List<Variable> uses = Collections.emptyList();
-					
-					insn.frame = new DefUseFrame(var, uses);
-					
-					paramsInsns.add(insn);
-				}
+		return graph;
+	}
+	
+	/**
+	 * Creates a node for each reachable instruction, linked by the edges 
+	 * found by the analyzer
+	 * 
+	 * @return the node of the first instruction
+	 */
+	private GraphNode buildInstructionNodes(final ControlFlowAnalyzer analyzer, 
+											final MethodCode code, 
+											final Workspace workspace) {
+		
+		final int size = analyzer.getInstructionCount();
+		
+		// nodes are indexed by instruction (null for unreachable instructions)
+		final GraphNode[] nodes = workspace.nodes(size);
+		
+		for (int i = 0; i < size; i++) {
+			
+			if (analyzer.isReachable(i)) {
 				
-				nodes.get(0).instructions.addAll(0, paramsInsns);
+				final GraphNode node = new GraphNode(i);
 				
-				graph = new ProgramGraph(
-						className, methodNode.name, methodNode.desc, nodes.get(0));
+				node.instructions.add(code.getInstruction(i));
 				
-				if ((type & BASIC_BLOCK) != 0) {
-					new PreOrderTraversalStrategy(new BasicBlockGraphNodeJoiner()).traverse(graph.getRootNode());
-				}
-				if ((type & COMPUTE_DEF_USE) != 0) {
-					new DataflowVerifierTraversalStrategy(new DefUseFrameComputer()).traverse(graph.getRootNode());
-				}
-				if ((type & REMOVE_LOCAL_USES) != 0) {
-					new PreOrderTraversalStrategy(new LocalUseRemover()).traverse(graph.getRootNode());
+				nodes[i] = node;
+			}
+			
+		}
+
+		if ((type & NORMAL_FLOW) != 0) {
+			final EdgeSet edges = analyzer.getEdgeSet();
+			for (int i = 0; i < edges.size(); i++) {
+				nodes[edges.src(i)].addChild(nodes[edges.dest(i)]);
+			}
+		}
+		if ((type & EXCEPTION_FLOW) != 0) {
+			final EdgeSet edges = analyzer.getExceptionEdgeSet();
+			for (int i = 0; i < edges.size(); i++) {
+				nodes[edges.src(i)].addExceptionChild(nodes[edges.dest(i)]);
+			}
+		}
+		if ((type & EXCEPTION_FLOW) != 0 && analyzer.isFactored()) {
+			final HandlerRange[] ranges = new HandlerRange[analyzer.getHandlerRangeCount()];
+			for (int i = 0; i < size; i++) {
+				if (nodes[i] != null && analyzer.hasExceptionFlow(i)) {
+					final int r = analyzer.getHandlerRange(i);
+					if (ranges[r] == null) {
+						ranges[r] = HandlerRange.create(r, analyzer, nodes);
+					}
+					nodes[i].setHandlerRange(ranges[r]);
 				}
-				if ((type & REMOVE_UNUSED_DEFS) != 0) {
-					new PreOrderTraversalStrategy(new LonelyDefinitionsRemover()).traverse(graph.getRootNode());
+			}
+		}
+		
+		final GraphNode root = nodes[0];
+		workspace.release(size);
+		return root;
+	}
+	
+	private void startPhase() {
+		if (listener != null) {
+			phaseBytes = Allocations.currentThread();
+			phaseStart = System.nanoTime();
+		}
+	}
+	
+	private void endPhase(final Phase phase) {
+		if (listener != null) {
+			final long nanos = System.nanoTime() - phaseStart;
+			final long bytes = phaseBytes < 0 ? -1 : Allocations.currentThread() - phaseBytes;
+			listener.phaseCompleted(method, phase, nanos, bytes);
+		}
+	}
+	
+	private void reportGraph(final ProgramGraph graph, 
+							 final int instructions, 
+							 final int nodes, 
+							 final DataflowVerifierTraversalStrategy dataflow) {
+		
+		final List<GraphNode> blocks = graph.getNodes();
+		
+		int frames = 0;
+		for (final GraphNode block : blocks) {
+			for (final BytecodeInstruction insn : block.getInstructionsAndDefinitions()) {
+				if (insn.frame != null) {
+					frames++;
 				}
-				
 			}
-
-			// Releasing references in order to save memory
-			className = null;
-			methodNode = null;
 		}
-
-		return graph;
+		
+		listener.graphBuilt(method, new GraphMetrics(
+				instructions, 
+				nodes, 
+				blocks.size(), 
+				dataflow == null ? 0 : dataflow.getIterations(), 
+				dataflow == null ? 0 : dataflow.getMaxIterations(), 
+				frames));
 	}
 	
 	/**
-	 * Gets the ASM EdgeAnalyser
+	 * Analyzes the control flow of the method, after checking it with the 
+	 * ASM analyzer when the graph type has {@link #VERIFY}
 	 * 
-	 * @return the ASM EdgeAnalyser
+	 * @return the analyzer, with the edges of the method
 	 * @throws CouldNotBuildGraphException
 	 *             when is not possible to analyze a method
 	 */
-	private EdgeAnalyzer getEdgeAnalyzer(final boolean exceptionFlow) 
+	private ControlFlowAnalyzer getControlFlowAnalyzer(final MethodCode code, final Workspace workspace) 
 			throws CouldNotBuildGraphException {
 		
-		final EdgeAnalyzer analyzer = new EdgeAnalyzer(exceptionFlow);
+		final ControlFlowAnalyzer analyzer = workspace.analyzer;
 		try {
-			analyzer.analyze(className, methodNode);
+			if (workspace.verifier != null) {
+				workspace.verifier.analyze(className, code.getMethodNode());
+			}
+			analyzer.analyze(className, code);
 		} catch (final AnalyzerException analyzerException) {
 			throw new CouldNotBuildGraphException(
-					className, methodNode.signature, analyzerException);
+					className, getMethodName(), analyzerException);
 		}
 
 		return analyzer;
 	}
 	
+	private String getMethodName() {
+		return methodNode != null ? methodNode.name : code.getName();
+	}
+	
+	/**
+	 * The analysis objects used to build graphs of a given type. A workspace 
+	 * can be reused by the builders of many methods, one at a time, so they 
+	 * do not create their analyzers and visitors every time (see 
+	 * {@link ClassGraphBuilder}).
+	 */
+	static class Workspace {
+		
+		/** the code of the methods built from their tree */
+		final MethodCode code = new MethodCode();
+		
+		final ControlFlowAnalyzer analyzer;
+		
+		/** the ASM analyzer that checks the methods, if they are verified */
+		final Analyzer<BasicValue> verifier;
+		
+		final BasicBlockBuilder blocks;
+		
+		final PreOrderTraversalStrategy joiner;
+		
+		final DataflowVerifierTraversalStrategy dataflow;
+		
+		final DefUseFrameCleaner cleaner;
+		
+		private GraphNode[] nodes = new GraphNode[0];
+		
+		/**
+		 * Creates a workspace
+		 * 
+		 * @param type
+		 *            the graph type
+		 * @param variables
+		 *            the table shared by the def/use computations, or 
+		 *            <code>null</code> to use a new table for each method
+		 */
+		Workspace(final int type, final VariableTable variables) {
+			analyzer = new ControlFlowAnalyzer(
+					(type & EXCEPTION_FLOW) != 0, 
+					(type & FACTORED_EXCEPTION_FLOW) != 0, 
+					(type & EXCEPTING_ONLY) != 0);
+			verifier = (type & VERIFY) != 0 
+					? new Analyzer<BasicValue>(new BasicInterpreter()) : null;
+			blocks = new BasicBlockBuilder();
+			joiner = new PreOrderTraversalStrategy(new BasicBlockGraphNodeJoiner());
+			dataflow = new DataflowVerifierTraversalStrategy(new DefUseFrameComputer(variables));
+			cleaner = new DefUseFrameCleaner(
+					(type & REMOVE_LOCAL_USES) != 0, 
+					(type & REMOVE_UNUSED_DEFS) != 0);
+		}
+		
+		GraphNode[] nodes(final int size) {
+			if (nodes.length < size) {
+				nodes = new GraphNode[size];
+			} else {
+				Arrays.fill(nodes, 0, size, null);
+			}
+			return nodes;
+		}
+		
+		void release(final int size) {
+			Arrays.fill(nodes, 0, size, null);
+		}
+		
+	}
+	
 }
@@ -0,0 +1,181 @@
+/***
+ * bytecode-analysis: a prototype-library based on ASM 4 that
+ *                    computes definitions/uses of each instruction
+ * Copyright (c) 2014 University of Sao Paulo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package br.usp.each.saeg.bytecode.analysis;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import br.usp.each.saeg.bytecode.analysis.cache.GraphCache;
+import br.usp.each.saeg.bytecode.analysis.graph.ProgramGraph;
+import br.usp.each.saeg.bytecode.analysis.graph.defuse.VariableTable;
+import br.usp.each.saeg.bytecode.analysis.metrics.AnalysisListener;
+
+/**
+ * Builds the graphs of the methods of a class while the class is being 
+ * read (or generated), without any ASM tree: the code of each concrete 
+ * method is recorded from the visitor events into the arrays of a 
+ * {@link MethodCode}, and its graph is built from them, with detached 
+ * instructions, when the method ends. Only methods with subroutines (and 
+ * the {@link GraphBuilder#VERIFY} check) need a tree, which is rebuilt from 
+ * the arrays. The methods of a class share the recorded code and the 
+ * analysis objects, as in a {@link ClassGraphBuilder}.
+ * <p>
+ * Events are forwarded to the next visitor, if any, so the graphs can be 
+ * built in the same pass that, for instance, instruments the class. 
+ * Abstract and native methods are forwarded without being analyzed.
+ */
+public class GraphClassVisitor extends ClassVisitor {
+	
+	private final int type;
+	
+	private final GraphCache cache;
+	
+	private final AnalysisListener listener;
+	
+	private final List<ProgramGraph> graphs = new ArrayList<ProgramGraph>();
+	
+	private final MethodCode code = new MethodCode() {
+		@Override
+		public void visitEnd() {
+			super.visitEnd();
+			methodEnd();
+		}
+	};
+	
+	private GraphBuilder.Workspace workspace;
+	
+	private String className;
+	
+	private CouldNotBuildGraphException error;
+	
+	/**
+	 * Creates a visitor
+	 * 
+	 * @param type
+	 *            the graph type (see {@link GraphBuilder})
+	 * @param cache
+	 *            the cache of graphs, or <code>null</code> to always build the graphs
+	 * @param listener
+	 *            the listener of measurements, or <code>null</code>
+	 * @param cv
+	 *            the visitor to which the events are forwarded, or <code>null</code>
+	 */
+	public GraphClassVisitor(final int type, 
+							 final GraphCache cache, 
+							 final AnalysisListener listener, 
+							 final ClassVisitor cv) {
+		
+		super(Opcodes.ASM4, cv);
+		this.type = type;
+		this.cache = cache;
+		this.listener = listener;
+	}
+	
+	public GraphClassVisitor(final int type, final ClassVisitor cv) {
+		this(type, null, null, cv);
+	}
+	
+	public GraphClassVisitor(final int type) {
+		this(type, null);
+	}
+	
+	public GraphClassVisitor() {
+		this(GraphBuilder.DEFAULT);
+	}
+	
+	@Override
+	public void visit(final int version, 
+					  final int access, 
+					  final String name, 
+					  final String signature, 
+					  final String superName, 
+					  final String[] interfaces) {
+		
+		className = name;
+		super.visit(version, access, name, signature, superName, interfaces);
+	}
+	
+	@Override
+	public MethodVisitor visitMethod(final int access, 
+									 final String name, 
+									 final String desc, 
+									 final String signature, 
+									 final String[] exceptions) {
+		
+		if ((access & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_NATIVE)) != 0) {
+			return super.visitMethod(access, name, desc, signature, exceptions);
+		}
+		
+		code.reset(access, name, desc, 
+				cv == null ? null : cv.visitMethod(access, name, desc, signature, exceptions));
+		return code;
+	}
+	
+	private void methodEnd() {
+		
+		if (error == null) {
+			if (workspace == null) {
+				workspace = new GraphBuilder.Workspace(type, new VariableTable());
+			}
+			try {
+				final ProgramGraph graph = new GraphBuilder(
+						className, code, type, cache, listener, workspace).buildDefUseGraph();
+				if (graph != null) {
+					graphs.add(graph);
+				}
+			} catch (final CouldNotBuildGraphException e) {
+				// reported by getGraphs(), since a visitor cannot throw it
+				error = e;
+			}
+		}
+		
+		code.clear();
+	}
+	
+	/**
+	 * Gets the graphs of the concrete methods visited so far
+	 * 
+	 * @return the graphs, in the order the methods were visited
+	 * @throws CouldNotBuildGraphException when the graph of some method could 
+	 *         not be built (no more graphs are built after the first failure)
+	 */
+	public List<ProgramGraph> getGraphs() throws CouldNotBuildGraphException {
+		if (error != null) {
+			throw error;
+		}
+		return graphs;
+	}
+	
+}
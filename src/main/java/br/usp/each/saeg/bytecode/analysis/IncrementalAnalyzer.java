@@ -0,0 +1,323 @@
+/***
+ * bytecode-analysis: a prototype-library based on ASM 4 that
+ *                    computes definitions/uses of each instruction
+ * Copyright (c) 2014 University of Sao Paulo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package br.usp.each.saeg.bytecode.analysis;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import br.usp.each.saeg.bytecode.analysis.cache.ClassDigest;
+import br.usp.each.saeg.bytecode.analysis.cache.GraphCache;
+import br.usp.each.saeg.bytecode.analysis.cache.MethodDigest;
+import br.usp.each.saeg.bytecode.analysis.graph.ProgramGraph;
+import br.usp.each.saeg.bytecode.analysis.graph.ProgramGraphReader;
+import br.usp.each.saeg.bytecode.analysis.graph.ProgramGraphWriter;
+import br.usp.each.saeg.bytecode.analysis.incremental.ChangeReport;
+import br.usp.each.saeg.bytecode.analysis.incremental.Manifest;
+import br.usp.each.saeg.bytecode.analysis.incremental.Manifest.ClassEntry;
+import br.usp.each.saeg.bytecode.analysis.incremental.Manifest.MethodEntry;
+import br.usp.each.saeg.bytecode.analysis.io.ClassSource;
+
+/**
+ * Analyzes classes like an {@link ArchiveAnalyzer}, reusing the graphs of 
+ * the previous run, which are kept in a {@link Manifest}. The graphs of a 
+ * class whose class file did not change are read from the manifest without 
+ * parsing the class, so their instructions are detached (see 
+ * {@link BytecodeInstruction#getInstruction(org.objectweb.asm.tree.InsnList)} 
+ * to find them in the method). In a modified class, only the methods whose 
+ * content changed are analyzed, and the reused graphs are bound to the 
+ * methods. Classes of the previous run that are not found are purged from the 
+ * manifest, which is rewritten at the end of the analysis.
+ */
+public class IncrementalAnalyzer {
+	
+	private final File manifestFile;
+	
+	private final int type;
+	
+	private final int parallelism;
+	
+	private final ClassInputs inputs = new ClassInputs();
+	
+	private ChangeReport report;
+	
+	/**
+	 * Creates an analyzer
+	 * 
+	 * @param manifest
+	 *            the manifest file of the previous run (created if it does not exist)
+	 * @param type
+	 *            the graph type (see {@link GraphBuilder})
+	 * @param parallelism
+	 *            the number of threads used to build the graphs
+	 */
+	public IncrementalAnalyzer(final File manifest, final int type, final int parallelism) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("Invalid parallelism: " + parallelism);
+		}
+		this.manifestFile = manifest;
+		this.type = type;
+		this.parallelism = parallelism;
+	}
+	
+	public IncrementalAnalyzer(final File manifest) {
+		this(manifest, GraphBuilder.DEFAULT, Runtime.getRuntime().availableProcessors());
+	}
+	
+	/**
+	 * Adds a jar file, a class directory or a single class file
+	 * 
+	 * @param file the file to be analyzed
+	 */
+	public void add(final File file) {
+		inputs.add(file);
+	}
+	
+	/**
+	 * Adds a class given its bytes
+	 * 
+	 * @param bytes the content of a class file
+	 */
+	public void addClass(final byte[] bytes) {
+		inputs.addClass(bytes);
+	}
+	
+	/**
+	 * Adds a source of class files. The source is not closed by the analyzer.
+	 * 
+	 * @param source the class files to be analyzed
+	 */
+	public void add(final ClassSource source) {
+		inputs.add(source);
+	}
+	
+	/**
+	 * Gets the graphs of every concrete method of the added classes and 
+	 * updates the manifest
+	 * 
+	 * @return the graphs, in the order the classes were added (only the first 
+	 *         of the classes with the same name is kept)
+	 * @throws IOException when a class or the manifest cannot be read, or 
+	 *         the manifest cannot be written
+	 * @throws CouldNotBuildGraphException when a graph cannot be built
+	 */
+	public List<ProgramGraph> analyze() throws IOException, CouldNotBuildGraphException {
+		
+		final Manifest previous = Manifest.read(manifestFile, type);
+		
+		final List<ClassResult> results = inputs.run(parallelism, 
+				new ClassInputs.ClassTask<ClassResult>() {
+			@Override
+			public ClassResult run(final ClassReader reader) throws CouldNotBuildGraphException {
+				return analyze(reader, previous);
+			}
+		});
+		
+		final Manifest manifest = new Manifest(type);
+		
+		final List<ProgramGraph> graphs = new ArrayList<ProgramGraph>();
+		final List<String> added = new ArrayList<String>();
+		final List<String> modified = new ArrayList<String>();
+		final List<String> unchanged = new ArrayList<String>();
+		final List<String> deleted = new ArrayList<String>();
+		int reused = 0;
+		int analyzed = 0;
+		
+		for (final ClassResult result : results) {
+			if (manifest.get(result.entry.name) != null) {
+				// the same class in more than one input: the first one is kept
+				continue;
+			}
+			graphs.addAll(result.graphs);
+			reused += result.reused;
+			analyzed += result.analyzed;
+			manifest.put(result.entry);
+			final ClassEntry old = previous.get(result.entry.name);
+			if (old == null) {
+				added.add(result.entry.name);
+			} else if (old.hash.equals(result.entry.hash)) {
+				unchanged.add(result.entry.name);
+			} else {
+				modified.add(result.entry.name);
+			}
+		}
+		
+		for (final ClassEntry old : previous.getClasses()) {
+			if (manifest.get(old.name) == null) {
+				deleted.add(old.name);
+			}
+		}
+		
+		manifest.write(manifestFile);
+		
+		report = new ChangeReport(added, modified, unchanged, deleted, reused, analyzed);
+		
+		return graphs;
+	}
+	
+	/**
+	 * Gets the changes found by the last analysis
+	 * 
+	 * @return the changes, or <code>null</code> if there was no analysis
+	 */
+	public ChangeReport getReport() {
+		return report;
+	}
+	
+	private ClassResult analyze(final ClassReader reader, final Manifest previous) 
+			throws CouldNotBuildGraphException {
+		
+		final String hash = ClassDigest.digest(reader);
+		
+		final ClassEntry old = previous.get(reader.getClassName());
+		
+		if (old != null && old.hash.equals(hash)) {
+			final ClassResult result = reuse(old);
+			if (result != null) {
+				return result;
+			}
+		}
+		
+		final ClassGraphBuilder builder = new ClassGraphBuilder(reader, type);
+		final ClassNode classNode = builder.getClassNode();
+		
+		final Map<String, MethodEntry> oldMethods = new HashMap<String, MethodEntry>();
+		if (old != null) {
+			for (final MethodEntry method : old.methods) {
+				oldMethods.put(method.name + method.desc, method);
+			}
+		}
+		
+		final ClassResult result = new ClassResult();
+		final List<MethodEntry> methods = new ArrayList<MethodEntry>();
+		
+		for (final Object o : classNode.methods) {
+			
+			final MethodNode methodNode = (MethodNode) o;
+			
+			if ((methodNode.access & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_NATIVE)) != 0) {
+				continue;
+			}
+			
+			final MethodEntry oldMethod = oldMethods.get(methodNode.name + methodNode.desc);
+			
+			final String digest = MethodDigest.digest(methodNode, GraphCache.VERSION, type);
+			
+			ProgramGraph graph = null;
+			MethodEntry entry = null;
+			
+			if (oldMethod != null && oldMethod.digest.equals(digest)) {
+				graph = read(oldMethod, classNode.name, methodNode);
+				entry = oldMethod;
+			}
+			
+			if (graph != null) {
+				result.reused++;
+			} else {
+				graph = builder.buildGraph(methodNode);
+				result.analyzed++;
+				entry = graph == null ? null : new MethodEntry(
+						methodNode.name, methodNode.desc, digest, write(graph, methodNode));
+			}
+			
+			if (graph != null) {
+				result.graphs.add(graph);
+				methods.add(entry);
+			}
+		}
+		
+		result.entry = new ClassEntry(classNode.name, hash, methods);
+		
+		return result;
+	}
+	
+	/**
+	 * Reads the graphs of an unchanged class, without parsing the class
+	 * 
+	 * @return the result, or <code>null</code> if some graph is corrupted
+	 */
+	private static ClassResult reuse(final ClassEntry entry) {
+		final ClassResult result = new ClassResult();
+		for (final MethodEntry method : entry.methods) {
+			final ProgramGraph graph = read(method, null, null);
+			if (graph == null) {
+				return null;
+			}
+			result.graphs.add(graph);
+			result.reused++;
+		}
+		result.entry = entry;
+		return result;
+	}
+	
+	private static ProgramGraph read(final MethodEntry entry, final String owner, final MethodNode method) {
+		try {
+			return new ProgramGraphReader(new ByteArrayInputStream(entry.getGraph())).read(owner, method);
+		} catch (final IOException e) {
+			// corrupted entry, the graph is built again
+			return null;
+		}
+	}
+	
+	private static byte[] write(final ProgramGraph graph, final MethodNode method) {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try {
+			new ProgramGraphWriter(out).write(graph, method.instructions);
+		} catch (final IOException e) {
+			// never happens when writing to memory
+			throw new IllegalStateException(e);
+		}
+		return out.toByteArray();
+	}
+	
+	private static class ClassResult {
+		
+		ClassEntry entry;
+		
+		final List<ProgramGraph> graphs = new ArrayList<ProgramGraph>();
+		
+		int reused;
+		
+		int analyzed;
+		
+	}
+	
+}
@@ -0,0 +1,771 @@
+/***
+ * bytecode-analysis: a prototype-library based on ASM 4 that
+ *                    computes definitions/uses of each instruction
+ * Copyright (c) 2014 University of Sao Paulo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package br.usp.each.saeg.bytecode.analysis;
+
+import java.util.Arrays;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.FrameNode;
+import org.objectweb.asm.tree.IincInsnNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.IntInsnNode;
+import org.objectweb.asm.tree.InvokeDynamicInsnNode;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.LineNumberNode;
+import org.objectweb.asm.tree.LookupSwitchInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.MultiANewArrayInsnNode;
+import org.objectweb.asm.tree.TableSwitchInsnNode;
+import org.objectweb.asm.tree.TryCatchBlockNode;
+import org.objectweb.asm.tree.TypeInsnNode;
+import org.objectweb.asm.tree.VarInsnNode;
+
+/**
+ * The code of a method in compact arrays: the type, opcode, operand and 
+ * symbolic reference of each instruction, the targets of jumps and switches 
+ * and the try/catch blocks, by instruction index. The code is recorded 
+ * straight from the events of a {@link ClassReader}, so a graph can be built 
+ * without the ASM tree of the method, from detached instructions (see 
+ * {@link #getInstruction(int)}). The events are forwarded to the next 
+ * visitor, if any. Instructions are indexed as in the instruction list of 
+ * a {@link MethodNode} that visits the same events.
+ * <p>
+ * The code can also be loaded from a {@link MethodNode}, in which case only 
+ * the control flow is copied and the instructions are taken from the tree. 
+ * The arrays are reused, so a code can hold many methods, one at a time.
+ */
+public class MethodCode extends MethodVisitor {
+	
+	private int access;
+	
+	private String name;
+	
+	private String desc;
+	
+	private int size;
+	
+	private BytecodeInstructionType[] types = new BytecodeInstructionType[16];
+	
+	private int[] opcodes = new int[16];
+	
+	private int[] operands = new int[16];
+	
+	/** the symbolic reference of each instruction (see {@link BytecodeInstruction#detached}) */
+	private Object[] references = new Object[16];
+	
+	/** 
+	 * first target of each instruction in targets, plus the end; a line 
+	 * number has the label of its start as target
+	 */
+	private int[] targetStart = new int[17];
+	
+	private int[] targets = new int[16];
+	
+	/** the labels of the targets, until they are resolved */
+	private Label[] targetLabels = new Label[16];
+	
+	private int targetCount;
+	
+	/** start, end and handler of each try/catch block */
+	private int[] blocks = new int[12];
+	
+	private Label[] blockLabels = new Label[12];
+	
+	private String[] blockTypes = new String[4];
+	
+	private int blockCount;
+	
+	/** open addressing table of the index of each label */
+	private Label[] labelKeys = new Label[32];
+	
+	private int[] labelIndexes = new int[32];
+	
+	private int labelCount;
+	
+	private int maxStack;
+	
+	private int maxLocals;
+	
+	/** the method the code was loaded from or replayed into */
+	private MethodNode method;
+	
+	/** the instructions of the method the code was loaded from */
+	private AbstractInsnNode[] tree;
+	
+	public MethodCode() {
+		super(Opcodes.ASM4);
+	}
+	
+	/**
+	 * Starts the code of a method that is going to be recorded
+	 * 
+	 * @param access the access flags of the method
+	 * @param name the name of the method
+	 * @param desc the descriptor of the method
+	 * @param mv the visitor to which the events are forwarded, or <code>null</code>
+	 */
+	public void reset(final int access, final String name, final String desc, final MethodVisitor mv) {
+		clear();
+		this.access = access;
+		this.name = name;
+		this.desc = desc;
+		this.mv = mv;
+	}
+	
+	/**
+	 * Loads the control flow of a method from its tree
+	 * 
+	 * @param method the method
+	 */
+	public void load(final MethodNode method) {
+		
+		clear();
+		this.access = method.access;
+		this.name = method.name;
+		this.desc = method.desc;
+		this.method = method;
+		this.maxStack = method.maxStack;
+		this.maxLocals = method.maxLocals;
+		
+		final InsnList insns = method.instructions;
+		tree = insns.toArray();
+		
+		for (final AbstractInsnNode node : tree) {
+			
+			final int i = add(null, node.getOpcode(), 0, null);
+			
+			switch (node.getType()) {
+			case AbstractInsnNode.JUMP_INSN:
+				addTarget(insns.indexOf(((JumpInsnNode) node).label));
+				break;
+			case AbstractInsnNode.LOOKUPSWITCH_INSN: {
+				final LookupSwitchInsnNode lsi = (LookupSwitchInsnNode) node;
+				addTarget(insns.indexOf(lsi.dflt));
+				for (final Object label : lsi.labels) {
+					addTarget(insns.indexOf((LabelNode) label));
+				}
+				break;
+			}
+			case AbstractInsnNode.TABLESWITCH_INSN: {
+				final TableSwitchInsnNode tsi = (TableSwitchInsnNode) node;
+				addTarget(insns.indexOf(tsi.dflt));
+				for (final Object label : tsi.labels) {
+					addTarget(insns.indexOf((LabelNode) label));
+				}
+				break;
+			}
+			default:
+				break;
+			}
+			
+			targetStart[i + 1] = targetCount;
+		}
+		
+		for (final Object o : method.tryCatchBlocks) {
+			final TryCatchBlockNode tcb = (TryCatchBlockNode) o;
+			final int b = addBlock(tcb.type);
+			blocks[3 * b] = insns.indexOf(tcb.start);
+			blocks[3 * b + 1] = insns.indexOf(tcb.end);
+			blocks[3 * b + 2] = insns.indexOf(tcb.handler);
+		}
+	}
+	
+	/**
+	 * Releases the method, its references and the next visitor
+	 */
+	public void clear() {
+		Arrays.fill(references, 0, size, null);
+		Arrays.fill(types, 0, size, null);
+		Arrays.fill(targetLabels, 0, targetCount, null);
+		Arrays.fill(blockLabels, 0, 3 * blockCount, null);
+		Arrays.fill(blockTypes, 0, blockCount, null);
+		if (labelCount != 0) {
+			Arrays.fill(labelKeys, null);
+			labelCount = 0;
+		}
+		size = 0;
+		targetCount = 0;
+		targetStart[0] = 0;
+		blockCount = 0;
+		maxStack = 0;
+		maxLocals = 0;
+		name = null;
+		desc = null;
+		method = null;
+		tree = null;
+		mv = null;
+	}
+	
+	public int getAccess() {
+		return access;
+	}
+	
+	public String getName() {
+		return name;
+	}
+	
+	public String getDesc() {
+		return desc;
+	}
+	
+	/**
+	 * Gets the number of instructions
+	 * 
+	 * @return the number of instructions
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Gets the opcode of an instruction
+	 * 
+	 * @param insn the index of the instruction
+	 * @return the opcode (-1 for labels, line numbers and frames)
+	 */
+	public int getOpcode(final int insn) {
+		return opcodes[insn];
+	}
+	
+	/**
+	 * Gets the number of targets of a jump or switch
+	 * 
+	 * @param insn the index of the instruction
+	 * @return the number of targets (zero if the instruction is not a jump or switch)
+	 */
+	public int getTargetCount(final int insn) {
+		return opcodes[insn] == -1 ? 0 : targetStart[insn + 1] - targetStart[insn];
+	}
+	
+	/**
+	 * Gets a target of a jump or switch; the default target of a switch 
+	 * comes first, followed by the targets of its keys
+	 * 
+	 * @param insn the index of the instruction
+	 * @param i the position of the target
+	 * @return the index of the target
+	 */
+	public int getTarget(final int insn, final int i) {
+		return targets[targetStart[insn] + i];
+	}
+	
+	public int getTryCatchBlockCount() {
+		return blockCount;
+	}
+	
+	public int getStart(final int block) {
+		return blocks[3 * block];
+	}
+	
+	public int getEnd(final int block) {
+		return blocks[3 * block + 1];
+	}
+	
+	public int getHandler(final int block) {
+		return blocks[3 * block + 2];
+	}
+	
+	/**
+	 * Gets the type of exception caught by a try/catch block
+	 * 
+	 * @param block the index of the block
+	 * @return the internal name of the type, or <code>null</code> for a 
+	 *         block that catches any exception
+	 */
+	public String getCatchType(final int block) {
+		return blockTypes[block];
+	}
+	
+	/**
+	 * Checks if the method has subroutines (<code>JSR</code>/<code>RET</code>)
+	 * 
+	 * @return <code>true</code> if the method has subroutines
+	 */
+	public boolean hasSubroutines() {
+		for (int i = 0; i < size; i++) {
+			if (opcodes[i] == Opcodes.JSR || opcodes[i] == Opcodes.RET) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Creates an instruction of the method: an instruction of the tree, if 
+	 * the code was loaded from one, otherwise a detached instruction with 
+	 * its symbolic reference
+	 * 
+	 * @param insn the index of the instruction
+	 * @return a new instruction
+	 */
+	public BytecodeInstruction getInstruction(final int insn) {
+		if (tree != null) {
+			return new BytecodeInstruction(tree[insn], insn);
+		}
+		return BytecodeInstruction.detached(
+				types[insn], opcodes[insn], operands[insn], references[insn], insn);
+	}
+	
+	/**
+	 * Gets the tree of the method: the method the code was loaded from or, 
+	 * for a recorded code, a tree rebuilt from the arrays (for the ASM 
+	 * analyzer). A rebuilt tree has no debug information besides line 
+	 * numbers and its frames are placeholders.
+	 * 
+	 * @return the tree of the method
+	 */
+	public MethodNode getMethodNode() {
+		if (method == null) {
+			method = replay();
+		}
+		return method;
+	}
+	
+	// ------- Events
+	
+	@Override
+	public void visitFrame(final int type, 
+						   final int nLocal, 
+						   final Object[] local, 
+						   final int nStack, 
+						   final Object[] stack) {
+		
+		add(BytecodeInstructionType.FRAME, -1, 0, null);
+		super.visitFrame(type, nLocal, local, nStack, stack);
+	}
+	
+	@Override
+	public void visitInsn(final int opcode) {
+		add(opcode, 0, null);
+		super.visitInsn(opcode);
+	}
+	
+	@Override
+	public void visitIntInsn(final int opcode, final int operand) {
+		add(opcode, operand, null);
+		super.visitIntInsn(opcode, operand);
+	}
+	
+	@Override
+	public void visitVarInsn(final int opcode, final int var) {
+		add(opcode, var, null);
+		super.visitVarInsn(opcode, var);
+	}
+	
+	@Override
+	public void visitTypeInsn(final int opcode, final String type) {
+		add(opcode, 0, type);
+		super.visitTypeInsn(opcode, type);
+	}
+	
+	@Override
+	public void visitFieldInsn(final int opcode, 
+							   final String owner, 
+							   final String name, 
+							   final String desc) {
+		
+		add(opcode, 0, new Handle(tag(opcode), owner, name, desc));
+		super.visitFieldInsn(opcode, owner, name, desc);
+	}
+	
+	@Override
+	public void visitMethodInsn(final int opcode, 
+								final String owner, 
+								final String name, 
+								final String desc) {
+		
+		add(opcode, 0, new Handle(tag(opcode), owner, name, desc));
+		super.visitMethodInsn(opcode, owner, name, desc);
+	}
+	
+	@Override
+	public void visitInvokeDynamicInsn(final String name, 
+									   final String desc, 
+									   final Handle bsm, 
+									   final Object... bsmArgs) {
+		
+		add(Opcodes.INVOKEDYNAMIC, 0, desc);
+		super.visitInvokeDynamicInsn(name, desc, bsm, bsmArgs);
+	}
+	
+	@Override
+	public void visitJumpInsn(final int opcode, final Label label) {
+		add(opcode, 0, null);
+		addTarget(label);
+		super.visitJumpInsn(opcode, label);
+	}
+	
+	@Override
+	public void visitLabel(final Label label) {
+		putLabel(label, add(BytecodeInstructionType.LABEL, -1, 0, null));
+		super.visitLabel(label);
+	}
+	
+	@Override
+	public void visitLdcInsn(final Object cst) {
+		add(Opcodes.LDC, 0, cst);
+		super.visitLdcInsn(cst);
+	}
+	
+	@Override
+	public void visitIincInsn(final int var, final int increment) {
+		add(Opcodes.IINC, var, increment);
+		super.visitIincInsn(var, increment);
+	}
+	
+	@Override
+	public void visitTableSwitchInsn(final int min, 
+									 final int max, 
+									 final Label dflt, 
+									 final Label... labels) {
+		
+		add(Opcodes.TABLESWITCH, min, null);
+		addTarget(dflt);
+		for (final Label label : labels) {
+			addTarget(label);
+		}
+		super.visitTableSwitchInsn(min, max, dflt, labels);
+	}
+	
+	@Override
+	public void visitLookupSwitchInsn(final Label dflt, 
+									  final int[] keys, 
+									  final Label[] labels) {
+		
+		add(Opcodes.LOOKUPSWITCH, 0, keys);
+		addTarget(dflt);
+		for (final Label label : labels) {
+			addTarget(label);
+		}
+		super.visitLookupSwitchInsn(dflt, keys, labels);
+	}
+	
+	@Override
+	public void visitMultiANewArrayInsn(final String desc, final int dims) {
+		add(Opcodes.MULTIANEWARRAY, dims, desc);
+		super.visitMultiANewArrayInsn(desc, dims);
+	}
+	
+	@Override
+	public void visitTryCatchBlock(final Label start, 
+								   final Label end, 
+								   final Label handler, 
+								   final String type) {
+		
+		final int b = addBlock(type);
+		blockLabels[3 * b] = start;
+		blockLabels[3 * b + 1] = end;
+		blockLabels[3 * b + 2] = handler;
+		super.visitTryCatchBlock(start, end, handler, type);
+	}
+	
+	@Override
+	public void visitLineNumber(final int line, final Label start) {
+		add(BytecodeInstructionType.LINE_NUMBER, -1, line, null);
+		addTarget(start);
+		super.visitLineNumber(line, start);
+	}
+	
+	@Override
+	public void visitMaxs(final int maxStack, final int maxLocals) {
+		this.maxStack = maxStack;
+		this.maxLocals = maxLocals;
+		super.visitMaxs(maxStack, maxLocals);
+	}
+	
+	@Override
+	public void visitEnd() {
+		for (int i = 0; i < targetCount; i++) {
+			targets[i] = getLabel(targetLabels[i]);
+			targetLabels[i] = null;
+		}
+		for (int i = 0; i < 3 * blockCount; i++) {
+			blocks[i] = getLabel(blockLabels[i]);
+			blockLabels[i] = null;
+		}
+		super.visitEnd();
+	}
+	
+	// ------- Arrays
+	
+	private int add(final int opcode, final int operand, final Object reference) {
+		return add(BytecodeInstructionType.getFromOpcode(opcode), opcode, operand, reference);
+	}
+	
+	private int add(final BytecodeInstructionType type, 
+					final int opcode, 
+					final int operand, 
+					final Object reference) {
+		
+		if (size == opcodes.length) {
+			final int length = size * 2;
+			types = Arrays.copyOf(types, length);
+			opcodes = Arrays.copyOf(opcodes, length);
+			operands = Arrays.copyOf(operands, length);
+			references = Arrays.copyOf(references, length);
+			targetStart = Arrays.copyOf(targetStart, length + 1);
+		}
+		types[size] = type;
+		opcodes[size] = opcode;
+		operands[size] = operand;
+		references[size] = reference;
+		targetStart[size + 1] = targetCount;
+		return size++;
+	}
+	
+	private void addTarget(final Label label) {
+		ensureTargets();
+		targetLabels[targetCount++] = label;
+		targetStart[size] = targetCount;
+	}
+	
+	private void addTarget(final int target) {
+		ensureTargets();
+		targets[targetCount++] = target;
+	}
+	
+	private void ensureTargets() {
+		if (targetCount == targets.length) {
+			targets = Arrays.copyOf(targets, targetCount * 2);
+			targetLabels = Arrays.copyOf(targetLabels, targetCount * 2);
+		}
+	}
+	
+	private int addBlock(final String type) {
+		if (3 * blockCount == blocks.length) {
+			blocks = Arrays.copyOf(blocks, blocks.length * 2);
+			blockLabels = Arrays.copyOf(blockLabels, blocks.length);
+			blockTypes = Arrays.copyOf(blockTypes, blockTypes.length * 2);
+		}
+		blockTypes[blockCount] = type;
+		return blockCount++;
+	}
+	
+	private void putLabel(final Label label, final int index) {
+		if (2 * (labelCount + 1) > labelKeys.length) {
+			final Label[] keys = labelKeys;
+			final int[] indexes = labelIndexes;
+			labelKeys = new Label[keys.length * 2];
+			labelIndexes = new int[keys.length * 2];
+			for (int i = 0; i < keys.length; i++) {
+				if (keys[i] != null) {
+					labelKeys[slot(keys[i])] = keys[i];
+					labelIndexes[slot(keys[i])] = indexes[i];
+				}
+			}
+		}
+		final int slot = slot(label);
+		if (labelKeys[slot] == null) {
+			labelCount++;
+		}
+		labelKeys[slot] = label;
+		labelIndexes[slot] = index;
+	}
+	
+	private int getLabel(final Label label) {
+		final int slot = slot(label);
+		if (labelKeys[slot] == null) {
+			throw new IllegalStateException("Label not visited in " + name + desc);
+		}
+		return labelIndexes[slot];
+	}
+	
+	/**
+	 * Finds the slot of a label: the slot that has it or the empty slot 
+	 * where it goes
+	 */
+	private int slot(final Label label) {
+		final int mask = labelKeys.length - 1;
+		final int hash = System.identityHashCode(label);
+		int slot = (hash ^ (hash >>> 16)) & mask;
+		while (labelKeys[slot] != null && labelKeys[slot] != label) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+	
+	private static int tag(final int opcode) {
+		switch (opcode) {
+		case Opcodes.GETFIELD:
+			return Opcodes.H_GETFIELD;
+		case Opcodes.GETSTATIC:
+			return Opcodes.H_GETSTATIC;
+		case Opcodes.PUTFIELD:
+			return Opcodes.H_PUTFIELD;
+		case Opcodes.PUTSTATIC:
+			return Opcodes.H_PUTSTATIC;
+		case Opcodes.INVOKEVIRTUAL:
+			return Opcodes.H_INVOKEVIRTUAL;
+		case Opcodes.INVOKESTATIC:
+			return Opcodes.H_INVOKESTATIC;
+		case Opcodes.INVOKESPECIAL:
+			return Opcodes.H_INVOKESPECIAL;
+		default:
+			return Opcodes.H_INVOKEINTERFACE;
+		}
+	}
+	
+	/**
+	 * Rebuilds the tree of a recorded method, with the same instructions, 
+	 * control flow and try/catch blocks
+	 */
+	private MethodNode replay() {
+		
+		final MethodNode m = new MethodNode(Opcodes.ASM4, access, name, desc, null, null);
+		m.maxStack = maxStack;
+		m.maxLocals = maxLocals;
+		
+		final LabelNode[] labels = new LabelNode[size];
+		for (int i = 0; i < size; i++) {
+			if (types[i] == BytecodeInstructionType.LABEL) {
+				labels[i] = new LabelNode();
+			}
+		}
+		
+		for (int i = 0; i < size; i++) {
+			
+			final int opcode = opcodes[i];
+			final int operand = operands[i];
+			final Object reference = references[i];
+			final int first = targetStart[i];
+			
+			final AbstractInsnNode insn;
+			
+			if (types[i] == BytecodeInstructionType.LABEL) {
+				insn = labels[i];
+			} else if (types[i] == BytecodeInstructionType.LINE_NUMBER) {
+				insn = new LineNumberNode(operand, labels[targets[first]]);
+			} else if (types[i] == BytecodeInstructionType.FRAME) {
+				insn = new FrameNode(Opcodes.F_SAME, 0, null, 0, null);
+			} else {
+				switch (opcode) {
+				case Opcodes.BIPUSH:
+				case Opcodes.SIPUSH:
+				case Opcodes.NEWARRAY:
+					insn = new IntInsnNode(opcode, operand);
+					break;
+				case Opcodes.ILOAD:
+				case Opcodes.LLOAD:
+				case Opcodes.FLOAD:
+				case Opcodes.DLOAD:
+				case Opcodes.ALOAD:
+				case Opcodes.ISTORE:
+				case Opcodes.LSTORE:
+				case Opcodes.FSTORE:
+				case Opcodes.DSTORE:
+				case Opcodes.ASTORE:
+				case Opcodes.RET:
+					insn = new VarInsnNode(opcode, operand);
+					break;
+				case Opcodes.NEW:
+				case Opcodes.ANEWARRAY:
+				case Opcodes.CHECKCAST:
+				case Opcodes.INSTANCEOF:
+					insn = new TypeInsnNode(opcode, (String) reference);
+					break;
+				case Opcodes.GETSTATIC:
+				case Opcodes.PUTSTATIC:
+				case Opcodes.GETFIELD:
+				case Opcodes.PUTFIELD: {
+					final Handle h = (Handle) reference;
+					insn = new FieldInsnNode(opcode, h.getOwner(), h.getName(), h.getDesc());
+					break;
+				}
+				case Opcodes.INVOKEVIRTUAL:
+				case Opcodes.INVOKESPECIAL:
+				case Opcodes.INVOKESTATIC:
+				case Opcodes.INVOKEINTERFACE: {
+					final Handle h = (Handle) reference;
+					insn = new MethodInsnNode(opcode, h.getOwner(), h.getName(), h.getDesc());
+					break;
+				}
+				case Opcodes.INVOKEDYNAMIC:
+					// only the descriptor matters to the analyzer
+					insn = new InvokeDynamicInsnNode(null, (String) reference, null);
+					break;
+				case Opcodes.LDC:
+					insn = new LdcInsnNode(reference);
+					break;
+				case Opcodes.IINC:
+					insn = new IincInsnNode(operand, (Integer) reference);
+					break;
+				case Opcodes.TABLESWITCH: {
+					final LabelNode[] keys = new LabelNode[targetStart[i + 1] - first - 1];
+					for (int k = 0; k < keys.length; k++) {
+						keys[k] = labels[targets[first + 1 + k]];
+					}
+					insn = new TableSwitchInsnNode(operand, operand + keys.length - 1, 
+							labels[targets[first]], keys);
+					break;
+				}
+				case Opcodes.LOOKUPSWITCH: {
+					final LabelNode[] keys = new LabelNode[targetStart[i + 1] - first - 1];
+					for (int k = 0; k < keys.length; k++) {
+						keys[k] = labels[targets[first + 1 + k]];
+					}
+					insn = new LookupSwitchInsnNode(labels[targets[first]], (int[]) reference, keys);
+					break;
+				}
+				case Opcodes.MULTIANEWARRAY:
+					insn = new MultiANewArrayInsnNode((String) reference, operand);
+					break;
+				default:
+					if (targetStart[i + 1] > first) {
+						insn = new JumpInsnNode(opcode, labels[targets[first]]);
+					} else {
+						insn = new InsnNode(opcode);
+					}
+					break;
+				}
+			}
+			
+			m.instructions.add(insn);
+		}
+		
+		for (int b = 0; b < blockCount; b++) {
+			m.tryCatchBlocks.add(new TryCatchBlockNode(labels[blocks[3 * b]], 
+					labels[blocks[3 * b + 1]], labels[blocks[3 * b + 2]], blockTypes[b]));
+		}
+		
+		return m;
+	}
+	
+}
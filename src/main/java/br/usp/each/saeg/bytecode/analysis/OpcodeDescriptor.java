@@ -0,0 +1,124 @@
+/***
+ * bytecode-analysis: a prototype-library based on ASM 4 that
+ *                    computes definitions/uses of each instruction
+ * Copyright (c) 2014 University of Sao Paulo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package br.usp.each.saeg.bytecode.analysis;
+
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Precomputed properties of an opcode: its instruction type, whether its 
+ * uses are predicate uses and whether it may throw an exception. 
+ * Descriptors are kept in a table indexed by opcode, so looking them up is 
+ * an array access.
+ */
+public final class OpcodeDescriptor {
+	
+	private static final OpcodeDescriptor[] TABLE = new OpcodeDescriptor[256];
+	
+	static {
+		for (final BytecodeInstructionType type : BytecodeInstructionType.values()) {
+			for (final int opcode : type.getOpcodes()) {
+				TABLE[opcode] = new OpcodeDescriptor(opcode, type);
+			}
+		}
+	}
+	
+	public final int opcode;
+	
+	public final BytecodeInstructionType type;
+	
+	/** whether the uses of the instruction are predicate uses (conditional branches and switches) */
+	public final boolean predicate;
+	
+	/** whether the instruction may throw an exception (a potentially-excepting instruction) */
+	public final boolean excepting;
+	
+	private OpcodeDescriptor(final int opcode, final BytecodeInstructionType type) {
+		this.opcode = opcode;
+		this.type = type;
+		this.predicate = type == BytecodeInstructionType.BINARY_CMP 
+				|| type == BytecodeInstructionType.UNARY_CMP 
+				|| type == BytecodeInstructionType.SWITCH;
+		
+		switch (type) {
+		case LDC:
+		case LOAD_ARRAY:
+		case STORE_ARRAY:
+		case RETURN:
+		case RETURN_VOID:
+		case GETSTATIC:
+		case PUTSTATIC:
+		case GETFIELD:
+		case PUTFIELD:
+		case INVOKE:
+		case INVOKE_DYNAMIC:
+		case NEW:
+		case NEWARRAY:
+		case ARRAYLENGTH:
+		case ATHROW:
+		case CHECKCAST:
+		case MONITOR:
+		case MULTIANEWARRAY:
+			// resolution errors, null or bounds checks, allocation and 
+			// monitor state (returns of synchronized methods)
+			excepting = true;
+			break;
+		case UNARY_MATH:
+			// INSTANCEOF resolves its class, as CHECKCAST does
+			excepting = opcode == Opcodes.INSTANCEOF;
+			break;
+		case BINARY_MATH:
+			// division by zero
+			excepting = opcode == Opcodes.IDIV || opcode == Opcodes.IREM 
+					|| opcode == Opcodes.LDIV || opcode == Opcodes.LREM;
+			break;
+		default:
+			excepting = false;
+			break;
+		}
+	}
+	
+	/**
+	 * Gets the descriptor of an opcode
+	 * 
+	 * @param opcode the opcode value
+	 * @return the descriptor, or <code>null</code> if the opcode is not valid 
+	 *         (e.g. -1, the opcode of pseudo-instructions)
+	 */
+	public static OpcodeDescriptor get(final int opcode) {
+		return opcode >= 0 && opcode < TABLE.length ? TABLE[opcode] : null;
+	}
+	
+	@Override
+	public String toString() {
+		return type + "(" + opcode + ")";
+	}
+	
+}
@@ -0,0 +1,95 @@
+/***
+ * bytecode-analysis: a prototype-library based on ASM 4 that
+ *                    computes definitions/uses of each instruction
+ * Copyright (c) 2014 University of Sao Paulo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package br.usp.each.saeg.bytecode.analysis.cache;
+
+import java.security.MessageDigest;
+
+import org.objectweb.asm.ClassReader;
+
+/**
+ * Computes a content hash of a class file: the hash of its bytes
+ */
+public final class ClassDigest {
+	
+	private ClassDigest() {
+	}
+	
+	/**
+	 * Computes the hash of a class file
+	 * 
+	 * @param reader a reader of the class file
+	 * @return the hash, as an hexadecimal string
+	 */
+	public static String digest(final ClassReader reader) {
+		final MessageDigest sha1 = MethodDigest.sha1();
+		final int start = start(reader);
+		sha1.update(reader.b, start, end(reader) - start);
+		return MethodDigest.hex(sha1.digest());
+	}
+	
+	/**
+	 * The first constant pool item starts right after the magic number, the 
+	 * version and the constant pool count (10 bytes)
+	 */
+	private static int start(final ClassReader reader) {
+		return reader.getItem(1) - 11;
+	}
+	
+	/**
+	 * Finds the end of the class file, since the buffer of a reader may be 
+	 * larger than the class (e.g. a pooled buffer)
+	 */
+	private static int end(final ClassReader reader) {
+		// access flags, this class and super class
+		int u = reader.header + 6;
+		u += 2 + 2 * reader.readUnsignedShort(u);
+		// fields and methods have the same layout
+		for (int members = 0; members < 2; members++) {
+			int count = reader.readUnsignedShort(u);
+			u += 2;
+			while (count-- > 0) {
+				u = skipAttributes(reader, u + 6);
+			}
+		}
+		return skipAttributes(reader, u);
+	}
+	
+	private static int skipAttributes(final ClassReader reader, final int offset) {
+		int u = offset;
+		int count = reader.readUnsignedShort(u);
+		u += 2;
+		while (count-- > 0) {
+			u += 6 + reader.readInt(u + 2);
+		}
+		return u;
+	}
+	
+}
@@ -0,0 +1,374 @@
+/***
+ * bytecode-analysis: a prototype-library based on ASM 4 that
+ *                    computes definitions/uses of each instruction
+ * Copyright (c) 2014 University of Sao Paulo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package br.usp.each.saeg.bytecode.analysis.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.MethodNode;
+
+import br.usp.each.saeg.bytecode.analysis.MethodCode;
+import br.usp.each.saeg.bytecode.analysis.graph.ProgramGraph;
+import br.usp.each.saeg.bytecode.analysis.graph.ProgramGraphReader;
+import br.usp.each.saeg.bytecode.analysis.graph.ProgramGraphWriter;
+
+/**
+ * A persistent cache of program graphs, stored in a directory. Entries are 
+ * keyed by a hash of the method content and of the graph type (see 
+ * {@link MethodDigest}), so a graph is reused by any method with the same 
+ * bytecode. Each entry starts with a version stamp and entries written by 
+ * another version are discarded. When the cache grows beyond its maximum 
+ * size, the least recently used entries are evicted.
+ * <p>
+ * The size of the cache is only computed, by listing the directory, when 
+ * the entries written since the last listing may have taken it over the 
+ * maximum, so entries written by other instances sharing the directory 
+ * are counted too. The use of an entry is recorded in its modification 
+ * time, but the times are only updated in batches (and before an 
+ * eviction), instead of on every read.
+ */
+public class GraphCache {
+	
+	/**
+	 * Version of the cache format. Must be changed whenever the graphs built
+	 * for a method or the way they are written change.
+	 */
+	public static final int VERSION = 7;
+	
+	private static final int MAGIC = 0x42414743; // "BAGC"
+	
+	private static final String SUFFIX = ".graph";
+	
+	/** the number of entries read before their modification times are updated */
+	private static final int TOUCH_BATCH = 256;
+	
+	private final File dir;
+	
+	private final long maxSize;
+	
+	/** 
+	 * the size found by the last listing of the directory, plus the size of 
+	 * the entries written since, or -1 before the first listing
+	 */
+	private long size = -1;
+	
+	/** the entries read since their modification times were last updated */
+	private final Set<File> touched = new LinkedHashSet<File>();
+	
+	/**
+	 * Opens (or creates) a cache
+	 * 
+	 * @param dir the directory of the cache
+	 * @param maxSize the maximum size of the cache, in bytes
+	 * @throws IOException when the directory cannot be created
+	 */
+	public GraphCache(final File dir, final long maxSize) throws IOException {
+		if (!dir.isDirectory() && !dir.mkdirs()) {
+			throw new IOException("Could not create cache directory: " + dir);
+		}
+		this.dir = dir;
+		this.maxSize = maxSize;
+	}
+	
+	/**
+	 * Computes the key of a method
+	 * 
+	 * @param method the method
+	 * @param type the graph type (see {@link br.usp.each.saeg.bytecode.analysis.GraphBuilder})
+	 * @return the key of the method
+	 */
+	public String key(final MethodNode method, final int type) {
+		return MethodDigest.digest(method, VERSION, type);
+	}
+	
+	/**
+	 * Computes the key of the recorded code of a method. The key is not the 
+	 * key of the same method as a tree (see {@link MethodDigest}).
+	 * 
+	 * @param code the code of the method
+	 * @param type the graph type (see {@link br.usp.each.saeg.bytecode.analysis.GraphBuilder})
+	 * @return the key of the method
+	 */
+	public String key(final MethodCode code, final int type) {
+		return MethodDigest.digest(code, VERSION, type);
+	}
+	
+	/**
+	 * Gets a graph from the cache
+	 * 
+	 * @param key the key of the method
+	 * @param owner the name of the class that has the method
+	 * @param method the method (its instructions are bound to the graph)
+	 * @return the graph, or <code>null</code> if the cache has no valid entry
+	 * @throws IOException when the entry exists but cannot be read
+	 */
+	public ProgramGraph get(final String key, final String owner, final MethodNode method) 
+			throws IOException {
+		
+		return get(key, owner, method, null);
+	}
+	
+	/**
+	 * Gets a graph from the cache
+	 * 
+	 * @param key the key of the method
+	 * @param owner the name of the class that has the method
+	 * @param code the recorded code of the method (its instructions are bound to the graph)
+	 * @return the graph, or <code>null</code> if the cache has no valid entry
+	 * @throws IOException when the entry exists but cannot be read
+	 */
+	public ProgramGraph get(final String key, final String owner, final MethodCode code) 
+			throws IOException {
+		
+		return get(key, owner, null, code);
+	}
+	
+	private ProgramGraph get(final String key, 
+							 final String owner, 
+							 final MethodNode method, 
+							 final MethodCode code) throws IOException {
+		
+		final File file = file(key);
+		if (!file.isFile()) {
+			return null;
+		}
+		
+		ProgramGraph graph = null;
+		
+		final DataInputStream in;
+		try {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		} catch (final FileNotFoundException e) {
+			// removed by another thread since it was checked
+			return null;
+		}
+		try {
+			if (in.readInt() == MAGIC && in.readInt() == VERSION) {
+				final ProgramGraphReader reader = new ProgramGraphReader(in);
+				graph = method != null ? reader.read(owner, method) : reader.read(owner, code);
+			}
+		} catch (final IOException e) {
+			// corrupted or truncated entry
+			graph = null;
+		} finally {
+			in.close();
+		}
+		
+		if (graph == null) {
+			remove(file);
+		} else {
+			touch(file);
+		}
+		
+		return graph;
+	}
+	
+	/**
+	 * Puts a graph in the cache
+	 * 
+	 * @param key the key of the method
+	 * @param graph the graph of the method
+	 * @param method the method (used to write the instructions of the graph)
+	 * @throws IOException when the entry cannot be written
+	 */
+	public void put(final String key, final ProgramGraph graph, final MethodNode method) 
+			throws IOException {
+		
+		put(key, graph, method.instructions);
+	}
+	
+	/**
+	 * Puts a graph whose instructions know their index (as the graphs built 
+	 * from the recorded code of a method) in the cache
+	 * 
+	 * @param key the key of the method
+	 * @param graph the graph of the method
+	 * @throws IOException when the entry cannot be written
+	 */
+	public void put(final String key, final ProgramGraph graph) throws IOException {
+		put(key, graph, (InsnList) null);
+	}
+	
+	private void put(final String key, final ProgramGraph graph, final InsnList instructions) 
+			throws IOException {
+		
+		final File file = file(key);
+		final File parent = file.getParentFile();
+		if (!parent.isDirectory() && !parent.mkdirs()) {
+			throw new IOException("Could not create cache directory: " + parent);
+		}
+		
+		final File temp = File.createTempFile(key, ".tmp", parent);
+		try {
+			final DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(temp)));
+			try {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				new ProgramGraphWriter(out).write(graph, instructions);
+			} finally {
+				out.close();
+			}
+			
+			synchronized (this) {
+				if (file.exists()) {
+					return;
+				}
+				if (!temp.renameTo(file)) {
+					throw new IOException("Could not write cache entry: " + file);
+				}
+				if (size >= 0) {
+					size += file.length();
+				}
+				if (size < 0 || size > maxSize) {
+					evict();
+				}
+			}
+		} finally {
+			temp.delete();
+		}
+	}
+	
+	/**
+	 * Gets the size of the cache. The directory is listed, so the entries 
+	 * written by other instances are counted too.
+	 * 
+	 * @return the size of the cache, in bytes
+	 */
+	public synchronized long size() {
+		size = 0;
+		for (final File entry : entries()) {
+			size += entry.length();
+		}
+		return size;
+	}
+	
+	/**
+	 * Updates the modification times of the entries read since the last 
+	 * update, which keep track of their last use
+	 */
+	public synchronized void flush() {
+		final long now = System.currentTimeMillis();
+		for (final File file : touched) {
+			file.setLastModified(now);
+		}
+		touched.clear();
+	}
+	
+	private File file(final String key) {
+		// first two characters are used to spread the entries in sub-directories
+		return new File(new File(dir, key.substring(0, 2)), key + SUFFIX);
+	}
+	
+	private synchronized void touch(final File file) {
+		touched.add(file);
+		if (touched.size() >= TOUCH_BATCH) {
+			flush();
+		}
+	}
+	
+	private synchronized void remove(final File file) {
+		final long length = file.length();
+		if (file.delete() && size >= 0) {
+			size -= length;
+		}
+		touched.remove(file);
+	}
+	
+	/**
+	 * Lists the directory to find the size of the cache and, if it is over 
+	 * the maximum, removes least recently used entries until the cache is 
+	 * back to 90% of its maximum size, so eviction does not run on every put.
+	 */
+	private synchronized void evict() {
+		flush();
+		final File[] entries = entries().toArray(new File[0]);
+		final long[] lastModified = new long[entries.length];
+		size = 0;
+		for (int i = 0; i < entries.length; i++) {
+			lastModified[i] = entries[i].lastModified();
+			size += entries[i].length();
+		}
+		if (size <= maxSize) {
+			return;
+		}
+		final Integer[] order = new Integer[entries.length];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(final Integer o1, final Integer o2) {
+				final long t1 = lastModified[o1];
+				final long t2 = lastModified[o2];
+				return t1 < t2 ? -1 : (t1 == t2 ? 0 : 1);
+			}
+		});
+		final long target = maxSize / 10 * 9;
+		for (int i = 0; i < order.length && size > target; i++) {
+			remove(entries[order[i]]);
+		}
+	}
+	
+	private List<File> entries() {
+		final List<File> entries = new ArrayList<File>();
+		final File[] dirs = dir.listFiles();
+		if (dirs != null) {
+			for (final File sub : dirs) {
+				final File[] files = sub.listFiles();
+				if (files == null) {
+					continue;
+				}
+				for (final File file : files) {
+					if (file.getName().endsWith(SUFFIX)) {
+						entries.add(file);
+					}
+				}
+			}
+		}
+		return entries;
+	}
+	
+}
@@ -0,0 +1,307 @@
+/***
+ * bytecode-analysis: a prototype-library based on ASM 4 that
+ *                    computes definitions/uses of each instruction
+ * Copyright (c) 2014 University of Sao Paulo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package br.usp.each.saeg.bytecode.analysis.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.FrameNode;
+import org.objectweb.asm.tree.IincInsnNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.IntInsnNode;
+import org.objectweb.asm.tree.InvokeDynamicInsnNode;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.LookupSwitchInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.MultiANewArrayInsnNode;
+import org.objectweb.asm.tree.TableSwitchInsnNode;
+import org.objectweb.asm.tree.TryCatchBlockNode;
+import org.objectweb.asm.tree.TypeInsnNode;
+import org.objectweb.asm.tree.VarInsnNode;
+
+import br.usp.each.saeg.bytecode.analysis.BytecodeInstruction;
+import br.usp.each.saeg.bytecode.analysis.MethodCode;
+
+/**
+ * Computes a content hash of a method: its instructions, exception table, 
+ * access flags and descriptor. Labels are hashed as their position in the 
+ * instruction list and pseudo-instructions (labels, line numbers and frames) 
+ * only by their kind, since the graphs only depend on their position.
+ * <p>
+ * The code recorded by a {@link MethodCode} is hashed from its detached 
+ * instructions, which do not have everything the tree has (e.g. the keys of 
+ * lookup switches), so its hash is never the hash of the same method as a 
+ * tree. Both only hash what the graphs depend on, so either can be used as 
+ * key, as long as a method is always hashed the same way.
+ */
+public final class MethodDigest {
+	
+	private MethodDigest() {
+	}
+	
+	/**
+	 * Computes the hash of a method
+	 * 
+	 * @param method the method
+	 * @param salt additional data to be hashed (e.g. graph type and format version)
+	 * @return the hash, as an hexadecimal string
+	 */
+	public static String digest(final MethodNode method, final int... salt) {
+		
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream(bytes);
+		
+		try {
+			for (final int value : salt) {
+				out.writeInt(value);
+			}
+			out.writeInt(method.access);
+			out.writeUTF(method.desc);
+			
+			final InsnList instructions = method.instructions;
+			out.writeInt(instructions.size());
+			for (int i = 0; i < instructions.size(); i++) {
+				write(out, instructions, instructions.get(i));
+			}
+			
+			final List<?> blocks = method.tryCatchBlocks;
+			out.writeInt(blocks.size());
+			for (final Object o : blocks) {
+				final TryCatchBlockNode block = (TryCatchBlockNode) o;
+				out.writeInt(instructions.indexOf(block.start));
+				out.writeInt(instructions.indexOf(block.end));
+				out.writeInt(instructions.indexOf(block.handler));
+				out.writeUTF(block.type == null ? "" : block.type);
+			}
+			out.flush();
+		} catch (final IOException e) {
+			// never happens when writing to memory
+			throw new IllegalStateException(e);
+		}
+		
+		return hex(sha1().digest(bytes.toByteArray()));
+	}
+	
+	/**
+	 * Computes the hash of the recorded code of a method
+	 * 
+	 * @param code the code of the method
+	 * @param salt additional data to be hashed (e.g. graph type and format version)
+	 * @return the hash, as an hexadecimal string
+	 */
+	public static String digest(final MethodCode code, final int... salt) {
+		
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream(bytes);
+		
+		try {
+			for (final int value : salt) {
+				out.writeInt(value);
+			}
+			out.writeInt(code.getAccess());
+			out.writeUTF(code.getDesc());
+			
+			out.writeInt(code.size());
+			for (int i = 0; i < code.size(); i++) {
+				final BytecodeInstruction insn = code.getInstruction(i);
+				out.writeByte(insn.getType().ordinal());
+				out.writeShort(insn.getOpcode());
+				out.writeInt(insn.getOperand());
+				writeNullable(out, insn.getOwner());
+				writeNullable(out, insn.getName());
+				writeNullable(out, insn.getDesc());
+				final Object cst = insn.getConstant();
+				if (cst == null) {
+					out.writeBoolean(false);
+				} else {
+					final String value = cst.toString();
+					out.writeBoolean(true);
+					out.writeUTF(cst.getClass().getName());
+					out.writeInt(value.length());
+					out.writeChars(value);
+				}
+				final int targets = code.getTargetCount(i);
+				out.writeInt(targets);
+				for (int k = 0; k < targets; k++) {
+					out.writeInt(code.getTarget(i, k));
+				}
+			}
+			
+			out.writeInt(code.getTryCatchBlockCount());
+			for (int b = 0; b < code.getTryCatchBlockCount(); b++) {
+				out.writeInt(code.getStart(b));
+				out.writeInt(code.getEnd(b));
+				out.writeInt(code.getHandler(b));
+				writeNullable(out, code.getCatchType(b));
+			}
+			out.flush();
+		} catch (final IOException e) {
+			// never happens when writing to memory
+			throw new IllegalStateException(e);
+		}
+		
+		return hex(sha1().digest(bytes.toByteArray()));
+	}
+	
+	private static void writeNullable(final DataOutputStream out, final String value) 
+			throws IOException {
+		
+		out.writeBoolean(value != null);
+		if (value != null) {
+			out.writeUTF(value);
+		}
+	}
+	
+	private static void write(final DataOutputStream out, 
+			final InsnList instructions, final AbstractInsnNode insn) throws IOException {
+		
+		out.writeByte(insn.getType());
+		out.writeShort(insn.getOpcode());
+		
+		switch (insn.getType()) {
+		case AbstractInsnNode.INT_INSN:
+			out.writeInt(((IntInsnNode) insn).operand);
+			break;
+		case AbstractInsnNode.VAR_INSN:
+			out.writeInt(((VarInsnNode) insn).var);
+			break;
+		case AbstractInsnNode.TYPE_INSN:
+			out.writeUTF(((TypeInsnNode) insn).desc);
+			break;
+		case AbstractInsnNode.FIELD_INSN: {
+			final FieldInsnNode f = (FieldInsnNode) insn;
+			out.writeUTF(f.owner);
+			out.writeUTF(f.name);
+			out.writeUTF(f.desc);
+			break;
+		}
+		case AbstractInsnNode.METHOD_INSN: {
+			final MethodInsnNode m = (MethodInsnNode) insn;
+			out.writeUTF(m.owner);
+			out.writeUTF(m.name);
+			out.writeUTF(m.desc);
+			break;
+		}
+		case AbstractInsnNode.INVOKE_DYNAMIC_INSN: {
+			final InvokeDynamicInsnNode m = (InvokeDynamicInsnNode) insn;
+			out.writeUTF(m.name);
+			out.writeUTF(m.desc);
+			out.writeUTF(String.valueOf(m.bsm));
+			break;
+		}
+		case AbstractInsnNode.JUMP_INSN:
+			out.writeInt(instructions.indexOf(((JumpInsnNode) insn).label));
+			break;
+		case AbstractInsnNode.LDC_INSN: {
+			final Object cst = ((LdcInsnNode) insn).cst;
+			final String value = cst.toString();
+			out.writeUTF(cst.getClass().getName());
+			out.writeInt(value.length());
+			out.writeChars(value);
+			break;
+		}
+		case AbstractInsnNode.IINC_INSN: {
+			final IincInsnNode iinc = (IincInsnNode) insn;
+			out.writeInt(iinc.var);
+			out.writeInt(iinc.incr);
+			break;
+		}
+		case AbstractInsnNode.TABLESWITCH_INSN: {
+			final TableSwitchInsnNode s = (TableSwitchInsnNode) insn;
+			out.writeInt(s.min);
+			out.writeInt(s.max);
+			out.writeInt(instructions.indexOf(s.dflt));
+			writeLabels(out, instructions, s.labels);
+			break;
+		}
+		case AbstractInsnNode.LOOKUPSWITCH_INSN: {
+			final LookupSwitchInsnNode s = (LookupSwitchInsnNode) insn;
+			out.writeInt(instructions.indexOf(s.dflt));
+			out.writeInt(s.keys.size());
+			for (final Object key : s.keys) {
+				out.writeInt((Integer) key);
+			}
+			writeLabels(out, instructions, s.labels);
+			break;
+		}
+		case AbstractInsnNode.MULTIANEWARRAY_INSN: {
+			final MultiANewArrayInsnNode m = (MultiANewArrayInsnNode) insn;
+			out.writeUTF(m.desc);
+			out.writeInt(m.dims);
+			break;
+		}
+		case AbstractInsnNode.FRAME:
+			out.writeInt(((FrameNode) insn).type);
+			break;
+		default:
+			// INSN, LABEL and LINE have nothing else to be hashed
+			break;
+		}
+	}
+	
+	private static void writeLabels(final DataOutputStream out, 
+			final InsnList instructions, final List<?> labels) throws IOException {
+		
+		out.writeInt(labels.size());
+		for (final Object label : labels) {
+			out.writeInt(instructions.indexOf((LabelNode) label));
+		}
+	}
+	
+	static MessageDigest sha1() {
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		} catch (final NoSuchAlgorithmException e) {
+			// every Java platform is required to support SHA-1
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	static String hex(final byte[] bytes) {
+		final char[] digits = "0123456789abcdef".toCharArray();
+		final char[] chars = new char[bytes.length * 2];
+		for (int i = 0; i < bytes.length; i++) {
+			chars[2 * i] = digits[(bytes[i] >> 4) & 0xF];
+			chars[2 * i + 1] = digits[bytes[i] & 0xF];
+		}
+		return new String(chars);
+	}
+	
+}
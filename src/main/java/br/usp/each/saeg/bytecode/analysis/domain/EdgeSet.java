@@ -0,0 +1,235 @@
+/***
+ * bytecode-analysis: a prototype-library based on ASM 4 that
+ *                    computes definitions/uses of each instruction
+ * Copyright (c) 2014 University of Sao Paulo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package br.usp.each.saeg.bytecode.analysis.domain;
+
+import java.util.Arrays;
+
+/**
+ * A set of edges that keeps the insertion order. Edges are packed in a 
+ * <code>long</code> (source in the high half, destination in the low half) 
+ * and stored in an open-addressing hash table, so no object is allocated 
+ * per edge. Edges are accessed by position, in insertion order.
+ */
+public class EdgeSet {
+	
+	private long[] edges;
+	
+	/** positions of the edges plus one (zero is an empty slot) */
+	private int[] table;
+	
+	private int size;
+	
+	public EdgeSet() {
+		this(16);
+	}
+	
+	/**
+	 * Creates a set of edges
+	 * 
+	 * @param capacity the expected number of edges
+	 */
+	public EdgeSet(final int capacity) {
+		edges = new long[Math.max(capacity, 4)];
+		table = new int[tableSize(edges.length)];
+	}
+	
+	/**
+	 * Adds an edge
+	 * 
+	 * @param src the source node
+	 * @param dest the destination node
+	 * @return <code>true</code> if the edge was not in the set
+	 */
+	public boolean add(final int src, final int dest) {
+		final long edge = pack(src, dest);
+		final int mask = table.length - 1;
+		int slot = hash(edge) & mask;
+		while (table[slot] != 0) {
+			if (edges[table[slot] - 1] == edge) {
+				return false;
+			}
+			slot = (slot + 1) & mask;
+		}
+		if (size == edges.length) {
+			grow();
+			return add(src, dest);
+		}
+		edges[size++] = edge;
+		table[slot] = size;
+		return true;
+	}
+	
+	/**
+	 * Checks if the set has an edge
+	 * 
+	 * @param src the source node
+	 * @param dest the destination node
+	 * @return <code>true</code> if the edge is in the set
+	 */
+	public boolean contains(final int src, final int dest) {
+		final long edge = pack(src, dest);
+		final int mask = table.length - 1;
+		int slot = hash(edge) & mask;
+		while (table[slot] != 0) {
+			if (edges[table[slot] - 1] == edge) {
+				return true;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return false;
+	}
+	
+	/**
+	 * Removes all the edges, keeping the allocated space
+	 */
+	public void clear() {
+		Arrays.fill(table, 0);
+		size = 0;
+	}
+	
+	/**
+	 * Gets the number of edges
+	 * 
+	 * @return the number of edges
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Gets the source node of an edge
+	 * 
+	 * @param i the position of the edge, in insertion order
+	 * @return the source node of the edge
+	 */
+	public int src(final int i) {
+		checkIndex(i);
+		return (int) (edges[i] >>> 32);
+	}
+	
+	/**
+	 * Gets the destination node of an edge
+	 * 
+	 * @param i the position of the edge, in insertion order
+	 * @return the destination node of the edge
+	 */
+	public int dest(final int i) {
+		checkIndex(i);
+		return (int) edges[i];
+	}
+	
+	/**
+	 * Gets the source nodes of all edges
+	 * 
+	 * @return a new array with the source node of each edge, in insertion order
+	 */
+	public int[] getSources() {
+		final int[] sources = new int[size];
+		for (int i = 0; i < size; i++) {
+			sources[i] = (int) (edges[i] >>> 32);
+		}
+		return sources;
+	}
+	
+	/**
+	 * Gets the destination nodes of all edges
+	 * 
+	 * @return a new array with the destination node of each edge, in insertion order
+	 */
+	public int[] getDestinations() {
+		final int[] destinations = new int[size];
+		for (int i = 0; i < size; i++) {
+			destinations[i] = (int) edges[i];
+		}
+		return destinations;
+	}
+	
+	/**
+	 * Gets the edges as objects
+	 * 
+	 * @return a new array with the edges, in insertion order
+	 */
+	public Edge[] toArray() {
+		final Edge[] array = new Edge[size];
+		for (int i = 0; i < size; i++) {
+			array[i] = new Edge((int) (edges[i] >>> 32), (int) edges[i]);
+		}
+		return array;
+	}
+	
+	private void checkIndex(final int i) {
+		if (i < 0 || i >= size) {
+			throw new IndexOutOfBoundsException(String.valueOf(i));
+		}
+	}
+	
+	private void grow() {
+		edges = Arrays.copyOf(edges, edges.length * 2);
+		table = new int[tableSize(edges.length)];
+		final int mask = table.length - 1;
+		for (int i = 0; i < size; i++) {
+			int slot = hash(edges[i]) & mask;
+			while (table[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			table[slot] = i + 1;
+		}
+	}
+	
+	/**
+	 * The table is kept at most half full
+	 */
+	private static int tableSize(final int capacity) {
+		return Integer.highestOneBit(capacity * 2 - 1) << 1;
+	}
+	
+	private static long pack(final int src, final int dest) {
+		return ((long) src << 32) | (dest & 0xFFFFFFFFL);
+	}
+	
+	private static int hash(final long edge) {
+		final long h = edge * 0x9E3779B97F4A7C15L;
+		return (int) (h >>> 32);
+	}
+	
+	@Override
+	public String toString() {
+		final StringBuilder sb = new StringBuilder("[");
+		for (int i = 0; i < size; i++) {
+			if (i > 0) {
+				sb.append(", ");
+			}
+			sb.append(String.format("(%d, %d)", src(i), dest(i)));
+		}
+		return sb.append(']').toString();
+	}
+	
+}
@@ -0,0 +1,374 @@
+/***
+ * bytecode-analysis: a prototype-library based on ASM 4 that
+ *                    computes definitions/uses of each instruction
+ * Copyright (c) 2014 University of Sao Paulo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package br.usp.each.saeg.bytecode.analysis.graph;
+
+import java.util.Arrays;
+
+import org.objectweb.asm.Opcodes;
+
+import br.usp.each.saeg.bytecode.analysis.ControlFlowAnalyzer;
+import br.usp.each.saeg.bytecode.analysis.MethodCode;
+import br.usp.each.saeg.bytecode.analysis.domain.EdgeSet;
+
+/**
+ * Builds the basic blocks of a method straight from the edges found by a 
+ * {@link ControlFlowAnalyzer}, creating one node per block instead of one 
+ * node per instruction.
+ * <p>
+ * The blocks are the same built by a {@link BasicBlockGraphNodeJoiner} over 
+ * the graph of instructions: an instruction is joined to its only successor 
+ * when it is not a <code>GOTO</code>, the successor has no other predecessor, 
+ * is not the first instruction and is covered by the same handlers. The 
+ * leaders are the instructions that are not joined to a predecessor. As the 
+ * joiner only joins the nodes it can reach from the root, instructions out 
+ * of the blocks reached from the root keep a node each, and the parents of 
+ * every node are listed in the order the joiner leaves them.
+ * <p>
+ * When the analyzer factors the exception flow, instructions are joined 
+ * when they have the same handler range, and a block shares the range of 
+ * its instructions if any of them has exception flow (see 
+ * {@link HandlerRange}).
+ * <p>
+ * A builder can be reused, one method at a time.
+ */
+public class BasicBlockBuilder {
+	
+	/** first successor of each instruction in succ, plus the end */
+	private int[] succStart = new int[0];
+	
+	private int[] succ = new int[0];
+	
+	/** first predecessor of each instruction in pred, plus the end */
+	private int[] predStart = new int[0];
+	
+	private int[] pred = new int[0];
+	
+	/** first handler of each instruction in handlers, plus the end */
+	private int[] handlerStart = new int[0];
+	
+	private int[] handlers = new int[0];
+	
+	/** the instruction joined to each instruction, or -1 */
+	private int[] next = new int[0];
+	
+	/** whether some instruction is joined to each instruction */
+	private boolean[] joined = new boolean[0];
+	
+	/** the last instruction of each block, indexed by leader */
+	private int[] tail = new int[0];
+	
+	/** the order the blocks are reached from the root, indexed by leader (-1 if not reached) */
+	private int[] order = new int[0];
+	
+	/** the handler range of each block, indexed by leader (-1 if it has no exception flow) */
+	private int[] blockRange = new int[0];
+	
+	private HandlerRange[] ranges = new HandlerRange[0];
+	
+	/** marks used to compare the handlers of two instructions */
+	private int[] marks = new int[0];
+	
+	private int mark;
+	
+	private int[] stack = new int[16];
+	
+	/** parents that are moved to the end of the parents list */
+	private long[] moved = new long[16];
+	
+	private GraphNode[] nodes = new GraphNode[0];
+	
+	/**
+	 * Builds the basic blocks of the last method analyzed
+	 * 
+	 * @param code
+	 *            the code of the method
+	 * @param analyzer
+	 *            the analyzer of the method
+	 * @param normalFlow
+	 *            if the normal flow edges should be added
+	 * @param exceptionFlow
+	 *            if the exception flow edges (or the handler ranges, if the 
+	 *            analyzer factors the exception flow) should be added
+	 * @return the block of the first instruction, or <code>null</code> if 
+	 *         some handler starts in the middle of a block, in which case 
+	 *         the blocks should be built by a joiner
+	 */
+	public GraphNode build(final MethodCode code, 
+						   final ControlFlowAnalyzer analyzer, 
+						   final boolean normalFlow, 
+						   final boolean exceptionFlow) {
+		
+		final int size = analyzer.getInstructionCount();
+		final boolean factored = exceptionFlow && analyzer.isFactored();
+		
+		ensureCapacity(size);
+		
+		index(normalFlow ? analyzer.getEdgeSet() : null, size, false);
+		index(exceptionFlow && !factored ? analyzer.getExceptionEdgeSet() : null, size, true);
+		
+		// Leaders: instructions that are not joined to its predecessor
+		Arrays.fill(joined, 0, size, false);
+		for (int i = 0; i < size; i++) {
+			next[i] = -1;
+			if (succStart[i + 1] - succStart[i] == 1 
+					&& code.getOpcode(i) != Opcodes.GOTO) {
+				
+				final int j = succ[succStart[i]];
+				if (j != 0 && predStart[j + 1] - predStart[j] == 1 && (factored 
+						? analyzer.getHandlerRange(i) == analyzer.getHandlerRange(j) 
+						: sameHandlers(i, j))) {
+					next[i] = j;
+					joined[j] = true;
+				}
+			}
+		}
+		for (int i = 0; i < handlerStart[size]; i++) {
+			if (joined[handlers[i]]) {
+				return null;
+			}
+		}
+		if (factored) {
+			for (int r = 0; r < analyzer.getHandlerRangeCount(); r++) {
+				for (int i = 0; i < analyzer.getHandlerCount(r); i++) {
+					if (joined[analyzer.getHandler(r, i)]) {
+						return null;
+					}
+				}
+			}
+			if (ranges.length < analyzer.getHandlerRangeCount()) {
+				ranges = new HandlerRange[analyzer.getHandlerRangeCount()];
+			}
+		}
+		
+		// Blocks reached from the root, in the order the joiner visits them
+		Arrays.fill(order, 0, size, -1);
+		int visited = 0;
+		int top = 0;
+		stack[top++] = 0;
+		while (top > 0) {
+			final int leader = stack[top - 1];
+			if (order[leader] == -1) {
+				order[leader] = visited++;
+				int last = leader;
+				boolean flow = factored && analyzer.hasExceptionFlow(leader);
+				while (next[last] != -1) {
+					last = next[last];
+					flow |= factored && analyzer.hasExceptionFlow(last);
+				}
+				tail[leader] = last;
+				blockRange[leader] = flow ? analyzer.getHandlerRange(leader) : -1;
+				final int r = blockRange[leader];
+				final int length = top + succStart[last + 1] - succStart[last] 
+						+ handlerStart[leader + 1] - handlerStart[leader] 
+						+ (r != -1 ? analyzer.getHandlerCount(r) : 0);
+				if (length > stack.length) {
+					stack = Arrays.copyOf(stack, Math.max(length, stack.length * 2));
+				}
+				for (int i = succStart[last]; i < succStart[last + 1]; i++) {
+					stack[top++] = succ[i];
+				}
+				for (int i = handlerStart[leader]; i < handlerStart[leader + 1]; i++) {
+					stack[top++] = handlers[i];
+				}
+				if (r != -1) {
+					for (int i = 0; i < analyzer.getHandlerCount(r); i++) {
+						stack[top++] = analyzer.getHandler(r, i);
+					}
+				}
+			} else {
+				top--;
+			}
+		}
+		
+		// Nodes: one per block reached, one per instruction elsewhere
+		for (int i = 0; i < size; i++) {
+			if (order[i] != -1) {
+				final GraphNode node = new GraphNode(i);
+				for (int j = i; j != -1; j = next[j]) {
+					node.instructions.add(code.getInstruction(j));
+					nodes[j] = node;
+				}
+			}
+		}
+		for (int i = 0; i < size; i++) {
+			if (nodes[i] == null && analyzer.isReachable(i)) {
+				final GraphNode node = new GraphNode(i);
+				node.instructions.add(code.getInstruction(i));
+				nodes[i] = node;
+				tail[i] = i;
+				blockRange[i] = factored && analyzer.hasExceptionFlow(i) ? analyzer.getHandlerRange(i) : -1;
+			}
+		}
+		
+		for (int i = 0; i < size; i++) {
+			final GraphNode node = nodes[i];
+			if (node != null && node.id == i) {
+				link(node, i, analyzer);
+			}
+		}
+		
+		final GraphNode root = nodes[0];
+		Arrays.fill(nodes, 0, size, null);
+		if (factored) {
+			Arrays.fill(ranges, 0, analyzer.getHandlerRangeCount(), null);
+		}
+		return root;
+	}
+	
+	private void link(final GraphNode node, final int leader, final ControlFlowAnalyzer analyzer) {
+		
+		final int last = tail[leader];
+		for (int i = succStart[last]; i < succStart[last + 1]; i++) {
+			node.appendChild(nodes[succ[i]]);
+		}
+		for (int i = handlerStart[leader]; i < handlerStart[leader + 1]; i++) {
+			node.addExceptionChild(nodes[handlers[i]]);
+		}
+		final int r = blockRange[leader];
+		if (r != -1) {
+			if (ranges[r] == null) {
+				ranges[r] = HandlerRange.create(r, analyzer, nodes);
+			}
+			node.setHandlerRange(ranges[r]);
+		}
+		
+		// the joiner moves a parent to the end of the list when the parent 
+		// is joined to other nodes, so these parents come last, in the order 
+		// the joiner has visited them
+		int count = 0;
+		for (int i = predStart[leader]; i < predStart[leader + 1]; i++) {
+			final GraphNode parent = nodes[pred[i]];
+			if (parent.id == pred[i]) {
+				node.appendParent(parent);
+			} else {
+				if (count == moved.length) {
+					moved = Arrays.copyOf(moved, count * 2);
+				}
+				moved[count++] = ((long) order[parent.id] << 32) | parent.id;
+			}
+		}
+		if (count > 1) {
+			Arrays.sort(moved, 0, count);
+		}
+		for (int i = 0; i < count; i++) {
+			node.appendParent(nodes[(int) moved[i]]);
+		}
+	}
+	
+	private boolean sameHandlers(final int i, final int j) {
+		final int length = handlerStart[i + 1] - handlerStart[i];
+		if (length != handlerStart[j + 1] - handlerStart[j]) {
+			return false;
+		}
+		if (length == 0) {
+			return true;
+		}
+		mark++;
+		for (int k = handlerStart[i]; k < handlerStart[i + 1]; k++) {
+			marks[handlers[k]] = mark;
+		}
+		for (int k = handlerStart[j]; k < handlerStart[j + 1]; k++) {
+			if (marks[handlers[k]] != mark) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Indexes the edges by source (and the normal edges also by destination), 
+	 * keeping the order the edges were found
+	 */
+	private void index(final EdgeSet edges, final int size, final boolean exception) {
+		
+		final int count = edges == null ? 0 : edges.size();
+		
+		if (exception) {
+			if (handlers.length < count) {
+				handlers = new int[count];
+			}
+			index(edges, count, size, true, handlerStart, handlers);
+		} else {
+			if (succ.length < count) {
+				succ = new int[count];
+				pred = new int[count];
+			}
+			index(edges, count, size, true, succStart, succ);
+			index(edges, count, size, false, predStart, pred);
+		}
+	}
+	
+	private static void index(final EdgeSet edges, 
+							  final int count, 
+							  final int size, 
+							  final boolean bySource, 
+							  final int[] start, 
+							  final int[] values) {
+		
+		Arrays.fill(start, 0, size + 1, 0);
+		for (int i = 0; i < count; i++) {
+			start[(bySource ? edges.src(i) : edges.dest(i)) + 1]++;
+		}
+		for (int i = 0; i < size; i++) {
+			start[i + 1] += start[i];
+		}
+		// start[k] is used as the position of the next value of k
+		for (int i = 0; i < count; i++) {
+			if (bySource) {
+				values[start[edges.src(i)]++] = edges.dest(i);
+			} else {
+				values[start[edges.dest(i)]++] = edges.src(i);
+			}
+		}
+		for (int i = size; i > 0; i--) {
+			start[i] = start[i - 1];
+		}
+		start[0] = 0;
+	}
+	
+	private void ensureCapacity(final int size) {
+		if (next.length < size) {
+			final int length = Math.max(size, next.length * 2);
+			succStart = new int[length + 1];
+			predStart = new int[length + 1];
+			handlerStart = new int[length + 1];
+			next = new int[length];
+			joined = new boolean[length];
+			tail = new int[length];
+			order = new int[length];
+			blockRange = new int[length];
+			marks = new int[length];
+			mark = 0;
+			nodes = new GraphNode[length];
+		}
+	}
+	
+}
@@ -84,7 +84,7 @@ public class BasicBlockGraphNodeJoiner extends GraphNodeVisitor {
 				node.addChildren(children);
 				child.removeChildren(children);					
 				
-				node.instructions.addAll(child.instructions);
+				node.appendInstructions(child);
 			} 
 			
 			else {
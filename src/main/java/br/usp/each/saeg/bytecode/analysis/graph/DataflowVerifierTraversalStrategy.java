@@ -30,17 +30,35 @@
  */
 package br.usp.each.saeg.bytecode.analysis.graph;
 
-import java.util.Comparator;
-import java.util.HashSet;
-import java.util.Set;
-import java.util.TreeSet;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
 
+import br.usp.each.saeg.bytecode.analysis.graph.dataflow.DataflowResult;
+import br.usp.each.saeg.bytecode.analysis.graph.dataflow.DataflowSolver;
 import br.usp.each.saeg.bytecode.analysis.graph.defuse.DefUseFrameComputer;
+import br.usp.each.saeg.bytecode.analysis.graph.defuse.OperandStackLattice.State;
 
+/**
+ * Traverses a graph as the dataflow verifier of the JVM does, visiting nodes 
+ * until the operand stacks computed by the {@link DefUseFrameComputer} reach 
+ * a fixpoint. The stacks are solved by a {@link DataflowSolver} over the 
+ * nodes reachable from the origin, which selects nodes in reverse postorder, 
+ * so a node is usually visited after all its predecessors (except for back 
+ * edges).
+ */
 public class DataflowVerifierTraversalStrategy implements GraphTraveralStrategy {
 
 	private final DefUseFrameComputer computer;
 	
+	/** nodes reached by the last traversal, starting by the origin */
+	private List<GraphNode> nodes = new ArrayList<GraphNode>();
+	
+	/** index of each node in the solver, indexed by node id */
+	private int[] index = new int[0];
+	
+	private DataflowResult<State> result;
+	
 	public DataflowVerifierTraversalStrategy(final DefUseFrameComputer computer) {
 		this.computer = computer;
 	}
@@ -48,84 +66,94 @@ public class DataflowVerifierTraversalStrategy implements GraphTraveralStrategy
 	@Override
 	public void traverse(final GraphNode origin) {
 		
-		// to control already visited nodes
-		final Set<Integer> visitedNodes = new HashSet<Integer>();
+		nodes = reachable(origin);
 		
-		// to control 'changed' nodes
-		final TreeSet<GraphNode> changed = new TreeSet<GraphNode>(new Comparator<GraphNode>() {
-			@Override
-			public int compare(GraphNode o1, GraphNode o2) {
-				return o1.id - o2.id;
-			}
-		});
+		final DataflowSolver solver = new DataflowSolver(nodes);
 		
 		computer.start(origin);
+		result = solver.solve(computer.getProblem(solver));
+		computer.end(origin);
 		
-		visitedNodes.add(origin.id);
-		changed.add(origin);
-		
-		// Step 1
-		// Select a node whose "changed" bit is set. If no node remains 
-		// whose "changed" bit is set, the method has successfully been verified. 
-		while (!changed.isEmpty()) {
-			// Step 1 (cont.)
-			// Otherwise, turn off the "changed" bit of the selected node.			
-			GraphNode node = changed.first();
-			changed.remove(node);
-			
-			// Step 2
-			// Model the effect of the node execution on the operand stack
-			computer.visit(node);
-			
-			// Step 3
-			// Determine the nodes that can follow the current node.
-			for (final GraphNode child : node.getChildren()) {
-				
-				// Step 4
-				// Merge the state of the operand stack at the end of the execution 
-				// of the current node into each of the successor nodes
-				
-				if (visitedNodes.add(child.id)) {
-					// If this is the first time the successor node has been
-					// visited, record that the operand stack values calculated in
-					// steps 2 and 3 are the state of the operand stack prior to
-					// executing the successor node. Set the "changed" bit for the
-					// successor node.
-					
-					// Visit edge propagates the stack state from source node to destination node
-					computer.visitEdge(node, child);
-					changed.add(child);
-				}
-				
-				else {
-					// If the successor node has been seen before, merge the operand stack values
-					// calculated in steps 2 and 3 into the values already there. 
-					// Set the "changed" bit if there is any modification to the values.
-					
-					if (computer.visitEdgeMerge(node, child)) {
-						changed.add(child);
-					}
-				}
-				
-			}
-			
-			// Do the same thing to exception edges
-			for (final GraphNode child : node.getExceptionChildren()) {
-				if (visitedNodes.add(child.id)) {
-					// In the special case of control transfer through an exception edge, 
-					// the operand stack is set to contain a single object of the exception type.
-					computer.visitExceptionEdge(node, child);
-					changed.add(child);
-				} else {
-					// Do nothing here
-				}
-			}
-			
-			// Continue at step 1...
+	}
+	
+	/**
+	 * Gets the number of nodes reached by the last traversal
+	 * 
+	 * @return the number of nodes reached by the last traversal
+	 */
+	public int getNodeCount() {
+		return nodes.size();
+	}
+	
+	/**
+	 * Gets the number of node visits of the last traversal
+	 * 
+	 * @return the number of node visits of the last traversal
+	 */
+	public int getIterations() {
+		return result == null ? 0 : result.getIterations();
+	}
+	
+	/**
+	 * Gets the largest number of visits of a single node in the last traversal
+	 * 
+	 * @return the largest number of visits of a single node
+	 */
+	public int getMaxIterations() {
+		int max = 0;
+		for (int i = 0; i < nodes.size(); i++) {
+			max = Math.max(max, result.getIterations(i));
 		}
+		return max;
+	}
+	
+	/**
+	 * Gets the number of visits of a node in the last traversal
+	 * 
+	 * @param node the node
+	 * @return the number of visits of the node (zero if it was not reached)
+	 */
+	public int getIterations(final GraphNode node) {
+		if (node.id < 0 || node.id >= index.length) {
+			return 0;
+		}
+		final int i = index[node.id];
+		return i < nodes.size() && nodes.get(i) == node ? result.getIterations(i) : 0;
+	}
+	
+	/**
+	 * Collects the nodes reachable from the origin, following normal and 
+	 * exception edges, and fills the index of each node.
+	 */
+	private List<GraphNode> reachable(final GraphNode origin) {
 		
-		computer.end(origin);
+		final List<GraphNode> reached = new ArrayList<GraphNode>();
+		final BitSet seen = new BitSet();
+		
+		seen.set(origin.id);
+		reached.add(origin);
 		
+		// the list is the queue of a breadth-first search
+		for (int i = 0; i < reached.size(); i++) {
+			final GraphNode node = reached.get(i);
+			add(node.getChildren(), reached, seen);
+			add(node.getExceptionChildren(), reached, seen);
+		}
+		
+		index = new int[seen.length()];
+		for (int i = 0; i < reached.size(); i++) {
+			index[reached.get(i).id] = i;
+		}
+		return reached;
+	}
+	
+	private static void add(final GraphNode[] nodes, final List<GraphNode> reached, final BitSet seen) {
+		for (final GraphNode node : nodes) {
+			if (!seen.get(node.id)) {
+				seen.set(node.id);
+				reached.add(node);
+			}
+		}
 	}
 
 }
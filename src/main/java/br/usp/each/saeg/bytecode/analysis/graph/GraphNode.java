@@ -31,7 +31,9 @@
 package br.usp.each.saeg.bytecode.analysis.graph;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 import br.usp.each.saeg.bytecode.analysis.BytecodeInstruction;
@@ -55,6 +57,12 @@ public class GraphNode {
 	
 	private final List<GraphNode> exceptionChildren = new ArrayList<GraphNode>(1);
 	
+	/** the handlers shared with other nodes, instead of exception children */
+	private HandlerRange handlerRange;
+	
+	/** the synthetic definitions, created on the first one */
+	private SyntheticDefinitions definitions;
+	
 	/**
 	 * Creates a node of a graph
 	 * 
@@ -98,9 +106,168 @@ public class GraphNode {
 	}
 	
 	public GraphNode[] getExceptionChildren() {
+		if (handlerRange != null) {
+			return handlerRange.getHandlers();
+		}
 		return exceptionChildren.toArray(new GraphNode[exceptionChildren.size()]);
 	}
 	
+	/**
+	 * Gets the handler range of the node, if its exception flow is factored
+	 * 
+	 * @return the handler range, or <code>null</code> if the node has its own 
+	 *         exception children (or no exception flow at all)
+	 */
+	public HandlerRange getHandlerRange() {
+		return handlerRange;
+	}
+	
+	/**
+	 * Replaces the exception children of the node by the handlers of a range, 
+	 * which are shared with other nodes. Adding or removing an exception child 
+	 * afterwards gives the node exception children of its own again.
+	 * 
+	 * @param handlerRange the handler range, or <code>null</code>
+	 */
+	public void setHandlerRange(final HandlerRange handlerRange) {
+		exceptionChildren.clear();
+		this.handlerRange = handlerRange;
+	}
+	
+	/**
+	 * Adds synthetic definitions at the entry of the node, before the first 
+	 * instruction (e.g. the definitions of the parameters of the method)
+	 * 
+	 * @param index the position among the entry definitions
+	 * @param definitions the instructions that hold the definitions
+	 */
+	public void addEntryDefinitions(final int index, final List<BytecodeInstruction> definitions) {
+		if (this.definitions == null) {
+			this.definitions = new SyntheticDefinitions();
+		}
+		this.definitions.addEntries(index, definitions);
+	}
+	
+	/**
+	 * Adds a synthetic definition at the end of the entry definitions
+	 * 
+	 * @param definition the instruction that holds the definition
+	 */
+	public void addEntryDefinition(final BytecodeInstruction definition) {
+		addEntryDefinitions(definitions == null ? 0 : definitions.entryCount(), 
+				Collections.singletonList(definition));
+	}
+	
+	/**
+	 * Adds a synthetic definition made by an instruction of the node besides 
+	 * its own (e.g. the components of an array stored in a variable). The 
+	 * definitions of the node are expected to be added in instruction order.
+	 * 
+	 * @param instruction the instruction of the node that makes the definition
+	 * @param definition the instruction that holds the definition
+	 */
+	public void addDefinition(final BytecodeInstruction instruction, final BytecodeInstruction definition) {
+		if (definitions == null) {
+			definitions = new SyntheticDefinitions();
+		}
+		definitions.add(instruction, definition);
+	}
+	
+	/**
+	 * Gets the synthetic definitions at the entry of the node
+	 * 
+	 * @return the instructions that hold the entry definitions
+	 */
+	public List<BytecodeInstruction> getEntryDefinitions() {
+		if (definitions == null) {
+			return new ArrayList<BytecodeInstruction>(0);
+		}
+		return definitions.getEntries();
+	}
+	
+	/**
+	 * Gets the synthetic definitions made by an instruction of the node
+	 * 
+	 * @param instruction an instruction of the node
+	 * @return the instructions that hold the definitions
+	 */
+	public List<BytecodeInstruction> getDefinitions(final BytecodeInstruction instruction) {
+		if (definitions == null) {
+			return new ArrayList<BytecodeInstruction>(0);
+		}
+		return definitions.get(instruction);
+	}
+	
+	/**
+	 * Removes the synthetic definitions made by the instructions of the node 
+	 * (the entry definitions are kept)
+	 */
+	public void clearDefinitions() {
+		if (definitions != null) {
+			definitions.clear();
+		}
+	}
+	
+	/**
+	 * Removes the synthetic definitions whose frame was removed
+	 */
+	public void removeEmptyDefinitions() {
+		if (definitions != null) {
+			definitions.removeEmpty();
+		}
+	}
+	
+	/**
+	 * Gets the instructions of the node along with the synthetic definitions: 
+	 * the entry definitions come first and the definitions made by an 
+	 * instruction follow it. The list is the instructions list itself when 
+	 * the node has no synthetic definitions, so it should not be modified.
+	 * 
+	 * @return the instructions and the synthetic definitions of the node
+	 */
+	public List<BytecodeInstruction> getInstructionsAndDefinitions() {
+		if (definitions == null || definitions.isEmpty()) {
+			return instructions;
+		}
+		final List<BytecodeInstruction> list = new ArrayList<BytecodeInstruction>(
+				definitions.entryCount() + instructions.size() + definitions.size());
+		definitions.appendTo(instructions, list);
+		return list;
+	}
+	
+	/**
+	 * Appends the instructions of another node, along with its synthetic 
+	 * definitions. The entry definitions of the other node follow the last 
+	 * instruction of this node.
+	 * 
+	 * @param other the node whose instructions are appended
+	 */
+	void appendInstructions(final GraphNode other) {
+		final SyntheticDefinitions defs = other.definitions;
+		if (defs != null) {
+			for (int i = 0; i < defs.entryCount(); i++) {
+				if (instructions.isEmpty()) {
+					addEntryDefinition(defs.entry(i));
+				} else {
+					addDefinition(instructions.get(instructions.size() - 1), defs.entry(i));
+				}
+			}
+			for (int i = 0; i < defs.size(); i++) {
+				addDefinition(defs.anchor(i), defs.definition(i));
+			}
+		}
+		instructions.addAll(other.instructions);
+	}
+	
+	/**
+	 * Gets the synthetic definitions, if any
+	 * 
+	 * @return the synthetic definitions or <code>null</code>
+	 */
+	SyntheticDefinitions definitions() {
+		return definitions;
+	}
+	
 	/**
 	 * Adds a child to node
 	 * 
@@ -169,18 +336,63 @@ public class GraphNode {
 		}
 	}
 	
+	/**
+	 * Appends a child without updating the parents of the child, which are 
+	 * linked by {@link #appendParent(GraphNode)}. Used to build a graph 
+	 * whose lists must be in a given order.
+	 * 
+	 * @param child the child to be appended
+	 */
+	void appendChild(final GraphNode child) {
+		children.add(child);
+	}
+	
+	/**
+	 * Appends a parent without updating the children of the parent
+	 * 
+	 * @param parent the parent to be appended
+	 * @see #appendChild(GraphNode)
+	 */
+	void appendParent(final GraphNode parent) {
+		parents.add(parent);
+	}
+	
 	public void addExceptionChild(final GraphNode child) {
+		unfactor();
 		if ((child != null) && !exceptionChildren.contains(child)) {
 			exceptionChildren.add(child);
 		}
 	}
 	
 	public void removeExceptionChildren(final Collection<GraphNode> children) {
+		unfactor();
 		for (final GraphNode child : children) {
 			exceptionChildren.remove(child);
 		}
 	}
 	
+	private void unfactor() {
+		if (handlerRange != null) {
+			exceptionChildren.addAll(Arrays.asList(handlerRange.getHandlers()));
+			handlerRange = null;
+		}
+	}
+	
+	/**
+	 * Replaces the parents list by the same parents in the given order. 
+	 * Used to restore a graph exactly as it was written.
+	 * 
+	 * @param parents the parents of the node, in the new order
+	 */
+	void reorderParents(final GraphNode[] parents) {
+		if (parents.length != this.parents.size() 
+				|| !this.parents.containsAll(Arrays.asList(parents))) {
+			throw new IllegalArgumentException("Not the parents of node " + id);
+		}
+		this.parents.clear();
+		this.parents.addAll(Arrays.asList(parents));
+	}
+	
 	/**
 	 * Object overwrite methods
 	 */
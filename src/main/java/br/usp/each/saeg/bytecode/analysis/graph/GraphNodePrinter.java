@@ -58,7 +58,7 @@ public class GraphNodePrinter extends GraphNodeVisitor {
 				node.id, 
 				new GraphNodeArrayPrinter(node.getParents()),
 				new GraphNodeArrayPrinter(node.getChildren()),
-				new BytecodeInstructionListPrinter(node.instructions));
+				new BytecodeInstructionListPrinter(node.getInstructionsAndDefinitions()));
 		
 		ps.println(value);
 
@@ -0,0 +1,113 @@
+/***
+ * bytecode-analysis: a prototype-library based on ASM 4 that
+ *                    computes definitions/uses of each instruction
+ * Copyright (c) 2014 University of Sao Paulo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package br.usp.each.saeg.bytecode.analysis.graph;
+
+import java.util.Arrays;
+
+import br.usp.each.saeg.bytecode.analysis.ControlFlowAnalyzer;
+
+/**
+ * The handlers of the instructions covered by the same try/catch blocks. In 
+ * a graph with factored exception flow, the nodes of these instructions 
+ * share a handler range instead of having exception children of their own 
+ * (see {@link GraphNode#getHandlerRange()}).
+ */
+public final class HandlerRange {
+	
+	/** the identifier of the range in its method */
+	public final int id;
+	
+	private final GraphNode[] handlers;
+	
+	/**
+	 * Creates a handler range
+	 * 
+	 * @param id the identifier of the range in its method
+	 * @param handlers the first nodes of the handlers, in try/catch block order
+	 */
+	public HandlerRange(final int id, final GraphNode[] handlers) {
+		this.id = id;
+		this.handlers = handlers.clone();
+	}
+	
+	/**
+	 * Creates a handler range found by an analyzer
+	 * 
+	 * @param range the range, as given by the analyzer
+	 * @param analyzer the analyzer of the method
+	 * @param nodes the nodes of the method, indexed by instruction
+	 * @return the handler range
+	 */
+	public static HandlerRange create(final int range, 
+									  final ControlFlowAnalyzer analyzer, 
+									  final GraphNode[] nodes) {
+		
+		final GraphNode[] handlers = new GraphNode[analyzer.getHandlerCount(range)];
+		for (int i = 0; i < handlers.length; i++) {
+			handlers[i] = nodes[analyzer.getHandler(range, i)];
+		}
+		return new HandlerRange(range, handlers);
+	}
+	
+	/**
+	 * Gets the number of handlers
+	 * 
+	 * @return the number of handlers
+	 */
+	public int size() {
+		return handlers.length;
+	}
+	
+	/**
+	 * Gets a handler
+	 * 
+	 * @param i the position of the handler
+	 * @return the first node of the handler
+	 */
+	public GraphNode get(final int i) {
+		return handlers[i];
+	}
+	
+	/**
+	 * Gets the handlers
+	 * 
+	 * @return the first nodes of the handlers, in try/catch block order
+	 */
+	public GraphNode[] getHandlers() {
+		return handlers.clone();
+	}
+	
+	@Override
+	public String toString() {
+		return id + Arrays.toString(handlers);
+	}
+	
+}
@@ -30,9 +30,8 @@
  */
 package br.usp.each.saeg.bytecode.analysis.graph;
 
-import java.util.HashSet;
-import java.util.Set;
-import java.util.Stack;
+import java.util.Arrays;
+import java.util.BitSet;
 
 public class PreOrderTraversalStrategy implements GraphTraveralStrategy {
 
@@ -46,34 +45,44 @@ public class PreOrderTraversalStrategy implements GraphTraveralStrategy {
 	public void traverse(final GraphNode origin) {
 		
 		// to control already visited nodes
-		final Set<Integer> visitedNodes = new HashSet<Integer>();
+		final BitSet visitedNodes = new BitSet();
 		
 		// to avoid recursive calls
-		final Stack<GraphNode> stack = new Stack<GraphNode>();
+		GraphNode[] stack = new GraphNode[16];
+		int top = 0;
 		
 		visitor.start(origin);
 		
-		stack.push(origin);
+		stack[top++] = origin;
 		
-		while (!stack.isEmpty()) {
+		while (top > 0) {
 			
-			final GraphNode top = stack.peek();
+			final GraphNode node = stack[top - 1];
 			
-			if (visitedNodes.add(top.id)) {
+			if (!visitedNodes.get(node.id)) {
 				
-				visitor.visit(top);
+				visitedNodes.set(node.id);
 				
-				for (final GraphNode child : top.getChildren()) {
-					visitor.visitEdge(top, child);
-					stack.push(child);
+				visitor.visit(node);
+				
+				final GraphNode[] children = node.getChildren();
+				final GraphNode[] exceptionChildren = node.getExceptionChildren();
+				final int length = top + children.length + exceptionChildren.length;
+				if (length > stack.length) {
+					stack = Arrays.copyOf(stack, Math.max(length, stack.length * 2));
+				}
+				
+				for (final GraphNode child : children) {
+					visitor.visitEdge(node, child);
+					stack[top++] = child;
 				}
-				for (final GraphNode child : top.getExceptionChildren()) {
-					visitor.visitExceptionEdge(top, child);
-					stack.push(child);
+				for (final GraphNode child : exceptionChildren) {
+					visitor.visitExceptionEdge(node, child);
+					stack[top++] = child;
 				}
 				
 			} else {
-				stack.pop();
+				stack[--top] = null;
 			}
 			
 		}
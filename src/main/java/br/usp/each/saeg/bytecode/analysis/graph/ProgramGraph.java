@@ -30,6 +30,7 @@
  */
 package br.usp.each.saeg.bytecode.analysis.graph;
 
+import br.usp.each.saeg.bytecode.analysis.BytecodeInstruction;
 import br.usp.each.saeg.bytecode.analysis.domain.Method;
 
 /**
@@ -80,6 +81,19 @@ public class ProgramGraph extends Graph {
 		return method;
 	}
 
+	/**
+	 * Detaches every instruction of the CFG from the ASM instructions, so 
+	 * the CFG no longer retains the instruction list of the method (see 
+	 * {@link BytecodeInstruction#detach()})
+	 */
+	public void detach() {
+		for (final GraphNode node : getNodes()) {
+			for (final BytecodeInstruction insn : node.instructions) {
+				insn.detach();
+			}
+		}
+	}
+
 	@Override
 	public String toString() {
 		return String.format("Program Graph for [%s]", method);
@@ -0,0 +1,442 @@
+/***
+ * bytecode-analysis: a prototype-library based on ASM 4 that
+ *                    computes definitions/uses of each instruction
+ * Copyright (c) 2014 University of Sao Paulo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package br.usp.each.saeg.bytecode.analysis.graph;
+
+import static br.usp.each.saeg.bytecode.analysis.graph.ProgramGraphWriter.ARRAY_COMPONENT;
+import static br.usp.each.saeg.bytecode.analysis.graph.ProgramGraphWriter.FRAME;
+import static br.usp.each.saeg.bytecode.analysis.graph.ProgramGraphWriter.GRAPH;
+import static br.usp.each.saeg.bytecode.analysis.graph.ProgramGraphWriter.LABEL;
+import static br.usp.each.saeg.bytecode.analysis.graph.ProgramGraphWriter.LINE;
+import static br.usp.each.saeg.bytecode.analysis.graph.ProgramGraphWriter.LOCAL;
+import static br.usp.each.saeg.bytecode.analysis.graph.ProgramGraphWriter.MAGIC;
+import static br.usp.each.saeg.bytecode.analysis.graph.ProgramGraphWriter.OBJECT_FIELD;
+import static br.usp.each.saeg.bytecode.analysis.graph.ProgramGraphWriter.STATIC_FIELD;
+import static br.usp.each.saeg.bytecode.analysis.graph.ProgramGraphWriter.UTF8;
+import static br.usp.each.saeg.bytecode.analysis.graph.ProgramGraphWriter.VERSION;
+import static br.usp.each.saeg.bytecode.analysis.graph.ProgramGraphWriter.hasOperand;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import br.usp.each.saeg.bytecode.analysis.BytecodeInstruction;
+import br.usp.each.saeg.bytecode.analysis.BytecodeInstructionType;
+import br.usp.each.saeg.bytecode.analysis.MethodCode;
+import br.usp.each.saeg.bytecode.analysis.OpcodeDescriptor;
+import br.usp.each.saeg.bytecode.analysis.graph.defuse.ArrayComponent;
+import br.usp.each.saeg.bytecode.analysis.graph.defuse.DefUseFrame;
+import br.usp.each.saeg.bytecode.analysis.graph.defuse.Local;
+import br.usp.each.saeg.bytecode.analysis.graph.defuse.ObjectField;
+import br.usp.each.saeg.bytecode.analysis.graph.defuse.StaticField;
+import br.usp.each.saeg.bytecode.analysis.graph.defuse.Variable;
+
+/**
+ * Reads program graphs written by a {@link ProgramGraphWriter}.
+ * <p>
+ * A graph can be bound to the method it was built from, in which case its 
+ * instructions are the instructions of the method (or of its recorded code, 
+ * see {@link MethodCode}), or read on its own, in 
+ * which case every instruction is detached: it has the written type, opcode, 
+ * operand and index, but no ASM instruction (see 
+ * {@link BytecodeInstruction#detached(BytecodeInstructionType, int, int, int)}).
+ */
+public class ProgramGraphReader {
+	
+	private final InputStream in;
+	
+	private String[] strings;
+	
+	private Variable[] pool;
+	
+	/**
+	 * Creates a reader and reads the stream header
+	 * 
+	 * @param in the input stream (should be buffered)
+	 * @throws IOException when an I/O error occurs or the stream was not 
+	 *         written by a compatible {@link ProgramGraphWriter}
+	 */
+	public ProgramGraphReader(final InputStream in) throws IOException {
+		this.in = in;
+		final int magic = readInt();
+		if (magic != MAGIC) {
+			throw new IOException("Not a program graph stream");
+		}
+		final int version = readInt();
+		if (version != VERSION) {
+			throw new IOException("Unsupported program graph version: " + version);
+		}
+	}
+	
+	/**
+	 * Reads the next program graph, without binding it to a method
+	 * 
+	 * @return the program graph or <code>null</code> at the end of the stream
+	 * @throws IOException when an I/O error occurs or the data is not valid
+	 */
+	public ProgramGraph read() throws IOException {
+		return read(null, null, null);
+	}
+	
+	/**
+	 * Reads the next program graph
+	 * 
+	 * @param owner the name of the class that has the method
+	 * @param method the method of the graph, whose instructions are bound to the graph
+	 * @return the program graph or <code>null</code> at the end of the stream
+	 * @throws IOException when an I/O error occurs or the data is not valid
+	 */
+	public ProgramGraph read(final String owner, final MethodNode method) throws IOException {
+		return read(owner, method, null);
+	}
+	
+	/**
+	 * Reads the next program graph
+	 * 
+	 * @param owner the name of the class that has the method
+	 * @param code the recorded code of the method of the graph, whose 
+	 *             instructions are bound to the graph
+	 * @return the program graph or <code>null</code> at the end of the stream
+	 * @throws IOException when an I/O error occurs or the data is not valid
+	 */
+	public ProgramGraph read(final String owner, final MethodCode code) throws IOException {
+		return read(owner, null, code);
+	}
+	
+	private ProgramGraph read(final String owner, 
+							  final MethodNode method, 
+							  final MethodCode code) throws IOException {
+		
+		final int tag = in.read();
+		if (tag == -1) {
+			return null;
+		}
+		if (tag != GRAPH) {
+			throw new IOException("Invalid graph tag: " + tag);
+		}
+		
+		strings = new String[readSize()];
+		for (int i = 0; i < strings.length; i++) {
+			final byte[] bytes = new byte[readSize()];
+			readFully(bytes);
+			strings[i] = new String(bytes, UTF8);
+		}
+		
+		final String graphOwner = readString();
+		final String graphName = readString();
+		final String graphDesc = readString();
+		
+		pool = new Variable[readSize()];
+		for (int i = 0; i < pool.length; i++) {
+			pool[i] = readVariable(i);
+		}
+		
+		final int size = readSize();
+		if (size == 0) {
+			throw new IOException("Invalid number of nodes: " + size);
+		}
+		
+		final GraphNode[] nodes = new GraphNode[size];
+		
+		for (int i = 0; i < size; i++) {
+			final GraphNode node = new GraphNode(readInt());
+			final int instructions = readSize();
+			for (int j = 0; j < instructions; j++) {
+				node.instructions.add(readInstruction(method, code));
+			}
+			readDefinitions(node);
+			nodes[i] = node;
+		}
+		
+		final GraphNode[][] parents = new GraphNode[size][];
+		
+		for (int i = 0; i < size; i++) {
+			nodes[i].addChildren(readNodes(nodes));
+			for (final GraphNode child : readNodes(nodes)) {
+				nodes[i].addExceptionChild(child);
+			}
+			parents[i] = readNodes(nodes);
+		}
+		
+		// the order of parents can only be restored after every edge is added
+		for (int i = 0; i < size; i++) {
+			try {
+				nodes[i].reorderParents(parents[i]);
+			} catch (final IllegalArgumentException e) {
+				throw new IOException(e.getMessage());
+			}
+		}
+		
+		strings = null;
+		pool = null;
+		
+		if (method != null) {
+			return new ProgramGraph(owner, method.name, method.desc, nodes[0]);
+		}
+		if (code != null) {
+			return new ProgramGraph(owner, code.getName(), code.getDesc(), nodes[0]);
+		}
+		return new ProgramGraph(graphOwner, graphName, graphDesc, nodes[0]);
+	}
+	
+	private BytecodeInstruction readInstruction(final MethodNode method, final MethodCode code) 
+			throws IOException {
+		
+		final int index = readInt() - 1;
+		
+		final BytecodeInstruction insn;
+		if (index == -1) {
+			insn = BytecodeInstruction.definition(null);
+		} else {
+			final int opcode = readByte();
+			final int operand = opcode == LINE || hasOperand(opcode) ? readInt() : 0;
+			if (code != null) {
+				if (index >= code.size()) {
+					throw new IOException("Invalid instruction index: " + index);
+				}
+				insn = code.getInstruction(index);
+				if (!matches(insn, opcode)) {
+					throw new IOException("Instruction mismatch at index: " + index);
+				}
+				if (insn.getOperand() != operand) {
+					throw new IOException("Operand mismatch at index: " + index);
+				}
+			} else if (method == null) {
+				insn = createInstruction(opcode, operand, index);
+			} else if (index < method.instructions.size()) {
+				final AbstractInsnNode node = method.instructions.get(index);
+				if (!matches(node, opcode)) {
+					throw new IOException("Instruction mismatch at index: " + index);
+				}
+				insn = new BytecodeInstruction(node, index);
+				if (insn.getOperand() != operand) {
+					throw new IOException("Operand mismatch at index: " + index);
+				}
+			} else {
+				throw new IOException("Invalid instruction index: " + index);
+			}
+		}
+		
+		insn.frame = readFrame();
+		return insn;
+	}
+	
+	private void readDefinitions(final GraphNode node) throws IOException {
+		
+		final int entries = readSize();
+		for (int i = 0; i < entries; i++) {
+			node.addEntryDefinition(BytecodeInstruction.definition(readFrame()));
+		}
+		
+		final int definitions = readSize();
+		int last = 0;
+		for (int i = 0; i < definitions; i++) {
+			final int position = readInt();
+			if (position < last || position >= node.instructions.size()) {
+				throw new IOException("Invalid definition position: " + position);
+			}
+			node.addDefinition(node.instructions.get(position), 
+					BytecodeInstruction.definition(readFrame()));
+			last = position;
+		}
+	}
+	
+	private DefUseFrame readFrame() throws IOException {
+		final int frame = readInt();
+		if (frame == 0) {
+			return null;
+		}
+		final Variable def = frame == 1 ? null : variable(frame - 2);
+		final int uses = readSize();
+		final List<Variable> list = new ArrayList<Variable>(uses);
+		for (int i = 0; i < uses; i++) {
+			list.add(variable(readInt()));
+		}
+		return new DefUseFrame(def, list);
+	}
+	
+	private static boolean matches(final AbstractInsnNode node, final int opcode) {
+		switch (node.getType()) {
+		case AbstractInsnNode.LABEL:
+			return opcode == LABEL;
+		case AbstractInsnNode.LINE:
+			return opcode == LINE;
+		case AbstractInsnNode.FRAME:
+			return opcode == FRAME;
+		default:
+			return opcode == node.getOpcode();
+		}
+	}
+	
+	private static boolean matches(final BytecodeInstruction insn, final int opcode) {
+		switch (insn.getType()) {
+		case LABEL:
+			return opcode == LABEL;
+		case LINE_NUMBER:
+			return opcode == LINE;
+		case FRAME:
+			return opcode == FRAME;
+		default:
+			return opcode == insn.getOpcode();
+		}
+	}
+	
+	private static BytecodeInstruction createInstruction(final int opcode, 
+														 final int operand, 
+														 final int index) throws IOException {
+		
+		switch (opcode) {
+		case LABEL:
+			return BytecodeInstruction.detached(BytecodeInstructionType.LABEL, -1, 0, index);
+		case LINE:
+			return BytecodeInstruction.detached(BytecodeInstructionType.LINE_NUMBER, -1, operand, index);
+		case FRAME:
+			return BytecodeInstruction.detached(BytecodeInstructionType.FRAME, -1, 0, index);
+		default:
+			final OpcodeDescriptor descriptor = OpcodeDescriptor.get(opcode);
+			if (descriptor == null) {
+				throw new IOException("Invalid opcode: " + opcode);
+			}
+			return BytecodeInstruction.detached(descriptor.type, opcode, operand, index);
+		}
+	}
+	
+	private Variable readVariable(final int index) throws IOException {
+		final int tag = readByte();
+		switch (tag) {
+		case LOCAL: {
+			final int opcode = readInt() - 1;
+			return new Local(opcode, readInt());
+		}
+		case STATIC_FIELD:
+			return new StaticField(readString(), readString(), readString());
+		case OBJECT_FIELD: {
+			final String owner = readString();
+			final String name = readString();
+			final String desc = readString();
+			return new ObjectField(owner, name, desc, reference(index));
+		}
+		case ARRAY_COMPONENT:
+			return new ArrayComponent(reference(index));
+		default:
+			throw new IOException("Invalid variable tag: " + tag);
+		}
+	}
+	
+	/**
+	 * Variables can only reference variables that come before them in the pool
+	 */
+	private Variable reference(final int index) throws IOException {
+		final int ref = readInt();
+		if (ref < 0 || ref >= index) {
+			throw new IOException("Invalid variable reference: " + ref);
+		}
+		return pool[ref];
+	}
+	
+	private Variable variable(final int index) throws IOException {
+		if (index < 0 || index >= pool.length) {
+			throw new IOException("Invalid variable index: " + index);
+		}
+		return pool[index];
+	}
+	
+	private String readString() throws IOException {
+		final int index = readInt();
+		if (index < 0 || index >= strings.length) {
+			throw new IOException("Invalid string index: " + index);
+		}
+		return strings[index];
+	}
+	
+	private GraphNode[] readNodes(final GraphNode[] nodes) throws IOException {
+		final int size = readInt();
+		if (size < 0 || size > nodes.length) {
+			throw new IOException("Invalid number of nodes: " + size);
+		}
+		final GraphNode[] result = new GraphNode[size];
+		for (int i = 0; i < size; i++) {
+			final int index = readInt();
+			if (index < 0 || index >= nodes.length) {
+				throw new IOException("Invalid node index: " + index);
+			}
+			result[i] = nodes[index];
+		}
+		return result;
+	}
+	
+	/**
+	 * Reads a count, which is also used to allocate an array
+	 */
+	private int readSize() throws IOException {
+		final int size = readInt();
+		if (size < 0 || size > 0xFFFFFF) {
+			throw new IOException("Invalid size: " + size);
+		}
+		return size;
+	}
+	
+	private int readInt() throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			final int b = readByte();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed variable-length integer");
+	}
+	
+	private int readByte() throws IOException {
+		final int b = in.read();
+		if (b == -1) {
+			throw new EOFException();
+		}
+		return b;
+	}
+	
+	private void readFully(final byte[] bytes) throws IOException {
+		int off = 0;
+		while (off < bytes.length) {
+			final int n = in.read(bytes, off, bytes.length - off);
+			if (n == -1) {
+				throw new EOFException();
+			}
+			off += n;
+		}
+	}
+	
+}
@@ -0,0 +1,415 @@
+/***
+ * bytecode-analysis: a prototype-library based on ASM 4 that
+ *                    computes definitions/uses of each instruction
+ * Copyright (c) 2014 University of Sao Paulo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package br.usp.each.saeg.bytecode.analysis.graph;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.InsnList;
+
+import br.usp.each.saeg.bytecode.analysis.BytecodeInstruction;
+import br.usp.each.saeg.bytecode.analysis.domain.Method;
+import br.usp.each.saeg.bytecode.analysis.graph.defuse.ArrayComponent;
+import br.usp.each.saeg.bytecode.analysis.graph.defuse.DefUseFrame;
+import br.usp.each.saeg.bytecode.analysis.graph.defuse.Local;
+import br.usp.each.saeg.bytecode.analysis.graph.defuse.ObjectField;
+import br.usp.each.saeg.bytecode.analysis.graph.defuse.StaticField;
+import br.usp.each.saeg.bytecode.analysis.graph.defuse.Value;
+import br.usp.each.saeg.bytecode.analysis.graph.defuse.Variable;
+
+/**
+ * Writes program graphs in a compact binary format, which can be read back 
+ * with a {@link ProgramGraphReader}. A stream starts with a header (magic 
+ * number and format version) followed by any number of graphs.
+ * <p>
+ * Every graph has its own constant pools of strings and variables, so each 
+ * variable is written once and referenced by index. All integers are written 
+ * as variable-length quantities (7 bits per byte). Instructions are written 
+ * as their index in the instruction list of the method, their opcode 
+ * (or kind, for pseudo-instructions) and, for the instructions that have 
+ * one, their operand (see {@link BytecodeInstruction#getOperand()}). 
+ * Instructions that are not in the list 
+ * (i.e. instructions created by the analysis to hold definitions) are written 
+ * as synthetic. The synthetic definitions of a node follow its instructions: 
+ * the entry definitions and then the other definitions, each with the 
+ * position of its instruction in the node. Detached graphs can be written, 
+ * since instructions keep their index.
+ */
+public class ProgramGraphWriter {
+	
+	static final int MAGIC = 0x42415047; // "BAPG"
+	
+	static final int VERSION = 4;
+	
+	static final int GRAPH = 1;
+	
+	static final int LOCAL = 1;
+	
+	static final int STATIC_FIELD = 2;
+	
+	static final int OBJECT_FIELD = 3;
+	
+	static final int ARRAY_COMPONENT = 4;
+	
+	static final int LABEL = 0xFF;
+	
+	static final int LINE = 0xFE;
+	
+	static final int FRAME = 0xFD;
+	
+	static final Charset UTF8 = Charset.forName("UTF-8");
+	
+	private final OutputStream out;
+	
+	private final Map<String, Integer> strings = new HashMap<String, Integer>();
+	
+	private final Map<Variable, Integer> variables = new HashMap<Variable, Integer>();
+	
+	private final List<Variable> pool = new ArrayList<Variable>();
+	
+	/**
+	 * Creates a writer and writes the stream header
+	 * 
+	 * @param out the output stream (should be buffered)
+	 * @throws IOException when an I/O error occurs
+	 */
+	public ProgramGraphWriter(final OutputStream out) throws IOException {
+		this.out = out;
+		writeInt(MAGIC);
+		writeInt(VERSION);
+	}
+	
+	/**
+	 * Writes a program graph whose instructions know their index (as the 
+	 * graphs built by a GraphBuilder or read by a {@link ProgramGraphReader}). 
+	 * Instructions without an index are written as synthetic.
+	 * 
+	 * @param graph the graph to be written
+	 * @throws IOException when an I/O error occurs
+	 */
+	public void write(final ProgramGraph graph) throws IOException {
+		write(graph, null);
+	}
+	
+	/**
+	 * Writes a program graph
+	 * 
+	 * @param graph the graph to be written
+	 * @param instructions the instruction list of the method of the graph, 
+	 *                     where attached instructions are looked up (the 
+	 *                     list may have changed since the graph was built)
+	 * @throws IOException when an I/O error occurs
+	 */
+	public void write(final ProgramGraph graph, final InsnList instructions) throws IOException {
+		
+		final List<GraphNode> nodes = graph.getNodes();
+		
+		final Map<GraphNode, Integer> indexes = new IdentityHashMap<GraphNode, Integer>();
+		for (int i = 0; i < nodes.size(); i++) {
+			indexes.put(nodes.get(i), i);
+		}
+		
+		// constant pools
+		strings.clear();
+		variables.clear();
+		pool.clear();
+		
+		final Method method = graph.getMethod();
+		addString(method.owner);
+		addString(method.name);
+		addString(method.desc);
+		
+		for (final GraphNode node : nodes) {
+			for (final BytecodeInstruction insn : node.getInstructionsAndDefinitions()) {
+				if (insn.frame != null) {
+					if (insn.frame.def != null) {
+						addVariable(insn.frame.def);
+					}
+					for (final Variable use : insn.frame.uses) {
+						addVariable(use);
+					}
+				}
+			}
+		}
+		
+		out.write(GRAPH);
+		
+		final String[] table = new String[strings.size()];
+		for (final Map.Entry<String, Integer> entry : strings.entrySet()) {
+			table[entry.getValue()] = entry.getKey();
+		}
+		writeInt(table.length);
+		for (final String string : table) {
+			final byte[] bytes = string.getBytes(UTF8);
+			writeInt(bytes.length);
+			out.write(bytes);
+		}
+		
+		writeInt(strings.get(method.owner));
+		writeInt(strings.get(method.name));
+		writeInt(strings.get(method.desc));
+		
+		writeInt(pool.size());
+		for (final Variable var : pool) {
+			writeVariable(var);
+		}
+		
+		writeInt(nodes.size());
+		for (final GraphNode node : nodes) {
+			writeInt(node.id);
+			writeInt(node.instructions.size());
+			for (final BytecodeInstruction insn : node.instructions) {
+				writeInstruction(insn, instructions);
+			}
+			writeDefinitions(node);
+		}
+		
+		for (final GraphNode node : nodes) {
+			writeNodes(node.getChildren(), indexes);
+			writeNodes(node.getExceptionChildren(), indexes);
+			writeNodes(node.getParents(), indexes);
+		}
+	}
+	
+	/**
+	 * Checks if an opcode is written with its operand: loads, stores, 
+	 * <code>RET</code>, <code>IINC</code>, <code>BIPUSH</code>, 
+	 * <code>SIPUSH</code> and <code>NEWARRAY</code>
+	 */
+	static boolean hasOperand(final int opcode) {
+		switch (opcode) {
+		case Opcodes.ILOAD:
+		case Opcodes.LLOAD:
+		case Opcodes.FLOAD:
+		case Opcodes.DLOAD:
+		case Opcodes.ALOAD:
+		case Opcodes.ISTORE:
+		case Opcodes.LSTORE:
+		case Opcodes.FSTORE:
+		case Opcodes.DSTORE:
+		case Opcodes.ASTORE:
+		case Opcodes.RET:
+		case Opcodes.IINC:
+		case Opcodes.BIPUSH:
+		case Opcodes.SIPUSH:
+		case Opcodes.NEWARRAY:
+		case Opcodes.MULTIANEWARRAY:
+		case Opcodes.TABLESWITCH:
+			return true;
+		default:
+			return false;
+		}
+	}
+	
+	/**
+	 * Flushes the underlying stream
+	 * 
+	 * @throws IOException when an I/O error occurs
+	 */
+	public void flush() throws IOException {
+		out.flush();
+	}
+	
+	private void addString(final String string) {
+		if (!strings.containsKey(string)) {
+			strings.put(string, strings.size());
+		}
+	}
+	
+	private void addVariable(final Value value) {
+		
+		if (variables.containsKey(value)) {
+			return;
+		}
+		
+		// referenced variables come first in the pool
+		if (value instanceof Local) {
+			// nothing else to be added
+		} else if (value instanceof StaticField) {
+			final StaticField field = (StaticField) value;
+			addString(field.owner);
+			addString(field.name);
+			addString(field.desc);
+		} else if (value instanceof ObjectField) {
+			final ObjectField field = (ObjectField) value;
+			addString(field.owner);
+			addString(field.name);
+			addString(field.desc);
+			addVariable(field.objectref);
+		} else if (value instanceof ArrayComponent) {
+			addVariable(((ArrayComponent) value).arref);
+		} else {
+			throw new IllegalArgumentException("Cannot write value: " + value);
+		}
+		
+		variables.put((Variable) value, pool.size());
+		pool.add((Variable) value);
+	}
+	
+	private void writeVariable(final Variable value) throws IOException {
+		if (value instanceof Local) {
+			final Local local = (Local) value;
+			out.write(LOCAL);
+			writeInt(local.opcode + 1); // parameters have opcode -1
+			writeInt(local.var);
+		} else if (value instanceof StaticField) {
+			final StaticField field = (StaticField) value;
+			out.write(STATIC_FIELD);
+			writeInt(strings.get(field.owner));
+			writeInt(strings.get(field.name));
+			writeInt(strings.get(field.desc));
+		} else if (value instanceof ObjectField) {
+			final ObjectField field = (ObjectField) value;
+			out.write(OBJECT_FIELD);
+			writeInt(strings.get(field.owner));
+			writeInt(strings.get(field.name));
+			writeInt(strings.get(field.desc));
+			writeInt(variables.get(field.objectref));
+		} else {
+			out.write(ARRAY_COMPONENT);
+			writeInt(variables.get(((ArrayComponent) value).arref));
+		}
+	}
+	
+	private void writeInstruction(final BytecodeInstruction insn, final InsnList instructions) 
+			throws IOException {
+		
+		int index = insn.getIndex();
+		
+		// the list may have been changed since the graph was built, so the 
+		// stored index is only trusted for detached instructions
+		if (instructions != null && !insn.isSynthetic() && !insn.isDetached()) {
+			final AbstractInsnNode node = insn.getInstruction();
+			if (index < 0 || index >= instructions.size() || instructions.get(index) != node) {
+				index = instructions.indexOf(node);
+				if (index < 0 || index >= instructions.size() || instructions.get(index) != node) {
+					index = -1;
+				}
+			}
+		}
+		
+		if (index >= 0) {
+			writeInt(index + 1);
+			switch (insn.getType()) {
+			case LABEL:
+				out.write(LABEL);
+				break;
+			case LINE_NUMBER:
+				out.write(LINE);
+				writeInt(insn.getOperand());
+				break;
+			case FRAME:
+				out.write(FRAME);
+				break;
+			default:
+				out.write(insn.getOpcode());
+				if (hasOperand(insn.getOpcode())) {
+					writeInt(insn.getOperand());
+				}
+				break;
+			}
+		} else {
+			writeInt(0); // synthetic
+		}
+		
+		writeFrame(insn.frame);
+	}
+	
+	private void writeDefinitions(final GraphNode node) throws IOException {
+		
+		final SyntheticDefinitions defs = node.definitions();
+		if (defs == null) {
+			writeInt(0);
+			writeInt(0);
+			return;
+		}
+		
+		writeInt(defs.entryCount());
+		for (int i = 0; i < defs.entryCount(); i++) {
+			writeFrame(defs.entry(i).frame);
+		}
+		
+		// definitions are in instruction order
+		writeInt(defs.size());
+		int position = 0;
+		for (int i = 0; i < defs.size(); i++) {
+			while (position < node.instructions.size() 
+					&& node.instructions.get(position) != defs.anchor(i)) {
+				position++;
+			}
+			if (position == node.instructions.size()) {
+				throw new IllegalArgumentException(
+						"Definition of an instruction that is not in node " + node.id);
+			}
+			writeInt(position);
+			writeFrame(defs.definition(i).frame);
+		}
+	}
+	
+	private void writeFrame(final DefUseFrame frame) throws IOException {
+		if (frame == null) {
+			writeInt(0);
+		} else {
+			writeInt(frame.def == null ? 1 : variables.get(frame.def) + 2);
+			writeInt(frame.uses.size());
+			for (final Variable use : frame.uses) {
+				writeInt(variables.get(use));
+			}
+		}
+	}
+	
+	private void writeNodes(final GraphNode[] nodes, final Map<GraphNode, Integer> indexes) 
+			throws IOException {
+		
+		writeInt(nodes.length);
+		for (final GraphNode node : nodes) {
+			writeInt(indexes.get(node));
+		}
+	}
+	
+	private void writeInt(final int value) throws IOException {
+		int v = value;
+		while ((v & ~0x7F) != 0) {
+			out.write((v & 0x7F) | 0x80);
+			v >>>= 7;
+		}
+		out.write(v);
+	}
+	
+}
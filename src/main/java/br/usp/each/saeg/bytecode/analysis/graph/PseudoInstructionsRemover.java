@@ -57,6 +57,8 @@ public class PseudoInstructionsRemover extends GraphNodeVisitor {
 			}
 			
 		}
+		
+		node.removeEmptyDefinitions();
 	}
 
 }
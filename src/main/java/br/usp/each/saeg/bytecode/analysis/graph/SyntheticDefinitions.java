@@ -0,0 +1,177 @@
+/***
+ * bytecode-analysis: a prototype-library based on ASM 4 that
+ *                    computes definitions/uses of each instruction
+ * Copyright (c) 2014 University of Sao Paulo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package br.usp.each.saeg.bytecode.analysis.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import br.usp.each.saeg.bytecode.analysis.BytecodeInstruction;
+
+/**
+ * The synthetic definitions of a node (see {@link GraphNode#addDefinition}), 
+ * kept apart from its instructions: the entry definitions, which come before 
+ * the first instruction, and the definitions made by an instruction besides 
+ * its own, kept in parallel arrays with the instruction (the anchor) in the 
+ * order they were added.
+ */
+final class SyntheticDefinitions {
+	
+	private static final BytecodeInstruction[] EMPTY = new BytecodeInstruction[0];
+	
+	private BytecodeInstruction[] entries = EMPTY;
+	
+	private int entryCount;
+	
+	private BytecodeInstruction[] anchors = EMPTY;
+	
+	private BytecodeInstruction[] definitions = EMPTY;
+	
+	private int count;
+	
+	void addEntries(final int index, final List<BytecodeInstruction> list) {
+		if (index < 0 || index > entryCount) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + entryCount);
+		}
+		final int size = list.size();
+		if (entryCount + size > entries.length) {
+			entries = Arrays.copyOf(entries, Math.max(entryCount + size, entries.length * 2));
+		}
+		System.arraycopy(entries, index, entries, index + size, entryCount - index);
+		for (int i = 0; i < size; i++) {
+			entries[index + i] = list.get(i);
+		}
+		entryCount += size;
+	}
+	
+	void add(final BytecodeInstruction anchor, final BytecodeInstruction definition) {
+		if (count == anchors.length) {
+			final int length = Math.max(4, count * 2);
+			anchors = Arrays.copyOf(anchors, length);
+			definitions = Arrays.copyOf(definitions, length);
+		}
+		anchors[count] = anchor;
+		definitions[count] = definition;
+		count++;
+	}
+	
+	int entryCount() {
+		return entryCount;
+	}
+	
+	BytecodeInstruction entry(final int i) {
+		return entries[i];
+	}
+	
+	int size() {
+		return count;
+	}
+	
+	BytecodeInstruction anchor(final int i) {
+		return anchors[i];
+	}
+	
+	BytecodeInstruction definition(final int i) {
+		return definitions[i];
+	}
+	
+	boolean isEmpty() {
+		return entryCount == 0 && count == 0;
+	}
+	
+	List<BytecodeInstruction> getEntries() {
+		return new ArrayList<BytecodeInstruction>(Arrays.asList(entries).subList(0, entryCount));
+	}
+	
+	List<BytecodeInstruction> get(final BytecodeInstruction anchor) {
+		final List<BytecodeInstruction> list = new ArrayList<BytecodeInstruction>(1);
+		for (int i = 0; i < count; i++) {
+			if (anchors[i] == anchor) {
+				list.add(definitions[i]);
+			}
+		}
+		return list;
+	}
+	
+	void clear() {
+		Arrays.fill(anchors, 0, count, null);
+		Arrays.fill(definitions, 0, count, null);
+		count = 0;
+	}
+	
+	/**
+	 * Removes the definitions whose frame was removed
+	 */
+	void removeEmpty() {
+		int n = 0;
+		for (int i = 0; i < entryCount; i++) {
+			if (entries[i].frame != null) {
+				entries[n++] = entries[i];
+			}
+		}
+		Arrays.fill(entries, n, entryCount, null);
+		entryCount = n;
+		n = 0;
+		for (int i = 0; i < count; i++) {
+			if (definitions[i].frame != null) {
+				anchors[n] = anchors[i];
+				definitions[n++] = definitions[i];
+			}
+		}
+		Arrays.fill(anchors, n, count, null);
+		Arrays.fill(definitions, n, count, null);
+		count = n;
+	}
+	
+	/**
+	 * Appends the entry definitions and the instructions, each followed by 
+	 * its definitions. Definitions whose anchor is not found (in order) are 
+	 * appended at the end.
+	 */
+	void appendTo(final List<BytecodeInstruction> instructions, 
+				  final List<BytecodeInstruction> list) {
+		
+		for (int i = 0; i < entryCount; i++) {
+			list.add(entries[i]);
+		}
+		int k = 0;
+		for (final BytecodeInstruction insn : instructions) {
+			list.add(insn);
+			while (k < count && anchors[k] == insn) {
+				list.add(definitions[k++]);
+			}
+		}
+		while (k < count) {
+			list.add(definitions[k++]);
+		}
+	}
+	
+}
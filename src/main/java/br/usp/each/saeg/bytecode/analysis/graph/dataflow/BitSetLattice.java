@@ -0,0 +1,158 @@
+/***
+ * bytecode-analysis: a prototype-library based on ASM 4 that
+ *                    computes definitions/uses of each instruction
+ * Copyright (c) 2014 University of Sao Paulo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package br.usp.each.saeg.bytecode.analysis.graph.dataflow;
+
+import java.util.Arrays;
+
+/**
+ * A lattice of sets of a fixed number of elements, numbered densely and kept 
+ * as bit vectors (<code>long[]</code>). The join is the union of the sets, 
+ * for "may" problems, or their intersection, for "must" problems (whose 
+ * identity is the set of all elements).
+ */
+public class BitSetLattice implements Lattice<long[]> {
+	
+	private final int size;
+	
+	private final int words;
+	
+	private final boolean intersection;
+	
+	/**
+	 * Creates a lattice whose join is the union
+	 * 
+	 * @param size the number of elements
+	 */
+	public BitSetLattice(final int size) {
+		this(size, false);
+	}
+	
+	/**
+	 * Creates a lattice
+	 * 
+	 * @param size the number of elements
+	 * @param intersection whether the join is the intersection (instead of 
+	 *                     the union)
+	 */
+	public BitSetLattice(final int size, final boolean intersection) {
+		this.size = size;
+		this.words = words(size);
+		this.intersection = intersection;
+	}
+	
+	/**
+	 * Gets the number of elements
+	 * 
+	 * @return the number of elements
+	 */
+	public int size() {
+		return size;
+	}
+	
+	@Override
+	public long[] create() {
+		final long[] state = new long[words];
+		clear(state);
+		return state;
+	}
+	
+	@Override
+	public void clear(final long[] state) {
+		if (!intersection) {
+			Arrays.fill(state, 0L);
+		} else if (words != 0) {
+			Arrays.fill(state, -1L);
+			if ((size & 63) != 0) {
+				state[words - 1] = (1L << size) - 1;
+			}
+		}
+	}
+	
+	@Override
+	public boolean join(final long[] target, final long[] value) {
+		boolean changed = false;
+		for (int i = 0; i < words; i++) {
+			final long joined = intersection ? target[i] & value[i] : target[i] | value[i];
+			if (joined != target[i]) {
+				target[i] = joined;
+				changed = true;
+			}
+		}
+		return changed;
+	}
+	
+	@Override
+	public boolean copy(final long[] from, final long[] to) {
+		boolean changed = false;
+		for (int i = 0; i < words; i++) {
+			if (to[i] != from[i]) {
+				to[i] = from[i];
+				changed = true;
+			}
+		}
+		return changed;
+	}
+	
+	/**
+	 * Gets the number of words of a set
+	 * 
+	 * @param bits the number of elements
+	 * @return the number of <code>long</code> words
+	 */
+	public static int words(final int bits) {
+		return (bits + 63) >>> 6;
+	}
+	
+	public static boolean get(final long[] set, final int bit) {
+		return (set[bit >>> 6] & (1L << bit)) != 0;
+	}
+	
+	public static void set(final long[] set, final int bit) {
+		set[bit >>> 6] |= 1L << bit;
+	}
+	
+	public static void clear(final long[] set, final int bit) {
+		set[bit >>> 6] &= ~(1L << bit);
+	}
+	
+	public static void or(final long[] set, final long[] other) {
+		for (int i = 0; i < set.length; i++) {
+			set[i] |= other[i];
+		}
+	}
+	
+	public static void andNot(final long[] set, final long[] other) {
+		for (int i = 0; i < set.length; i++) {
+			set[i] &= ~other[i];
+		}
+	}
+	
+}
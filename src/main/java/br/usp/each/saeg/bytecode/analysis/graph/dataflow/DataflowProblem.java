@@ -0,0 +1,110 @@
+/***
+ * bytecode-analysis: a prototype-library based on ASM 4 that
+ *                    computes definitions/uses of each instruction
+ * Copyright (c) 2014 University of Sao Paulo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package br.usp.each.saeg.bytecode.analysis.graph.dataflow;
+
+/**
+ * A monotone dataflow problem over the nodes of a graph, solved by a 
+ * {@link DataflowSolver}. Nodes are identified by their index in the solver.
+ * <p>
+ * The input of a node is the join of the outputs of its predecessors in the 
+ * direction of the problem: the state at the entry of the node in a forward 
+ * problem, or at its exit in a backward problem. The output is given by the 
+ * transfer function of the node.
+ * <p>
+ * Since an exception may be thrown by any instruction of a node, exception 
+ * edges carry the state of the whole node. In a forward problem, a handler 
+ * is reached by the state given by {@link #exceptionTransfer}. In a backward 
+ * problem, the output of a handler is joined into both the input and the 
+ * output of the nodes it handles.
+ * 
+ * @param <S> the type of the states
+ */
+public abstract class DataflowProblem<S> {
+	
+	private final Lattice<S> lattice;
+	
+	private final boolean forward;
+	
+	/**
+	 * Creates a problem
+	 * 
+	 * @param lattice the lattice of the states
+	 * @param forward whether the problem is forward (or backward)
+	 */
+	protected DataflowProblem(final Lattice<S> lattice, final boolean forward) {
+		this.lattice = lattice;
+		this.forward = forward;
+	}
+	
+	public Lattice<S> getLattice() {
+		return lattice;
+	}
+	
+	public boolean isForward() {
+		return forward;
+	}
+	
+	/**
+	 * Sets the state joined into the input of a boundary node: the root, in 
+	 * a forward problem, or a node without successors, in a backward problem. 
+	 * The state is the identity of the join by default.
+	 * 
+	 * @param node the index of the node
+	 * @param state the state to be set
+	 */
+	public void boundary(final int node, final S state) {
+	}
+	
+	/**
+	 * Computes the output of a node from its input
+	 * 
+	 * @param node the index of the node
+	 * @param input the input of the node (must not be changed)
+	 * @param output the state to be set as the output of the node
+	 */
+	public abstract void transfer(int node, S input, S output);
+	
+	/**
+	 * Computes the state that reaches the handlers of a node in a forward 
+	 * problem, which is the join of the input and the output of the node by 
+	 * default.
+	 * 
+	 * @param node the index of the node
+	 * @param input the input of the node (must not be changed)
+	 * @param output the output of the node (must not be changed)
+	 * @param state the state to be set
+	 */
+	public void exceptionTransfer(final int node, final S input, final S output, final S state) {
+		lattice.copy(input, state);
+		lattice.join(state, output);
+	}
+	
+}
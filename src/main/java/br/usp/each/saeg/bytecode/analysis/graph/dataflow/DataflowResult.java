@@ -0,0 +1,106 @@
+/***
+ * bytecode-analysis: a prototype-library based on ASM 4 that
+ *                    computes definitions/uses of each instruction
+ * Copyright (c) 2014 University of Sao Paulo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package br.usp.each.saeg.bytecode.analysis.graph.dataflow;
+
+import java.util.List;
+
+import br.usp.each.saeg.bytecode.analysis.graph.GraphNode;
+
+/**
+ * The solution of a {@link DataflowProblem}: the input and output of each 
+ * node. In a forward problem, the input is the state at the entry of a node 
+ * and the output the state at its exit; in a backward problem, it is the 
+ * other way around. States must not be changed.
+ * 
+ * @param <S> the type of the states
+ */
+public class DataflowResult<S> {
+	
+	private final DataflowSolver solver;
+	
+	private final List<S> input;
+	
+	private final List<S> output;
+	
+	private final int iterations;
+	
+	/** number of visits of each node */
+	private final int[] visits;
+	
+	DataflowResult(final DataflowSolver solver, 
+				   final List<S> input, 
+				   final List<S> output, 
+				   final int iterations, 
+				   final int[] visits) {
+		
+		this.solver = solver;
+		this.input = input;
+		this.output = output;
+		this.iterations = iterations;
+		this.visits = visits;
+	}
+	
+	public S getInput(final int node) {
+		return input.get(node);
+	}
+	
+	public S getOutput(final int node) {
+		return output.get(node);
+	}
+	
+	public S getInput(final GraphNode node) {
+		return input.get(solver.index(node));
+	}
+	
+	public S getOutput(final GraphNode node) {
+		return output.get(solver.index(node));
+	}
+	
+	/**
+	 * Gets the number of node visits until the solution was found
+	 * 
+	 * @return the number of node visits
+	 */
+	public int getIterations() {
+		return iterations;
+	}
+	
+	/**
+	 * Gets the number of visits of a node until the solution was found
+	 * 
+	 * @param node the index of the node
+	 * @return the number of visits of the node
+	 */
+	public int getIterations(final int node) {
+		return visits[node];
+	}
+	
+}
@@ -0,0 +1,360 @@
+/***
+ * bytecode-analysis: a prototype-library based on ASM 4 that
+ *                    computes definitions/uses of each instruction
+ * Copyright (c) 2014 University of Sao Paulo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package br.usp.each.saeg.bytecode.analysis.graph.dataflow;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import br.usp.each.saeg.bytecode.analysis.graph.GraphNode;
+import br.usp.each.saeg.bytecode.analysis.graph.ProgramGraph;
+
+/**
+ * Solves monotone dataflow problems over the nodes of a graph with a 
+ * worklist. The edges of the graph are collected once, as arrays of node 
+ * indexes, so the same solver can solve any number of problems.
+ * <p>
+ * Nodes are selected in reverse postorder (from the root, following normal 
+ * and exception edges) for forward problems and in postorder for backward 
+ * problems, so a node is usually visited after all its predecessors in the 
+ * direction of the problem (except for back edges). Nodes that cannot be 
+ * reached from the root come last.
+ */
+public class DataflowSolver {
+	
+	private static final int[] NONE = new int[0];
+	
+	private final List<GraphNode> nodes;
+	
+	private final Map<GraphNode, Integer> indexes = new IdentityHashMap<GraphNode, Integer>();
+	
+	private final int[][] children;
+	
+	private final int[][] parents;
+	
+	private final int[][] exceptionChildren;
+	
+	private final int[][] exceptionParents;
+	
+	/** node indexes in reverse postorder */
+	private final int[] order;
+	
+	/** position of each node in the reverse postorder */
+	private final int[] position;
+	
+	/**
+	 * Creates a solver for the nodes of a graph
+	 * 
+	 * @param graph the graph
+	 */
+	public DataflowSolver(final ProgramGraph graph) {
+		this(graph.getNodes());
+	}
+	
+	/**
+	 * Creates a solver for the nodes of a graph
+	 * 
+	 * @param nodes all the nodes of the graph, starting by the root
+	 */
+	public DataflowSolver(final List<GraphNode> nodes) {
+		
+		this.nodes = new ArrayList<GraphNode>(nodes);
+		
+		final int size = nodes.size();
+		for (int i = 0; i < size; i++) {
+			indexes.put(nodes.get(i), i);
+		}
+		
+		children = new int[size][];
+		exceptionChildren = new int[size][];
+		
+		final int[] parentCount = new int[size];
+		final int[] exceptionParentCount = new int[size];
+		
+		for (int i = 0; i < size; i++) {
+			final GraphNode node = nodes.get(i);
+			children[i] = index(node.getChildren());
+			exceptionChildren[i] = index(node.getExceptionChildren());
+			for (final int child : children[i]) {
+				parentCount[child]++;
+			}
+			for (final int child : exceptionChildren[i]) {
+				exceptionParentCount[child]++;
+			}
+		}
+		
+		parents = invert(children, parentCount);
+		exceptionParents = invert(exceptionChildren, exceptionParentCount);
+		
+		order = reversePostOrder();
+		position = new int[size];
+		for (int i = 0; i < size; i++) {
+			position[order[i]] = i;
+		}
+	}
+	
+	/**
+	 * Gets the nodes of the graph
+	 * 
+	 * @return the nodes, by index
+	 */
+	public List<GraphNode> getNodes() {
+		return Collections.unmodifiableList(nodes);
+	}
+	
+	/**
+	 * Gets the number of nodes
+	 * 
+	 * @return the number of nodes
+	 */
+	public int size() {
+		return nodes.size();
+	}
+	
+	/**
+	 * Gets the index of a node
+	 * 
+	 * @param node a node of the graph
+	 * @return the index of the node
+	 */
+	public int index(final GraphNode node) {
+		final Integer index = indexes.get(node);
+		if (index == null) {
+			throw new IllegalArgumentException("Not a node of the graph: " + node);
+		}
+		return index;
+	}
+	
+	public int[] getChildren(final int node) {
+		return children[node].clone();
+	}
+	
+	public int[] getParents(final int node) {
+		return parents[node].clone();
+	}
+	
+	public int[] getExceptionChildren(final int node) {
+		return exceptionChildren[node].clone();
+	}
+	
+	public int[] getExceptionParents(final int node) {
+		return exceptionParents[node].clone();
+	}
+	
+	/**
+	 * Solves a problem
+	 * 
+	 * @param problem the problem
+	 * @return the input and output of each node
+	 */
+	public <S> DataflowResult<S> solve(final DataflowProblem<S> problem) {
+		
+		final Lattice<S> lattice = problem.getLattice();
+		final boolean forward = problem.isForward();
+		final int size = nodes.size();
+		
+		final int[][] preds = forward ? parents : children;
+		final int[][] succs = forward ? children : parents;
+		final int[][] exceptionPreds = forward ? exceptionParents : exceptionChildren;
+		final int[][] exceptionSuccs = forward ? exceptionChildren : exceptionParents;
+		
+		final List<S> input = new ArrayList<S>(size);
+		final List<S> output = new ArrayList<S>(size);
+		final List<S> exceptional = new ArrayList<S>(forward ? size : 0);
+		final List<S> boundary = new ArrayList<S>(size);
+		
+		for (int i = 0; i < size; i++) {
+			input.add(lattice.create());
+			output.add(lattice.create());
+			if (forward) {
+				exceptional.add(lattice.create());
+			}
+			if (forward ? i == 0 : children[i].length == 0 && exceptionChildren[i].length == 0) {
+				final S state = lattice.create();
+				problem.boundary(i, state);
+				boundary.add(state);
+			} else {
+				boundary.add(null);
+			}
+		}
+		
+		// worklist of nodes by priority (their position in the order of the problem)
+		final BitSet pending = new BitSet(size);
+		pending.set(0, size);
+		
+		final BitSet visited = new BitSet(size);
+		
+		final S newInput = lattice.create();
+		final S newOutput = lattice.create();
+		final S newExceptional = lattice.create();
+		
+		int iterations = 0;
+		final int[] visits = new int[size];
+		
+		for (int p = pending.nextSetBit(0); p >= 0; p = pending.nextSetBit(0)) {
+			
+			pending.clear(p);
+			iterations++;
+			
+			final int i = forward ? order[p] : order[size - 1 - p];
+			visits[i]++;
+			
+			lattice.clear(newInput);
+			if (boundary.get(i) != null) {
+				lattice.join(newInput, boundary.get(i));
+			}
+			for (final int pred : preds[i]) {
+				lattice.join(newInput, output.get(pred));
+			}
+			for (final int pred : exceptionPreds[i]) {
+				lattice.join(newInput, forward ? exceptional.get(pred) : output.get(pred));
+			}
+			
+			problem.transfer(i, newInput, newOutput);
+			if (!forward) {
+				for (final int pred : exceptionPreds[i]) {
+					lattice.join(newOutput, output.get(pred));
+				}
+			}
+			
+			final boolean changedInput = lattice.copy(newInput, input.get(i));
+			final boolean changedOutput = lattice.copy(newOutput, output.get(i));
+			final boolean first = !visited.get(i);
+			visited.set(i);
+			
+			if (changedOutput) {
+				for (final int succ : succs[i]) {
+					pending.set(priority(succ, forward));
+				}
+			}
+			
+			if (forward) {
+				if (changedInput || changedOutput || first) {
+					problem.exceptionTransfer(i, input.get(i), output.get(i), newExceptional);
+					if (lattice.copy(newExceptional, exceptional.get(i))) {
+						for (final int succ : exceptionSuccs[i]) {
+							pending.set(priority(succ, forward));
+						}
+					}
+				}
+			} else if (changedOutput) {
+				for (final int succ : exceptionSuccs[i]) {
+					pending.set(priority(succ, forward));
+				}
+			}
+		}
+		
+		return new DataflowResult<S>(this, input, output, iterations, visits);
+	}
+	
+	private int priority(final int node, final boolean forward) {
+		return forward ? position[node] : nodes.size() - 1 - position[node];
+	}
+	
+	private int[] index(final GraphNode[] nodes) {
+		if (nodes.length == 0) {
+			return NONE;
+		}
+		final int[] array = new int[nodes.length];
+		for (int i = 0; i < nodes.length; i++) {
+			array[i] = index(nodes[i]);
+		}
+		return array;
+	}
+	
+	private static int[][] invert(final int[][] edges, final int[] count) {
+		final int size = edges.length;
+		final int[][] inverted = new int[size][];
+		for (int i = 0; i < size; i++) {
+			inverted[i] = count[i] == 0 ? NONE : new int[count[i]];
+			count[i] = 0;
+		}
+		for (int i = 0; i < size; i++) {
+			for (final int j : edges[i]) {
+				inverted[j][count[j]++] = i;
+			}
+		}
+		return inverted;
+	}
+	
+	/**
+	 * Computes the reverse postorder of the nodes reachable from the root, 
+	 * following normal and exception edges, followed by the other nodes
+	 */
+	private int[] reversePostOrder() {
+		
+		final int size = nodes.size();
+		final int[] postOrder = new int[size];
+		int count = 0;
+		
+		final BitSet seen = new BitSet(size);
+		
+		// depth-first search with an explicit stack of nodes and successor positions
+		final int[] stack = new int[size];
+		final int[] next = new int[size];
+		int top = -1;
+		
+		if (size != 0) {
+			seen.set(0);
+			stack[++top] = 0;
+		}
+		
+		while (top >= 0) {
+			final int node = stack[top];
+			final int normal = children[node].length;
+			final int n = next[top]++;
+			if (n < normal + exceptionChildren[node].length) {
+				final int child = n < normal ? children[node][n] : exceptionChildren[node][n - normal];
+				if (!seen.get(child)) {
+					seen.set(child);
+					stack[++top] = child;
+					next[top] = 0;
+				}
+			} else {
+				postOrder[count++] = node;
+				top--;
+			}
+		}
+		
+		final int[] order = new int[size];
+		for (int i = 0; i < count; i++) {
+			order[i] = postOrder[count - 1 - i];
+		}
+		for (int i = seen.nextClearBit(0); i < size; i = seen.nextClearBit(i + 1)) {
+			order[count++] = i;
+		}
+		return order;
+	}
+	
+}
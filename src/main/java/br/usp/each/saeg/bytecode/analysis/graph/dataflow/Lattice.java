@@ -0,0 +1,74 @@
+/***
+ * bytecode-analysis: a prototype-library based on ASM 4 that
+ *                    computes definitions/uses of each instruction
+ * Copyright (c) 2014 University of Sao Paulo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package br.usp.each.saeg.bytecode.analysis.graph.dataflow;
+
+/**
+ * The lattice of the states of a dataflow problem (see {@link DataflowProblem}). 
+ * States are mutable, so the solver can update them in place.
+ * 
+ * @param <S> the type of the states
+ */
+public interface Lattice<S> {
+	
+	/**
+	 * Creates a state that is the identity of {@link #join(Object, Object)} 
+	 * (i.e. the bottom of the lattice)
+	 * 
+	 * @return a new state
+	 */
+	S create();
+	
+	/**
+	 * Sets a state to the identity of {@link #join(Object, Object)}
+	 * 
+	 * @param state the state to be cleared
+	 */
+	void clear(S state);
+	
+	/**
+	 * Joins a state into another
+	 * 
+	 * @param target the state that is updated
+	 * @param value the state joined into the target
+	 * @return <code>true</code> if the target changed
+	 */
+	boolean join(S target, S value);
+	
+	/**
+	 * Copies a state into another
+	 * 
+	 * @param from the state to be copied
+	 * @param to the state that is updated
+	 * @return <code>true</code> if the target changed
+	 */
+	boolean copy(S from, S to);
+	
+}
@@ -35,6 +35,7 @@ public class ArrayComponent extends Variable {
 	public final Value arref;
 
 	public ArrayComponent(final Value arref) {
+		super(hash(arref));
 		this.arref = arref;
 	}
 
@@ -48,8 +49,7 @@ public class ArrayComponent extends Variable {
 		return String.format("%s[]", arref);
 	}
 	
-	@Override
-	public int hashCode() {
+	static int hash(final Value arref) {
 		final int prime = 31;
 		int result = 1;
 		result = prime * result + arref.hashCode();
@@ -69,6 +69,9 @@ public class ArrayComponent extends Variable {
 		
 		final ArrayComponent other = (ArrayComponent) obj;
 		
+		if (hash != other.hash)
+			return false;
+		
 		if (!arref.equals(other.arref))
 			return false;
 		
@@ -0,0 +1,82 @@
+/***
+ * bytecode-analysis: a prototype-library based on ASM 4 that
+ *                    computes definitions/uses of each instruction
+ * Copyright (c) 2014 University of Sao Paulo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package br.usp.each.saeg.bytecode.analysis.graph.defuse;
+
+import br.usp.each.saeg.bytecode.analysis.BytecodeInstruction;
+import br.usp.each.saeg.bytecode.analysis.graph.GraphNode;
+
+/**
+ * An association between a definition and a use of the same variable that 
+ * the definition reaches. A computational use (c-use) is a use by an 
+ * instruction; a predicate use (p-use) is a use by a branch instruction and 
+ * is associated with one of the edges leaving the node of the branch.
+ */
+public class DefUseAssociation {
+	
+	public final Definition def;
+	
+	/** the node of the use */
+	public final GraphNode node;
+	
+	/** the instruction of the use */
+	public final BytecodeInstruction instruction;
+	
+	/** the target of the edge of a p-use, <code>null</code> for a c-use */
+	public final GraphNode target;
+	
+	public DefUseAssociation(final Definition def, 
+							 final GraphNode node, 
+							 final BytecodeInstruction instruction, 
+							 final GraphNode target) {
+		
+		this.def = def;
+		this.node = node;
+		this.instruction = instruction;
+		this.target = target;
+	}
+	
+	public Variable getVariable() {
+		return def.variable;
+	}
+	
+	public boolean isPredicateUse() {
+		return target != null;
+	}
+	
+	@Override
+	public String toString() {
+		if (target == null) {
+			return String.format("(%s, %s, %s)", def.node, node, def.variable);
+		}
+		return String.format("(%s, (%s, %s), %s)", def.node, node, target, def.variable);
+	}
+	
+}
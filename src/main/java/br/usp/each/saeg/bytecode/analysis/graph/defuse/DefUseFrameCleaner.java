@@ -0,0 +1,140 @@
+/***
+ * bytecode-analysis: a prototype-library based on ASM 4 that
+ *                    computes definitions/uses of each instruction
+ * Copyright (c) 2014 University of Sao Paulo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package br.usp.each.saeg.bytecode.analysis.graph.defuse;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import br.usp.each.saeg.bytecode.analysis.BytecodeInstruction;
+import br.usp.each.saeg.bytecode.analysis.graph.GraphNode;
+
+/**
+ * Does the work of {@link LocalUseRemover} and {@link LonelyDefinitionsRemover} 
+ * (with the same result) in two scans over the nodes of a graph, instead of 
+ * three traversals. The first scan removes the uses of definitions made earlier 
+ * in the same node and collects the remaining uses; the second removes the 
+ * definitions that are never used. Frames are only replaced when they change.
+ */
+public class DefUseFrameCleaner {
+	
+	private final boolean removeLocalUses;
+	
+	private final boolean removeUnusedDefs;
+	
+	/**
+	 * Creates a cleaner
+	 * 
+	 * @param removeLocalUses whether uses of local definitions are removed
+	 * @param removeUnusedDefs whether unused definitions are removed
+	 */
+	public DefUseFrameCleaner(final boolean removeLocalUses, final boolean removeUnusedDefs) {
+		this.removeLocalUses = removeLocalUses;
+		this.removeUnusedDefs = removeUnusedDefs;
+	}
+	
+	/**
+	 * Cleans the frames of the instructions of the nodes
+	 * 
+	 * @param nodes all the nodes of a graph
+	 */
+	public void clean(final List<GraphNode> nodes) {
+		
+		final Set<Variable> uses = new HashSet<Variable>();
+		
+		final Set<Variable> defs = new HashSet<Variable>();
+		
+		for (final GraphNode node : nodes) {
+			
+			defs.clear();
+			
+			for (final BytecodeInstruction insn : node.getInstructionsAndDefinitions()) {
+				
+				final DefUseFrame frame = insn.frame;
+				if (frame == null) {
+					continue;
+				}
+				
+				if (removeLocalUses) {
+					if (!insn.isPredicate() && !defs.isEmpty()) {
+						insn.frame = removeLocalUses(frame, defs);
+					}
+					if (frame.def != null) {
+						defs.add(frame.def);
+					}
+				}
+				
+				if (removeUnusedDefs) {
+					uses.addAll(insn.frame.uses);
+				}
+			}
+		}
+		
+		if (!removeUnusedDefs) {
+			return;
+		}
+		
+		for (final GraphNode node : nodes) {
+			for (final BytecodeInstruction insn : node.getInstructionsAndDefinitions()) {
+				
+				final DefUseFrame frame = insn.frame;
+				
+				if (frame != null && frame.def != null && !uses.contains(frame.def)) {
+					if (frame.uses.isEmpty()) {
+						insn.frame = null;
+					} else {
+						insn.frame = new DefUseFrame(null, frame.uses);
+					}
+				}
+			}
+		}
+	}
+	
+	private static DefUseFrame removeLocalUses(final DefUseFrame frame, final Set<Variable> defs) {
+		
+		List<Variable> uses = null;
+		
+		for (int i = 0; i < frame.uses.size(); i++) {
+			final Variable use = frame.uses.get(i);
+			if (defs.contains(use)) {
+				if (uses == null) {
+					uses = new ArrayList<Variable>(frame.uses.subList(0, i));
+				}
+			} else if (uses != null) {
+				uses.add(use);
+			}
+		}
+		
+		return uses == null ? frame : new DefUseFrame(frame.def, uses);
+	}
+	
+}
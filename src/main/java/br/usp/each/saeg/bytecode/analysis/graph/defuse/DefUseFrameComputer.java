@@ -32,58 +32,121 @@ package br.usp.each.saeg.bytecode.analysis.graph.defuse;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.Stack;
 
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
-import org.objectweb.asm.tree.FieldInsnNode;
-import org.objectweb.asm.tree.IincInsnNode;
-import org.objectweb.asm.tree.InsnNode;
-import org.objectweb.asm.tree.LdcInsnNode;
-import org.objectweb.asm.tree.MethodInsnNode;
-import org.objectweb.asm.tree.MultiANewArrayInsnNode;
-import org.objectweb.asm.tree.TypeInsnNode;
-import org.objectweb.asm.tree.VarInsnNode;
 
 import br.usp.each.saeg.bytecode.analysis.BytecodeInstruction;
 import br.usp.each.saeg.bytecode.analysis.domain.Method;
 import br.usp.each.saeg.bytecode.analysis.graph.GraphNode;
 import br.usp.each.saeg.bytecode.analysis.graph.GraphNodeVisitor;
+import br.usp.each.saeg.bytecode.analysis.graph.dataflow.DataflowProblem;
+import br.usp.each.saeg.bytecode.analysis.graph.dataflow.DataflowSolver;
+import br.usp.each.saeg.bytecode.analysis.graph.defuse.OperandStackLattice.State;
 
+/**
+ * Computes the def/use frames of the instructions of a graph. The operand 
+ * stacks are a forward {@link DataflowProblem} (see {@link #getProblem}) 
+ * whose transfer function interprets the instructions of a node, setting 
+ * their frames and the definitions of the node; the problem is solved 
+ * between {@link #start} and {@link #end}, which adds the entry definitions 
+ * of the fields used by the method to the root.
+ */
 public class DefUseFrameComputer extends GraphNodeVisitor {
 	
-	private Map<Integer, Stack<Value>> stackMapIn;
+	/** the operand stack a handler is reached by */
+	private static final OperandStack EXCEPTION = 
+			OperandStack.EMPTY.push(new ObjectRef("Exception"));
+	
+	private final OperandStackLattice lattice = new OperandStackLattice();
+	
+	/** the operand stack of the node being interpreted */
+	private OperandStack stack;
+	
+	/**
+	 * the fields used by the method, in the order they are first reached; the
+	 * root gets an entry definition of each field in this order
+	 */
+	private LinkedHashSet<Field> fields;
 	
-	private Map<Integer, Stack<Value>> stackMapOut;
+	private VariableTable variables;
 	
-	private HashSet<Field> fields;
+	private final VariableTable sharedVariables;
+	
+	public DefUseFrameComputer() {
+		this(null);
+	}
+	
+	/**
+	 * Creates a computer whose variables are created through a table that 
+	 * is shared by many graphs (for instance, the methods of a class), 
+	 * one at a time. The object fields and array components of the previous 
+	 * graph are cleared from the table when a graph starts.
+	 * 
+	 * @param variables the shared table, or <code>null</code> to use a new table for each graph
+	 */
+	public DefUseFrameComputer(final VariableTable variables) {
+		this.sharedVariables = variables;
+	}
 	
 	@Override
 	public void start(final GraphNode root) {
-		/** start with stack always clear. */
-		stackMapIn = new HashMap<Integer, Stack<Value>>();
-		stackMapOut = new HashMap<Integer, Stack<Value>>();
-		fields = new HashSet<Field>();
-		stackMapIn.put(root.id, new Stack<Value>());
+		fields = new LinkedHashSet<Field>();
+		if (sharedVariables != null) {
+			sharedVariables.clearValues();
+			variables = sharedVariables;
+		} else {
+			variables = new VariableTable();
+		}
 	}
 	
-	@Override
-	public void visit(final GraphNode node) {
+	/**
+	 * Gets the problem of the operand stacks of a graph, which must be 
+	 * solved after {@link #start} and before {@link #end}
+	 * 
+	 * @param solver the solver of the graph
+	 * @return the problem
+	 */
+	public DataflowProblem<State> getProblem(final DataflowSolver solver) {
+		final List<GraphNode> nodes = solver.getNodes();
+		return new DataflowProblem<State>(lattice, true) {
+			
+			@Override
+			public void boundary(final int node, final State state) {
+				/** start with stack always clear. */
+				state.stack = OperandStack.EMPTY;
+			}
+			
+			@Override
+			public void transfer(final int node, final State input, final State output) {
+				output.stack = input.stack == null ? null 
+						: interpret(nodes.get(node), input.stack);
+			}
+			
+			@Override
+			public void exceptionTransfer(final int node, final State input, 
+					final State output, final State state) {
+				// the operand stack is set to contain a single object of the exception type
+				state.stack = input.stack == null ? null : EXCEPTION;
+			}
+			
+		};
+	}
+	
+	private OperandStack interpret(final GraphNode node, final OperandStack in) {
 		
-		final Stack<Value> stack = new Stack<Value>();
-		stack.addAll(stackMapIn.get(node.id));
+		stack = in;
 		
-		for (int idx = 0; idx < node.instructions.size(); idx++) { 
-			
-			final BytecodeInstruction instruction = node.instructions.get(idx);
+		// the definitions of a previous visit are made again
+		node.clearDefinitions();
+		
+		for (final BytecodeInstruction instruction : node.instructions) {
 			
 			DefUseFrame frame = null;
 			
-			final int opcode = instruction.getInstruction().getOpcode();
+			final int opcode = instruction.getOpcode();
 			
 			switch (instruction.getType()) {
 			
@@ -96,56 +159,50 @@ public class DefUseFrameComputer extends GraphNodeVisitor {
 				
 			/** pushes some constant value to the stack */
 			case CONSTANT:
-				stack.push(Constant.from(opcode));
+				push(Constant.from(opcode));
 				break;
 				
 			/** pushes some constant value to the stack */
 			case LDC: {
-				final LdcInsnNode ldc = (LdcInsnNode) instruction.getInstruction();
-				if (ldc.cst instanceof Long || ldc.cst instanceof Double) {
-				    stack.push(Constant.SIZE_TWO);
+				final Object cst = instruction.getConstant();
+				if (cst instanceof Long || cst instanceof Double) {
+				    push(Constant.SIZE_TWO);
 				} else {
-				    stack.push(Constant.SIZE_ONE);
+				    push(Constant.SIZE_ONE);
 				}
 				break;
 			}
 				
 			/** pushes some local variable to the stack */
 			case LOAD: {
-				final VarInsnNode v = (VarInsnNode) instruction.getInstruction();
-				stack.push(new Local(opcode, v.var));
+				push(variables.local(opcode, instruction.getOperand()));
 				break;
 			}
 			
 			/** pops two operands (..., array reference, index) and 
 			  * pushes the value in the component of the array at index position */
 			case LOAD_ARRAY: {
-				final Value index = stack.pop();
-				final Value arref = stack.pop();
-				stack.push(new ArrayValue(opcode, arref, index));	
+				final Value index = pop();
+				final Value arref = pop();
+				push(new ArrayValue(opcode, arref, index));	
 				break;
 			}
 			
 			/** pops one operand (..., value) and store to a local variable.
 			  * this is a definition of that variable */
 			case STORE: {
-				final VarInsnNode v = (VarInsnNode) instruction.getInstruction();
-				final Value value = stack.pop();
+				final Value value = pop();
 				
 				/* new frame to indicate definition of local variable 
 				 * and use of the value in top of the stack */
-				final Local definition = new Local(opcode, v.var);
+				final Local definition = variables.local(opcode, instruction.getOperand());
 				frame = new DefUseFrame(definition, value);
 				
 				if (value instanceof ArrayRef) {
 					
-					final BytecodeInstruction arraydef = 
-							new BytecodeInstruction(new InsnNode(Opcodes.NOP));
-					
 					final List<Variable> uses = Collections.emptyList();
-					arraydef.frame = new DefUseFrame(new ArrayComponent(definition), uses);
-					
-					node.instructions.add(idx + 1, arraydef);
+					node.addDefinition(instruction, BytecodeInstruction.definition(
+							new DefUseFrame(variables.arrayComponent(definition), uses)));
 				}
 				
 				break;
@@ -155,9 +212,9 @@ public class DefUseFrameComputer extends GraphNodeVisitor {
 			  * store value as the component of the array at index position.
 			  * this is a definition of component of the array */
 			case STORE_ARRAY: {
-				final Value value = stack.pop();
-				final Value index = stack.pop();
-				final Value arref = stack.pop();
+				final Value value = pop();
+				final Value index = pop();
+				final Value arref = pop();
 				
 				final List<Variable> uses = new ArrayList<Variable>();
 				uses.addAll(value.getVariableRefs());
@@ -179,9 +236,9 @@ public class DefUseFrameComputer extends GraphNodeVisitor {
 				ArrayComponent component = null;
 				if (carref instanceof Variable &&
 						(root instanceof Local || root instanceof StaticField)) {
-					component = new ArrayComponent(carref);
+					component = variables.arrayComponent(carref);
 					while (--dims > 0) {
-						component = new ArrayComponent(component);
+						component = variables.arrayComponent(component);
 					}
 				}
 				
@@ -194,7 +251,7 @@ public class DefUseFrameComputer extends GraphNodeVisitor {
 			// ------- Instructions that manipulate the stack
 			
 			case POP: {
-				final Value value = stack.pop();
+				final Value value = pop();
 				
 				if (value instanceof Invoke) {
 					// dropping a method result
@@ -209,14 +266,14 @@ public class DefUseFrameComputer extends GraphNodeVisitor {
 				
 				Value value;
 				
-				if (stack.peek().size() == 1) {
-					value = stack.pop();
+				if (peek().size() == 1) {
+					value = pop();
 					if (value instanceof Invoke) {
 						// dropping a method result
 						uses.addAll(value.getVariableRefs());
 					}
 				}
-				value = stack.pop();
+				value = pop();
 				if (value instanceof Invoke) {
 					// dropping a method result
 					uses.addAll(value.getVariableRefs());
@@ -230,124 +287,124 @@ public class DefUseFrameComputer extends GraphNodeVisitor {
 			}
 			
 			case DUP:
-				stack.push(stack.peek());
+				push(peek());
 				break;
 				
 			case DUP_X1: {
-				final Value value1 = stack.pop();
-				final Value value2 = stack.pop();
-				stack.push(value1);
-				stack.push(value2);
-				stack.push(value1);
+				final Value value1 = pop();
+				final Value value2 = pop();
+				push(value1);
+				push(value2);
+				push(value1);
 				break;
 			}
 			
 			case DUP_X2: {
-				final Value value1 = stack.pop(); // Always category 1
-				final Value value2 = stack.pop();
+				final Value value1 = pop(); // Always category 1
+				final Value value2 = pop();
 				if (value2.size() == 1) {
-					final Value value3 = stack.pop();
-					stack.push(value1);
-					stack.push(value3);
+					final Value value3 = pop();
+					push(value1);
+					push(value3);
 				} else {
-					stack.push(value1);					
+					push(value1);					
 				}
-				stack.push(value2);
-				stack.push(value1);
+				push(value2);
+				push(value1);
 				break;
 			}
 			
 			case DUP2: {
-				final Value value1 = stack.pop();
+				final Value value1 = pop();
 				if (value1.size() == 1) {
-					final Value value2 = stack.peek();
-					stack.push(value1);
-					stack.push(value2);
-					stack.push(value1);
+					final Value value2 = peek();
+					push(value1);
+					push(value2);
+					push(value1);
 				} else {
-					stack.push(value1);
-					stack.push(value1);
+					push(value1);
+					push(value1);
 				}
 				break;
 			}
 			
 			case DUP2_X1: {
-				final Value value1 = stack.pop();
+				final Value value1 = pop();
 				if (value1.size() == 1) {
-					final Value value2 = stack.pop();
-					final Value value3 = stack.pop();
-					stack.push(value2);
-					stack.push(value1);
-					stack.push(value3);
-					stack.push(value2);
-					stack.push(value1);
+					final Value value2 = pop();
+					final Value value3 = pop();
+					push(value2);
+					push(value1);
+					push(value3);
+					push(value2);
+					push(value1);
 				} else {
-					final Value value2 = stack.pop();
-					stack.push(value1);
-					stack.push(value2);
-					stack.push(value1);
+					final Value value2 = pop();
+					push(value1);
+					push(value2);
+					push(value1);
 				}
 				break;
 			}
 			
 			case DUP2_X2: {
-				final Value value1 = stack.pop();
-				final Value value2 = stack.pop();
+				final Value value1 = pop();
+				final Value value2 = pop();
 				if (value1.size() == 1) {
 					// In this case: value1 is category 1 
 					// and value2 is mandatorily category 1
-					final Value value3 = stack.pop();
+					final Value value3 = pop();
 					if (value3.size() == 1) {
 						// In this case: value3 is category 1 
 						// and value4 is mandatorily category 1
-						final Value value4 = stack.pop();
+						final Value value4 = pop();
 						
 						// Form 1: Value 1,2,3 and 4 are category 1
-						stack.push(value2);
-						stack.push(value1);
-						stack.push(value4);
-						stack.push(value3);
-						stack.push(value2);
-						stack.push(value1);
+						push(value2);
+						push(value1);
+						push(value4);
+						push(value3);
+						push(value2);
+						push(value1);
 					} else {
 						// In this case: value3 is category 2 
 						
 						// Form 3: value1 and value2 are both values of a category 1
 						// and value3 is a value of a category 2 
-						stack.push(value2);
-						stack.push(value1);
-						stack.push(value3);
-						stack.push(value2);
-						stack.push(value1);
+						push(value2);
+						push(value1);
+						push(value3);
+						push(value2);
+						push(value1);
 					}
 				} else {
 					// In this case: value1 is category 2 
 					if (value2.size() == 1) {
 						// In this case: value2 is category 1 
 						// and value3 is mandatorily category 1
-						final Value value3 = stack.pop();
+						final Value value3 = pop();
 						
 						// Form 2: value1 is a value of a category 2
 						// and value2 and value3 are both values of a category 1
-						stack.push(value1);
-						stack.push(value3);
-						stack.push(value2);
-						stack.push(value1);
+						push(value1);
+						push(value3);
+						push(value2);
+						push(value1);
 					} else {
 						// From 4: value1 and value2 are both values of a category 2
-						stack.push(value1);
-						stack.push(value2);
-						stack.push(value1);
+						push(value1);
+						push(value2);
+						push(value1);
 					}
 				}
 				break;
 			}
 			
 			case SWAP: {
-				final Value value1 = stack.pop();
-				final Value value2 = stack.pop();
-				stack.push(value1);
-				stack.push(value2);
+				final Value value1 = pop();
+				final Value value2 = pop();
+				push(value1);
+				push(value2);
 				break;
 			}
 			
@@ -356,9 +413,9 @@ public class DefUseFrameComputer extends GraphNodeVisitor {
 			/** pops two operands (..., value1, value2) and 
 			  * pushes the result value1 operator value2 */
 			case BINARY_MATH: {
-				final Value value2 = stack.pop();
-				final Value value1 = stack.pop();
-				stack.push(new Binary(opcode, value1, value2));
+				final Value value2 = pop();
+				final Value value1 = pop();
+				push(new Binary(opcode, value1, value2));
 				break;
 			}
 			
@@ -369,8 +426,7 @@ public class DefUseFrameComputer extends GraphNodeVisitor {
 			/** Increment local variable by constant. 
 			  * Occurs a definition and a use of that variable */
 			case INC: {
-				final IincInsnNode iinc = (IincInsnNode) instruction.getInstruction();
-				final Local local = new Local(opcode, iinc.var);
+				final Local local = variables.local(opcode, instruction.getOperand());
 				
 				/* new frame to indicate definition and 
 				 * use of the incremented variable */
@@ -380,15 +436,15 @@ public class DefUseFrameComputer extends GraphNodeVisitor {
 			
 			/** Just wrap the top of the stack in a conversion mode */
 			case CONVERSION:
-				stack.push(new Conversion(opcode, stack.pop()));
+				push(new Conversion(opcode, pop()));
 				break;
 				
 			/** pops two operands (..., value1, value2) and 
 			  * branch if comparison succeeds. 
 			  * this is a p-use of popped operands */
 			case BINARY_CMP: {
-				final Value value2 = stack.pop();
-				final Value value1 = stack.pop();
+				final Value value2 = pop();
+				final Value value1 = pop();
 				
 				/* new frame to indicate p-use of popped values */
 				frame = new DefUseFrame(null, new Binary(opcode, value1, value2));
@@ -399,7 +455,7 @@ public class DefUseFrameComputer extends GraphNodeVisitor {
 			  * branch if comparison succeeds.
 			  * this is a p-use of popped operand */
 			case UNARY_CMP: {
-				final Value value = stack.pop();
+				final Value value = pop();
 				
 				/* new frame to indicate p-use of popped value */
 				frame = new DefUseFrame(null, value);
@@ -417,7 +473,7 @@ public class DefUseFrameComputer extends GraphNodeVisitor {
 						"JSR or RET. (Deprecated in Java 6)");
 				
 			case SWITCH: {
-				final Value value = stack.pop();
+				final Value value = pop();
 				
 				/* new frame to indicate p-use of popped value */
 				frame = new DefUseFrame(null, value);
@@ -427,7 +483,7 @@ public class DefUseFrameComputer extends GraphNodeVisitor {
 			/** pops one operand (..., value) and returns to caller 
 			  * Occurs a use of the popped operand */
 			case RETURN: {
-				final Value value = stack.pop();
+				final Value value = pop();
 				
 				/* new frame to indicate use of popped value */
 				frame = new DefUseFrame(null, value);
@@ -440,9 +496,9 @@ public class DefUseFrameComputer extends GraphNodeVisitor {
 				
 			/** pushes some static field variable to the stack */
 			case GETSTATIC: {
-				final FieldInsnNode f = (FieldInsnNode) instruction.getInstruction();
-				final StaticField field = new StaticField(f.owner, f.name, f.desc);
-				stack.push(field);
+				final StaticField field = variables.staticField(
+						instruction.getOwner(), instruction.getName(), instruction.getDesc());
+				push(field);
 				fields.add(field);
 				break;
 			}
@@ -450,23 +506,19 @@ public class DefUseFrameComputer extends GraphNodeVisitor {
 			/** pops one operand (..., value) and store to a static field variable.
 			  * this is a definition of that variable */
 			case PUTSTATIC: {
-				final FieldInsnNode f = (FieldInsnNode) instruction.getInstruction();
-				final Value value = stack.pop();
+				final Value value = pop();
 				
 				/* new frame to indicate definition of static variable 
 				 * and use of the value in top of the stack */
-				final StaticField definition = new StaticField(f.owner, f.name, f.desc);
+				final StaticField definition = variables.staticField(
+						instruction.getOwner(), instruction.getName(), instruction.getDesc());
 				frame = new DefUseFrame(definition, value);
 				
 				if (value instanceof ArrayRef) {
 					
-					final BytecodeInstruction arraydef = 
-							new BytecodeInstruction(new InsnNode(Opcodes.NOP));
-					
 					final List<Variable> uses = Collections.emptyList();
-					arraydef.frame = new DefUseFrame(new ArrayComponent(definition), uses);
-					
-					node.instructions.add(idx + 1, arraydef);
+					node.addDefinition(instruction, BytecodeInstruction.definition(
+							new DefUseFrame(variables.arrayComponent(definition), uses)));
 				}
 				
 				break;
@@ -475,10 +527,10 @@ public class DefUseFrameComputer extends GraphNodeVisitor {
 			/** pops one operand (..., object reference) and 
 			  * pushes a object field variable to the stack */
 			case GETFIELD: {
-				final FieldInsnNode f = (FieldInsnNode) instruction.getInstruction();
-				final Value objectref = stack.pop();
-				final ObjectField field = new ObjectField(f.owner, f.name, f.desc, objectref);
-				stack.push(field);
+				final Value objectref = pop();
+				final ObjectField field = variables.objectField(
+						instruction.getOwner(), instruction.getName(), instruction.getDesc(), objectref);
+				push(field);
 				
 				Value root = objectref;
 				while (root instanceof ObjectField) {
@@ -495,9 +547,8 @@ public class DefUseFrameComputer extends GraphNodeVisitor {
 			  * store value to a object field variable.
 			  * this is a definition of that variable */
 			case PUTFIELD: {
-				final FieldInsnNode f = (FieldInsnNode) instruction.getInstruction();
-				final Value value = stack.pop();
-				final Value objectref = stack.pop();
+				final Value value = pop();
+				final Value objectref = pop();
 				
 				Value root = objectref;
 				while (root instanceof ObjectField) {
@@ -506,7 +557,8 @@ public class DefUseFrameComputer extends GraphNodeVisitor {
 				
 				/* new frame to indicate definition of object field variable 
 				 * and use of the value in top of the stack */
-				final ObjectField definition = new ObjectField(f.owner, f.name, f.desc, objectref);
+				final ObjectField definition = variables.objectField(
+						instruction.getOwner(), instruction.getName(), instruction.getDesc(), objectref);
 				
 				final List<Variable> uses = new ArrayList<Variable>();
 				uses.addAll(value.getVariableRefs());
@@ -516,32 +568,28 @@ public class DefUseFrameComputer extends GraphNodeVisitor {
 				
 				if (value instanceof ArrayRef) {
 					
-					final BytecodeInstruction arraydef = 
-							new BytecodeInstruction(new InsnNode(Opcodes.NOP));
-					
 					final List<Variable> array_uses = Collections.emptyList();
-					arraydef.frame = new DefUseFrame(new ArrayComponent(definition), array_uses);
-					
-					node.instructions.add(idx + 1, arraydef);
+					node.addDefinition(instruction, BytecodeInstruction.definition(
+							new DefUseFrame(variables.arrayComponent(definition), array_uses)));
 				}
 				
 				break;
 			}
 			
 			case INVOKE: {
-				final MethodInsnNode m = (MethodInsnNode) instruction.getInstruction();
+				final String desc = instruction.getDesc();
 				
-				final int nargs = Type.getArgumentTypes(m.desc).length;
+				final int nargs = Type.getArgumentTypes(desc).length;
 				
-				final Value[] args = pop(stack, opcode == Opcodes.INVOKESTATIC ? nargs : nargs + 1);
+				final Value[] args = pop(opcode == Opcodes.INVOKESTATIC ? nargs : nargs + 1);
 				
-				final Method method = new Method(m.owner, m.name, m.desc);
+				final Method method = new Method(instruction.getOwner(), instruction.getName(), desc);
 				final Invoke invoke = new Invoke(method, args);
 				
-				if (Type.getReturnType(m.desc) == Type.VOID_TYPE) {
+				if (Type.getReturnType(desc) == Type.VOID_TYPE) {
 					frame = new DefUseFrame(null, invoke);
 				} else {
-					stack.push(invoke);
+					push(invoke);
 				}
 				
 				break;
@@ -552,29 +600,28 @@ public class DefUseFrameComputer extends GraphNodeVisitor {
 		
 			/** Create new object */
 			case NEW: {
-				final TypeInsnNode type = (TypeInsnNode) instruction.getInstruction();
-				stack.push(new ObjectRef(type.desc));
+				push(new ObjectRef(instruction.getDesc()));
 				break;
 			}
 			
 			/** Create new array. pops one operand (..., count) and 
 			  * pushes a array reference to the stack  */
 			case NEWARRAY: {
-				final Value count = stack.pop();
-				stack.push(new ArrayRef(count));
+				final Value count = pop();
+				push(new ArrayRef(count));
 				break;
 			}
 			
 			/** Get length of array. pops one operand (..., array reference) and 
 			  * pushes a array length to the stack  */
 			case ARRAYLENGTH: {
-				final Value array = stack.pop();
-				stack.push(new ArrayLength(array));
+				final Value array = pop();
+				push(new ArrayLength(array));
 				break;
 			}
 			
 			case ATHROW: {
-				final Value value = stack.pop();
+				final Value value = pop();
 				
 				/* new frame to indicate use of popped value */
 				frame = new DefUseFrame(null, value);
@@ -586,19 +633,18 @@ public class DefUseFrameComputer extends GraphNodeVisitor {
 				break;
 				
 			case MONITOR:
-				final Value value = stack.pop();
+				final Value value = pop();
 				
 				/* new frame to indicate use of popped value */
 				frame = new DefUseFrame(null, value);
 				break;
 				
 			case MULTIANEWARRAY: {
-				final MultiANewArrayInsnNode arr = (MultiANewArrayInsnNode) instruction.getInstruction();
-				final Value[] counts = new Value[arr.dims];
-				for (int i = 0; i < arr.dims; i++) {
-					counts[i] = stack.pop();
+				final Value[] counts = new Value[instruction.getOperand()];
+				for (int i = 0; i < counts.length; i++) {
+					counts[i] = pop();
 				}
-				stack.push(new ArrayRef(counts));
+				push(new ArrayRef(counts));
 				break;
 			}
 			
@@ -608,52 +654,9 @@ public class DefUseFrameComputer extends GraphNodeVisitor {
 				instruction.frame = frame;
 		}
 		
-		stackMapOut.put(node.id, stack);
-	}
-
-	@Override
-	public void visitEdge(final GraphNode src, final GraphNode dest) {
-		final Stack<Value> newStack = new Stack<Value>();
-		newStack.addAll(stackMapOut.get(src.id));
-		stackMapIn.put(dest.id, newStack);
-	}
-	
-	@Override
-	public void visitExceptionEdge(final GraphNode src, final GraphNode dest) {
-		final Stack<Value> newStack = new Stack<Value>();
-		newStack.push(new ObjectRef("Exception"));
-		stackMapIn.put(dest.id, newStack);
-	}
-	
-	public boolean visitEdgeMerge(final GraphNode src, final GraphNode dest) {
-		
-		final Stack<Value> newStack = new Stack<Value>();
-		
-		// Should have the same size and the same kind of elements
-		Stack<Value> oldIn = stackMapIn.get(dest.id);
-		Stack<Value> newIn = stackMapOut.get(src.id);
-		
-		boolean changed = false;
-			
-		for (int i = 0; i < oldIn.size(); i++) {
-			
-			Value oldRef = oldIn.get(i);
-			Value newRef = newIn.get(i);
-			
-			if (!oldRef.getVariableRefs().containsAll(newRef.getVariableRefs()) ||
-					!newRef.getVariableRefs().containsAll(oldRef.getVariableRefs())) {
-				changed = true;
-				newStack.add(new Or(oldRef, newRef));
-			} else {
-				newStack.add(oldRef);
-			}
-			
-		}
-		
-		if (changed)
-			stackMapIn.put(dest.id, newStack);
-		
-		return changed;
+		final OperandStack out = stack;
+		stack = null;
+		return out;
 	}
 	
 	@Override
@@ -662,51 +665,51 @@ public class DefUseFrameComputer extends GraphNodeVisitor {
 		final List<BytecodeInstruction> fieldsInsns = 
 				new ArrayList<BytecodeInstruction>(fields.size());
 		
+		final List<Variable> uses = Collections.emptyList();
+		
 		for (final Field var : fields) {
 			
-			final BytecodeInstruction insn =
-					new BytecodeInstruction(new InsnNode(Opcodes.NOP));
-			
-			final List<Variable> uses = Collections.emptyList();
-			
-			insn.frame = new DefUseFrame(var, uses);
-			
-			fieldsInsns.add(insn);
+			fieldsInsns.add(BytecodeInstruction.definition(new DefUseFrame(var, uses)));
 			
 			if (Type.getType(var.desc).getSort() == Type.ARRAY) {
 				
 				int dims = Type.getType(var.desc).getDimensions();
 				
-				BytecodeInstruction arraydef = 
-						new BytecodeInstruction(new InsnNode(Opcodes.NOP));
-				
-				ArrayComponent component = new ArrayComponent(var);
-				final List<Variable> array_uses = Collections.emptyList();
-				arraydef.frame = new DefUseFrame(component, array_uses);
-				
-				fieldsInsns.add(arraydef);
+				ArrayComponent component = variables.arrayComponent(var);
+				fieldsInsns.add(BytecodeInstruction.definition(new DefUseFrame(component, uses)));
 				
 				while (--dims > 0) {
-					component = new ArrayComponent(component);
-					arraydef = new BytecodeInstruction(new InsnNode(Opcodes.NOP));
-					arraydef.frame = new DefUseFrame(component, array_uses);
-					fieldsInsns.add(arraydef);
+					component = variables.arrayComponent(component);
+					fieldsInsns.add(BytecodeInstruction.definition(new DefUseFrame(component, uses)));
 				}
 				
 			}
 		}
 		
-		root.instructions.addAll(0, fieldsInsns);
+		root.addEntryDefinitions(0, fieldsInsns);
 		
-		stackMapIn = null;
-		stackMapOut = null;
 		fields = null;
+		variables = null;
+	}
+	
+	private void push(final Value value) {
+		stack = stack.push(value);
+	}
+	
+	private Value pop() {
+		final Value value = stack.peek();
+		stack = stack.pop();
+		return value;
+	}
+	
+	private Value peek() {
+		return stack.peek();
 	}
 	
-	private Value[] pop(Stack<Value> stack, final int nargs) {
+	private Value[] pop(final int nargs) {
 		final Value[] args = new Value[nargs];
 		for (int i = 0; i < nargs; i++) {
-			args[i] = stack.pop();
+			args[i] = pop();
 		}
 		return args;
 	}
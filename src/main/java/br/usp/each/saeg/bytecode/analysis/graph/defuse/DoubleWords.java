@@ -30,55 +30,65 @@
  */
 package br.usp.each.saeg.bytecode.analysis.graph.defuse;
 
-import java.util.HashSet;
-import java.util.Set;
-
 import org.objectweb.asm.Opcodes;
 
+/**
+ * The opcodes whose loaded, stored, computed or converted value takes 
+ * two words (long and double). Opcodes are looked up in a table indexed 
+ * by opcode, so no <code>Integer</code> is boxed.
+ */
 public final class DoubleWords {
 
 	public static final DoubleWords instance = new DoubleWords();
 
-	private final Set<Object> bag = new HashSet<Object>();
+	private final boolean[] bag = new boolean[256];
 
 	private DoubleWords() {
-		bag.add(Opcodes.LALOAD);
-		bag.add(Opcodes.DALOAD);
-		bag.add(Opcodes.LASTORE);
-		bag.add(Opcodes.DASTORE);
+		add(Opcodes.LALOAD);
+		add(Opcodes.DALOAD);
+		add(Opcodes.LASTORE);
+		add(Opcodes.DASTORE);
 		
-		bag.add(Opcodes.LADD);
-		bag.add(Opcodes.DADD);
-		bag.add(Opcodes.LSUB);
-		bag.add(Opcodes.DSUB);
-		bag.add(Opcodes.LMUL);
-		bag.add(Opcodes.DMUL);
-		bag.add(Opcodes.LDIV);
-		bag.add(Opcodes.DDIV);
-		bag.add(Opcodes.LREM);
-		bag.add(Opcodes.DREM);
-		bag.add(Opcodes.LSHL);
-		bag.add(Opcodes.LSHR);
-		bag.add(Opcodes.LUSHR);
-		bag.add(Opcodes.LAND);
-		bag.add(Opcodes.LOR);
-		bag.add(Opcodes.LXOR);
+		add(Opcodes.LADD);
+		add(Opcodes.DADD);
+		add(Opcodes.LSUB);
+		add(Opcodes.DSUB);
+		add(Opcodes.LMUL);
+		add(Opcodes.DMUL);
+		add(Opcodes.LDIV);
+		add(Opcodes.DDIV);
+		add(Opcodes.LREM);
+		add(Opcodes.DREM);
+		add(Opcodes.LSHL);
+		add(Opcodes.LSHR);
+		add(Opcodes.LUSHR);
+		add(Opcodes.LAND);
+		add(Opcodes.LOR);
+		add(Opcodes.LXOR);
 
-		bag.add(Opcodes.I2L);
-		bag.add(Opcodes.F2L);
-		bag.add(Opcodes.D2L);
-		bag.add(Opcodes.I2D);
-		bag.add(Opcodes.L2D);
-		bag.add(Opcodes.F2D);
+		add(Opcodes.I2L);
+		add(Opcodes.F2L);
+		add(Opcodes.D2L);
+		add(Opcodes.I2D);
+		add(Opcodes.L2D);
+		add(Opcodes.F2D);
 
-		bag.add(Opcodes.LLOAD);
-		bag.add(Opcodes.DLOAD);
-		bag.add(Opcodes.LSTORE);
-		bag.add(Opcodes.DSTORE);
+		add(Opcodes.LLOAD);
+		add(Opcodes.DLOAD);
+		add(Opcodes.LSTORE);
+		add(Opcodes.DSTORE);
 	}
 
+	private void add(final int opcode) {
+		bag[opcode] = true;
+	}
+	
+	public boolean contains(final int opcode) {
+		return opcode >= 0 && opcode < bag.length && bag[opcode];
+	}
+	
 	public boolean contains(final Object obj) {
-		return bag.contains(obj);
+		return obj instanceof Integer && contains(((Integer) obj).intValue());
 	}
 
 }
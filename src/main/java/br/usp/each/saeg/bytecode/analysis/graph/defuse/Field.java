@@ -39,6 +39,11 @@ public class Field extends Variable {
     public final String desc;
 
     public Field(final String owner, final String name, final String desc) {
+        this(owner, name, desc, hash(owner, name, desc));
+    }
+
+    Field(final String owner, final String name, final String desc, final int hash) {
+        super(hash);
         this.owner = owner;
         this.name = name;
         this.desc = desc;
@@ -49,8 +54,7 @@ public class Field extends Variable {
         return Type.getType(desc).getSize();
     }
 
-    @Override
-    public int hashCode() {
+    static int hash(final String owner, final String name, final String desc) {
         final int prime = 31;
         int result = 1;
         result = prime * result + desc.hashCode();
@@ -70,6 +74,9 @@ public class Field extends Variable {
 
         final Field other = (Field) obj;
 
+        if (hash != other.hash)
+            return false;
+
         if (!desc.equals(other.desc))
             return false;
 
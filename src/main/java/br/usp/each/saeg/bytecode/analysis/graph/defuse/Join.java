@@ -0,0 +1,132 @@
+/***
+ * bytecode-analysis: a prototype-library based on ASM 4 that
+ *                    computes definitions/uses of each instruction
+ * Copyright (c) 2014 University of Sao Paulo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package br.usp.each.saeg.bytecode.analysis.graph.defuse;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A value that may be any of the merged values, where only the variables 
+ * they refer to are kept. Unlike {@link Or}, joins are flat: joining a join 
+ * adds its variables instead of nesting it, and each variable is kept once 
+ * (in order of first appearance), so the size of a join is bounded by the 
+ * number of distinct variables of the method.
+ */
+public class Join implements Value {
+	
+	/** joins up to this size are searched linearly */
+	private static final int LINEAR_SEARCH = 8;
+	
+	private final int size;
+	
+	private final List<Variable> variables;
+	
+	private Set<Variable> set;
+	
+	private Join(final int size, final Variable[] variables) {
+		this.size = size;
+		this.variables = Collections.unmodifiableList(Arrays.asList(variables));
+	}
+	
+	/**
+	 * Joins two values
+	 * 
+	 * @param value1 a value
+	 * @param value2 another value, of the same size
+	 * @return a join of the variables of both values
+	 */
+	public static Join of(final Value value1, final Value value2) {
+		
+		if (value1.size() != value2.size()) {
+			throw new IllegalArgumentException("Size should be the same");
+		}
+		
+		final Set<Variable> variables = new LinkedHashSet<Variable>();
+		variables.addAll(value1.getVariableRefs());
+		variables.addAll(value2.getVariableRefs());
+		
+		return new Join(value1.size(), variables.toArray(new Variable[variables.size()]));
+	}
+	
+	/**
+	 * Checks if the join already has every variable of a value
+	 * 
+	 * @param value the value
+	 * @return <code>true</code> if the join has every variable of the value
+	 */
+	public boolean covers(final Value value) {
+		if (value == this) {
+			return true;
+		}
+		for (final Variable var : value.getVariableRefs()) {
+			if (!contains(var)) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Checks if the join has a variable
+	 * 
+	 * @param var the variable
+	 * @return <code>true</code> if the join has the variable
+	 */
+	public boolean contains(final Variable var) {
+		if (variables.size() <= LINEAR_SEARCH) {
+			return variables.contains(var);
+		}
+		if (set == null) {
+			set = new HashSet<Variable>(variables);
+		}
+		return set.contains(var);
+	}
+	
+	@Override
+	public List<Variable> getVariableRefs() {
+		return variables;
+	}
+	
+	@Override
+	public int size() {
+		return size;
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("%s%s", getClass().getSimpleName(), variables);
+	}
+	
+}
@@ -0,0 +1,320 @@
+/***
+ * bytecode-analysis: a prototype-library based on ASM 4 that
+ *                    computes definitions/uses of each instruction
+ * Copyright (c) 2014 University of Sao Paulo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package br.usp.each.saeg.bytecode.analysis.graph.defuse;
+
+import static br.usp.each.saeg.bytecode.analysis.graph.dataflow.BitSetLattice.andNot;
+import static br.usp.each.saeg.bytecode.analysis.graph.dataflow.BitSetLattice.clear;
+import static br.usp.each.saeg.bytecode.analysis.graph.dataflow.BitSetLattice.get;
+import static br.usp.each.saeg.bytecode.analysis.graph.dataflow.BitSetLattice.or;
+import static br.usp.each.saeg.bytecode.analysis.graph.dataflow.BitSetLattice.set;
+import static br.usp.each.saeg.bytecode.analysis.graph.dataflow.BitSetLattice.words;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import br.usp.each.saeg.bytecode.analysis.BytecodeInstruction;
+import br.usp.each.saeg.bytecode.analysis.graph.GraphNode;
+import br.usp.each.saeg.bytecode.analysis.graph.ProgramGraph;
+import br.usp.each.saeg.bytecode.analysis.graph.dataflow.BitSetLattice;
+import br.usp.each.saeg.bytecode.analysis.graph.dataflow.DataflowProblem;
+import br.usp.each.saeg.bytecode.analysis.graph.dataflow.DataflowResult;
+import br.usp.each.saeg.bytecode.analysis.graph.dataflow.DataflowSolver;
+
+/**
+ * Computes the live variables of a graph whose frames were computed by the 
+ * {@link DefUseFrameComputer}: a variable is live at a point if it may be 
+ * used before being defined again.
+ * <p>
+ * Variables (locals, fields and array components) are numbered densely and 
+ * sets of variables are bit vectors (<code>long[]</code>). Each node has a 
+ * use set (the variables used before being defined in the node) and a def 
+ * set, and the live variables at the entry and exit of each node are solved 
+ * by a {@link DataflowSolver} as a backward problem. An exception may be 
+ * thrown by any instruction of a node, so the variables live at the entry of 
+ * its handlers are live anywhere in the node. The live variables at each 
+ * instruction are computed on demand, from the exit of its node.
+ */
+public class LiveVariables {
+	
+	private final DataflowSolver solver;
+	
+	private final List<GraphNode> nodes;
+	
+	private final List<Variable> variables = new ArrayList<Variable>();
+	
+	private final Map<Variable, Integer> indexes = new HashMap<Variable, Integer>();
+	
+	private long[][] use;
+	
+	private long[][] def;
+	
+	private DataflowResult<long[]> result;
+	
+	/**
+	 * Computes the live variables of a graph
+	 * 
+	 * @param graph the graph, with frames
+	 */
+	public LiveVariables(final ProgramGraph graph) {
+		this(new DataflowSolver(graph));
+	}
+	
+	/**
+	 * Computes the live variables of a graph
+	 * 
+	 * @param solver a solver for the graph, with frames
+	 */
+	public LiveVariables(final DataflowSolver solver) {
+		this.solver = solver;
+		this.nodes = solver.getNodes();
+		numberVariables();
+		solve();
+	}
+	
+	/**
+	 * Gets the variables of the graph
+	 * 
+	 * @return the variables, indexed as the bits of the sets
+	 */
+	public List<Variable> getVariables() {
+		return Collections.unmodifiableList(variables);
+	}
+	
+	/**
+	 * Gets the index of a variable
+	 * 
+	 * @param var a variable
+	 * @return the index of the variable, or -1 if it is not defined or used 
+	 *         in the graph
+	 */
+	public int index(final Variable var) {
+		final Integer index = indexes.get(var);
+		return index == null ? -1 : index;
+	}
+	
+	/**
+	 * Gets the variables live at the entry of a node
+	 * 
+	 * @param node a node of the graph
+	 * @return the variables live at the entry of the node
+	 */
+	public List<Variable> getLiveIn(final GraphNode node) {
+		return toList(result.getOutput(node));
+	}
+	
+	/**
+	 * Gets the variables live at the exit of a node
+	 * 
+	 * @param node a node of the graph
+	 * @return the variables live at the exit of the node
+	 */
+	public List<Variable> getLiveOut(final GraphNode node) {
+		return toList(result.getInput(node));
+	}
+	
+	/**
+	 * Checks if a variable is live at the entry of a node
+	 * 
+	 * @param node a node of the graph
+	 * @param var a variable
+	 * @return <code>true</code> if the variable is live at the entry of the node
+	 */
+	public boolean isLiveIn(final GraphNode node, final Variable var) {
+		final int index = index(var);
+		return index >= 0 && get(result.getOutput(node), index);
+	}
+	
+	/**
+	 * Checks if a variable is live at the exit of a node
+	 * 
+	 * @param node a node of the graph
+	 * @param var a variable
+	 * @return <code>true</code> if the variable is live at the exit of the node
+	 */
+	public boolean isLiveOut(final GraphNode node, final Variable var) {
+		final int index = index(var);
+		return index >= 0 && get(result.getInput(node), index);
+	}
+	
+	/**
+	 * Gets the variables live just before an instruction (its uses included)
+	 * 
+	 * @param node the node of the instruction
+	 * @param insn an instruction of the node, or one of its synthetic definitions
+	 * @return the variables live before the instruction
+	 */
+	public List<Variable> getLiveBefore(final GraphNode node, final BytecodeInstruction insn) {
+		return toList(live(node, insn, true));
+	}
+	
+	/**
+	 * Gets the variables live just after an instruction
+	 * 
+	 * @param node the node of the instruction
+	 * @param insn an instruction of the node, or one of its synthetic definitions
+	 * @return the variables live after the instruction
+	 */
+	public List<Variable> getLiveAfter(final GraphNode node, final BytecodeInstruction insn) {
+		return toList(live(node, insn, false));
+	}
+	
+	/**
+	 * Gets the number of node visits until the solution was found
+	 * 
+	 * @return the number of node visits
+	 */
+	public int getIterations() {
+		return result.getIterations();
+	}
+	
+	private void numberVariables() {
+		for (final GraphNode node : nodes) {
+			for (final BytecodeInstruction insn : node.getInstructionsAndDefinitions()) {
+				if (insn.frame != null) {
+					for (final Variable var : insn.frame.uses) {
+						variable(var);
+					}
+					if (insn.frame.def != null) {
+						variable(insn.frame.def);
+					}
+				}
+			}
+		}
+	}
+	
+	private int variable(final Variable var) {
+		Integer index = indexes.get(var);
+		if (index == null) {
+			index = variables.size();
+			indexes.put(var, index);
+			variables.add(var);
+		}
+		return index;
+	}
+	
+	private void solve() {
+		
+		final int size = nodes.size();
+		final int words = words(variables.size());
+		
+		use = new long[size][words];
+		def = new long[size][words];
+		
+		for (int i = 0; i < size; i++) {
+			for (final BytecodeInstruction insn : nodes.get(i).getInstructionsAndDefinitions()) {
+				if (insn.frame == null) {
+					continue;
+				}
+				// the uses of an instruction happen before its definition
+				for (final Variable var : insn.frame.uses) {
+					final int v = indexes.get(var);
+					if (!get(def[i], v)) {
+						set(use[i], v);
+					}
+				}
+				if (insn.frame.def != null) {
+					set(def[i], indexes.get(insn.frame.def));
+				}
+			}
+		}
+		
+		result = solver.solve(new DataflowProblem<long[]>(new BitSetLattice(variables.size()), false) {
+			
+			@Override
+			public void transfer(final int node, final long[] input, final long[] output) {
+				System.arraycopy(input, 0, output, 0, words);
+				andNot(output, def[node]);
+				or(output, use[node]);
+			}
+			
+		});
+	}
+	
+	/**
+	 * Computes the variables live before or after an instruction, walking 
+	 * backwards from the exit of its node
+	 */
+	private long[] live(final GraphNode node, final BytecodeInstruction insn, final boolean before) {
+		
+		final int n = solver.index(node);
+		final List<BytecodeInstruction> instructions = node.getInstructionsAndDefinitions();
+		
+		int position = -1;
+		for (int i = instructions.size() - 1; i >= 0; i--) {
+			if (instructions.get(i) == insn) {
+				position = i;
+				break;
+			}
+		}
+		if (position < 0) {
+			throw new IllegalArgumentException("Not an instruction of node: " + node);
+		}
+		
+		final long[] live = result.getInput(n).clone();
+		
+		// the variables live in the handlers are live anywhere in the node
+		final long[] handlers = new long[live.length];
+		for (final int handler : solver.getExceptionChildren(n)) {
+			or(handlers, result.getOutput(handler));
+		}
+		
+		final int last = before ? position : position + 1;
+		for (int i = instructions.size() - 1; i >= last; i--) {
+			final DefUseFrame frame = instructions.get(i).frame;
+			if (frame != null) {
+				if (frame.def != null) {
+					clear(live, indexes.get(frame.def));
+				}
+				for (final Variable var : frame.uses) {
+					set(live, indexes.get(var));
+				}
+			}
+			or(live, handlers);
+		}
+		return live;
+	}
+	
+	private List<Variable> toList(final long[] set) {
+		final List<Variable> list = new ArrayList<Variable>();
+		for (int w = 0; w < set.length; w++) {
+			long bits = set[w];
+			while (bits != 0) {
+				list.add(variables.get((w << 6) + Long.numberOfTrailingZeros(bits)));
+				bits &= bits - 1;
+			}
+		}
+		return list;
+	}
+	
+}
@@ -36,6 +36,7 @@ public class Local extends Variable {
 	public final int var;
 	
 	public Local(final int opcode, final int var) {
+		super(hash(var));
 		this.opcode = opcode;
 		this.var = var;
 	}
@@ -50,8 +51,7 @@ public class Local extends Variable {
 		return String.format("L@%d", var);
 	}
 
-	@Override
-	public int hashCode() {
+	static int hash(final int var) {
 		final int prime = 31;
 		int result = 1;
 		result = prime * result + var;
@@ -69,6 +69,9 @@ public class Local extends Variable {
 		
 		final Local other = (Local) obj;
 		
+		if (hash != other.hash)
+			return false;
+		
 		if (var != other.var)
 			return false;
 		
@@ -46,7 +46,7 @@ public class LocalUseRemover extends GraphNodeVisitor {
 		
 		final Set<Variable> defs = new HashSet<Variable>();
 		
-		for (final BytecodeInstruction instruction : node.instructions) {
+		for (final BytecodeInstruction instruction : node.getInstructionsAndDefinitions()) {
 			
 			final boolean predicate = instruction.isPredicate();
 			
@@ -53,7 +53,7 @@ public class LonelyDefinitionsRemover extends GraphNodeVisitor {
 	
 	@Override
 	public void visit(final GraphNode node) {
-		for (final BytecodeInstruction insn : node.instructions) {
+		for (final BytecodeInstruction insn : node.getInstructionsAndDefinitions()) {
 			
 			if (insn.frame != null && insn.frame.def != null) {
 				
@@ -43,7 +43,7 @@ public class ObjectField extends Field {
 					   final String desc, 
 					   final Value objectref) {
 		
-		super(owner, name, desc);
+		super(owner, name, desc, hash(owner, name, desc, objectref));
 		this.objectref = objectref;
 	}
 	
@@ -71,10 +71,13 @@ public class ObjectField extends Field {
 		return String.format("%s.%s.%s", objectref, owner.replace("/", "."), name);
 	}
 	
-	@Override
-	public int hashCode() {
+	static int hash(final String owner, 
+					final String name, 
+					final String desc, 
+					final Value objectref) {
+		
 		final int prime = 31;
-		int result = super.hashCode();
+		int result = Field.hash(owner, name, desc);
 		result = prime * result + objectref.hashCode();
 		return result;
 	}
@@ -0,0 +1,112 @@
+/***
+ * bytecode-analysis: a prototype-library based on ASM 4 that
+ *                    computes definitions/uses of each instruction
+ * Copyright (c) 2014 University of Sao Paulo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package br.usp.each.saeg.bytecode.analysis.graph.defuse;
+
+import java.util.EmptyStackException;
+
+/**
+ * An immutable operand stack. Pushing and popping return a new stack that 
+ * shares the rest of the values with the original one, so a state can be 
+ * propagated through many edges without being copied.
+ */
+public final class OperandStack {
+	
+	public static final OperandStack EMPTY = new OperandStack(null, null, 0);
+	
+	private final Value top;
+	
+	private final OperandStack rest;
+	
+	private final int size;
+	
+	private OperandStack(final Value top, final OperandStack rest, final int size) {
+		this.top = top;
+		this.rest = rest;
+		this.size = size;
+	}
+	
+	/**
+	 * Pushes a value
+	 * 
+	 * @param value the value to be pushed
+	 * @return the stack with the value on top of this stack
+	 */
+	public OperandStack push(final Value value) {
+		return new OperandStack(value, this, size + 1);
+	}
+	
+	/**
+	 * Gets the value on top of the stack
+	 * 
+	 * @return the value on top of the stack
+	 * @throws EmptyStackException if the stack is empty
+	 */
+	public Value peek() {
+		if (size == 0) {
+			throw new EmptyStackException();
+		}
+		return top;
+	}
+	
+	/**
+	 * Removes the value on top of the stack
+	 * 
+	 * @return the stack without the value on top of this stack
+	 * @throws EmptyStackException if the stack is empty
+	 */
+	public OperandStack pop() {
+		if (size == 0) {
+			throw new EmptyStackException();
+		}
+		return rest;
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	
+	@Override
+	public String toString() {
+		final StringBuilder builder = new StringBuilder("]");
+		for (OperandStack s = this; s.size > 0; s = s.rest) {
+			builder.insert(0, s.top);
+			if (s.rest.size > 0) {
+				builder.insert(0, ", ");
+			}
+		}
+		return builder.insert(0, "[").toString();
+	}
+	
+}
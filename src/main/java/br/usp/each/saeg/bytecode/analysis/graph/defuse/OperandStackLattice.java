@@ -0,0 +1,189 @@
+/***
+ * bytecode-analysis: a prototype-library based on ASM 4 that
+ *                    computes definitions/uses of each instruction
+ * Copyright (c) 2014 University of Sao Paulo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package br.usp.each.saeg.bytecode.analysis.graph.defuse;
+
+import java.util.HashSet;
+import java.util.List;
+
+import br.usp.each.saeg.bytecode.analysis.graph.dataflow.Lattice;
+
+/**
+ * The lattice of the operand stacks computed by the 
+ * {@link DefUseFrameComputer}. Stacks are joined value by value, as the 
+ * dataflow verifier of the JVM merges them: two values that refer to the 
+ * same variables are kept as they are, otherwise they are replaced by a 
+ * {@link Join}. A state without a stack (the bottom) belongs to a node 
+ * that was not reached yet.
+ */
+public class OperandStackLattice implements Lattice<OperandStackLattice.State> {
+	
+	/**
+	 * A mutable holder of an immutable operand stack
+	 */
+	public static final class State {
+		
+		/** the stack, or <code>null</code> if the node was not reached */
+		public OperandStack stack;
+		
+		@Override
+		public String toString() {
+			return String.valueOf(stack);
+		}
+		
+	}
+	
+	/** scratch space of merges */
+	private Value[] merged = new Value[16];
+	
+	@Override
+	public State create() {
+		return new State();
+	}
+	
+	@Override
+	public void clear(final State state) {
+		state.stack = null;
+	}
+	
+	@Override
+	public boolean join(final State target, final State value) {
+		if (value.stack == null || value.stack == target.stack) {
+			return false;
+		}
+		if (target.stack == null) {
+			// stacks are immutable, so the state is shared instead of copied
+			target.stack = value.stack;
+			return true;
+		}
+		final OperandStack stack = merge(target.stack, value.stack);
+		if (stack == target.stack) {
+			return false;
+		}
+		target.stack = stack;
+		return true;
+	}
+	
+	@Override
+	public boolean copy(final State from, final State to) {
+		final boolean changed = !equivalent(from.stack, to.stack);
+		to.stack = from.stack;
+		return changed;
+	}
+	
+	/**
+	 * Merges a stack into another, which should have the same size and the 
+	 * same kind of elements
+	 * 
+	 * @return the old stack if it does not change
+	 */
+	private OperandStack merge(OperandStack oldIn, OperandStack newIn) {
+		
+		final OperandStack old = oldIn;
+		
+		final int size = oldIn.size();
+		if (merged.length < size) {
+			merged = new Value[Math.max(size, merged.length * 2)];
+		}
+		
+		boolean changed = false;
+		
+		// from the top to the bottom of the stacks
+		for (int i = size - 1; i >= 0; i--) {
+			
+			final Value oldRef = oldIn.peek();
+			final Value newRef = newIn.peek();
+			oldIn = oldIn.pop();
+			newIn = newIn.pop();
+			
+			if (oldRef instanceof Join) {
+				// a join only changes if it does not have some variable yet
+				if (((Join) oldRef).covers(newRef)) {
+					merged[i] = oldRef;
+				} else {
+					changed = true;
+					merged[i] = Join.of(oldRef, newRef);
+				}
+			} else if (oldRef != newRef && !sameVariables(oldRef, newRef)) {
+				changed = true;
+				merged[i] = Join.of(oldRef, newRef);
+			} else {
+				merged[i] = oldRef;
+			}
+			
+		}
+		
+		OperandStack stack = old;
+		if (changed) {
+			stack = OperandStack.EMPTY;
+			for (int i = 0; i < size; i++) {
+				stack = stack.push(merged[i]);
+			}
+		}
+		
+		for (int i = 0; i < size; i++) {
+			merged[i] = null;
+		}
+		
+		return stack;
+	}
+	
+	/**
+	 * Two stacks are equivalent if their values refer to the same variables
+	 */
+	private static boolean equivalent(OperandStack stack1, OperandStack stack2) {
+		if (stack1 == stack2) {
+			return true;
+		}
+		if (stack1 == null || stack2 == null || stack1.size() != stack2.size()) {
+			return false;
+		}
+		while (stack1 != stack2) {
+			final Value value1 = stack1.peek();
+			final Value value2 = stack2.peek();
+			if (value1 != value2 && !sameVariables(value1, value2)) {
+				return false;
+			}
+			stack1 = stack1.pop();
+			stack2 = stack2.pop();
+		}
+		return true;
+	}
+	
+	private static boolean sameVariables(final Value value1, final Value value2) {
+		final List<Variable> vars1 = value1.getVariableRefs();
+		final List<Variable> vars2 = value2.getVariableRefs();
+		if (vars1.isEmpty() || vars2.isEmpty()) {
+			return vars1.isEmpty() && vars2.isEmpty();
+		}
+		return new HashSet<Variable>(vars1).equals(new HashSet<Variable>(vars2));
+	}
+	
+}
@@ -34,6 +34,10 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
+/**
+ * A value that may be any of two values. Merges in {@link DefUseFrameComputer} 
+ * use the flat {@link Join} instead.
+ */
 public class Or implements Value {
 	
 	public final Value value1;
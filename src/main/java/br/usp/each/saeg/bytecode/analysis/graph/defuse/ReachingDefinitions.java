@@ -0,0 +1,289 @@
+/***
+ * bytecode-analysis: a prototype-library based on ASM 4 that
+ *                    computes definitions/uses of each instruction
+ * Copyright (c) 2014 University of Sao Paulo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package br.usp.each.saeg.bytecode.analysis.graph.defuse;
+
+import static br.usp.each.saeg.bytecode.analysis.graph.dataflow.BitSetLattice.andNot;
+import static br.usp.each.saeg.bytecode.analysis.graph.dataflow.BitSetLattice.or;
+import static br.usp.each.saeg.bytecode.analysis.graph.dataflow.BitSetLattice.set;
+import static br.usp.each.saeg.bytecode.analysis.graph.dataflow.BitSetLattice.words;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import br.usp.each.saeg.bytecode.analysis.BytecodeInstruction;
+import br.usp.each.saeg.bytecode.analysis.graph.GraphNode;
+import br.usp.each.saeg.bytecode.analysis.graph.ProgramGraph;
+import br.usp.each.saeg.bytecode.analysis.graph.dataflow.BitSetLattice;
+import br.usp.each.saeg.bytecode.analysis.graph.dataflow.DataflowProblem;
+import br.usp.each.saeg.bytecode.analysis.graph.dataflow.DataflowResult;
+import br.usp.each.saeg.bytecode.analysis.graph.dataflow.DataflowSolver;
+
+/**
+ * Computes the reaching definitions of a graph whose frames were computed 
+ * by the {@link DefUseFrameComputer}, and the def-use associations (c-uses 
+ * and p-uses) derived from them.
+ * <p>
+ * Definitions are numbered densely and sets of definitions are bit vectors 
+ * (<code>long[]</code>). Each node has a gen and a kill set computed from 
+ * its frames, and the sets reaching each node are solved by a 
+ * {@link DataflowSolver} as a forward problem over a {@link BitSetLattice}. 
+ * Exception edges are handled conservatively: an exception may be thrown by 
+ * any instruction of a node, so a handler is reached by the definitions 
+ * reaching the node and by every definition made in the node, even the ones 
+ * killed later in the same node.
+ */
+public class ReachingDefinitions {
+	
+	private final DataflowSolver solver;
+	
+	private final List<GraphNode> nodes;
+	
+	private final List<Definition> definitions = new ArrayList<Definition>();
+	
+	private final Map<Variable, Integer> variables = new HashMap<Variable, Integer>();
+	
+	private final List<DefUseAssociation> associations = new ArrayList<DefUseAssociation>();
+	
+	/** definitions of each variable */
+	private final List<long[]> definitionsOf = new ArrayList<long[]>();
+	
+	private DataflowResult<long[]> result;
+	
+	/**
+	 * Computes the reaching definitions and the def-use associations of a graph
+	 * 
+	 * @param graph the graph, with frames
+	 */
+	public ReachingDefinitions(final ProgramGraph graph) {
+		this(new DataflowSolver(graph));
+	}
+	
+	/**
+	 * Computes the reaching definitions and the def-use associations of a graph
+	 * 
+	 * @param solver a solver for the graph, with frames
+	 */
+	public ReachingDefinitions(final DataflowSolver solver) {
+		this.solver = solver;
+		this.nodes = solver.getNodes();
+		numberDefinitions();
+		solve();
+		associate();
+	}
+	
+	/**
+	 * Gets the definitions of the graph
+	 * 
+	 * @return the definitions, indexed by {@link Definition#index}
+	 */
+	public List<Definition> getDefinitions() {
+		return Collections.unmodifiableList(definitions);
+	}
+	
+	/**
+	 * Gets the def-use associations of the graph
+	 * 
+	 * @return the c-uses and p-uses of the graph
+	 */
+	public List<DefUseAssociation> getAssociations() {
+		return Collections.unmodifiableList(associations);
+	}
+	
+	/**
+	 * Gets the definitions that reach the entry of a node
+	 * 
+	 * @param node a node of the graph
+	 * @return the definitions that reach the node
+	 */
+	public List<Definition> getReachingDefinitions(final GraphNode node) {
+		return toList(result.getInput(node));
+	}
+	
+	/**
+	 * Gets the definitions that reach the exit of a node
+	 * 
+	 * @param node a node of the graph
+	 * @return the definitions that leave the node
+	 */
+	public List<Definition> getLeavingDefinitions(final GraphNode node) {
+		return toList(result.getOutput(node));
+	}
+	
+	/**
+	 * Gets the number of node visits until the solution was found
+	 * 
+	 * @return the number of node visits
+	 */
+	public int getIterations() {
+		return result.getIterations();
+	}
+	
+	private void numberDefinitions() {
+		for (final GraphNode node : nodes) {
+			for (final BytecodeInstruction insn : node.getInstructionsAndDefinitions()) {
+				if (insn.frame != null && insn.frame.def != null) {
+					variable(insn.frame.def);
+					definitions.add(new Definition(definitions.size(), node, insn, insn.frame.def));
+				}
+			}
+		}
+		final int words = words(definitions.size());
+		for (int v = 0; v < variables.size(); v++) {
+			definitionsOf.add(new long[words]);
+		}
+		for (final Definition def : definitions) {
+			set(definitionsOf.get(variables.get(def.variable)), def.index);
+		}
+	}
+	
+	private int variable(final Variable var) {
+		Integer index = variables.get(var);
+		if (index == null) {
+			index = variables.size();
+			variables.put(var, index);
+		}
+		return index;
+	}
+	
+	private void solve() {
+		
+		final int size = nodes.size();
+		final int words = words(definitions.size());
+		
+		final long[][] gen = new long[size][words];
+		final long[][] kill = new long[size][words];
+		final long[][] all = new long[size][words];
+		
+		int d = 0;
+		for (int i = 0; i < size; i++) {
+			for (final BytecodeInstruction insn : nodes.get(i).getInstructionsAndDefinitions()) {
+				if (insn.frame != null && insn.frame.def != null) {
+					final long[] same = definitionsOf.get(variables.get(insn.frame.def));
+					andNot(gen[i], same);
+					or(kill[i], same);
+					set(gen[i], d);
+					set(all[i], d);
+					d++;
+				}
+			}
+		}
+		
+		result = solver.solve(new DataflowProblem<long[]>(new BitSetLattice(definitions.size()), true) {
+			
+			@Override
+			public void transfer(final int node, final long[] input, final long[] output) {
+				System.arraycopy(input, 0, output, 0, words);
+				andNot(output, kill[node]);
+				or(output, gen[node]);
+			}
+			
+			@Override
+			public void exceptionTransfer(final int node, 
+										  final long[] input, 
+										  final long[] output, 
+										  final long[] state) {
+				
+				// the definitions killed later in the node may reach the handlers too
+				System.arraycopy(input, 0, state, 0, words);
+				or(state, all[node]);
+			}
+			
+		});
+	}
+	
+	private void associate() {
+		
+		final long[] current = new long[words(definitions.size())];
+		final List<Variable> seen = new ArrayList<Variable>();
+		
+		// definitions are numbered in the same order they are found here
+		int d = 0;
+		
+		for (int i = 0; i < nodes.size(); i++) {
+			
+			final GraphNode node = nodes.get(i);
+			System.arraycopy(result.getInput(i), 0, current, 0, current.length);
+			
+			for (final BytecodeInstruction insn : node.getInstructionsAndDefinitions()) {
+				
+				if (insn.frame == null) {
+					continue;
+				}
+				
+				seen.clear();
+				for (final Variable use : insn.frame.uses) {
+					final Integer var = variables.get(use);
+					if (var == null || seen.contains(use)) {
+						continue;
+					}
+					seen.add(use);
+					final long[] same = definitionsOf.get(var);
+					for (int w = 0; w < current.length; w++) {
+						long bits = current[w] & same[w];
+						while (bits != 0) {
+							final Definition def = definitions.get((w << 6) + Long.numberOfTrailingZeros(bits));
+							bits &= bits - 1;
+							if (insn.isPredicate()) {
+								for (final GraphNode target : node.getChildren()) {
+									associations.add(new DefUseAssociation(def, node, insn, target));
+								}
+							} else {
+								associations.add(new DefUseAssociation(def, node, insn, null));
+							}
+						}
+					}
+				}
+				
+				// the definition happens after the uses of the same instruction
+				if (insn.frame.def != null) {
+					andNot(current, definitionsOf.get(variables.get(insn.frame.def)));
+					set(current, d++);
+				}
+			}
+		}
+	}
+	
+	private List<Definition> toList(final long[] set) {
+		final List<Definition> list = new ArrayList<Definition>();
+		for (int w = 0; w < set.length; w++) {
+			long bits = set[w];
+			while (bits != 0) {
+				list.add(definitions.get((w << 6) + Long.numberOfTrailingZeros(bits)));
+				bits &= bits - 1;
+			}
+		}
+		return list;
+	}
+	
+}
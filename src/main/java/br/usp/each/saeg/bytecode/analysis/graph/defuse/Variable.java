@@ -35,6 +35,53 @@ import java.util.List;
 
 public abstract class Variable implements Value {
 
+    /** hash code, computed once since variables are immutable */
+    int hash;
+
+    /** whether the hash code is computed on first use */
+    private final boolean lazy;
+
+    /**
+     * Creates a variable whose hash code is computed on first use, by 
+     * {@link #computeHash()}
+     */
+    protected Variable() {
+        this.lazy = true;
+    }
+
+    /**
+     * Creates a variable with a precomputed hash code
+     * 
+     * @param hash the hash code of the variable
+     */
+    protected Variable(final int hash) {
+        this.hash = hash;
+        this.lazy = false;
+    }
+
+    /**
+     * Computes the hash code of a variable created without one. Must be 
+     * consistent with {@link #equals(Object)}.
+     * 
+     * @return the hash code of the variable
+     */
+    protected int computeHash() {
+        return super.hashCode();
+    }
+
+    @Override
+    public int hashCode() {
+        if (!lazy) {
+            return hash;
+        }
+        int h = hash;
+        if (h == 0) {
+            h = computeHash();
+            hash = h;
+        }
+        return h;
+    }
+
     @Override
     public List<Variable> getVariableRefs() {
         return Collections.singletonList(this);
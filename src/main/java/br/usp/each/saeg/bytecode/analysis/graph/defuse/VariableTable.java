@@ -0,0 +1,187 @@
+/***
+ * bytecode-analysis: a prototype-library based on ASM 4 that
+ *                    computes definitions/uses of each instruction
+ * Copyright (c) 2014 University of Sao Paulo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package br.usp.each.saeg.bytecode.analysis.graph.defuse;
+
+/**
+ * An interning table of variables. Variables created through the same table 
+ * are unique: structurally identical variables are the same instance, so 
+ * equality checks mostly end on the identity check (or on the cached hash). 
+ * Composite variables are identified by the identity of their components, 
+ * which should be created through the same table.
+ * <p>
+ * A table is meant to be used by a single analysis and is not thread-safe. 
+ * Locals are identified by opcode and index, since the opcode gives their 
+ * size; note that {@link Local#equals(Object)} ignores the opcode. A table 
+ * that is shared by many methods must be cleared of the object fields and 
+ * array components of a method (see {@link #clearValues()}), since they are 
+ * identified by the values of that method only.
+ */
+public class VariableTable {
+	
+	private Variable[] table = new Variable[64];
+	
+	private int size;
+	
+	/** number of object fields and array components in the table */
+	private int values;
+	
+	public Local local(final int opcode, final int var) {
+		final int hash = Local.hash(var);
+		int slot = index(hash);
+		Variable v;
+		while ((v = table[slot]) != null) {
+			if (v.hash == hash && v.getClass() == Local.class) {
+				final Local local = (Local) v;
+				if (local.opcode == opcode && local.var == var) {
+					return local;
+				}
+			}
+			slot = (slot + 1) & (table.length - 1);
+		}
+		return add(slot, new Local(opcode, var));
+	}
+	
+	public StaticField staticField(final String owner, final String name, final String desc) {
+		final int hash = Field.hash(owner, name, desc);
+		int slot = index(hash);
+		Variable v;
+		while ((v = table[slot]) != null) {
+			if (v.hash == hash && v.getClass() == StaticField.class) {
+				final StaticField field = (StaticField) v;
+				if (field.name.equals(name) && field.owner.equals(owner) && field.desc.equals(desc)) {
+					return field;
+				}
+			}
+			slot = (slot + 1) & (table.length - 1);
+		}
+		return add(slot, new StaticField(owner, name, desc));
+	}
+	
+	public ObjectField objectField(final String owner, 
+								   final String name, 
+								   final String desc, 
+								   final Value objectref) {
+		
+		final int hash = ObjectField.hash(owner, name, desc, objectref);
+		int slot = index(hash);
+		Variable v;
+		while ((v = table[slot]) != null) {
+			if (v.hash == hash && v.getClass() == ObjectField.class) {
+				final ObjectField field = (ObjectField) v;
+				if (field.objectref == objectref && field.name.equals(name) 
+						&& field.owner.equals(owner) && field.desc.equals(desc)) {
+					return field;
+				}
+			}
+			slot = (slot + 1) & (table.length - 1);
+		}
+		values++;
+		return add(slot, new ObjectField(owner, name, desc, objectref));
+	}
+	
+	public ArrayComponent arrayComponent(final Value arref) {
+		final int hash = ArrayComponent.hash(arref);
+		int slot = index(hash);
+		Variable v;
+		while ((v = table[slot]) != null) {
+			if (v.hash == hash && v.getClass() == ArrayComponent.class) {
+				final ArrayComponent component = (ArrayComponent) v;
+				if (component.arref == arref) {
+					return component;
+				}
+			}
+			slot = (slot + 1) & (table.length - 1);
+		}
+		values++;
+		return add(slot, new ArrayComponent(arref));
+	}
+	
+	/**
+	 * Removes the object fields and array components, which are identified 
+	 * by values that only exist in the analysis of a method, so the table 
+	 * does not retain them. Locals and static fields are kept.
+	 */
+	public void clearValues() {
+		if (values == 0) {
+			return;
+		}
+		values = 0;
+		final Variable[] old = table;
+		table = new Variable[old.length];
+		size = 0;
+		for (final Variable var : old) {
+			if (var != null && (var.getClass() == Local.class || var.getClass() == StaticField.class)) {
+				int slot = index(var.hash);
+				while (table[slot] != null) {
+					slot = (slot + 1) & (table.length - 1);
+				}
+				table[slot] = var;
+				size++;
+			}
+		}
+	}
+	
+	/**
+	 * Gets the number of variables in the table
+	 * 
+	 * @return the number of variables in the table
+	 */
+	public int size() {
+		return size;
+	}
+	
+	private <V extends Variable> V add(final int slot, final V var) {
+		table[slot] = var;
+		if (++size * 2 > table.length) {
+			rehash();
+		}
+		return var;
+	}
+	
+	private int index(final int hash) {
+		return (hash ^ (hash >>> 16)) & (table.length - 1);
+	}
+	
+	private void rehash() {
+		final Variable[] old = table;
+		table = new Variable[old.length * 2];
+		for (final Variable var : old) {
+			if (var != null) {
+				int slot = index(var.hash);
+				while (table[slot] != null) {
+					slot = (slot + 1) & (table.length - 1);
+				}
+				table[slot] = var;
+			}
+		}
+	}
+	
+}
@@ -59,7 +59,7 @@ public class VariablesCollector extends GraphNodeVisitor {
 	
 	@Override
 	public void visit(final GraphNode node) {
-		for (final BytecodeInstruction insn : node.instructions) {
+		for (final BytecodeInstruction insn : node.getInstructionsAndDefinitions()) {
 			
 			if (insn.frame != null) {
 				uses.addAll(insn.frame.uses);
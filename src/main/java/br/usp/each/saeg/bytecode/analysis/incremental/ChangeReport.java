@@ -0,0 +1,101 @@
+/***
+ * bytecode-analysis: a prototype-library based on ASM 4 that
+ *                    computes definitions/uses of each instruction
+ * Copyright (c) 2014 University of Sao Paulo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package br.usp.each.saeg.bytecode.analysis.incremental;
+
+import java.io.PrintStream;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The changes found by an incremental analysis, compared to the previous run
+ */
+public class ChangeReport {
+	
+	/** classes that were not in the previous run */
+	public final List<String> added;
+	
+	/** classes whose class file changed */
+	public final List<String> modified;
+	
+	/** classes whose class file did not change */
+	public final List<String> unchanged;
+	
+	/** classes of the previous run that were not found (and were purged) */
+	public final List<String> deleted;
+	
+	/** number of methods whose graph was reused from the previous run */
+	public final int reusedMethods;
+	
+	/** number of methods whose graph was built */
+	public final int analyzedMethods;
+	
+	public ChangeReport(final List<String> added, 
+						final List<String> modified, 
+						final List<String> unchanged, 
+						final List<String> deleted, 
+						final int reusedMethods, 
+						final int analyzedMethods) {
+		
+		this.added = Collections.unmodifiableList(added);
+		this.modified = Collections.unmodifiableList(modified);
+		this.unchanged = Collections.unmodifiableList(unchanged);
+		this.deleted = Collections.unmodifiableList(deleted);
+		this.reusedMethods = reusedMethods;
+		this.analyzedMethods = analyzedMethods;
+	}
+	
+	/**
+	 * Prints the changed classes (prefixed by A, M or D) and a summary
+	 * 
+	 * @param out the stream where the report is printed
+	 */
+	public void print(final PrintStream out) {
+		for (final String name : added) {
+			out.println("A " + name);
+		}
+		for (final String name : modified) {
+			out.println("M " + name);
+		}
+		for (final String name : deleted) {
+			out.println("D " + name);
+		}
+		out.println(this);
+	}
+	
+	@Override
+	public String toString() {
+		return String.format(
+				"added=%d modified=%d unchanged=%d deleted=%d reused methods=%d analyzed methods=%d", 
+				added.size(), modified.size(), unchanged.size(), deleted.size(), 
+				reusedMethods, analyzedMethods);
+	}
+	
+}
@@ -0,0 +1,256 @@
+/***
+ * bytecode-analysis: a prototype-library based on ASM 4 that
+ *                    computes definitions/uses of each instruction
+ * Copyright (c) 2014 University of Sao Paulo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package br.usp.each.saeg.bytecode.analysis.incremental;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import br.usp.each.saeg.bytecode.analysis.cache.GraphCache;
+
+/**
+ * The result of an incremental analysis: for each class, the hash of its 
+ * class file and, for each of its methods, the hash of the method and its 
+ * serialized graph (see {@link br.usp.each.saeg.bytecode.analysis.graph.ProgramGraphWriter}).
+ */
+public class Manifest {
+	
+	private static final int MAGIC = 0x4241494D; // "BAIM"
+	
+	/**
+	 * Version of the manifest format
+	 */
+	public static final int VERSION = 1;
+	
+	private final int type;
+	
+	private final Map<String, ClassEntry> classes = new LinkedHashMap<String, ClassEntry>();
+	
+	/**
+	 * Creates an empty manifest
+	 * 
+	 * @param type the graph type (see {@link br.usp.each.saeg.bytecode.analysis.GraphBuilder})
+	 */
+	public Manifest(final int type) {
+		this.type = type;
+	}
+	
+	/**
+	 * Reads a manifest. A manifest that does not exist or that was written 
+	 * for another graph type or by another version is read as empty.
+	 * 
+	 * @param file the manifest file
+	 * @param type the graph type
+	 * @return the manifest
+	 * @throws IOException when the manifest exists but cannot be read
+	 */
+	public static Manifest read(final File file, final int type) throws IOException {
+		
+		final Manifest manifest = new Manifest(type);
+		if (!file.isFile()) {
+			return manifest;
+		}
+		
+		final DataInputStream in = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(file)));
+		try {
+			if (in.readInt() != MAGIC) {
+				throw new IOException("Not a manifest: " + file);
+			}
+			if (in.readInt() != VERSION || in.readInt() != GraphCache.VERSION || in.readInt() != type) {
+				return manifest;
+			}
+			int classes = in.readInt();
+			while (classes-- > 0) {
+				final String name = in.readUTF();
+				final String hash = in.readUTF();
+				final int size = in.readInt();
+				final List<MethodEntry> methods = new ArrayList<MethodEntry>(size);
+				for (int i = 0; i < size; i++) {
+					final String methodName = in.readUTF();
+					final String desc = in.readUTF();
+					final String digest = in.readUTF();
+					final byte[] graph = new byte[in.readInt()];
+					in.readFully(graph);
+					methods.add(new MethodEntry(methodName, desc, digest, graph));
+				}
+				manifest.put(new ClassEntry(name, hash, methods));
+			}
+		} finally {
+			in.close();
+		}
+		
+		return manifest;
+	}
+	
+	/**
+	 * Writes the manifest, replacing the file only when it is completely written
+	 * 
+	 * @param file the manifest file
+	 * @throws IOException when the manifest cannot be written
+	 */
+	public void write(final File file) throws IOException {
+		
+		final File dir = file.getAbsoluteFile().getParentFile();
+		final File temp = File.createTempFile(file.getName(), ".tmp", dir);
+		try {
+			final DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(temp)));
+			try {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeInt(GraphCache.VERSION);
+				out.writeInt(type);
+				out.writeInt(classes.size());
+				for (final ClassEntry entry : classes.values()) {
+					out.writeUTF(entry.name);
+					out.writeUTF(entry.hash);
+					out.writeInt(entry.methods.size());
+					for (final MethodEntry method : entry.methods) {
+						out.writeUTF(method.name);
+						out.writeUTF(method.desc);
+						out.writeUTF(method.digest);
+						out.writeInt(method.graph.length);
+						out.write(method.graph);
+					}
+				}
+			} finally {
+				out.close();
+			}
+			if (file.exists() && !file.delete()) {
+				throw new IOException("Could not replace manifest: " + file);
+			}
+			if (!temp.renameTo(file)) {
+				throw new IOException("Could not write manifest: " + file);
+			}
+		} finally {
+			temp.delete();
+		}
+	}
+	
+	public int getType() {
+		return type;
+	}
+	
+	/**
+	 * Gets the entry of a class
+	 * 
+	 * @param name the internal name of the class
+	 * @return the entry of the class, or <code>null</code> if there is none
+	 */
+	public ClassEntry get(final String name) {
+		return classes.get(name);
+	}
+	
+	/**
+	 * Adds the entry of a class, replacing any previous entry of the same class
+	 * 
+	 * @param entry the entry of the class
+	 */
+	public void put(final ClassEntry entry) {
+		classes.put(entry.name, entry);
+	}
+	
+	/**
+	 * Gets the entries of all classes
+	 * 
+	 * @return the entries, in the order they were added
+	 */
+	public Collection<ClassEntry> getClasses() {
+		return Collections.unmodifiableCollection(classes.values());
+	}
+	
+	/**
+	 * The entry of a class
+	 */
+	public static class ClassEntry {
+		
+		/** the internal name of the class */
+		public final String name;
+		
+		/** the hash of the class file */
+		public final String hash;
+		
+		/** the methods with a graph, in the order they are declared */
+		public final List<MethodEntry> methods;
+		
+		public ClassEntry(final String name, final String hash, final List<MethodEntry> methods) {
+			this.name = name;
+			this.hash = hash;
+			this.methods = Collections.unmodifiableList(methods);
+		}
+		
+	}
+	
+	/**
+	 * The entry of a method
+	 */
+	public static class MethodEntry {
+		
+		public final String name;
+		
+		public final String desc;
+		
+		/** the hash of the method (see {@link br.usp.each.saeg.bytecode.analysis.cache.MethodDigest}) */
+		public final String digest;
+		
+		final byte[] graph;
+		
+		public MethodEntry(final String name, final String desc, final String digest, final byte[] graph) {
+			this.name = name;
+			this.desc = desc;
+			this.digest = digest;
+			this.graph = graph;
+		}
+		
+		/**
+		 * Gets the serialized graph (see {@link br.usp.each.saeg.bytecode.analysis.graph.ProgramGraphWriter})
+		 * 
+		 * @return the graph bytes, which must not be modified
+		 */
+		public byte[] getGraph() {
+			return graph;
+		}
+		
+	}
+	
+}
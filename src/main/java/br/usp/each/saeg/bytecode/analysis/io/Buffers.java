@@ -0,0 +1,98 @@
+/***
+ * bytecode-analysis: a prototype-library based on ASM 4 that
+ *                    computes definitions/uses of each instruction
+ * Copyright (c) 2014 University of Sao Paulo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package br.usp.each.saeg.bytecode.analysis.io;
+
+import java.util.zip.Inflater;
+
+/**
+ * Per thread buffers reused across the reads of class files. The buffers of 
+ * a thread hold a native inflater, so they should be released by threads that 
+ * read class files and are not reused afterwards (e.g. the threads of a pool 
+ * that is shut down).
+ */
+public final class Buffers {
+	
+	private static final ThreadLocal<Buffers> local = new ThreadLocal<Buffers>();
+	
+	private byte[] input = new byte[8192];
+	
+	private byte[] output = new byte[8192];
+	
+	private final Inflater inflater = new Inflater(true);
+	
+	private Buffers() {
+	}
+	
+	static Buffers get() {
+		Buffers buffers = local.get();
+		if (buffers == null) {
+			buffers = new Buffers();
+			local.set(buffers);
+		}
+		return buffers;
+	}
+	
+	/**
+	 * Releases the buffers of the calling thread, if it has any. They are 
+	 * created again if the thread reads class files afterwards.
+	 */
+	public static void release() {
+		final Buffers buffers = local.get();
+		if (buffers != null) {
+			local.remove();
+			buffers.inflater.end();
+		}
+	}
+	
+	byte[] input(final int size) {
+		if (input.length < size) {
+			input = new byte[grow(input.length, size)];
+		}
+		return input;
+	}
+	
+	byte[] output(final int size) {
+		if (output.length < size) {
+			output = new byte[grow(output.length, size)];
+		}
+		return output;
+	}
+	
+	Inflater inflater() {
+		inflater.reset();
+		return inflater;
+	}
+	
+	private static int grow(final int length, final int size) {
+		return Math.max(size, Math.min(length * 2, Integer.MAX_VALUE - 8));
+	}
+	
+}
@@ -0,0 +1,69 @@
+/***
+ * bytecode-analysis: a prototype-library based on ASM 4 that
+ *                    computes definitions/uses of each instruction
+ * Copyright (c) 2014 University of Sao Paulo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package br.usp.each.saeg.bytecode.analysis.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import org.objectweb.asm.ClassReader;
+
+/**
+ * A set of class files (e.g. a jar file or a class directory)
+ */
+public interface ClassSource extends Closeable {
+	
+	/**
+	 * Gets the number of class files of this source
+	 * 
+	 * @return the number of class files
+	 */
+	int size();
+	
+	/**
+	 * Gets the name of a class file (e.g. <code>java/lang/Object.class</code>)
+	 * 
+	 * @param index the index of the class file
+	 * @return the name of the class file
+	 */
+	String getName(int index);
+	
+	/**
+	 * Gets a reader for a class file. The reader may share a buffer owned
+	 * by the calling thread, so it is only valid until the next call to this
+	 * method from the same thread.
+	 * 
+	 * @param index the index of the class file
+	 * @return a reader for the class file
+	 * @throws IOException when the class file cannot be read
+	 */
+	ClassReader getClassReader(int index) throws IOException;
+
+}
@@ -0,0 +1,123 @@
+/***
+ * bytecode-analysis: a prototype-library based on ASM 4 that
+ *                    computes definitions/uses of each instruction
+ * Copyright (c) 2014 University of Sao Paulo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package br.usp.each.saeg.bytecode.analysis.io;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.objectweb.asm.ClassReader;
+
+/**
+ * The class files found (recursively) in a directory, sorted by name. A
+ * single class file is also accepted as root. Class files are read with
+ * positional channel reads into a per thread buffer, since mapping each
+ * small file costs more than reading it.
+ */
+public class DirectoryClassSource implements ClassSource {
+	
+	private final List<String> names = new ArrayList<String>();
+	
+	private final List<File> files = new ArrayList<File>();
+	
+	/**
+	 * Lists the class files of a directory
+	 * 
+	 * @param root the class directory or a class file
+	 */
+	public DirectoryClassSource(final File root) {
+		if (root.isDirectory()) {
+			list(root, "");
+		} else {
+			names.add(root.getName());
+			files.add(root);
+		}
+	}
+	
+	private void list(final File dir, final String prefix) {
+		final File[] children = dir.listFiles();
+		if (children == null) {
+			return;
+		}
+		Arrays.sort(children);
+		for (final File child : children) {
+			if (child.isDirectory()) {
+				list(child, prefix + child.getName() + "/");
+			} else if (child.getName().endsWith(".class")) {
+				names.add(prefix + child.getName());
+				files.add(child);
+			}
+		}
+	}
+	
+	@Override
+	public int size() {
+		return files.size();
+	}
+	
+	@Override
+	public String getName(final int index) {
+		return names.get(index);
+	}
+	
+	@Override
+	public ClassReader getClassReader(final int index) throws IOException {
+		final RandomAccessFile file = new RandomAccessFile(files.get(index), "r");
+		try {
+			final FileChannel channel = file.getChannel();
+			final long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException("File too large: " + files.get(index));
+			}
+			final byte[] bytes = Buffers.get().output((int) size);
+			final ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, (int) size);
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer, buffer.position()) < 0) {
+					throw new EOFException(files.get(index).toString());
+				}
+			}
+			return new ClassReader(bytes, 0, (int) size);
+		} finally {
+			file.close();
+		}
+	}
+	
+	@Override
+	public void close() {
+	}
+	
+}
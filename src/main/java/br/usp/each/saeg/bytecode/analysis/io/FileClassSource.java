@@ -0,0 +1,105 @@
+/***
+ * bytecode-analysis: a prototype-library based on ASM 4 that
+ *                    computes definitions/uses of each instruction
+ * Copyright (c) 2014 University of Sao Paulo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package br.usp.each.saeg.bytecode.analysis.io;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.objectweb.asm.ClassReader;
+
+/**
+ * A jar file, a class directory or a single class file. The file is only 
+ * opened by {@link #open()} and it is released by {@link #close()}, so 
+ * the source can be added to an analysis up front and opened again by 
+ * each run.
+ */
+public class FileClassSource implements ClassSource {
+	
+	private final File file;
+	
+	private ClassSource source;
+	
+	/**
+	 * Creates a source, without opening the file
+	 * 
+	 * @param file the jar file, class directory or class file
+	 */
+	public FileClassSource(final File file) {
+		this.file = file;
+	}
+	
+	/**
+	 * Opens the file, if it is not open
+	 * 
+	 * @throws IOException when the file cannot be read or is not a valid zip file
+	 */
+	public void open() throws IOException {
+		if (source == null) {
+			if (file.isDirectory() || file.getName().endsWith(".class")) {
+				source = new DirectoryClassSource(file);
+			} else {
+				source = new JarClassSource(file);
+			}
+		}
+	}
+	
+	@Override
+	public int size() {
+		return source().size();
+	}
+	
+	@Override
+	public String getName(final int index) {
+		return source().getName(index);
+	}
+	
+	@Override
+	public ClassReader getClassReader(final int index) throws IOException {
+		return source().getClassReader(index);
+	}
+	
+	@Override
+	public void close() throws IOException {
+		if (source != null) {
+			final ClassSource opened = source;
+			source = null;
+			opened.close();
+		}
+	}
+	
+	private ClassSource source() {
+		if (source == null) {
+			throw new IllegalStateException("Source not open: " + file);
+		}
+		return source;
+	}
+	
+}
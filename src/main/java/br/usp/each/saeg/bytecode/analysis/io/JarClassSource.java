@@ -0,0 +1,329 @@
+/***
+ * bytecode-analysis: a prototype-library based on ASM 4 that
+ *                    computes definitions/uses of each instruction
+ * Copyright (c) 2014 University of Sao Paulo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package br.usp.each.saeg.bytecode.analysis.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+import org.objectweb.asm.ClassReader;
+
+/**
+ * The class files of a jar (or zip) file. The file is memory-mapped and
+ * its central directory is read once, when the source is opened. Stored
+ * entries are copied straight from the mapping into a per thread buffer
+ * and compressed entries are inflated into a per thread buffer, so no
+ * stream or intermediate array is created per class file.
+ * <p>
+ * A mapping can only be released by the garbage collector, so closing the 
+ * source drops the references to the mappings, but the file may stay open 
+ * (and, on Windows, locked) until they are collected.
+ */
+public class JarClassSource implements ClassSource {
+	
+	private static final int SEGMENT_SIZE = 1 << 30;
+	
+	private static final int LOCAL_HEADER = 0x04034b50;
+	
+	private static final int CENTRAL_HEADER = 0x02014b50;
+	
+	private static final int END_HEADER = 0x06054b50;
+	
+	private static final int ZIP64_END_HEADER = 0x06064b50;
+	
+	private static final int ZIP64_LOCATOR = 0x07064b50;
+	
+	private static final int STORED = 0;
+	
+	private static final int DEFLATED = 8;
+	
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	
+	private final RandomAccessFile file;
+	
+	private final long length;
+	
+	private final MappedByteBuffer[] segments;
+	
+	private boolean closed;
+	
+	private final List<String> names = new ArrayList<String>();
+	
+	private final List<Entry> entries = new ArrayList<Entry>();
+	
+	/**
+	 * Opens a jar file
+	 * 
+	 * @param file the jar file
+	 * @throws IOException when the file cannot be read or is not a valid zip file
+	 */
+	public JarClassSource(final File file) throws IOException {
+		this.file = new RandomAccessFile(file, "r");
+		try {
+			final FileChannel channel = this.file.getChannel();
+			length = channel.size();
+			segments = new MappedByteBuffer[(int) ((length + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+			for (int i = 0; i < segments.length; i++) {
+				final long position = (long) i * SEGMENT_SIZE;
+				segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, 
+						position, Math.min(SEGMENT_SIZE, length - position));
+			}
+			readCentralDirectory();
+		} catch (final IOException e) {
+			this.file.close();
+			throw e;
+		}
+	}
+	
+	@Override
+	public int size() {
+		return entries.size();
+	}
+	
+	@Override
+	public String getName(final int index) {
+		return names.get(index);
+	}
+	
+	@Override
+	public ClassReader getClassReader(final int index) throws IOException {
+		
+		if (closed) {
+			throw new IOException("Source closed");
+		}
+		
+		final Entry entry = entries.get(index);
+		
+		if (u32(entry.offset) != LOCAL_HEADER) {
+			throw new ZipException("Invalid local header: " + names.get(index));
+		}
+		
+		final long data = entry.offset + 30 + u16(entry.offset + 26) + u16(entry.offset + 28);
+		
+		final Buffers buffers = Buffers.get();
+		
+		final byte[] bytes = buffers.output(entry.size);
+		
+		if (entry.method == STORED) {
+			read(data, bytes, entry.size);
+		} else {
+			final byte[] compressed = buffers.input(entry.compressedSize);
+			read(data, compressed, entry.compressedSize);
+			
+			final Inflater inflater = buffers.inflater();
+			inflater.setInput(compressed, 0, entry.compressedSize);
+			try {
+				int n = 0;
+				while (n < entry.size) {
+					final int inflated = inflater.inflate(bytes, n, entry.size - n);
+					if (inflated == 0 && (inflater.finished() || inflater.needsInput())) {
+						break;
+					}
+					n += inflated;
+				}
+				if (n != entry.size) {
+					throw new ZipException("Invalid entry size: " + names.get(index));
+				}
+			} catch (final DataFormatException e) {
+				final ZipException exception = new ZipException(
+						"Invalid compressed data: " + names.get(index));
+				exception.initCause(e);
+				throw exception;
+			}
+		}
+		
+		return new ClassReader(bytes, 0, entry.size);
+	}
+	
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		Arrays.fill(segments, null);
+		file.close();
+	}
+	
+	private void readCentralDirectory() throws IOException {
+		
+		long end = length - 22;
+		final long limit = Math.max(0, end - 0xFFFF);
+		while (end >= limit && u32(end) != END_HEADER) {
+			end--;
+		}
+		if (end < limit) {
+			throw new ZipException("End of central directory not found");
+		}
+		
+		long count = u16(end + 10);
+		long offset = u32(end + 16);
+		
+		if (count == 0xFFFF || offset == 0xFFFFFFFFL) {
+			final long locator = end - 20;
+			if (locator < 0 || u32(locator) != ZIP64_LOCATOR) {
+				throw new ZipException("ZIP64 end of central directory locator not found");
+			}
+			final long end64 = u64(locator + 8);
+			if (u32(end64) != ZIP64_END_HEADER) {
+				throw new ZipException("ZIP64 end of central directory not found");
+			}
+			count = u64(end64 + 32);
+			offset = u64(end64 + 48);
+		}
+		
+		for (long i = 0; i < count; i++) {
+			
+			if (u32(offset) != CENTRAL_HEADER) {
+				throw new ZipException("Invalid central directory header");
+			}
+			
+			final int method = u16(offset + 10);
+			long compressedSize = u32(offset + 20);
+			long size = u32(offset + 24);
+			final int nameLength = u16(offset + 28);
+			final int extraLength = u16(offset + 30);
+			final int commentLength = u16(offset + 32);
+			long localOffset = u32(offset + 42);
+			
+			final byte[] name = new byte[nameLength];
+			read(offset + 46, name, nameLength);
+			
+			// ZIP64 extended information: present fields are the ones
+			// whose value in the header is 0xFFFFFFFF, in this order
+			long extra = offset + 46 + nameLength;
+			final long extraEnd = extra + extraLength;
+			while (extra + 4 <= extraEnd) {
+				final int id = u16(extra);
+				final int dataSize = u16(extra + 2);
+				if (id == 0x0001) {
+					long field = extra + 4;
+					if (size == 0xFFFFFFFFL) {
+						size = u64(field);
+						field += 8;
+					}
+					if (compressedSize == 0xFFFFFFFFL) {
+						compressedSize = u64(field);
+						field += 8;
+					}
+					if (localOffset == 0xFFFFFFFFL) {
+						localOffset = u64(field);
+					}
+				}
+				extra += 4 + dataSize;
+			}
+			
+			offset += 46 + nameLength + extraLength + commentLength;
+			
+			if (nameLength < 6 || !isClassFile(name)) {
+				continue;
+			}
+			
+			if (method != STORED && method != DEFLATED) {
+				throw new ZipException("Unsupported compression method: " + method);
+			}
+			
+			if (size > Integer.MAX_VALUE || compressedSize > Integer.MAX_VALUE) {
+				throw new ZipException("Entry too large: " + new String(name, UTF8));
+			}
+			
+			names.add(new String(name, UTF8));
+			entries.add(new Entry(method, (int) compressedSize, (int) size, localOffset));
+		}
+	}
+	
+	private static boolean isClassFile(final byte[] name) {
+		final int n = name.length;
+		return name[n - 6] == '.' && name[n - 5] == 'c' && name[n - 4] == 'l' 
+				&& name[n - 3] == 'a' && name[n - 2] == 's' && name[n - 1] == 's';
+	}
+	
+	private void read(final long position, final byte[] dst, final int len) throws ZipException {
+		if (position < 0 || position + len > length) {
+			throw new ZipException("Invalid offset: " + position);
+		}
+		int off = 0;
+		while (off < len) {
+			final long p = position + off;
+			final ByteBuffer segment = segments[(int) (p / SEGMENT_SIZE)].duplicate();
+			segment.position((int) (p % SEGMENT_SIZE));
+			final int n = Math.min(len - off, segment.remaining());
+			segment.get(dst, off, n);
+			off += n;
+		}
+	}
+	
+	private int u8(final long position) throws ZipException {
+		if (position < 0 || position >= length) {
+			throw new ZipException("Invalid offset: " + position);
+		}
+		return segments[(int) (position / SEGMENT_SIZE)].get((int) (position % SEGMENT_SIZE)) & 0xFF;
+	}
+	
+	private int u16(final long position) throws ZipException {
+		return u8(position) | (u8(position + 1) << 8);
+	}
+	
+	private long u32(final long position) throws ZipException {
+		return u16(position) | ((long) u16(position + 2) << 16);
+	}
+	
+	private long u64(final long position) throws ZipException {
+		return u32(position) | (u32(position + 4) << 32);
+	}
+	
+	private static class Entry {
+		
+		final int method;
+		
+		final int compressedSize;
+		
+		final int size;
+		
+		final long offset;
+		
+		Entry(final int method, final int compressedSize, final int size, final long offset) {
+			this.method = method;
+			this.compressedSize = compressedSize;
+			this.size = size;
+			this.offset = offset;
+		}
+		
+	}
+	
+}
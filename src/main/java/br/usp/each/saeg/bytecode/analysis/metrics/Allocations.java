@@ -0,0 +1,91 @@
+/***
+ * bytecode-analysis: a prototype-library based on ASM 4 that
+ *                    computes definitions/uses of each instruction
+ * Copyright (c) 2014 University of Sao Paulo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package br.usp.each.saeg.bytecode.analysis.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+
+/**
+ * Measures the memory allocated by the current thread, on JVMs that 
+ * support it (through <code>com.sun.management.ThreadMXBean</code>). The 
+ * HotSpot specific methods are called reflectively, so this class neither 
+ * needs them to compile nor to load.
+ */
+public final class Allocations {
+	
+	private static final ThreadMXBean BEAN = ManagementFactory.getThreadMXBean();
+	
+	/** <code>getThreadAllocatedBytes(long)</code>, or null if not supported */
+	private static final Method ALLOCATED_BYTES = allocatedBytes();
+	
+	private Allocations() {
+	}
+	
+	/**
+	 * Gets the number of bytes allocated by the current thread so far
+	 * 
+	 * @return the number of bytes, or -1 if the JVM cannot measure allocations
+	 */
+	public static long currentThread() {
+		if (ALLOCATED_BYTES == null) {
+			return -1;
+		}
+		try {
+			return (Long) ALLOCATED_BYTES.invoke(BEAN, Thread.currentThread().getId());
+		} catch (final Exception e) {
+			return -1;
+		}
+	}
+	
+	private static Method allocatedBytes() {
+		try {
+			final Class<?> sun = Class.forName("com.sun.management.ThreadMXBean");
+			if (!sun.isInstance(BEAN)) {
+				return null;
+			}
+			if (!(Boolean) sun.getMethod("isThreadAllocatedMemorySupported").invoke(BEAN)) {
+				return null;
+			}
+			if (!(Boolean) sun.getMethod("isThreadAllocatedMemoryEnabled").invoke(BEAN)) {
+				sun.getMethod("setThreadAllocatedMemoryEnabled", boolean.class).invoke(BEAN, true);
+			}
+			return sun.getMethod("getThreadAllocatedBytes", long.class);
+		} catch (final Exception e) {
+			// not a HotSpot based JVM, or measurement cannot be enabled
+			return null;
+		} catch (final LinkageError e) {
+			// not a HotSpot based JVM
+			return null;
+		}
+	}
+	
+}
@@ -0,0 +1,65 @@
+/***
+ * bytecode-analysis: a prototype-library based on ASM 4 that
+ *                    computes definitions/uses of each instruction
+ * Copyright (c) 2014 University of Sao Paulo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package br.usp.each.saeg.bytecode.analysis.metrics;
+
+import br.usp.each.saeg.bytecode.analysis.domain.Method;
+
+/**
+ * Receives measurements of the analysis of methods. When methods are 
+ * analyzed in parallel (e.g. by an 
+ * {@link br.usp.each.saeg.bytecode.analysis.ArchiveAnalyzer}), the listener 
+ * is called by many threads and must be thread-safe.
+ */
+public interface AnalysisListener {
+	
+	/**
+	 * Called after each phase of the analysis of a method. A phase may be 
+	 * reported more than once for a method (e.g. the lookup and the store 
+	 * of the cache, or a failed attempt to build the basic blocks up front 
+	 * and the later joining of the nodes).
+	 * 
+	 * @param method the method
+	 * @param phase the phase
+	 * @param nanos the elapsed time, in nanoseconds
+	 * @param allocatedBytes the bytes allocated by the thread during the phase, 
+	 *        or -1 if the JVM cannot measure allocations
+	 */
+	void phaseCompleted(Method method, Phase phase, long nanos, long allocatedBytes);
+	
+	/**
+	 * Called after the graph of a method is built (not when it is read from a cache)
+	 * 
+	 * @param method the method
+	 * @param metrics the metrics of the graph
+	 */
+	void graphBuilt(Method method, GraphMetrics metrics);
+	
+}
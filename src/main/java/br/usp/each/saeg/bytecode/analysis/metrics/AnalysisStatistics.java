@@ -0,0 +1,181 @@
+/***
+ * bytecode-analysis: a prototype-library based on ASM 4 that
+ *                    computes definitions/uses of each instruction
+ * Copyright (c) 2014 University of Sao Paulo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package br.usp.each.saeg.bytecode.analysis.metrics;
+
+import java.io.PrintStream;
+import java.util.EnumMap;
+import java.util.Map;
+
+import br.usp.each.saeg.bytecode.analysis.domain.Method;
+
+/**
+ * An {@link AnalysisListener} that aggregates the measurements of a batch of 
+ * methods in histograms: time and allocated bytes per phase, and the metrics 
+ * of the built graphs. It also keeps the slowest method of each phase. 
+ * Thread-safe.
+ */
+public class AnalysisStatistics implements AnalysisListener {
+	
+	private final Map<Phase, Histogram> nanos = new EnumMap<Phase, Histogram>(Phase.class);
+	
+	private final Map<Phase, Histogram> bytes = new EnumMap<Phase, Histogram>(Phase.class);
+	
+	private final Map<Phase, Method> slowest = new EnumMap<Phase, Method>(Phase.class);
+	
+	private final Histogram nodes = new Histogram();
+	
+	private final Histogram blocks = new Histogram();
+	
+	private final Histogram iterations = new Histogram();
+	
+	private final Histogram maxIterations = new Histogram();
+	
+	private final Histogram frames = new Histogram();
+	
+	public AnalysisStatistics() {
+		for (final Phase phase : Phase.values()) {
+			nanos.put(phase, new Histogram());
+			bytes.put(phase, new Histogram());
+		}
+	}
+	
+	@Override
+	public synchronized void phaseCompleted(final Method method, 
+											final Phase phase, 
+											final long nanos, 
+											final long allocatedBytes) {
+		
+		final Histogram histogram = this.nanos.get(phase);
+		if (nanos > histogram.getMax() || histogram.getCount() == 0) {
+			slowest.put(phase, method);
+		}
+		histogram.add(nanos);
+		bytes.get(phase).add(allocatedBytes);
+	}
+	
+	@Override
+	public synchronized void graphBuilt(final Method method, final GraphMetrics metrics) {
+		nodes.add(metrics.nodes);
+		blocks.add(metrics.blocks);
+		iterations.add(metrics.iterations);
+		maxIterations.add(metrics.maxIterations);
+		frames.add(metrics.frames);
+	}
+	
+	/**
+	 * Gets a copy of the histogram of time (in nanoseconds) of a phase
+	 * 
+	 * @param phase the phase
+	 * @return the histogram of time of the phase
+	 */
+	public synchronized Histogram getNanos(final Phase phase) {
+		return copy(nanos.get(phase));
+	}
+	
+	/**
+	 * Gets a copy of the histogram of allocated bytes of a phase
+	 * 
+	 * @param phase the phase
+	 * @return the histogram of allocated bytes of the phase
+	 */
+	public synchronized Histogram getAllocatedBytes(final Phase phase) {
+		return copy(bytes.get(phase));
+	}
+	
+	/**
+	 * Gets the method that took the longest in a phase
+	 * 
+	 * @param phase the phase
+	 * @return the slowest method, or <code>null</code> if the phase never ran
+	 */
+	public synchronized Method getSlowest(final Phase phase) {
+		return slowest.get(phase);
+	}
+	
+	public synchronized Histogram getNodes() {
+		return copy(nodes);
+	}
+	
+	public synchronized Histogram getBlocks() {
+		return copy(blocks);
+	}
+	
+	public synchronized Histogram getIterations() {
+		return copy(iterations);
+	}
+	
+	public synchronized Histogram getMaxIterations() {
+		return copy(maxIterations);
+	}
+	
+	public synchronized Histogram getFrames() {
+		return copy(frames);
+	}
+	
+	/**
+	 * Prints a report of the phases, sorted as they run, with their share 
+	 * of the total time
+	 * 
+	 * @param out the stream where the report is printed
+	 */
+	public synchronized void print(final PrintStream out) {
+		
+		long total = 0;
+		for (final Histogram histogram : nanos.values()) {
+			total += histogram.getSum();
+		}
+		
+		for (final Phase phase : Phase.values()) {
+			final Histogram time = nanos.get(phase);
+			if (time.getCount() == 0) {
+				continue;
+			}
+			out.println(String.format("%s: %.1f%% of %d ms", 
+					phase, total == 0 ? 0 : 100.0 * time.getSum() / total, total / 1000000));
+			out.println("  nanos: " + time);
+			out.println("  bytes: " + bytes.get(phase));
+			out.println("  slowest: " + slowest.get(phase));
+		}
+		
+		out.println("nodes: " + nodes);
+		out.println("blocks: " + blocks);
+		out.println("iterations: " + iterations);
+		out.println("max iterations: " + maxIterations);
+		out.println("frames: " + frames);
+	}
+	
+	private static Histogram copy(final Histogram histogram) {
+		final Histogram copy = new Histogram();
+		copy.add(histogram);
+		return copy;
+	}
+	
+}
@@ -0,0 +1,79 @@
+/***
+ * bytecode-analysis: a prototype-library based on ASM 4 that
+ *                    computes definitions/uses of each instruction
+ * Copyright (c) 2014 University of Sao Paulo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package br.usp.each.saeg.bytecode.analysis.metrics;
+
+/**
+ * Metrics of the graph built for a method. Values of phases that did not 
+ * run are zero.
+ */
+public class GraphMetrics {
+	
+	/** number of instructions of the method */
+	public final int instructions;
+	
+	/** number of nodes before joining basic blocks (one per reachable instruction) */
+	public final int nodes;
+	
+	/** number of nodes of the graph */
+	public final int blocks;
+	
+	/** number of node visits until the definitions and uses reach a fixpoint */
+	public final int iterations;
+	
+	/** largest number of visits of a single node */
+	public final int maxIterations;
+	
+	/** number of instructions of the graph with definitions or uses */
+	public final int frames;
+	
+	public GraphMetrics(final int instructions, 
+						final int nodes, 
+						final int blocks, 
+						final int iterations, 
+						final int maxIterations, 
+						final int frames) {
+		
+		this.instructions = instructions;
+		this.nodes = nodes;
+		this.blocks = blocks;
+		this.iterations = iterations;
+		this.maxIterations = maxIterations;
+		this.frames = frames;
+	}
+	
+	@Override
+	public String toString() {
+		return String.format(
+				"instructions=%d nodes=%d blocks=%d iterations=%d maxIterations=%d frames=%d", 
+				instructions, nodes, blocks, iterations, maxIterations, frames);
+	}
+	
+}
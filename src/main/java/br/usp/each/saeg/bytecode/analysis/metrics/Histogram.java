@@ -0,0 +1,132 @@
+/***
+ * bytecode-analysis: a prototype-library based on ASM 4 that
+ *                    computes definitions/uses of each instruction
+ * Copyright (c) 2014 University of Sao Paulo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package br.usp.each.saeg.bytecode.analysis.metrics;
+
+/**
+ * A histogram of non-negative values with power of two buckets: bucket 
+ * <i>i</i> counts the values in [2<sup><i>i</i>-1</sup>, 2<sup><i>i</i></sup>) 
+ * and bucket 0 counts zeros. Percentiles are approximated by the upper 
+ * bound of their bucket. Not thread-safe.
+ */
+public class Histogram {
+	
+	private final long[] buckets = new long[65];
+	
+	private long count;
+	
+	private long sum;
+	
+	private long max;
+	
+	/**
+	 * Adds a value (negative values are ignored)
+	 * 
+	 * @param value the value
+	 */
+	public void add(final long value) {
+		if (value < 0) {
+			return;
+		}
+		buckets[64 - Long.numberOfLeadingZeros(value)]++;
+		count++;
+		sum += value;
+		max = Math.max(max, value);
+	}
+	
+	/**
+	 * Adds the values of another histogram
+	 * 
+	 * @param other the other histogram
+	 */
+	public void add(final Histogram other) {
+		for (int i = 0; i < buckets.length; i++) {
+			buckets[i] += other.buckets[i];
+		}
+		count += other.count;
+		sum += other.sum;
+		max = Math.max(max, other.max);
+	}
+	
+	public long getCount() {
+		return count;
+	}
+	
+	public long getSum() {
+		return sum;
+	}
+	
+	public long getMax() {
+		return max;
+	}
+	
+	public double getMean() {
+		return count == 0 ? 0 : (double) sum / count;
+	}
+	
+	/**
+	 * Gets an approximation of a percentile
+	 * 
+	 * @param percentile the percentile, between 0 and 100
+	 * @return the upper bound of the bucket of the percentile (at most the maximum value)
+	 */
+	public long getPercentile(final double percentile) {
+		if (count == 0) {
+			return 0;
+		}
+		final long rank = (long) Math.ceil(count * Math.min(100, Math.max(0, percentile)) / 100);
+		long seen = 0;
+		for (int i = 0; i < buckets.length; i++) {
+			seen += buckets[i];
+			if (seen >= rank && buckets[i] != 0) {
+				final long upper = i == 0 ? 0 : (i == 64 ? Long.MAX_VALUE : (1L << i) - 1);
+				return Math.min(upper, max);
+			}
+		}
+		return max;
+	}
+	
+	/**
+	 * Gets the number of values in a bucket
+	 * 
+	 * @param bucket the bucket, between 0 and 64
+	 * @return the number of values in the bucket
+	 */
+	public long getBucket(final int bucket) {
+		return buckets[bucket];
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("count=%d mean=%.1f p50=%d p90=%d p99=%d max=%d", 
+				count, getMean(), getPercentile(50), getPercentile(90), getPercentile(99), max);
+	}
+	
+}
@@ -0,0 +1,186 @@
+/***
+ * bytecode-analysis: a prototype-library based on ASM 4 that
+ *                    computes definitions/uses of each instruction
+ * Copyright (c) 2014 University of Sao Paulo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package br.usp.each.saeg.bytecode.analysis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.VarInsnNode;
+import org.objectweb.asm.tree.analysis.BasicValue;
+import org.objectweb.asm.tree.analysis.Frame;
+
+import br.usp.each.saeg.bytecode.analysis.domain.EdgeSet;
+import br.usp.each.saeg.bytecode.analysis.graph.BasicBlockBuilder;
+import br.usp.each.saeg.bytecode.analysis.graph.defuse.DefUseFrameComputer;
+
+/**
+ * Checks that a {@link ControlFlowAnalyzer} finds the same reachable 
+ * instructions and edges, in the same order, as an {@link EdgeAnalyzer}, 
+ * and that its handler ranges give the same exception flow
+ */
+public class ControlFlowAnalyzerTest {
+	
+	@Test
+	public void randomMethods() throws Exception {
+		for (int seed = 1; seed <= 5; seed++) {
+			for (final MethodNode method : new RandomMethods(seed).create(50, 3)) {
+				check(RandomMethods.OWNER, method);
+			}
+		}
+	}
+	
+	@Test
+	public void classes() throws Exception {
+		for (final Class<?> c : new Class<?>[] { 
+				ControlFlowAnalyzer.class, GraphBuilder.class, 
+				BasicBlockBuilder.class, DefUseFrameComputer.class }) {
+			
+			final ClassNode cn = readClass(c);
+			for (final MethodNode method : cn.methods) {
+				check(cn.name, method);
+			}
+		}
+	}
+	
+	@Test(expected = CouldNotBuildGraphException.class)
+	public void verify() throws Exception {
+		
+		// a local that does not exist: only the ASM analyzer notices it
+		final MethodNode method = new MethodNode(
+				Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "m", "()V", null, null);
+		method.instructions.add(new VarInsnNode(Opcodes.ILOAD, 5));
+		method.instructions.add(new InsnNode(Opcodes.POP));
+		method.instructions.add(new InsnNode(Opcodes.RETURN));
+		method.maxLocals = 1;
+		method.maxStack = 1;
+		
+		assertNotNull(new GraphBuilder("A", method, GraphBuilder.NORMAL_FLOW).buildDefUseGraph());
+		new GraphBuilder("A", method, GraphBuilder.NORMAL_FLOW | GraphBuilder.VERIFY).buildDefUseGraph();
+	}
+	
+	private static void check(final String owner, final MethodNode method) throws Exception {
+		
+		for (final boolean exceptionFlow : new boolean[] { false, true }) {
+			
+			final EdgeAnalyzer expected = new EdgeAnalyzer(exceptionFlow);
+			final Frame<BasicValue>[] frames = expected.analyze(owner, method);
+			
+			final ControlFlowAnalyzer actual = new ControlFlowAnalyzer(exceptionFlow);
+			actual.analyze(owner, method);
+			
+			final String name = method.name + method.desc;
+			for (int i = 0; i < frames.length; i++) {
+				assertEquals(name + " " + i, frames[i] != null, actual.isReachable(i));
+			}
+			assertEquals(name, pairs(expected.getEdgeSet()), pairs(actual.getEdgeSet()));
+			assertEquals(name, pairs(expected.getExceptionEdgeSet()), pairs(actual.getExceptionEdgeSet()));
+			
+			if (exceptionFlow) {
+				checkRanges(owner, method, expected.getExceptionEdgeSet());
+			}
+		}
+	}
+	
+	/**
+	 * The handlers of the range of each reachable instruction are its 
+	 * exception edges, and instructions with the same handlers share a range
+	 */
+	private static void checkRanges(final String owner, 
+									final MethodNode method, 
+									final EdgeSet exceptionEdges) throws Exception {
+		
+		final ControlFlowAnalyzer factored = new ControlFlowAnalyzer(true, true, false);
+		factored.analyze(owner, method);
+		
+		final Map<Integer, List<Integer>> expected = new HashMap<Integer, List<Integer>>();
+		for (int i = 0; i < exceptionEdges.size(); i++) {
+			List<Integer> handlers = expected.get(exceptionEdges.src(i));
+			if (handlers == null) {
+				handlers = new ArrayList<Integer>();
+				expected.put(exceptionEdges.src(i), handlers);
+			}
+			handlers.add(exceptionEdges.dest(i));
+		}
+		
+		assertEquals(0, factored.getExceptionEdgeSet().size());
+		
+		final Map<List<Integer>, Integer> ranges = new HashMap<List<Integer>, Integer>();
+		for (int insn = 0; insn < factored.getInstructionCount(); insn++) {
+			final int range = factored.getHandlerRange(insn);
+			final List<Integer> handlers = new ArrayList<Integer>();
+			if (range != -1) {
+				for (int i = 0; i < factored.getHandlerCount(range); i++) {
+					handlers.add(factored.getHandler(range, i));
+				}
+				final Integer previous = ranges.put(handlers, range);
+				assertEquals(previous == null ? range : previous, range);
+			}
+			if (factored.isReachable(insn)) {
+				final List<Integer> edges = expected.get(insn);
+				assertEquals(edges == null ? new ArrayList<Integer>() : edges, handlers);
+			}
+		}
+		assertEquals(ranges.size(), factored.getHandlerRangeCount());
+	}
+	
+	private static List<String> pairs(final EdgeSet edges) {
+		final List<String> pairs = new ArrayList<String>(edges.size());
+		for (int i = 0; i < edges.size(); i++) {
+			pairs.add(edges.src(i) + "->" + edges.dest(i));
+		}
+		return pairs;
+	}
+	
+	private static ClassNode readClass(final Class<?> c) throws IOException {
+		final InputStream in = c.getResourceAsStream(c.getSimpleName() + ".class");
+		try {
+			final ClassNode cn = new ClassNode();
+			new ClassReader(in).accept(cn, 0);
+			return cn;
+		} finally {
+			in.close();
+		}
+	}
+	
+}
@@ -0,0 +1,175 @@
+/***
+ * bytecode-analysis: a prototype-library based on ASM 4 that
+ *                    computes definitions/uses of each instruction
+ * Copyright (c) 2014 University of Sao Paulo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package br.usp.each.saeg.bytecode.analysis;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import br.usp.each.saeg.bytecode.analysis.graph.ProgramGraph;
+import br.usp.each.saeg.bytecode.analysis.graph.defuse.DefUseFrameComputer;
+
+/**
+ * Checks that a {@link GraphClassVisitor}, which builds the graphs from the 
+ * recorded code of the methods, builds the same graphs as a 
+ * {@link GraphBuilder} for the tree of each method, and that it forwards 
+ * the events unchanged
+ */
+public class GraphClassVisitorTest {
+	
+	private static final int[] TYPES = {
+		GraphBuilder.DEFAULT,
+		GraphBuilder.DEFAULT | GraphBuilder.EXCEPTION_FLOW,
+		GraphBuilder.DEFAULT | GraphBuilder.FACTORED_EXCEPTION_FLOW,
+		GraphBuilder.NORMAL_FLOW | GraphBuilder.EXCEPTION_FLOW | GraphBuilder.EXCEPTING_ONLY,
+		GraphBuilder.NORMAL_FLOW | GraphBuilder.EXCEPTION_FLOW | GraphBuilder.BASIC_BLOCK 
+				| GraphBuilder.COMPUTE_DEF_USE,
+		GraphBuilder.DEFAULT | GraphBuilder.VERIFY
+	};
+	
+	@Test
+	public void classes() throws Exception {
+		for (final Class<?> c : new Class<?>[] { 
+				GraphBuilder.class, MethodCode.class, 
+				ControlFlowAnalyzer.class, DefUseFrameComputer.class }) {
+			
+			final byte[] bytes = readClass(c);
+			for (final int type : TYPES) {
+				final ClassNode cn = new ClassNode();
+				new ClassReader(bytes).accept(cn, 0);
+				
+				final ClassWriter expected = new ClassWriter(0);
+				new ClassReader(bytes).accept(expected, 0);
+				final ClassWriter actual = new ClassWriter(0);
+				final GraphClassVisitor visitor = new GraphClassVisitor(type, actual);
+				new ClassReader(bytes).accept(visitor, 0);
+				
+				assertEquals(describe(cn, type), describe(visitor.getGraphs()));
+				assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+			}
+		}
+	}
+	
+	@Test
+	public void randomMethods() throws Exception {
+		for (int seed = 1; seed <= 5; seed++) {
+			final ClassNode cn = new ClassNode();
+			cn.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC, RandomMethods.OWNER, null, "java/lang/Object", null);
+			cn.methods.addAll(new RandomMethods(seed).create(50, 3));
+			for (final int type : TYPES) {
+				check(cn, type);
+			}
+		}
+	}
+	
+	@Test
+	public void subroutines() throws Exception {
+		
+		final ClassNode cn = new ClassNode();
+		cn.visit(Opcodes.V1_4, Opcodes.ACC_PUBLIC, "A", null, "java/lang/Object", null);
+		
+		final MethodVisitor mv = cn.visitMethod(Opcodes.ACC_STATIC, "m", "(I)V", null, null);
+		final Label other = new Label();
+		final Label sub = new Label();
+		mv.visitCode();
+		mv.visitVarInsn(Opcodes.ILOAD, 0);
+		mv.visitJumpInsn(Opcodes.IFEQ, other);
+		mv.visitJumpInsn(Opcodes.JSR, sub);
+		mv.visitLabel(other);
+		mv.visitJumpInsn(Opcodes.JSR, sub);
+		mv.visitInsn(Opcodes.RETURN);
+		mv.visitLabel(sub);
+		mv.visitVarInsn(Opcodes.ASTORE, 1);
+		mv.visitIincInsn(0, 1);
+		mv.visitVarInsn(Opcodes.RET, 1);
+		mv.visitMaxs(1, 2);
+		mv.visitEnd();
+		
+		// the def/use frames do not support subroutines
+		check(cn, GraphBuilder.NORMAL_FLOW);
+		check(cn, GraphBuilder.NORMAL_FLOW | GraphBuilder.EXCEPTION_FLOW | GraphBuilder.BASIC_BLOCK);
+	}
+	
+	private static void check(final ClassNode cn, final int type) throws Exception {
+		final GraphClassVisitor visitor = new GraphClassVisitor(type);
+		cn.accept(visitor);
+		assertEquals(describe(cn, type), describe(visitor.getGraphs()));
+	}
+	
+	private static List<String> describe(final ClassNode cn, final int type) throws Exception {
+		final List<ProgramGraph> graphs = new ArrayList<ProgramGraph>();
+		for (final MethodNode method : cn.methods) {
+			if ((method.access & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_NATIVE)) == 0) {
+				graphs.add(new GraphBuilder(cn.name, method, type).buildDefUseGraph());
+			}
+		}
+		return describe(graphs);
+	}
+	
+	private static List<String> describe(final List<ProgramGraph> graphs) {
+		final List<String> description = new ArrayList<String>();
+		for (final ProgramGraph graph : graphs) {
+			description.add(graph.getMethod().toString());
+			description.addAll(Graphs.describe(graph, true));
+		}
+		return description;
+	}
+	
+	private static byte[] readClass(final Class<?> c) throws IOException {
+		final InputStream in = c.getResourceAsStream(c.getSimpleName() + ".class");
+		try {
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[4096];
+			int n;
+			while ((n = in.read(buffer)) != -1) {
+				out.write(buffer, 0, n);
+			}
+			return out.toByteArray();
+		} finally {
+			in.close();
+		}
+	}
+	
+}
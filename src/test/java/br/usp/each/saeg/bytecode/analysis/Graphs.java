@@ -0,0 +1,93 @@
+/***
+ * bytecode-analysis: a prototype-library based on ASM 4 that
+ *                    computes definitions/uses of each instruction
+ * Copyright (c) 2014 University of Sao Paulo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package br.usp.each.saeg.bytecode.analysis;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import br.usp.each.saeg.bytecode.analysis.graph.Graph;
+import br.usp.each.saeg.bytecode.analysis.graph.GraphNode;
+
+/**
+ * Describes graphs as text, one line per node, so tests can compare two 
+ * graphs with a readable failure message
+ */
+public final class Graphs {
+	
+	private Graphs() {
+	}
+	
+	/**
+	 * Describes the nodes reached from the root of a graph: their id, 
+	 * instructions (index, opcode, type and, optionally, operand), 
+	 * definitions and uses, children, parents and exception children
+	 * 
+	 * @param graph the graph
+	 * @param operands if the operands of the instructions are described
+	 * @return a line per node, in pre-order
+	 */
+	public static List<String> describe(final Graph graph, final boolean operands) {
+		final List<String> description = new ArrayList<String>();
+		for (final GraphNode node : graph.getNodes()) {
+			final StringBuilder sb = new StringBuilder();
+			sb.append(node.id).append(':');
+			for (final BytecodeInstruction insn : node.getInstructionsAndDefinitions()) {
+				sb.append(' ').append(insn.getIndex()).append('/').append(insn.getOpcode());
+				sb.append('/').append(insn.getType());
+				if (operands) {
+					sb.append('/').append(insn.getOperand());
+				}
+				sb.append(insn.isSynthetic() ? "/synthetic" : "");
+				sb.append(" {").append(insn.frame).append('}');
+			}
+			sb.append(" children ").append(ids(node.getChildren()));
+			sb.append(" parents ").append(ids(node.getParents()));
+			sb.append(" exception ").append(ids(node.getExceptionChildren()));
+			description.add(sb.toString());
+		}
+		return description;
+	}
+	
+	/**
+	 * Gets the ids of some nodes
+	 * 
+	 * @param nodes the nodes
+	 * @return the ids, in the same order
+	 */
+	public static List<Integer> ids(final GraphNode[] nodes) {
+		final List<Integer> ids = new ArrayList<Integer>(nodes.length);
+		for (final GraphNode node : nodes) {
+			ids.add(node.id);
+		}
+		return ids;
+	}
+	
+}
@@ -0,0 +1,206 @@
+/***
+ * bytecode-analysis: a prototype-library based on ASM 4 that
+ *                    computes definitions/uses of each instruction
+ * Copyright (c) 2014 University of Sao Paulo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package br.usp.each.saeg.bytecode.analysis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import br.usp.each.saeg.bytecode.analysis.graph.GraphNode;
+import br.usp.each.saeg.bytecode.analysis.graph.ProgramGraph;
+import br.usp.each.saeg.bytecode.analysis.incremental.ChangeReport;
+import br.usp.each.saeg.bytecode.analysis.incremental.Manifest;
+
+/**
+ * Checks that an {@link IncrementalAnalyzer} returns the same graphs as an 
+ * {@link ArchiveAnalyzer}, reusing the graphs of the unchanged classes and 
+ * methods of the previous run
+ */
+public class IncrementalAnalyzerTest {
+	
+	private static final int TYPE = GraphBuilder.DEFAULT;
+	
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+	
+	@Test
+	public void unchangedModifiedAddedAndDeleted() throws Exception {
+		
+		final File manifest = new File(folder.getRoot(), "manifest");
+		final List<MethodNode> methods = new RandomMethods(1).create(10, 3);
+		final List<MethodNode> others = new RandomMethods(2).create(10, 3);
+		
+		final byte[] a = classBytes("A", methods);
+		final byte[] b = classBytes("B", others);
+		
+		// first run: everything is analyzed
+		IncrementalAnalyzer analyzer = analyzer(manifest, a, b);
+		assertSameGraphs(expected(a, b), analyzer.analyze(), true);
+		assertReport(analyzer.getReport(), 2, 0, 0, 0, 0, 20);
+		
+		// unchanged classes: graphs are read from the manifest, detached
+		analyzer = analyzer(manifest, a, b);
+		assertSameGraphs(expected(a, b), analyzer.analyze(), false);
+		assertReport(analyzer.getReport(), 0, 0, 2, 0, 20, 0);
+		
+		// a method of A changes, B is deleted and C is added
+		final List<MethodNode> changed = new ArrayList<MethodNode>(methods);
+		changed.set(3, others.get(3));
+		final byte[] a2 = classBytes("A", changed);
+		final byte[] c = classBytes("C", others);
+		
+		analyzer = analyzer(manifest, a2, c);
+		assertSameGraphs(expected(a2, c), analyzer.analyze(), true);
+		assertReport(analyzer.getReport(), 1, 1, 0, 1, 9, 11);
+		
+		// the manifest has the classes of the last run only
+		final Manifest read = Manifest.read(manifest, TYPE);
+		assertEquals(2, read.getClasses().size());
+		assertNotNull(read.get("A"));
+		assertNotNull(read.get("C"));
+	}
+	
+	@Test
+	public void firstCopyOfAClass() throws Exception {
+		
+		final File manifest = new File(folder.getRoot(), "manifest");
+		final byte[] a = classBytes("A", new RandomMethods(1).create(5, 2));
+		final byte[] other = classBytes("A", new RandomMethods(2).create(5, 2));
+		
+		final IncrementalAnalyzer analyzer = analyzer(manifest, a, other);
+		assertSameGraphs(expected(a), analyzer.analyze(), true);
+		assertEquals(Collections.singletonList("A"), analyzer.getReport().added);
+	}
+	
+	@Test
+	public void otherType() throws Exception {
+		
+		final File manifest = new File(folder.getRoot(), "manifest");
+		final byte[] a = classBytes("A", new RandomMethods(1).create(5, 2));
+		
+		analyzer(manifest, a).analyze();
+		
+		// a manifest of another graph type is not reused
+		final IncrementalAnalyzer analyzer = new IncrementalAnalyzer(
+				manifest, TYPE | GraphBuilder.EXCEPTION_FLOW, 2);
+		analyzer.addClass(a);
+		analyzer.analyze();
+		assertReport(analyzer.getReport(), 1, 0, 0, 0, 0, 5);
+	}
+	
+	private static IncrementalAnalyzer analyzer(final File manifest, final byte[]... classes) {
+		final IncrementalAnalyzer analyzer = new IncrementalAnalyzer(manifest, TYPE, 2);
+		for (final byte[] bytes : classes) {
+			analyzer.addClass(bytes);
+		}
+		return analyzer;
+	}
+	
+	private static List<ProgramGraph> expected(final byte[]... classes) throws Exception {
+		final ArchiveAnalyzer analyzer = new ArchiveAnalyzer(TYPE, 1);
+		final List<ProgramGraph> graphs = new ArrayList<ProgramGraph>();
+		for (final byte[] bytes : classes) {
+			graphs.addAll(analyzer.analyze(bytes));
+		}
+		return graphs;
+	}
+	
+	private static void assertSameGraphs(final List<ProgramGraph> expected, 
+										 final List<ProgramGraph> actual, 
+										 final boolean attached) {
+		
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i).getMethod().toString(), actual.get(i).getMethod().toString());
+			assertEquals(Graphs.describe(expected.get(i), true), Graphs.describe(actual.get(i), true));
+			for (final GraphNode node : actual.get(i).getNodes()) {
+				for (final BytecodeInstruction insn : node.instructions) {
+					try {
+						insn.getInstruction();
+						if (!attached) {
+							fail("Attached instruction: " + insn.getIndex());
+						}
+					} catch (final IllegalStateException e) {
+						if (attached) {
+							throw e;
+						}
+					}
+				}
+			}
+		}
+	}
+	
+	private static void assertReport(final ChangeReport report, 
+									 final int added, 
+									 final int modified, 
+									 final int unchanged, 
+									 final int deleted, 
+									 final int reused, 
+									 final int analyzed) {
+		
+		assertEquals(Arrays.asList(added, modified, unchanged, deleted, reused, analyzed), 
+				Arrays.asList(report.added.size(), report.modified.size(), report.unchanged.size(), 
+						report.deleted.size(), report.reusedMethods, report.analyzedMethods));
+	}
+	
+	private static byte[] classBytes(final String name, final List<MethodNode> methods) {
+		final ClassNode cn = new ClassNode();
+		cn.version = Opcodes.V1_6;
+		cn.access = Opcodes.ACC_PUBLIC;
+		cn.name = name;
+		cn.superName = "java/lang/Object";
+		for (int i = 0; i < methods.size(); i++) {
+			final MethodNode method = methods.get(i);
+			final MethodNode copy = new MethodNode(
+					method.access, "m" + i, method.desc, method.signature, null);
+			method.accept(copy);
+			cn.methods.add(copy);
+		}
+		final ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		cn.accept(cw);
+		return cw.toByteArray();
+	}
+	
+}
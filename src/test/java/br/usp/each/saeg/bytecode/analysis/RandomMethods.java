@@ -0,0 +1,213 @@
+/***
+ * bytecode-analysis: a prototype-library based on ASM 4 that
+ *                    computes definitions/uses of each instruction
+ * Copyright (c) 2014 University of Sao Paulo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package br.usp.each.saeg.bytecode.analysis;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+/**
+ * Generates methods of random shapes (sequences, branches, loops, switches, 
+ * early returns and nested try/catch blocks) over four <code>int</code> 
+ * parameters. The same seed always generates the same methods.
+ */
+public class RandomMethods {
+	
+	public static final String OWNER = "br/usp/each/saeg/bytecode/analysis/Random";
+	
+	public static final String DESC = "(IIII)I";
+	
+	private static final int LOCALS = 4;
+	
+	private final Random random;
+	
+	private MethodVisitor mv;
+	
+	private int line;
+	
+	public RandomMethods(final long seed) {
+		this.random = new Random(seed);
+	}
+	
+	/**
+	 * Generates methods
+	 * 
+	 * @param count the number of methods
+	 * @param depth the maximum nesting of the statements
+	 * @return the generated methods, as read back by the ASM tree API
+	 */
+	public List<MethodNode> create(final int count, final int depth) {
+		
+		final ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		cw.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC, OWNER, null, "java/lang/Object", null);
+		
+		for (int i = 0; i < count; i++) {
+			mv = cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "m" + i, DESC, null, null);
+			mv.visitCode();
+			line = 1;
+			statements(depth);
+			mv.visitVarInsn(Opcodes.ILOAD, random.nextInt(LOCALS));
+			mv.visitInsn(Opcodes.IRETURN);
+			mv.visitMaxs(0, 0);
+			mv.visitEnd();
+		}
+		cw.visitEnd();
+		mv = null;
+		
+		final ClassNode cn = new ClassNode();
+		new ClassReader(cw.toByteArray()).accept(cn, 0);
+		return new ArrayList<MethodNode>(cn.methods);
+	}
+	
+	private void statements(final int depth) {
+		final int n = 1 + random.nextInt(3);
+		for (int i = 0; i < n; i++) {
+			statement(depth);
+		}
+	}
+	
+	private void statement(final int depth) {
+		
+		if (random.nextInt(4) == 0) {
+			final Label label = new Label();
+			mv.visitLabel(label);
+			mv.visitLineNumber(line++, label);
+		}
+		
+		switch (depth == 0 ? 0 : random.nextInt(7)) {
+		case 0:
+			assign();
+			break;
+		case 1:
+			branch(depth);
+			break;
+		case 2:
+			loop(depth);
+			break;
+		case 3:
+			tableSwitch(depth);
+			break;
+		case 4:
+			earlyReturn();
+			break;
+		default:
+			tryCatch(depth);
+			break;
+		}
+	}
+	
+	private void assign() {
+		mv.visitVarInsn(Opcodes.ILOAD, random.nextInt(LOCALS));
+		mv.visitVarInsn(Opcodes.ILOAD, random.nextInt(LOCALS));
+		// IDIV may throw, IADD may not
+		mv.visitInsn(random.nextBoolean() ? Opcodes.IDIV : Opcodes.IADD);
+		mv.visitVarInsn(Opcodes.ISTORE, random.nextInt(LOCALS));
+	}
+	
+	private void branch(final int depth) {
+		final Label otherwise = new Label();
+		final Label end = new Label();
+		mv.visitVarInsn(Opcodes.ILOAD, random.nextInt(LOCALS));
+		mv.visitJumpInsn(Opcodes.IFEQ, otherwise);
+		statements(depth - 1);
+		mv.visitJumpInsn(Opcodes.GOTO, end);
+		mv.visitLabel(otherwise);
+		statements(depth - 1);
+		mv.visitLabel(end);
+	}
+	
+	private void loop(final int depth) {
+		final int var = random.nextInt(LOCALS);
+		final Label head = new Label();
+		final Label exit = new Label();
+		mv.visitLabel(head);
+		mv.visitVarInsn(Opcodes.ILOAD, var);
+		mv.visitJumpInsn(Opcodes.IFLE, exit);
+		statements(depth - 1);
+		mv.visitIincInsn(var, -1);
+		mv.visitJumpInsn(Opcodes.GOTO, head);
+		mv.visitLabel(exit);
+	}
+	
+	private void tableSwitch(final int depth) {
+		final Label[] cases = new Label[1 + random.nextInt(4)];
+		for (int i = 0; i < cases.length; i++) {
+			cases[i] = new Label();
+		}
+		final Label dflt = new Label();
+		final Label end = new Label();
+		mv.visitVarInsn(Opcodes.ILOAD, random.nextInt(LOCALS));
+		mv.visitTableSwitchInsn(0, cases.length - 1, dflt, cases);
+		for (int i = 0; i < cases.length; i++) {
+			mv.visitLabel(cases[i]);
+			statements(depth - 1);
+			mv.visitJumpInsn(Opcodes.GOTO, end);
+		}
+		mv.visitLabel(dflt);
+		statements(depth - 1);
+		mv.visitLabel(end);
+	}
+	
+	private void earlyReturn() {
+		final Label skip = new Label();
+		mv.visitVarInsn(Opcodes.ILOAD, random.nextInt(LOCALS));
+		mv.visitJumpInsn(Opcodes.IFNE, skip);
+		mv.visitVarInsn(Opcodes.ILOAD, random.nextInt(LOCALS));
+		mv.visitInsn(Opcodes.IRETURN);
+		mv.visitLabel(skip);
+	}
+	
+	private void tryCatch(final int depth) {
+		final Label start = new Label();
+		final Label end = new Label();
+		final Label handler = new Label();
+		final Label next = new Label();
+		mv.visitTryCatchBlock(start, end, handler, 
+				random.nextBoolean() ? "java/lang/ArithmeticException" : null);
+		mv.visitLabel(start);
+		statements(depth - 1);
+		mv.visitLabel(end);
+		mv.visitJumpInsn(Opcodes.GOTO, next);
+		mv.visitLabel(handler);
+		mv.visitInsn(Opcodes.POP);
+		statements(depth - 1);
+		mv.visitLabel(next);
+	}
+	
+}
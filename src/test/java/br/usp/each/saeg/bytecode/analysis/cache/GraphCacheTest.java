@@ -0,0 +1,215 @@
+/***
+ * bytecode-analysis: a prototype-library based on ASM 4 that
+ *                    computes definitions/uses of each instruction
+ * Copyright (c) 2014 University of Sao Paulo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package br.usp.each.saeg.bytecode.analysis.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import br.usp.each.saeg.bytecode.analysis.GraphBuilder;
+import br.usp.each.saeg.bytecode.analysis.GraphClassVisitor;
+import br.usp.each.saeg.bytecode.analysis.Graphs;
+import br.usp.each.saeg.bytecode.analysis.MethodCode;
+import br.usp.each.saeg.bytecode.analysis.RandomMethods;
+import br.usp.each.saeg.bytecode.analysis.graph.ProgramGraph;
+
+/**
+ * Checks the keys computed by a {@link MethodDigest} and the entries, 
+ * eviction and size of a {@link GraphCache}, for trees and recorded code
+ */
+public class GraphCacheTest {
+	
+	private static final String OWNER = RandomMethods.OWNER;
+	
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+	
+	@Test
+	public void getAfterPut() throws Exception {
+		
+		final GraphCache cache = new GraphCache(folder.newFolder("cache"), Long.MAX_VALUE);
+		
+		for (final MethodNode method : new RandomMethods(1).create(20, 3)) {
+			
+			final String key = cache.key(method, GraphBuilder.DEFAULT);
+			assertNull(cache.get(key, OWNER, method));
+			
+			final ProgramGraph graph = build(method);
+			cache.put(key, graph, method);
+			
+			final ProgramGraph cached = cache.get(key, OWNER, method);
+			assertNotNull(cached);
+			assertEquals(Graphs.describe(graph, true), Graphs.describe(cached, true));
+		}
+	}
+	
+	@Test
+	public void recordedCode() throws Exception {
+		
+		final File dir = folder.newFolder("cache");
+		final GraphCache cache = new GraphCache(dir, Long.MAX_VALUE);
+		
+		final ClassNode cn = new ClassNode();
+		cn.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC, OWNER, null, "java/lang/Object", null);
+		cn.methods.addAll(new RandomMethods(5).create(20, 3));
+		
+		final List<String> expected = new ArrayList<String>();
+		for (final MethodNode method : cn.methods) {
+			expected.addAll(Graphs.describe(build(method), true));
+		}
+		
+		// the first visitor puts the graphs and the second one gets them
+		for (int i = 0; i < 2; i++) {
+			final GraphClassVisitor visitor = new GraphClassVisitor(
+					GraphBuilder.DEFAULT, cache, null, null);
+			cn.accept(visitor);
+			final List<String> actual = new ArrayList<String>();
+			for (final ProgramGraph graph : visitor.getGraphs()) {
+				actual.addAll(Graphs.describe(graph, true));
+			}
+			assertEquals(expected, actual);
+			assertEquals(cn.methods.size(), entries(dir).size());
+		}
+		
+		final MethodCode code = new MethodCode();
+		final MethodNode method = cn.methods.get(0);
+		code.reset(method.access, method.name, method.desc, null);
+		method.accept(code);
+		assertFalse(cache.key(code, GraphBuilder.DEFAULT).equals(cache.key(method, GraphBuilder.DEFAULT)));
+	}
+	
+	@Test
+	public void keys() throws Exception {
+		
+		final List<MethodNode> methods = new RandomMethods(2).create(2, 3);
+		final MethodNode method = methods.get(0);
+		final MethodNode same = new RandomMethods(2).create(2, 3).get(0);
+		
+		final String key = MethodDigest.digest(method, 1, GraphBuilder.DEFAULT);
+		assertEquals(key, MethodDigest.digest(same, 1, GraphBuilder.DEFAULT));
+		assertFalse(key.equals(MethodDigest.digest(method, 2, GraphBuilder.DEFAULT)));
+		assertFalse(key.equals(MethodDigest.digest(method, 1, GraphBuilder.NORMAL_FLOW)));
+		assertFalse(key.equals(MethodDigest.digest(methods.get(1), 1, GraphBuilder.DEFAULT)));
+		
+		same.instructions.insert(new InsnNode(Opcodes.NOP));
+		assertFalse(key.equals(MethodDigest.digest(same, 1, GraphBuilder.DEFAULT)));
+	}
+	
+	@Test
+	public void corruptedEntry() throws Exception {
+		
+		final File dir = folder.newFolder("cache");
+		final GraphCache cache = new GraphCache(dir, Long.MAX_VALUE);
+		final MethodNode method = new RandomMethods(3).create(1, 3).get(0);
+		final String key = cache.key(method, GraphBuilder.DEFAULT);
+		cache.put(key, build(method), method);
+		
+		final List<File> entries = entries(dir);
+		assertEquals(1, entries.size());
+		final FileOutputStream out = new FileOutputStream(entries.get(0));
+		try {
+			out.write(new byte[] { 1, 2, 3 });
+		} finally {
+			out.close();
+		}
+		
+		assertNull(cache.get(key, OWNER, method));
+		assertTrue(entries(dir).isEmpty());
+	}
+	
+	@Test
+	public void eviction() throws Exception {
+		
+		final long maxSize = 20000;
+		final GraphCache cache = new GraphCache(folder.newFolder("cache"), maxSize);
+		
+		for (final MethodNode method : new RandomMethods(4).create(100, 3)) {
+			cache.put(cache.key(method, GraphBuilder.DEFAULT), build(method), method);
+			assertTrue(cache.size() <= maxSize);
+		}
+	}
+	
+	@Test
+	public void sharedDirectory() throws Exception {
+		
+		final File dir = folder.newFolder("cache");
+		final long maxSize = 20000;
+		final GraphCache first = new GraphCache(dir, maxSize);
+		final GraphCache second = new GraphCache(dir, maxSize);
+		
+		final List<MethodNode> methods = new RandomMethods(5).create(100, 3);
+		for (int i = 0; i < methods.size(); i++) {
+			final GraphCache cache = i % 2 == 0 ? first : second;
+			final MethodNode method = methods.get(i);
+			cache.put(cache.key(method, GraphBuilder.DEFAULT), build(method), method);
+		}
+		
+		// each instance counts the entries written by the other one
+		long size = 0;
+		for (final File entry : entries(dir)) {
+			size += entry.length();
+		}
+		assertTrue(size <= maxSize);
+		assertEquals(size, first.size());
+		assertEquals(size, second.size());
+	}
+	
+	private static ProgramGraph build(final MethodNode method) throws Exception {
+		return new GraphBuilder(OWNER, method, GraphBuilder.DEFAULT).buildDefUseGraph();
+	}
+	
+	private static List<File> entries(final File dir) throws IOException {
+		final List<File> entries = new ArrayList<File>();
+		for (final File sub : dir.listFiles()) {
+			for (final File file : sub.listFiles()) {
+				entries.add(file);
+			}
+		}
+		return entries;
+	}
+	
+}
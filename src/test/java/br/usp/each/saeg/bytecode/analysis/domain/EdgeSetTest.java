@@ -0,0 +1,123 @@
+/***
+ * bytecode-analysis: a prototype-library based on ASM 4 that
+ *                    computes definitions/uses of each instruction
+ * Copyright (c) 2014 University of Sao Paulo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package br.usp.each.saeg.bytecode.analysis.domain;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Checks that an {@link EdgeSet} behaves as a <code>LinkedHashSet</code> of 
+ * {@link Edge}s: same membership and same insertion order, also after 
+ * growing and being cleared
+ */
+public class EdgeSetTest {
+	
+	@Test
+	public void sameAsLinkedHashSet() {
+		final Random random = new Random(1);
+		final EdgeSet edges = new EdgeSet(4);
+		
+		for (int round = 0; round < 3; round++) {
+			final Set<Edge> expected = new LinkedHashSet<Edge>();
+			
+			// few nodes, so many edges are repeated, and enough edges to grow
+			for (int i = 0; i < 5000; i++) {
+				final int src = random.nextInt(100);
+				final int dest = random.nextInt(100);
+				assertEquals(expected.add(new Edge(src, dest)), edges.add(src, dest));
+			}
+			
+			check(expected, edges);
+			for (int i = 0; i < 1000; i++) {
+				final int src = random.nextInt(120);
+				final int dest = random.nextInt(120);
+				assertEquals(expected.contains(new Edge(src, dest)), edges.contains(src, dest));
+			}
+			
+			final Edge first = expected.iterator().next();
+			edges.clear();
+			assertEquals(0, edges.size());
+			assertFalse(edges.contains(first.src, first.dest));
+		}
+	}
+	
+	@Test
+	public void negativeAndLargeNodes() {
+		final EdgeSet edges = new EdgeSet();
+		
+		assertTrue(edges.add(-1, 0));
+		assertTrue(edges.add(0, -1));
+		assertTrue(edges.add(Integer.MAX_VALUE, Integer.MIN_VALUE));
+		assertFalse(edges.add(0, -1));
+		
+		assertEquals(3, edges.size());
+		assertArrayEquals(new int[] { -1, 0, Integer.MAX_VALUE }, edges.getSources());
+		assertArrayEquals(new int[] { 0, -1, Integer.MIN_VALUE }, edges.getDestinations());
+		assertTrue(edges.contains(Integer.MAX_VALUE, Integer.MIN_VALUE));
+		assertFalse(edges.contains(Integer.MIN_VALUE, Integer.MAX_VALUE));
+	}
+	
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void positionOutOfBounds() {
+		final EdgeSet edges = new EdgeSet();
+		edges.add(1, 2);
+		edges.src(1);
+	}
+	
+	private static void check(final Set<Edge> expected, final EdgeSet edges) {
+		
+		final List<Edge> order = new ArrayList<Edge>(expected);
+		assertEquals(order.size(), edges.size());
+		
+		final int[] sources = edges.getSources();
+		final int[] destinations = edges.getDestinations();
+		final Edge[] array = edges.toArray();
+		for (int i = 0; i < order.size(); i++) {
+			assertEquals(order.get(i).src, edges.src(i));
+			assertEquals(order.get(i).dest, edges.dest(i));
+			assertEquals(order.get(i).src, sources[i]);
+			assertEquals(order.get(i).dest, destinations[i]);
+			assertEquals(order.get(i), array[i]);
+		}
+		assertEquals(order.toString(), edges.toString());
+	}
+	
+}
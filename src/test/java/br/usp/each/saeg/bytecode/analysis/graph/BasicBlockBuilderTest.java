@@ -0,0 +1,131 @@
+/***
+ * bytecode-analysis: a prototype-library based on ASM 4 that
+ *                    computes definitions/uses of each instruction
+ * Copyright (c) 2014 University of Sao Paulo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package br.usp.each.saeg.bytecode.analysis.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.objectweb.asm.tree.MethodNode;
+
+import br.usp.each.saeg.bytecode.analysis.BytecodeInstruction;
+import br.usp.each.saeg.bytecode.analysis.ControlFlowAnalyzer;
+import br.usp.each.saeg.bytecode.analysis.GraphBuilder;
+import br.usp.each.saeg.bytecode.analysis.MethodCode;
+import br.usp.each.saeg.bytecode.analysis.RandomMethods;
+
+/**
+ * Checks that the blocks built by a {@link BasicBlockBuilder} are the same 
+ * built by a {@link BasicBlockGraphNodeJoiner} over the graph of 
+ * instructions, with the children, parents and exception children of every 
+ * node in the same order.
+ */
+public class BasicBlockBuilderTest {
+	
+	@Test
+	public void normalFlow() throws Exception {
+		check(false, false);
+	}
+	
+	@Test
+	public void exceptionFlow() throws Exception {
+		check(true, false);
+	}
+	
+	@Test
+	public void exceptingOnly() throws Exception {
+		check(true, true);
+	}
+	
+	private void check(final boolean exceptionFlow, final boolean exceptingOnly) throws Exception {
+		
+		final ControlFlowAnalyzer analyzer = new ControlFlowAnalyzer(exceptionFlow, false, exceptingOnly);
+		final BasicBlockBuilder builder = new BasicBlockBuilder();
+		final MethodCode code = new MethodCode();
+		final GraphNodeVisitor joiner = new BasicBlockGraphNodeJoiner();
+		
+		final int type = GraphBuilder.NORMAL_FLOW 
+				| (exceptionFlow ? GraphBuilder.EXCEPTION_FLOW : 0) 
+				| (exceptingOnly ? GraphBuilder.EXCEPTING_ONLY : 0);
+		
+		int built = 0;
+		int methods = 0;
+		for (long seed = 0; seed < 10; seed++) {
+			for (final MethodNode method : new RandomMethods(seed).create(50, 3)) {
+				
+				code.load(method);
+				analyzer.analyze(RandomMethods.OWNER, code);
+				final GraphNode root = builder.build(code, analyzer, true, exceptionFlow);
+				
+				final ProgramGraph graph = new GraphBuilder(
+						RandomMethods.OWNER, method, type).buildDefUseGraph();
+				new PreOrderTraversalStrategy(joiner).traverse(graph.getRootNode());
+				
+				methods++;
+				if (root != null) {
+					assertEquals(method.name, describe(graph.getRootNode()), describe(root));
+					built++;
+				}
+			}
+		}
+		
+		// most shapes have no handler in the middle of a block
+		assertTrue(built + " of " + methods, built > methods / 2);
+	}
+	
+	private static List<String> describe(final GraphNode root) {
+		final List<String> nodes = new ArrayList<String>();
+		for (final GraphNode node : new Graph(root).getNodes()) {
+			final StringBuilder sb = new StringBuilder();
+			sb.append(node.id).append(" [");
+			for (final BytecodeInstruction insn : node.instructions) {
+				sb.append(' ').append(insn.getIndex());
+			}
+			sb.append(" ] children ").append(ids(node.getChildren()));
+			sb.append(" parents ").append(ids(node.getParents()));
+			sb.append(" exception ").append(ids(node.getExceptionChildren()));
+			nodes.add(sb.toString());
+		}
+		return nodes;
+	}
+	
+	private static List<Integer> ids(final GraphNode[] nodes) {
+		final List<Integer> ids = new ArrayList<Integer>(nodes.length);
+		for (final GraphNode node : nodes) {
+			ids.add(node.id);
+		}
+		return ids;
+	}
+	
+}
@@ -0,0 +1,157 @@
+/***
+ * bytecode-analysis: a prototype-library based on ASM 4 that
+ *                    computes definitions/uses of each instruction
+ * Copyright (c) 2014 University of Sao Paulo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package br.usp.each.saeg.bytecode.analysis.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import org.junit.Test;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.MethodNode;
+
+import br.usp.each.saeg.bytecode.analysis.GraphBuilder;
+import br.usp.each.saeg.bytecode.analysis.RandomMethods;
+import br.usp.each.saeg.bytecode.analysis.graph.defuse.DefUseFrameComputer;
+
+/**
+ * Checks that a {@link DataflowVerifierTraversalStrategy} visits the nodes 
+ * in reverse postorder: once each in acyclic graphs, whatever the layout 
+ * of the code, and at most twice in the loops of the generated methods, 
+ * which carry nothing on the operand stack
+ */
+public class DataflowVerifierTraversalStrategyTest {
+	
+	private static final int[] TYPES = {
+		GraphBuilder.NORMAL_FLOW,
+		GraphBuilder.NORMAL_FLOW | GraphBuilder.BASIC_BLOCK,
+		GraphBuilder.NORMAL_FLOW | GraphBuilder.EXCEPTION_FLOW | GraphBuilder.BASIC_BLOCK
+	};
+	
+	@Test
+	public void randomMethods() throws Exception {
+		
+		int acyclic = 0;
+		for (int seed = 1; seed <= 5; seed++) {
+			for (final MethodNode method : new RandomMethods(seed).create(50, 3)) {
+				for (final int type : TYPES) {
+					
+					final ProgramGraph graph = new GraphBuilder(
+							RandomMethods.OWNER, method, type).buildDefUseGraph();
+					final DataflowVerifierTraversalStrategy strategy = traverse(graph);
+					
+					final List<GraphNode> nodes = graph.getNodes();
+					assertEquals(nodes.size(), strategy.getNodeCount());
+					
+					int iterations = 0;
+					for (final GraphNode node : nodes) {
+						iterations += strategy.getIterations(node);
+						assertTrue(strategy.getIterations(node) >= 1);
+					}
+					assertEquals(iterations, strategy.getIterations());
+					
+					if (isAcyclic(graph)) {
+						assertEquals(method.name, 1, strategy.getMaxIterations());
+						acyclic++;
+					} else {
+						assertTrue(method.name, strategy.getMaxIterations() <= 2);
+					}
+				}
+			}
+		}
+		assertTrue(acyclic > 0);
+	}
+	
+	@Test
+	public void backwardJumps() throws Exception {
+		
+		// the blocks are laid out backwards: B, A, exit
+		final MethodNode method = new MethodNode(
+				Opcodes.ACC_STATIC, "m", "(I)I", null, null);
+		final Label a = new Label();
+		final Label b = new Label();
+		final Label exit = new Label();
+		method.visitCode();
+		method.visitJumpInsn(Opcodes.GOTO, a);
+		method.visitLabel(b);
+		method.visitVarInsn(Opcodes.ILOAD, 0);
+		method.visitJumpInsn(Opcodes.GOTO, exit);
+		method.visitLabel(a);
+		method.visitIincInsn(0, 1);
+		method.visitJumpInsn(Opcodes.GOTO, b);
+		method.visitLabel(exit);
+		method.visitInsn(Opcodes.IRETURN);
+		method.visitMaxs(1, 1);
+		method.visitEnd();
+		
+		final ProgramGraph graph = new GraphBuilder("A", method, GraphBuilder.NORMAL_FLOW).buildDefUseGraph();
+		assertTrue(isAcyclic(graph));
+		
+		final DataflowVerifierTraversalStrategy strategy = traverse(graph);
+		assertEquals(graph.getNodes().size(), strategy.getIterations());
+		assertEquals(1, strategy.getMaxIterations());
+		assertEquals(0, strategy.getIterations(new GraphNode(graph.getNodes().size() + 10)));
+	}
+	
+	private static DataflowVerifierTraversalStrategy traverse(final ProgramGraph graph) {
+		final DataflowVerifierTraversalStrategy strategy = 
+				new DataflowVerifierTraversalStrategy(new DefUseFrameComputer());
+		strategy.traverse(graph.getRootNode());
+		return strategy;
+	}
+	
+	private static boolean isAcyclic(final ProgramGraph graph) {
+		return isAcyclic(graph.getRootNode(), new BitSet(), new BitSet());
+	}
+	
+	private static boolean isAcyclic(final GraphNode node, final BitSet onPath, final BitSet done) {
+		onPath.set(node.id);
+		final List<GraphNode> successors = new ArrayList<GraphNode>(Arrays.asList(node.getChildren()));
+		successors.addAll(Arrays.asList(node.getExceptionChildren()));
+		for (final GraphNode successor : successors) {
+			if (onPath.get(successor.id)) {
+				return false;
+			}
+			if (!done.get(successor.id) && !isAcyclic(successor, onPath, done)) {
+				return false;
+			}
+		}
+		onPath.clear(node.id);
+		done.set(node.id);
+		return true;
+	}
+	
+}
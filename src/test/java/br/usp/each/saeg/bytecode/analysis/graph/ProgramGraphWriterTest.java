@@ -0,0 +1,200 @@
+/***
+ * bytecode-analysis: a prototype-library based on ASM 4 that
+ *                    computes definitions/uses of each instruction
+ * Copyright (c) 2014 University of Sao Paulo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package br.usp.each.saeg.bytecode.analysis.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import br.usp.each.saeg.bytecode.analysis.BytecodeInstruction;
+import br.usp.each.saeg.bytecode.analysis.GraphBuilder;
+import br.usp.each.saeg.bytecode.analysis.Graphs;
+import br.usp.each.saeg.bytecode.analysis.RandomMethods;
+import br.usp.each.saeg.bytecode.analysis.graph.defuse.DefUseFrameComputer;
+import br.usp.each.saeg.bytecode.analysis.graph.defuse.Variable;
+import br.usp.each.saeg.bytecode.analysis.io.JarClassSource;
+
+/**
+ * Checks that the graphs written by a {@link ProgramGraphWriter} are read 
+ * back by a {@link ProgramGraphReader} with the same nodes, instructions, 
+ * definitions, uses and edges.
+ */
+public class ProgramGraphWriterTest {
+	
+	private static final int ALL_USES = GraphBuilder.NORMAL_FLOW 
+			| GraphBuilder.EXCEPTION_FLOW 
+			| GraphBuilder.COMPUTE_DEF_USE;
+	
+	@Test
+	public void randomMethods() throws Exception {
+		final List<MethodNode> methods = new RandomMethods(1).create(50, 3);
+		check(RandomMethods.OWNER, methods, GraphBuilder.DEFAULT);
+		check(RandomMethods.OWNER, methods, ALL_USES);
+	}
+	
+	@Test
+	public void fieldsAndArrays() throws Exception {
+		for (final Class<?> c : new Class<?>[] { 
+				BasicBlockBuilder.class, DefUseFrameComputer.class, JarClassSource.class }) {
+			
+			final ClassNode cn = readClass(c);
+			check(cn.name, concreteMethods(cn), GraphBuilder.DEFAULT);
+			check(cn.name, concreteMethods(cn), ALL_USES);
+		}
+	}
+	
+	@Test
+	public void endOfStream() throws Exception {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new ProgramGraphWriter(out).flush();
+		assertNull(new ProgramGraphReader(new ByteArrayInputStream(out.toByteArray())).read());
+	}
+	
+	@Test(expected = IOException.class)
+	public void notAGraphStream() throws Exception {
+		new ProgramGraphReader(new ByteArrayInputStream(new byte[16]));
+	}
+	
+	private static void check(final String owner, 
+							  final List<MethodNode> methods, 
+							  final int type) throws Exception {
+		
+		final List<ProgramGraph> graphs = new ArrayList<ProgramGraph>();
+		for (final MethodNode method : methods) {
+			graphs.add(new GraphBuilder(owner, method, type).buildDefUseGraph());
+		}
+		
+		// attached: instructions are bound to the methods again
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final ProgramGraphWriter writer = new ProgramGraphWriter(out);
+		for (int i = 0; i < graphs.size(); i++) {
+			writer.write(graphs.get(i), methods.get(i).instructions);
+		}
+		writer.flush();
+		
+		ProgramGraphReader reader = new ProgramGraphReader(new ByteArrayInputStream(out.toByteArray()));
+		for (int i = 0; i < graphs.size(); i++) {
+			final MethodNode method = methods.get(i);
+			final ProgramGraph graph = reader.read(owner, method);
+			assertSameGraph(graphs.get(i), graph);
+			for (final GraphNode node : graph.getNodes()) {
+				for (final BytecodeInstruction insn : node.instructions) {
+					assertSame(method.instructions.get(insn.getIndex()), insn.getInstruction());
+				}
+			}
+		}
+		assertNull(reader.read());
+		
+		// detached: instructions are read back without their ASM instructions
+		out.reset();
+		final ProgramGraphWriter detachedWriter = new ProgramGraphWriter(out);
+		for (final ProgramGraph graph : graphs) {
+			graph.detach();
+			detachedWriter.write(graph);
+		}
+		detachedWriter.flush();
+		
+		reader = new ProgramGraphReader(new ByteArrayInputStream(out.toByteArray()));
+		for (final ProgramGraph graph : graphs) {
+			final ProgramGraph detached = reader.read();
+			assertSameGraph(graph, detached);
+			for (final GraphNode node : detached.getNodes()) {
+				for (final BytecodeInstruction insn : node.instructions) {
+					try {
+						insn.getInstruction();
+						fail("Attached instruction: " + insn.getIndex());
+					} catch (final IllegalStateException e) {
+					}
+				}
+			}
+		}
+		assertNull(reader.read());
+	}
+	
+	private static void assertSameGraph(final ProgramGraph expected, final ProgramGraph actual) {
+		
+		assertEquals(expected.getMethod().toString(), actual.getMethod().toString());
+		
+		final List<GraphNode> expectedNodes = expected.getNodes();
+		final List<GraphNode> actualNodes = actual.getNodes();
+		assertEquals(Graphs.describe(expected, true), Graphs.describe(actual, true));
+		
+		for (int i = 0; i < expectedNodes.size(); i++) {
+			final List<BytecodeInstruction> expectedInsns = expectedNodes.get(i).getInstructionsAndDefinitions();
+			final List<BytecodeInstruction> actualInsns = actualNodes.get(i).getInstructionsAndDefinitions();
+			for (int j = 0; j < expectedInsns.size(); j++) {
+				if (expectedInsns.get(j).frame != null) {
+					final Variable def = expectedInsns.get(j).frame.def;
+					assertEquals(def, actualInsns.get(j).frame.def);
+					if (def != null) {
+						assertEquals(def.hashCode(), actualInsns.get(j).frame.def.hashCode());
+					}
+					assertEquals(expectedInsns.get(j).frame.uses, actualInsns.get(j).frame.uses);
+				}
+			}
+		}
+	}
+	
+	private static ClassNode readClass(final Class<?> c) throws IOException {
+		final InputStream in = c.getResourceAsStream(c.getSimpleName() + ".class");
+		try {
+			final ClassNode cn = new ClassNode();
+			new ClassReader(in).accept(cn, 0);
+			return cn;
+		} finally {
+			in.close();
+		}
+	}
+	
+	private static List<MethodNode> concreteMethods(final ClassNode cn) {
+		final List<MethodNode> methods = new ArrayList<MethodNode>();
+		for (final MethodNode method : cn.methods) {
+			if (method.instructions.size() > 0) {
+				methods.add(method);
+			}
+		}
+		return methods;
+	}
+	
+}
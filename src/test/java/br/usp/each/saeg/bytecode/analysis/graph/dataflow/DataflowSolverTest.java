@@ -0,0 +1,219 @@
+/***
+ * bytecode-analysis: a prototype-library based on ASM 4 that
+ *                    computes definitions/uses of each instruction
+ * Copyright (c) 2014 University of Sao Paulo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package br.usp.each.saeg.bytecode.analysis.graph.dataflow;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import br.usp.each.saeg.bytecode.analysis.graph.GraphNode;
+
+/**
+ * Checks that a {@link DataflowSolver} finds the same solution as a naive 
+ * round-robin iteration, forward and backward, on random graphs with loops, 
+ * exception edges and unreachable nodes, and that the reverse postorder 
+ * visits each node of an acyclic graph once.
+ */
+public class DataflowSolverTest {
+	
+	@Test
+	public void randomGraphs() {
+		for (int seed = 1; seed <= 200; seed++) {
+			final List<GraphNode> nodes = randomGraph(new Random(seed));
+			final DataflowSolver solver = new DataflowSolver(nodes);
+			for (final boolean forward : new boolean[] { true, false }) {
+				final Problem problem = new Problem(nodes.size(), forward);
+				final DataflowResult<long[]> result = solver.solve(problem);
+				final long[][][] expected = naive(solver, problem);
+				for (int i = 0; i < nodes.size(); i++) {
+					assertArrayEquals("input " + i + " seed " + seed, expected[0][i], result.getInput(i));
+					assertArrayEquals("output " + i + " seed " + seed, expected[1][i], result.getOutput(i));
+					assertArrayEquals(result.getInput(i), result.getInput(nodes.get(i)));
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void acyclicGraphInOnePass() {
+		// 0 -> 1 -> 3, 0 -> 2 -> 3, 1 -> 2 and 2 handled by 4
+		final List<GraphNode> nodes = nodes(5);
+		nodes.get(0).addChild(nodes.get(1));
+		nodes.get(0).addChild(nodes.get(2));
+		nodes.get(1).addChild(nodes.get(3));
+		nodes.get(1).addChild(nodes.get(2));
+		nodes.get(2).addChild(nodes.get(3));
+		nodes.get(2).addExceptionChild(nodes.get(4));
+		
+		final DataflowSolver solver = new DataflowSolver(nodes);
+		for (final boolean forward : new boolean[] { true, false }) {
+			final DataflowResult<long[]> result = solver.solve(new Problem(nodes.size(), forward));
+			assertEquals(nodes.size(), result.getIterations());
+			for (int i = 0; i < nodes.size(); i++) {
+				assertEquals(1, result.getIterations(i));
+			}
+		}
+	}
+	
+	@Test
+	public void loop() {
+		// 0 -> 1 -> 2 -> 1, 2 -> 3
+		final List<GraphNode> nodes = nodes(4);
+		nodes.get(0).addChild(nodes.get(1));
+		nodes.get(1).addChild(nodes.get(2));
+		nodes.get(2).addChild(nodes.get(1));
+		nodes.get(2).addChild(nodes.get(3));
+		
+		final DataflowResult<long[]> result = 
+				new DataflowSolver(nodes).solve(new Problem(nodes.size(), true));
+		
+		// the loop header is visited again once the back edge brings node 2
+		assertEquals(2, result.getIterations(1));
+		assertArrayEquals(new long[] { 0x7L }, result.getInput(1));
+		assertArrayEquals(new long[] { 0xeL }, result.getOutput(3));
+	}
+	
+	/**
+	 * A problem whose transfer function adds the node and removes the next 
+	 * one (modulo the number of nodes) from the set
+	 */
+	private static class Problem extends DataflowProblem<long[]> {
+		
+		private final int size;
+		
+		Problem(final int size, final boolean forward) {
+			super(new BitSetLattice(size), forward);
+			this.size = size;
+		}
+		
+		@Override
+		public void transfer(final int node, final long[] input, final long[] output) {
+			System.arraycopy(input, 0, output, 0, input.length);
+			BitSetLattice.clear(output, (node + 1) % size);
+			BitSetLattice.set(output, node);
+		}
+		
+	}
+	
+	/**
+	 * Iterates over all the nodes, in order, until nothing changes
+	 * 
+	 * @return the inputs and the outputs
+	 */
+	private static long[][][] naive(final DataflowSolver solver, final DataflowProblem<long[]> problem) {
+		
+		final Lattice<long[]> lattice = problem.getLattice();
+		final boolean forward = problem.isForward();
+		final int size = solver.size();
+		
+		final long[][] input = new long[size][];
+		final long[][] output = new long[size][];
+		final long[][] exceptional = new long[size][];
+		for (int i = 0; i < size; i++) {
+			input[i] = lattice.create();
+			output[i] = lattice.create();
+			exceptional[i] = lattice.create();
+		}
+		
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (int i = 0; i < size; i++) {
+				
+				final int[] preds = forward ? solver.getParents(i) : solver.getChildren(i);
+				final int[] exceptionPreds = forward 
+						? solver.getExceptionParents(i) : solver.getExceptionChildren(i);
+				final boolean boundary = forward ? i == 0 
+						: preds.length == 0 && exceptionPreds.length == 0;
+				
+				final long[] in = lattice.create();
+				if (boundary) {
+					final long[] state = lattice.create();
+					problem.boundary(i, state);
+					lattice.join(in, state);
+				}
+				for (final int pred : preds) {
+					lattice.join(in, output[pred]);
+				}
+				for (final int pred : exceptionPreds) {
+					lattice.join(in, forward ? exceptional[pred] : output[pred]);
+				}
+				
+				final long[] out = lattice.create();
+				problem.transfer(i, in, out);
+				if (!forward) {
+					for (final int pred : exceptionPreds) {
+						lattice.join(out, output[pred]);
+					}
+				}
+				
+				changed |= lattice.copy(in, input[i]);
+				changed |= lattice.copy(out, output[i]);
+				
+				if (forward) {
+					final long[] state = lattice.create();
+					problem.exceptionTransfer(i, input[i], output[i], state);
+					changed |= lattice.copy(state, exceptional[i]);
+				}
+			}
+		}
+		
+		return new long[][][] { input, output };
+	}
+	
+	private static List<GraphNode> randomGraph(final Random random) {
+		final List<GraphNode> nodes = nodes(1 + random.nextInt(40));
+		for (final GraphNode node : nodes) {
+			final int children = random.nextInt(4);
+			for (int i = 0; i < children; i++) {
+				node.addChild(nodes.get(random.nextInt(nodes.size())));
+			}
+			if (random.nextInt(4) == 0) {
+				node.addExceptionChild(nodes.get(random.nextInt(nodes.size())));
+			}
+		}
+		return nodes;
+	}
+	
+	private static List<GraphNode> nodes(final int size) {
+		final List<GraphNode> nodes = new ArrayList<GraphNode>(size);
+		for (int i = 0; i < size; i++) {
+			nodes.add(new GraphNode(i));
+		}
+		return nodes;
+	}
+	
+}
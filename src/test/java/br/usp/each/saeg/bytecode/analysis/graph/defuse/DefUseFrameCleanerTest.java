@@ -0,0 +1,127 @@
+/***
+ * bytecode-analysis: a prototype-library based on ASM 4 that
+ *                    computes definitions/uses of each instruction
+ * Copyright (c) 2014 University of Sao Paulo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package br.usp.each.saeg.bytecode.analysis.graph.defuse;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.junit.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import br.usp.each.saeg.bytecode.analysis.GraphBuilder;
+import br.usp.each.saeg.bytecode.analysis.Graphs;
+import br.usp.each.saeg.bytecode.analysis.RandomMethods;
+import br.usp.each.saeg.bytecode.analysis.graph.PreOrderTraversalStrategy;
+import br.usp.each.saeg.bytecode.analysis.graph.ProgramGraph;
+
+/**
+ * Checks that a {@link DefUseFrameCleaner} leaves the same frames, with the 
+ * same uses in the same order, as a {@link LocalUseRemover} followed by a 
+ * {@link LonelyDefinitionsRemover}
+ */
+public class DefUseFrameCleanerTest {
+	
+	private static final int[] TYPES = {
+		GraphBuilder.NORMAL_FLOW | GraphBuilder.COMPUTE_DEF_USE,
+		GraphBuilder.NORMAL_FLOW | GraphBuilder.BASIC_BLOCK | GraphBuilder.COMPUTE_DEF_USE,
+		GraphBuilder.NORMAL_FLOW | GraphBuilder.EXCEPTION_FLOW | GraphBuilder.BASIC_BLOCK 
+				| GraphBuilder.COMPUTE_DEF_USE
+	};
+	
+	@Test
+	public void randomMethods() throws Exception {
+		for (int seed = 1; seed <= 3; seed++) {
+			for (final MethodNode method : new RandomMethods(seed).create(20, 3)) {
+				check(RandomMethods.OWNER, method);
+			}
+		}
+	}
+	
+	@Test
+	public void classes() throws Exception {
+		for (final Class<?> c : new Class<?>[] { 
+				GraphBuilder.class, DefUseFrameComputer.class, VariableTable.class }) {
+			
+			final ClassNode cn = readClass(c);
+			for (final MethodNode method : cn.methods) {
+				if ((method.access & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_NATIVE)) == 0) {
+					check(cn.name, method);
+				}
+			}
+		}
+	}
+	
+	private static void check(final String owner, final MethodNode method) throws Exception {
+		for (final int type : TYPES) {
+			check(owner, method, type, true, false);
+			check(owner, method, type, false, true);
+			check(owner, method, type, true, true);
+		}
+	}
+	
+	private static void check(final String owner, 
+							  final MethodNode method, 
+							  final int type, 
+							  final boolean removeLocalUses, 
+							  final boolean removeUnusedDefs) throws Exception {
+		
+		final ProgramGraph expected = new GraphBuilder(owner, method, type).buildDefUseGraph();
+		if (removeLocalUses) {
+			new PreOrderTraversalStrategy(new LocalUseRemover()).traverse(expected.getRootNode());
+		}
+		if (removeUnusedDefs) {
+			new PreOrderTraversalStrategy(new LonelyDefinitionsRemover()).traverse(expected.getRootNode());
+		}
+		
+		final ProgramGraph actual = new GraphBuilder(owner, method, type).buildDefUseGraph();
+		new DefUseFrameCleaner(removeLocalUses, removeUnusedDefs).clean(actual.getNodes());
+		
+		assertEquals(method.name + method.desc, 
+				Graphs.describe(expected, true), Graphs.describe(actual, true));
+	}
+	
+	private static ClassNode readClass(final Class<?> c) throws IOException {
+		final InputStream in = c.getResourceAsStream(c.getSimpleName() + ".class");
+		try {
+			final ClassNode cn = new ClassNode();
+			new ClassReader(in).accept(cn, 0);
+			return cn;
+		} finally {
+			in.close();
+		}
+	}
+	
+}
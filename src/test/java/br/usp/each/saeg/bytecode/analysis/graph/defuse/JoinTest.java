@@ -0,0 +1,137 @@
+/***
+ * bytecode-analysis: a prototype-library based on ASM 4 that
+ *                    computes definitions/uses of each instruction
+ * Copyright (c) 2014 University of Sao Paulo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package br.usp.each.saeg.bytecode.analysis.graph.defuse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import org.junit.Test;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Checks that a {@link Join} keeps the distinct variables of the nested 
+ * {@link Or}s it replaces, flat and in order of first appearance, and that 
+ * merges of operand stacks stop changing once their joins cover every 
+ * merged variable
+ */
+public class JoinTest {
+	
+	@Test
+	public void sameVariablesAsOr() {
+		
+		Value or = local(0);
+		Value join = local(0);
+		for (int i = 1; i < 200; i++) {
+			or = new Or(or, local(i % 20));
+			join = Join.of(join, local(i % 20));
+		}
+		
+		final List<Variable> expected = new ArrayList<Variable>(
+				new LinkedHashSet<Variable>(or.getVariableRefs()));
+		assertEquals(20, expected.size());
+		assertEquals(expected, join.getVariableRefs());
+		assertEquals(or.size(), join.size());
+	}
+	
+	@Test
+	public void flatten() {
+		final Join inner = Join.of(local(0), local(1));
+		final Join outer = Join.of(Join.of(local(2), inner), inner);
+		
+		// the variables of the inner join, not the join itself
+		assertEquals(list(local(2), local(0), local(1)), outer.getVariableRefs());
+	}
+	
+	@Test
+	public void covers() {
+		// small joins are searched linearly, larger ones through a set
+		for (final int size : new int[] { 4, 100 }) {
+			Join join = Join.of(local(0), local(1));
+			for (int i = 2; i < size; i++) {
+				join = Join.of(join, local(i));
+			}
+			assertTrue(join.covers(join));
+			assertTrue(join.covers(local(size - 1)));
+			assertTrue(join.covers(Join.of(local(0), local(size - 1))));
+			assertTrue(join.covers(Constant.SIZE_ONE));
+			assertFalse(join.covers(local(size)));
+			assertFalse(join.covers(Join.of(local(0), local(size))));
+		}
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void differentSizes() {
+		Join.of(local(0), new Local(Opcodes.LLOAD, 1));
+	}
+	
+	@Test
+	public void mergesSaturate() {
+		
+		final OperandStackLattice lattice = new OperandStackLattice();
+		final OperandStackLattice.State target = lattice.create();
+		final OperandStackLattice.State value = lattice.create();
+		
+		target.stack = OperandStack.EMPTY.push(Constant.SIZE_ONE).push(local(0));
+		
+		int changes = 0;
+		for (int i = 0; i < 100; i++) {
+			value.stack = OperandStack.EMPTY.push(Constant.SIZE_ONE).push(local(i % 5));
+			if (lattice.join(target, value)) {
+				changes++;
+			}
+		}
+		
+		// one change per new variable, then the join covers every merge
+		assertEquals(4, changes);
+		assertEquals(list(local(0), local(1), local(2), local(3), local(4)), 
+				target.stack.peek().getVariableRefs());
+		assertSame(Constant.SIZE_ONE, target.stack.pop().peek());
+	}
+	
+	private static Local local(final int var) {
+		return new Local(Opcodes.ILOAD, var);
+	}
+	
+	private static List<Variable> list(final Variable... variables) {
+		final List<Variable> list = new ArrayList<Variable>();
+		for (final Variable var : variables) {
+			list.add(var);
+		}
+		return list;
+	}
+	
+}
@@ -0,0 +1,241 @@
+/***
+ * bytecode-analysis: a prototype-library based on ASM 4 that
+ *                    computes definitions/uses of each instruction
+ * Copyright (c) 2014 University of Sao Paulo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package br.usp.each.saeg.bytecode.analysis.graph.defuse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import br.usp.each.saeg.bytecode.analysis.BytecodeInstruction;
+import br.usp.each.saeg.bytecode.analysis.GraphBuilder;
+import br.usp.each.saeg.bytecode.analysis.RandomMethods;
+import br.usp.each.saeg.bytecode.analysis.graph.GraphNode;
+import br.usp.each.saeg.bytecode.analysis.graph.ProgramGraph;
+
+/**
+ * Checks the live variables computed by {@link LiveVariables} against a 
+ * naive search: a variable is live at the entry of a node if some path 
+ * from it reaches a use of the variable before a definition, where a 
+ * handler can be entered from anywhere in the nodes it handles
+ */
+public class LiveVariablesTest {
+	
+	private static final int[] TYPES = {
+		GraphBuilder.DEFAULT,
+		GraphBuilder.DEFAULT | GraphBuilder.EXCEPTION_FLOW,
+		GraphBuilder.NORMAL_FLOW | GraphBuilder.EXCEPTION_FLOW | GraphBuilder.COMPUTE_DEF_USE
+	};
+	
+	@Test
+	public void randomMethods() throws Exception {
+		for (int seed = 1; seed <= 3; seed++) {
+			for (final MethodNode method : new RandomMethods(seed).create(20, 3)) {
+				check(RandomMethods.OWNER, method);
+			}
+		}
+	}
+	
+	@Test
+	public void classes() throws Exception {
+		for (final Class<?> c : new Class<?>[] { LiveVariables.class, VariableTable.class }) {
+			final ClassNode cn = readClass(c);
+			for (final MethodNode method : cn.methods) {
+				if ((method.access & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_NATIVE)) == 0) {
+					check(cn.name, method);
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void unknownVariable() throws Exception {
+		final MethodNode method = new RandomMethods(4).create(1, 3).get(0);
+		final ProgramGraph graph = new GraphBuilder(
+				RandomMethods.OWNER, method, GraphBuilder.DEFAULT).buildDefUseGraph();
+		final LiveVariables live = new LiveVariables(graph);
+		
+		final Variable unknown = new StaticField("A", "f", "I");
+		assertEquals(-1, live.index(unknown));
+		assertFalse(live.isLiveIn(graph.getRootNode(), unknown));
+		assertFalse(live.isLiveOut(graph.getRootNode(), unknown));
+	}
+	
+	private static void check(final String owner, final MethodNode method) throws Exception {
+		
+		for (final int type : TYPES) {
+			
+			final ProgramGraph graph = new GraphBuilder(owner, method, type).buildDefUseGraph();
+			final LiveVariables live = new LiveVariables(graph);
+			final Map<GraphNode, Set<Variable>> liveIn = liveIn(graph, live.getVariables());
+			
+			for (final GraphNode node : graph.getNodes()) {
+				
+				final String name = method.name + " " + node;
+				assertEquals(name, liveIn.get(node), set(live.getLiveIn(node)));
+				
+				final Set<Variable> liveOut = new HashSet<Variable>();
+				for (final GraphNode child : node.getChildren()) {
+					liveOut.addAll(liveIn.get(child));
+				}
+				final Set<Variable> handlers = new HashSet<Variable>();
+				for (final GraphNode handler : node.getExceptionChildren()) {
+					handlers.addAll(liveIn.get(handler));
+				}
+				liveOut.addAll(handlers);
+				assertEquals(name, liveOut, set(live.getLiveOut(node)));
+				
+				for (final Variable var : live.getVariables()) {
+					assertEquals(name, liveIn.get(node).contains(var), live.isLiveIn(node, var));
+					assertEquals(name, liveOut.contains(var), live.isLiveOut(node, var));
+				}
+				
+				final List<BytecodeInstruction> instructions = node.getInstructionsAndDefinitions();
+				for (int i = 0; i < instructions.size(); i++) {
+					final BytecodeInstruction insn = instructions.get(i);
+					assertEquals(name + " " + i, liveFrom(instructions, i, liveOut, handlers), 
+							set(live.getLiveBefore(node, insn)));
+					assertEquals(name + " " + i, liveFrom(instructions, i + 1, liveOut, handlers), 
+							set(live.getLiveAfter(node, insn)));
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Finds the variables live at the entry of each node, with a search from 
+	 * each node for each variable
+	 */
+	private static Map<GraphNode, Set<Variable>> liveIn(final ProgramGraph graph, 
+														final List<Variable> variables) {
+		
+		final Map<GraphNode, Set<Variable>> live = new IdentityHashMap<GraphNode, Set<Variable>>();
+		for (final GraphNode node : graph.getNodes()) {
+			final Set<Variable> set = new HashSet<Variable>();
+			for (final Variable var : variables) {
+				if (reachesUse(node, var, new HashSet<Integer>())) {
+					set.add(var);
+				}
+			}
+			live.put(node, set);
+		}
+		return live;
+	}
+	
+	private static boolean reachesUse(final GraphNode node, final Variable var, final Set<Integer> visited) {
+		
+		if (!visited.add(node.id)) {
+			return false;
+		}
+		for (final GraphNode handler : node.getExceptionChildren()) {
+			if (reachesUse(handler, var, visited)) {
+				return true;
+			}
+		}
+		for (final BytecodeInstruction insn : node.getInstructionsAndDefinitions()) {
+			if (insn.frame != null) {
+				if (insn.frame.uses.contains(var)) {
+					return true;
+				}
+				if (var.equals(insn.frame.def)) {
+					return false;
+				}
+			}
+		}
+		for (final GraphNode child : node.getChildren()) {
+			if (reachesUse(child, var, visited)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Finds the variables live before an instruction of a node, scanning 
+	 * forward from it
+	 */
+	private static Set<Variable> liveFrom(final List<BytecodeInstruction> instructions, 
+										  final int start, 
+										  final Set<Variable> liveOut, 
+										  final Set<Variable> handlers) {
+		
+		final Set<Variable> live = new HashSet<Variable>(handlers);
+		final Set<Variable> defined = new HashSet<Variable>();
+		for (int i = start; i < instructions.size(); i++) {
+			final DefUseFrame frame = instructions.get(i).frame;
+			if (frame != null) {
+				for (final Variable var : frame.uses) {
+					if (!defined.contains(var)) {
+						live.add(var);
+					}
+				}
+				if (frame.def != null) {
+					defined.add(frame.def);
+				}
+			}
+		}
+		for (final Variable var : liveOut) {
+			if (!defined.contains(var)) {
+				live.add(var);
+			}
+		}
+		return live;
+	}
+	
+	private static Set<Variable> set(final List<Variable> list) {
+		return new HashSet<Variable>(list);
+	}
+	
+	private static ClassNode readClass(final Class<?> c) throws IOException {
+		final InputStream in = c.getResourceAsStream(c.getSimpleName() + ".class");
+		try {
+			final ClassNode cn = new ClassNode();
+			new ClassReader(in).accept(cn, 0);
+			return cn;
+		} finally {
+			in.close();
+		}
+	}
+	
+}
@@ -0,0 +1,265 @@
+/***
+ * bytecode-analysis: a prototype-library based on ASM 4 that
+ *                    computes definitions/uses of each instruction
+ * Copyright (c) 2014 University of Sao Paulo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package br.usp.each.saeg.bytecode.analysis.graph.defuse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import br.usp.each.saeg.bytecode.analysis.BytecodeInstruction;
+import br.usp.each.saeg.bytecode.analysis.GraphBuilder;
+import br.usp.each.saeg.bytecode.analysis.RandomMethods;
+import br.usp.each.saeg.bytecode.analysis.graph.GraphNode;
+import br.usp.each.saeg.bytecode.analysis.graph.ProgramGraph;
+
+/**
+ * Checks the reaching definitions and the def-use associations computed by 
+ * {@link ReachingDefinitions} against a naive search, which follows each 
+ * definition along the paths that do not redefine its variable
+ */
+public class ReachingDefinitionsTest {
+	
+	private static final int[] TYPES = {
+		GraphBuilder.DEFAULT,
+		GraphBuilder.DEFAULT | GraphBuilder.EXCEPTION_FLOW,
+		GraphBuilder.NORMAL_FLOW | GraphBuilder.EXCEPTION_FLOW | GraphBuilder.COMPUTE_DEF_USE
+	};
+	
+	@Test
+	public void randomMethods() throws Exception {
+		int associations = 0;
+		for (int seed = 1; seed <= 3; seed++) {
+			for (final MethodNode method : new RandomMethods(seed).create(20, 3)) {
+				associations += check(RandomMethods.OWNER, method);
+			}
+		}
+		assertTrue(associations > 0);
+	}
+	
+	@Test
+	public void classes() throws Exception {
+		for (final Class<?> c : new Class<?>[] { 
+				ReachingDefinitions.class, VariableTable.class }) {
+			
+			final ClassNode cn = readClass(c);
+			for (final MethodNode method : cn.methods) {
+				if ((method.access & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_NATIVE)) == 0) {
+					check(cn.name, method);
+				}
+			}
+		}
+	}
+	
+	private static int check(final String owner, final MethodNode method) throws Exception {
+		
+		int count = 0;
+		for (final int type : TYPES) {
+			
+			final ProgramGraph graph = new GraphBuilder(owner, method, type).buildDefUseGraph();
+			final ReachingDefinitions reaching = new ReachingDefinitions(graph);
+			final List<Definition> definitions = reaching.getDefinitions();
+			
+			final Map<GraphNode, Set<Definition>> expected = reach(graph, definitions);
+			for (final GraphNode node : graph.getNodes()) {
+				assertEquals(method.name + " " + node, 
+						expected.get(node), new HashSet<Definition>(reaching.getReachingDefinitions(node)));
+			}
+			
+			final List<String> associations = describe(reaching.getAssociations());
+			assertEquals(method.name, associate(graph, definitions, expected), associations);
+			count += associations.size();
+		}
+		return count;
+	}
+	
+	/**
+	 * Finds the nodes reached by each definition: a definition leaves its 
+	 * node through the normal edges if it is the last definition of its 
+	 * variable in the node, and a node without a definition of the variable 
+	 * lets it through. Any definition reaching or made in a node reaches its 
+	 * handlers.
+	 */
+	private static Map<GraphNode, Set<Definition>> reach(final ProgramGraph graph, 
+														 final List<Definition> definitions) {
+		
+		final Map<GraphNode, Set<Definition>> reached = new IdentityHashMap<GraphNode, Set<Definition>>();
+		for (final GraphNode node : graph.getNodes()) {
+			reached.put(node, new HashSet<Definition>());
+		}
+		
+		for (final Definition def : definitions) {
+			final List<GraphNode> stack = new ArrayList<GraphNode>();
+			Collections.addAll(stack, def.node.getExceptionChildren());
+			if (isLast(def)) {
+				Collections.addAll(stack, def.node.getChildren());
+			}
+			while (!stack.isEmpty()) {
+				final GraphNode node = stack.remove(stack.size() - 1);
+				if (!reached.get(node).add(def)) {
+					continue;
+				}
+				Collections.addAll(stack, node.getExceptionChildren());
+				if (!defines(node, def.variable)) {
+					Collections.addAll(stack, node.getChildren());
+				}
+			}
+		}
+		return reached;
+	}
+	
+	/**
+	 * Associates each use with the last definition of its variable made 
+	 * before it in the node, or else with the definitions reaching the node
+	 */
+	private static List<String> associate(final ProgramGraph graph, 
+										  final List<Definition> definitions, 
+										  final Map<GraphNode, Set<Definition>> reached) {
+		
+		final Map<BytecodeInstruction, Definition> definitionOf = 
+				new IdentityHashMap<BytecodeInstruction, Definition>();
+		for (final Definition def : definitions) {
+			definitionOf.put(def.instruction, def);
+		}
+		
+		final List<DefUseAssociation> associations = new ArrayList<DefUseAssociation>();
+		
+		for (final GraphNode node : graph.getNodes()) {
+			
+			final Map<Variable, Definition> last = new HashMap<Variable, Definition>();
+			
+			for (final BytecodeInstruction insn : node.getInstructionsAndDefinitions()) {
+				if (insn.frame == null) {
+					continue;
+				}
+				for (final Variable use : new LinkedHashSet<Variable>(insn.frame.uses)) {
+					final List<Definition> defs = new ArrayList<Definition>();
+					if (last.containsKey(use)) {
+						defs.add(last.get(use));
+					} else {
+						for (final Definition def : reached.get(node)) {
+							if (def.variable.equals(use)) {
+								defs.add(def);
+							}
+						}
+					}
+					for (final Definition def : defs) {
+						if (insn.isPredicate()) {
+							for (final GraphNode target : node.getChildren()) {
+								associations.add(new DefUseAssociation(def, node, insn, target));
+							}
+						} else {
+							associations.add(new DefUseAssociation(def, node, insn, null));
+						}
+					}
+				}
+				if (insn.frame.def != null) {
+					last.put(insn.frame.def, definitionOf.get(insn));
+				}
+			}
+		}
+		return describe(associations);
+	}
+	
+	private static boolean isLast(final Definition def) {
+		boolean after = false;
+		for (final BytecodeInstruction insn : def.node.getInstructionsAndDefinitions()) {
+			if (after && insn.frame != null && def.variable.equals(insn.frame.def)) {
+				return false;
+			}
+			after |= insn == def.instruction;
+		}
+		return true;
+	}
+	
+	private static boolean defines(final GraphNode node, final Variable var) {
+		for (final BytecodeInstruction insn : node.getInstructionsAndDefinitions()) {
+			if (insn.frame != null && var.equals(insn.frame.def)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Describes associations by the position of their instructions, sorted
+	 */
+	private static List<String> describe(final List<DefUseAssociation> associations) {
+		final List<String> description = new ArrayList<String>();
+		for (final DefUseAssociation a : associations) {
+			description.add(String.format("%d:%d -> %d:%d%s %s", 
+					a.def.node.id, position(a.def.node, a.def.instruction), 
+					a.node.id, position(a.node, a.instruction), 
+					a.target == null ? "" : " -> " + a.target.id, a.getVariable()));
+		}
+		Collections.sort(description);
+		return description;
+	}
+	
+	private static int position(final GraphNode node, final BytecodeInstruction insn) {
+		int i = 0;
+		for (final BytecodeInstruction other : node.getInstructionsAndDefinitions()) {
+			if (other == insn) {
+				return i;
+			}
+			i++;
+		}
+		throw new IllegalArgumentException(insn + " not in " + node);
+	}
+	
+	private static ClassNode readClass(final Class<?> c) throws IOException {
+		final InputStream in = c.getResourceAsStream(c.getSimpleName() + ".class");
+		try {
+			final ClassNode cn = new ClassNode();
+			new ClassReader(in).accept(cn, 0);
+			return cn;
+		} finally {
+			in.close();
+		}
+	}
+	
+}
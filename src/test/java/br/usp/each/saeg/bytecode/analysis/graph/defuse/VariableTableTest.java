@@ -0,0 +1,126 @@
+/***
+ * bytecode-analysis: a prototype-library based on ASM 4 that
+ *                    computes definitions/uses of each instruction
+ * Copyright (c) 2014 University of Sao Paulo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package br.usp.each.saeg.bytecode.analysis.graph.defuse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Checks that a {@link VariableTable} interns its variables, keeps the 
+ * same hash codes and equality as variables created directly, and only 
+ * keeps locals and static fields when it is cleared of values.
+ */
+public class VariableTableTest {
+	
+	@Test
+	public void sameInstances() {
+		final VariableTable table = new VariableTable();
+		final Value objectref = new Local(Opcodes.ALOAD, 0);
+		
+		assertSame(table.local(Opcodes.ILOAD, 1), table.local(Opcodes.ILOAD, 1));
+		assertNotSame(table.local(Opcodes.ILOAD, 1), table.local(Opcodes.LLOAD, 1));
+		assertSame(table.staticField("A", "f", "I"), table.staticField("A", "f", "I"));
+		assertNotSame(table.staticField("A", "f", "I"), table.staticField("A", "f", "J"));
+		assertSame(table.objectField("A", "f", "I", objectref), table.objectField("A", "f", "I", objectref));
+		assertSame(table.arrayComponent(objectref), table.arrayComponent(objectref));
+		assertEquals(6, table.size());
+	}
+	
+	@Test
+	public void componentsByIdentity() {
+		final VariableTable table = new VariableTable();
+		final Value a = new Local(Opcodes.ALOAD, 0);
+		final Value b = new Local(Opcodes.ALOAD, 0);
+		
+		assertNotSame(table.objectField("A", "f", "I", a), table.objectField("A", "f", "I", b));
+		assertNotSame(table.arrayComponent(a), table.arrayComponent(b));
+	}
+	
+	@Test
+	public void sameAsDirectVariables() {
+		final VariableTable table = new VariableTable();
+		final Value objectref = new Local(Opcodes.ALOAD, 0);
+		
+		// enough variables to grow the table a few times
+		for (int i = 0; i < 1000; i++) {
+			final String name = "f" + i;
+			assertEqualVariables(new Local(Opcodes.ILOAD, i), table.local(Opcodes.ILOAD, i));
+			assertEqualVariables(new StaticField("A", name, "I"), table.staticField("A", name, "I"));
+			assertEqualVariables(new ObjectField("A", name, "I", objectref), 
+					table.objectField("A", name, "I", objectref));
+		}
+		assertEqualVariables(new ArrayComponent(objectref), table.arrayComponent(objectref));
+		assertEquals(3001, table.size());
+		
+		for (int i = 0; i < 1000; i++) {
+			assertSame(table.local(Opcodes.ILOAD, i), table.local(Opcodes.ILOAD, i));
+		}
+		assertEquals(3001, table.size());
+	}
+	
+	@Test
+	public void clearValues() {
+		final VariableTable table = new VariableTable();
+		final Value objectref = new Local(Opcodes.ALOAD, 0);
+		
+		final Local local = table.local(Opcodes.ILOAD, 1);
+		final StaticField staticField = table.staticField("A", "f", "I");
+		final ObjectField objectField = table.objectField("A", "f", "I", objectref);
+		final ArrayComponent component = table.arrayComponent(objectref);
+		for (int i = 0; i < 100; i++) {
+			table.arrayComponent(new Local(Opcodes.ALOAD, i));
+		}
+		assertEquals(104, table.size());
+		
+		table.clearValues();
+		assertEquals(2, table.size());
+		assertSame(local, table.local(Opcodes.ILOAD, 1));
+		assertSame(staticField, table.staticField("A", "f", "I"));
+		assertNotSame(objectField, table.objectField("A", "f", "I", objectref));
+		assertNotSame(component, table.arrayComponent(objectref));
+		assertEquals(4, table.size());
+		
+		table.clearValues();
+		table.clearValues();
+		assertEquals(2, table.size());
+	}
+	
+	private static void assertEqualVariables(final Variable expected, final Variable actual) {
+		assertEquals(expected, actual);
+		assertEquals(actual, expected);
+		assertEquals(expected.hashCode(), actual.hashCode());
+	}
+	
+}
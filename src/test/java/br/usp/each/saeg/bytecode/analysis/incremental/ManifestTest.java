@@ -0,0 +1,117 @@
+/***
+ * bytecode-analysis: a prototype-library based on ASM 4 that
+ *                    computes definitions/uses of each instruction
+ * Copyright (c) 2014 University of Sao Paulo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package br.usp.each.saeg.bytecode.analysis.incremental;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import br.usp.each.saeg.bytecode.analysis.incremental.Manifest.ClassEntry;
+import br.usp.each.saeg.bytecode.analysis.incremental.Manifest.MethodEntry;
+
+/**
+ * Checks that a {@link Manifest} is read back as written, and that 
+ * manifests of other graph types are read as empty
+ */
+public class ManifestTest {
+	
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+	
+	@Test
+	public void readAfterWrite() throws Exception {
+		
+		final File file = new File(folder.getRoot(), "manifest");
+		
+		final Manifest manifest = new Manifest(1);
+		manifest.put(new ClassEntry("B", "b", Arrays.asList(
+				new MethodEntry("m", "()V", "1", new byte[] { 1, 2, 3 }), 
+				new MethodEntry("n", "(I)V", "2", new byte[0]))));
+		manifest.put(new ClassEntry("A", "a", Collections.<MethodEntry> emptyList()));
+		manifest.write(file);
+		manifest.write(file);
+		
+		final Manifest read = Manifest.read(file, 1);
+		assertEquals(1, read.getType());
+		
+		final Iterator<ClassEntry> classes = read.getClasses().iterator();
+		final ClassEntry b = classes.next();
+		assertEquals("B", b.name);
+		assertEquals("b", b.hash);
+		assertEquals(2, b.methods.size());
+		assertEquals("m", b.methods.get(0).name);
+		assertEquals("()V", b.methods.get(0).desc);
+		assertEquals("1", b.methods.get(0).digest);
+		assertArrayEquals(new byte[] { 1, 2, 3 }, b.methods.get(0).getGraph());
+		assertArrayEquals(new byte[0], b.methods.get(1).getGraph());
+		
+		final ClassEntry a = classes.next();
+		assertEquals("A", a.name);
+		assertTrue(a.methods.isEmpty());
+	}
+	
+	@Test
+	public void missingOrOtherType() throws Exception {
+		
+		final File file = new File(folder.getRoot(), "manifest");
+		assertTrue(Manifest.read(file, 1).getClasses().isEmpty());
+		
+		final Manifest manifest = new Manifest(1);
+		manifest.put(new ClassEntry("A", "a", Collections.<MethodEntry> emptyList()));
+		manifest.write(file);
+		
+		assertTrue(Manifest.read(file, 2).getClasses().isEmpty());
+	}
+	
+	@Test(expected = IOException.class)
+	public void notAManifest() throws Exception {
+		final File file = folder.newFile("manifest");
+		final FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(new byte[16]);
+		} finally {
+			out.close();
+		}
+		Manifest.read(file, 1);
+	}
+	
+}
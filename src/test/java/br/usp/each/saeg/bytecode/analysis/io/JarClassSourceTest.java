@@ -0,0 +1,368 @@
+/***
+ * bytecode-analysis: a prototype-library based on ASM 4 that
+ *                    computes definitions/uses of each instruction
+ * Copyright (c) 2014 University of Sao Paulo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holders nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package br.usp.each.saeg.bytecode.analysis.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.objectweb.asm.ClassReader;
+
+import br.usp.each.saeg.bytecode.analysis.GraphBuilder;
+import br.usp.each.saeg.bytecode.analysis.graph.BasicBlockBuilder;
+import br.usp.each.saeg.bytecode.analysis.graph.ProgramGraphWriter;
+import br.usp.each.saeg.bytecode.analysis.graph.defuse.DefUseFrameComputer;
+
+/**
+ * Checks that a {@link JarClassSource} reads back the class files of 
+ * stored, deflated and ZIP64 entries, also after the buffers of the 
+ * thread are released.
+ */
+public class JarClassSourceTest {
+	
+	private static final Class<?>[] CLASSES = { 
+		GraphBuilder.class, BasicBlockBuilder.class, DefUseFrameComputer.class, ProgramGraphWriter.class 
+	};
+	
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+	
+	@Test
+	public void storedAndDeflated() throws Exception {
+		
+		final File file = folder.newFile("classes.jar");
+		final List<String> names = new ArrayList<String>();
+		final List<byte[]> classes = new ArrayList<byte[]>();
+		
+		final ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file));
+		try {
+			put(out, "META-INF/MANIFEST.MF", "Manifest-Version: 1.0\n".getBytes("UTF-8"), false);
+			put(out, "br/", new byte[0], true);
+			for (int i = 0; i < CLASSES.length; i++) {
+				final String name = name(CLASSES[i]);
+				final byte[] bytes = read(CLASSES[i]);
+				put(out, name, bytes, i % 2 == 0);
+				names.add(name);
+				classes.add(bytes);
+			}
+		} finally {
+			out.close();
+		}
+		
+		check(file, names, classes);
+	}
+	
+	@Test
+	public void zip64ByEntryCount() throws Exception {
+		
+		final File file = folder.newFile("many.jar");
+		final List<String> names = new ArrayList<String>();
+		final List<byte[]> classes = new ArrayList<byte[]>();
+		
+		// more than 0xFFFF entries need the ZIP64 end of central directory
+		final ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file));
+		try {
+			for (int i = 0; i < 0x10000; i++) {
+				put(out, "r/" + i, new byte[0], true);
+			}
+			for (int i = 0; i < CLASSES.length; i++) {
+				final String name = name(CLASSES[i]);
+				final byte[] bytes = read(CLASSES[i]);
+				put(out, name, bytes, i % 2 != 0);
+				names.add(name);
+				classes.add(bytes);
+			}
+		} finally {
+			out.close();
+		}
+		
+		check(file, names, classes);
+	}
+	
+	@Test
+	public void zip64ExtendedInformation() throws Exception {
+		
+		final File file = folder.newFile("zip64.jar");
+		final List<String> names = new ArrayList<String>();
+		final List<byte[]> classes = new ArrayList<byte[]>();
+		for (final Class<?> c : CLASSES) {
+			names.add(name(c));
+			classes.add(read(c));
+		}
+		
+		final OutputStream out = new FileOutputStream(file);
+		try {
+			out.write(zip64(names, classes));
+		} finally {
+			out.close();
+		}
+		
+		check(file, names, classes);
+	}
+	
+	@Test
+	public void releasedBuffers() throws Exception {
+		
+		final File file = folder.newFile("released.jar");
+		final ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file));
+		try {
+			put(out, name(GraphBuilder.class), read(GraphBuilder.class), false);
+		} finally {
+			out.close();
+		}
+		final List<String> names = Arrays.asList(name(GraphBuilder.class));
+		final List<byte[]> classes = Arrays.asList(read(GraphBuilder.class));
+		
+		check(file, names, classes);
+		final Buffers buffers = Buffers.get();
+		Buffers.release();
+		Buffers.release();
+		assertNotSame(buffers, Buffers.get());
+		check(file, names, classes);
+	}
+	
+	@Test(expected = IOException.class)
+	public void closed() throws Exception {
+		
+		final File file = folder.newFile("closed.jar");
+		final ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file));
+		try {
+			put(out, name(GraphBuilder.class), read(GraphBuilder.class), true);
+		} finally {
+			out.close();
+		}
+		
+		final JarClassSource source = new JarClassSource(file);
+		source.close();
+		source.getClassReader(0);
+	}
+	
+	private static void check(final File file, 
+							  final List<String> names, 
+							  final List<byte[]> classes) throws IOException {
+		
+		final JarClassSource source = new JarClassSource(file);
+		try {
+			assertEquals(names.size(), source.size());
+			for (int i = 0; i < names.size(); i++) {
+				assertEquals(names.get(i), source.getName(i));
+				final ClassReader reader = source.getClassReader(i);
+				final byte[] expected = classes.get(i);
+				assertEquals(new ClassReader(expected).getClassName(), reader.getClassName());
+				assertArrayEquals(expected, Arrays.copyOf(reader.b, expected.length));
+			}
+		} finally {
+			source.close();
+		}
+	}
+	
+	private static void put(final ZipOutputStream out, 
+							final String name, 
+							final byte[] bytes, 
+							final boolean stored) throws IOException {
+		
+		final ZipEntry entry = new ZipEntry(name);
+		if (stored) {
+			entry.setMethod(ZipEntry.STORED);
+			entry.setSize(bytes.length);
+			entry.setCrc(crc(bytes));
+		}
+		out.putNextEntry(entry);
+		out.write(bytes);
+		out.closeEntry();
+	}
+	
+	/**
+	 * Writes a zip file whose entries have their sizes and offsets in 
+	 * ZIP64 extended information fields, the first entry stored and the 
+	 * others deflated
+	 */
+	private static byte[] zip64(final List<String> names, final List<byte[]> contents) {
+		
+		final LittleEndian out = new LittleEndian();
+		final LittleEndian directory = new LittleEndian();
+		
+		for (int i = 0; i < names.size(); i++) {
+			
+			final byte[] name = names.get(i).getBytes();
+			final byte[] bytes = contents.get(i);
+			final boolean stored = i == 0;
+			final byte[] data = stored ? bytes : deflate(bytes);
+			final long offset = out.size();
+			
+			out.u32(0x04034b50);
+			out.u16(45);
+			out.u16(0);
+			out.u16(stored ? 0 : 8);
+			out.u32(0);
+			out.u32(crc(bytes));
+			out.u32(0xFFFFFFFFL);
+			out.u32(0xFFFFFFFFL);
+			out.u16(name.length);
+			out.u16(20);
+			out.write(name, 0, name.length);
+			out.u16(0x0001);
+			out.u16(16);
+			out.u64(bytes.length);
+			out.u64(data.length);
+			out.write(data, 0, data.length);
+			
+			directory.u32(0x02014b50);
+			directory.u16(45);
+			directory.u16(45);
+			directory.u16(0);
+			directory.u16(stored ? 0 : 8);
+			directory.u32(0);
+			directory.u32(crc(bytes));
+			directory.u32(0xFFFFFFFFL);
+			directory.u32(0xFFFFFFFFL);
+			directory.u16(name.length);
+			directory.u16(28);
+			directory.u16(0);
+			directory.u16(0);
+			directory.u16(0);
+			directory.u32(0);
+			directory.u32(0xFFFFFFFFL);
+			directory.write(name, 0, name.length);
+			directory.u16(0x0001);
+			directory.u16(24);
+			directory.u64(bytes.length);
+			directory.u64(data.length);
+			directory.u64(offset);
+		}
+		
+		final long directoryOffset = out.size();
+		out.write(directory.toByteArray(), 0, directory.size());
+		
+		final long end64 = out.size();
+		out.u32(0x06064b50);
+		out.u64(44);
+		out.u16(45);
+		out.u16(45);
+		out.u32(0);
+		out.u32(0);
+		out.u64(names.size());
+		out.u64(names.size());
+		out.u64(directory.size());
+		out.u64(directoryOffset);
+		
+		out.u32(0x07064b50);
+		out.u32(0);
+		out.u64(end64);
+		out.u32(1);
+		
+		out.u32(0x06054b50);
+		out.u16(0);
+		out.u16(0);
+		out.u16(0xFFFF);
+		out.u16(0xFFFF);
+		out.u32(0xFFFFFFFFL);
+		out.u32(0xFFFFFFFFL);
+		out.u16(0);
+		
+		return out.toByteArray();
+	}
+	
+	private static byte[] deflate(final byte[] bytes) {
+		final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+		deflater.setInput(bytes);
+		deflater.finish();
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final byte[] buffer = new byte[4096];
+		while (!deflater.finished()) {
+			out.write(buffer, 0, deflater.deflate(buffer));
+		}
+		deflater.end();
+		return out.toByteArray();
+	}
+	
+	private static long crc(final byte[] bytes) {
+		final CRC32 crc = new CRC32();
+		crc.update(bytes);
+		return crc.getValue();
+	}
+	
+	private static String name(final Class<?> c) {
+		return c.getName().replace('.', '/') + ".class";
+	}
+	
+	private static byte[] read(final Class<?> c) throws IOException {
+		final InputStream in = c.getResourceAsStream(c.getSimpleName() + ".class");
+		try {
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[4096];
+			int n;
+			while ((n = in.read(buffer)) != -1) {
+				out.write(buffer, 0, n);
+			}
+			return out.toByteArray();
+		} finally {
+			in.close();
+		}
+	}
+	
+	private static class LittleEndian extends ByteArrayOutputStream {
+		
+		void u16(final int value) {
+			write(value);
+			write(value >>> 8);
+		}
+		
+		void u32(final long value) {
+			u16((int) value & 0xFFFF);
+			u16((int) (value >>> 16) & 0xFFFF);
+		}
+		
+		void u64(final long value) {
+			u32(value & 0xFFFFFFFFL);
+			u32(value >>> 32);
+		}
+		
+	}
+	
+}